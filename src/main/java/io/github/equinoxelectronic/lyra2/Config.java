@@ -33,6 +33,22 @@ public class Config {
      * The complete header includes the fileVersion appended to this string.
      */
     public static final String lyraFileHeader = "LyraNeural2 by Equinox Electronic v";
+
+    /**
+     * Header string for int8 quantized Lyra model files.
+     * Kept distinct from {@link #lyraFileHeader} so a quantized file is never mistaken for a trainable model.
+     */
+    public static final String lyraQuantizedFileHeader = "LyraNeural2 int8 by Equinox Electronic v";
+
+    /**
+     * Header string for input table files, saved beside a model file with the {@link #lyraTableExtension} extension.
+     */
+    public static final String lyraTableFileHeader = "LyraNeural2 input table by Equinox Electronic v";
+
+    /**
+     * File extension of input tables. A table for {@code model.lyra} is saved as {@code model.lyratable}.
+     */
+    public static final String lyraTableExtension = ".lyratable";
 }
 
 
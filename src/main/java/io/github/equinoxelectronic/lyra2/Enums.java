@@ -87,6 +87,65 @@ public class Enums {
         /** GPU execution (not yet implemented) */
         GPU
     }
+
+    /**
+     * How training spreads its work over the cores.
+     * <ul>
+     *   <li>SEQUENTIAL - One sample or batch at a time, split across the neurons of each layer (default)</li>
+     *   <li>DATA_PARALLEL - Each batch split between workers, whose gradients are summed before one update</li>
+     *   <li>HOGWILD - Workers update the shared weights after every sample, without locks</li>
+     * </ul>
+     */
+    public enum trainingStrategies {
+        /** Samples or batches in order, with the neurons of each layer split between threads */
+        SEQUENTIAL,
+        /** Every worker trains on its own slice of each batch, and the gradients are combined in a fixed order */
+        DATA_PARALLEL,
+        /** Asynchronous per-sample updates from every worker at once; fastest for sparse inputs, not reproducible */
+        HOGWILD
+    }
+
+    /**
+     * Numeric precision used to store a model's weights and activations.
+     * <ul>
+     *   <li>DOUBLE - 64-bit storage (default)</li>
+     *   <li>FLOAT - 32-bit storage; half the memory and twice the SIMD lanes</li>
+     * </ul>
+     */
+    public enum precisions {
+        /** 64-bit floating point weights and activations */
+        DOUBLE,
+        /** 32-bit floating point weights and activations */
+        FLOAT
+    }
+
+    /**
+     * How finely int8 quantization assigns scale factors to weights.
+     * <ul>
+     *   <li>PER_LAYER - one scale shared by every weight in a layer</li>
+     *   <li>PER_NEURON - one scale per neuron (weight row); more accurate, same memory</li>
+     * </ul>
+     */
+    public enum quantizationScales {
+        /** One scale factor per layer */
+        PER_LAYER,
+        /** One scale factor per neuron */
+        PER_NEURON
+    }
+
+    /**
+     * How magnitude pruning picks the weights to remove.
+     * <ul>
+     *   <li>GLOBAL - one magnitude threshold for the whole model; layers end up with different sparsities</li>
+     *   <li>PER_LAYER - every layer is pruned to the same sparsity</li>
+     * </ul>
+     */
+    public enum pruningScopes {
+        /** One threshold across all layers */
+        GLOBAL,
+        /** The target sparsity applied to each layer separately */
+        PER_LAYER
+    }
 }
 
 
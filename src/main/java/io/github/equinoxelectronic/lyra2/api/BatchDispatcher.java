@@ -0,0 +1,248 @@
+package io.github.equinoxelectronic.lyra2.api;
+
+import io.github.equinoxelectronic.lyra2.api.utility.Histogram;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups concurrent single-sample requests into batches and runs each batch as one
+ * {@link Running#feedBatch(LyraModel, Object[])} call.
+ *
+ * A batch is closed when it reaches the maximum batch size, or when its oldest request has
+ * waited for the maximum wait, whichever comes first. That bounds the extra latency a request
+ * can pick up from batching, while concurrent callers share one pass over the weights instead
+ * of each running their own. Requests for different models may share a dispatcher; a batch is
+ * split per model before it runs.
+ *
+ * Queue depth, batch size and queue wait are recorded in {@link Histogram}s.
+ */
+public class BatchDispatcher implements AutoCloseable {
+
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final Histogram queueDepth = new Histogram();
+    private final Histogram batchSizes = new Histogram();
+    private final Histogram queueWaitMicros = new Histogram();
+
+    private record Request(LyraModel model, Object input, CompletableFuture<Object> result, long enqueuedAt) {}
+
+    /**
+     * Creates a dispatcher and starts its worker thread.
+     *
+     * @param maxBatchSize Largest number of requests run in one batch
+     * @param maxWait Longest time the oldest request in a batch waits for more requests
+     * @param unit Unit of maxWait
+     * @throws LyraError if maxBatchSize is less than 1 or maxWait is negative
+     */
+    public BatchDispatcher(int maxBatchSize, long maxWait, TimeUnit unit) {
+        if (maxBatchSize < 1) {
+            throw new LyraError("Max batch size must be at least 1");
+        }
+        if (maxWait < 0) {
+            throw new LyraError("Max wait must not be negative");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.worker = new Thread(this::dispatchLoop, "lyra2-batch-dispatcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Queues one input for the next batch.
+     * The input type is checked right away, so a bad input fails its own future and never
+     * reaches a batch.
+     *
+     * @param model The trained model to run
+     * @param input The input data (must match the model's input type)
+     * @return A future completed with the typed prediction, or exceptionally if feeding fails
+     */
+    public CompletableFuture<Object> submit(LyraModel model, Object input) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        if (!running) {
+            result.completeExceptionally(new LyraError("The batch dispatcher has been shut down"));
+            return result;
+        }
+        if (model == null || model.frontLayer == null) {
+            result.completeExceptionally(new LyraError("Model is null or has no front layer"));
+            return result;
+        }
+        if (!model.acceptsInput(input)) {
+            result.completeExceptionally(new LyraError("ERROR, MODEL " + model.modelID + " TAKES IN A " +
+                    model.frontLayer.inputType.name() + ", BUT RECEIVED A " +
+                    (input == null ? "null" : input.getClass().getSimpleName()) + " INSTEAD!"));
+            return result;
+        }
+        Request request = new Request(model, input, result, System.nanoTime());
+        queue.add(request);
+        // close() may have drained the queue between the check above and the add. If the request is still
+        // queued, nothing will run it; if it is gone, the worker or close() took it and completes it.
+        if (!running && queue.remove(request)) {
+            result.completeExceptionally(new LyraError("The batch dispatcher has been shut down"));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the histogram of queue depth, sampled each time a batch is started.
+     *
+     * @return The queue depth histogram
+     */
+    public Histogram getQueueDepthHistogram() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the histogram of batch sizes.
+     *
+     * @return The batch size histogram
+     */
+    public Histogram getBatchSizeHistogram() {
+        return batchSizes;
+    }
+
+    /**
+     * Returns the histogram of how long requests waited in the queue, in microseconds.
+     *
+     * @return The queue wait histogram
+     */
+    public Histogram getQueueWaitHistogram() {
+        return queueWaitMicros;
+    }
+
+    /**
+     * Returns the number of requests waiting for a batch.
+     *
+     * @return The current queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the largest number of requests run in one batch.
+     *
+     * @return The max batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Returns the longest time a batch waits for more requests.
+     *
+     * @param unit The unit to return the wait in
+     * @return The max wait
+     */
+    public long getMaxWait(TimeUnit unit) {
+        return unit.convert(maxWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Checks whether this dispatcher still accepts requests.
+     *
+     * @return true until {@link #close()} is called
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops accepting requests, runs everything already queued, and stops the worker thread.
+     */
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything that slipped in after the worker stopped
+        List<Request> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        for (Request request : leftover) {
+            request.result.completeExceptionally(new LyraError("The batch dispatcher has been shut down"));
+        }
+    }
+
+    private void dispatchLoop() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Request first = running ? queue.take() : queue.poll();
+                if (first == null) break;
+                queueDepth.record(queue.size() + 1);
+                batch.add(first);
+
+                // Fill the batch until it is full or the oldest request's deadline passes
+                long deadline = first.enqueuedAt + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) continue;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) break;
+                    Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // close() interrupts to wake the worker; whatever is queued is still run below
+                if (batch.isEmpty()) continue;
+            }
+
+            run(batch);
+            batch.clear();
+        }
+    }
+
+    private void run(List<Request> batch) {
+        batchSizes.record(batch.size());
+        long now = System.nanoTime();
+        for (Request request : batch) {
+            queueWaitMicros.record((now - request.enqueuedAt) / 1000);
+        }
+
+        // A batch may hold requests for several models; run one feedBatch per model
+        Map<LyraModel, List<Request>> byModel = new IdentityHashMap<>();
+        for (Request request : batch) {
+            byModel.computeIfAbsent(request.model, m -> new ArrayList<>()).add(request);
+        }
+
+        for (Map.Entry<LyraModel, List<Request>> group : byModel.entrySet()) {
+            List<Request> requests = group.getValue();
+            Object[] inputs = new Object[requests.size()];
+            for (int n = 0; n < inputs.length; n++) {
+                inputs[n] = requests.get(n).input;
+            }
+            try {
+                Object[] outputs = Running.feedBatch(group.getKey(), inputs);
+                for (int n = 0; n < outputs.length; n++) {
+                    requests.get(n).result.complete(outputs[n]);
+                }
+            } catch (RuntimeException e) {
+                for (Request request : requests) {
+                    request.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
+
+
+//When a lot of threads each ask for one prediction at the same time, they all fight over the cpu. This collects
+//them for a millisecond or two and runs them as one batch, which is a lot faster overall.
+
+//Equinox Electronic
@@ -0,0 +1,417 @@
+package io.github.equinoxelectronic.lyra2.api;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.objects.ChunkTable;
+import io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.lyra2.processing.DatatypeConversion;
+import io.github.equinoxelectronic.lyra2.processing.Feeding;
+import io.github.equinoxelectronic.lyra2.processing.LayerScheduler;
+import io.github.equinoxelectronic.lyra2.processing.ModelChecker;
+import io.github.equinoxelectronic.lyra2.processing.kernels.Kernels;
+
+import java.util.ArrayList;
+
+/**
+ * A re-entrant inference context over a shared, read-only model.
+ * The session owns one activation buffer per layer, sized once from the model shape and
+ * reused on every call, and never writes to the model's neurons. Any number of sessions
+ * may run against the same LyraModel concurrently without locking.
+ *
+ * For FLOAT precision models the activation buffers are 32-bit, and only the output layer is
+ * widened back to double.
+ *
+ * Layers big enough to be worth it are split into tiles on the {@link Feeding#getRuntime() feeding runtime};
+ * smaller ones run on the calling thread.
+ *
+ * A single session is not thread-safe; give each thread its own session.
+ */
+public class InferenceSession {
+    private final LyraModel model;
+    private double[] input;
+    private double[][] activations;
+    private Enums.precisions precision;
+    private float[] floatInput;
+    private float[][] floatActivations;
+    // Indices of the set input bits for the bit-packed path
+    private final int[] activeInputs = new int[64];
+
+    /**
+     * Creates a session for the given model and validates the model once.
+     *
+     * @param model The trained model to run
+     * @throws io.github.equinoxelectronic.lyra2.exceptions.InvalidModelError if the model is invalid
+     */
+    public InferenceSession(LyraModel model) {
+        ModelChecker.checkModel(model);
+        this.model = model;
+        allocateBuffers();
+    }
+
+    /**
+     * Returns the model this session runs.
+     *
+     * @return The shared model
+     */
+    public LyraModel getModel() {
+        return model;
+    }
+
+    /**
+     * Runs a forward pass over binary input data.
+     * The returned array is owned by the session and is overwritten by the next call.
+     *
+     * @param binaryData Input values, one per input neuron
+     * @return The output layer activations
+     * @throws LyraError if the input has the wrong size
+     */
+    public double[] feedForward(double[] binaryData) {
+        if (!shapeMatches()) {
+            allocateBuffers();
+        }
+        if (binaryData.length != input.length) {
+            throw new LyraError("ERROR, MODEL " + model.modelID + " TAKES " + input.length +
+                    " INPUT VALUES, BUT RECEIVED " + binaryData.length + "!");
+        }
+        System.arraycopy(binaryData, 0, input, 0, input.length);
+        return run();
+    }
+
+    /**
+     * Runs a forward pass over binary input data.
+     * The returned array is owned by the session and is overwritten by the next call.
+     *
+     * @param binaryData Input values, one per input neuron
+     * @return The output layer activations
+     * @throws LyraError if the input has the wrong size
+     */
+    public double[] feedForward(ArrayList<Double> binaryData) {
+        if (!shapeMatches()) {
+            allocateBuffers();
+        }
+        if (binaryData.size() != input.length) {
+            throw new LyraError("ERROR, MODEL " + model.modelID + " TAKES " + input.length +
+                    " INPUT VALUES, BUT RECEIVED " + binaryData.size() + "!");
+        }
+        for (int i = 0; i < input.length; i++) {
+            input[i] = binaryData.get(i);
+        }
+        return run();
+    }
+
+    /**
+     * Runs a forward pass over a bit-packed binary input.
+     * Input neuron i is bit {@code inputSize - 1 - i} of {@code bits}, the layout of
+     * {@link DatatypeConversion#convertToBits}. The first layer only adds up the weights of the
+     * set bits, so its cost is proportional to how many bits are 1. If the model has a
+     * {@link LyraModel#getChunkTable() chunk table}, the first layer is read from the table instead.
+     * The returned array is owned by the session and is overwritten by the next call.
+     *
+     * @param bits The packed input
+     * @return The output layer activations
+     * @throws LyraError if the model takes more than 64 inputs
+     */
+    public double[] feedForward(long bits) {
+        if (!shapeMatches()) {
+            allocateBuffers();
+        }
+        if (input.length > 64) {
+            throw new LyraError("ERROR, MODEL " + model.modelID + " TAKES " + input.length +
+                    " INPUT VALUES, WHICH DO NOT FIT IN A LONG!");
+        }
+        Layer first = model.layers.getFirst();
+        ChunkTable table = model.getChunkTable();
+        if (table != null) {
+            // One precomputed row per chunk of the input instead of one weight per set bit
+            if (precision == Enums.precisions.FLOAT) {
+                table.accumulate(bits, floatActivations[0]);
+                Kernels.get().activate(floatActivations[0], 0, floatActivations[0].length, first.activationFunction);
+                return runFloat(1);
+            }
+            table.accumulate(bits, activations[0]);
+            Kernels.get().activate(activations[0], 0, activations[0].length, first.activationFunction);
+            return run(1);
+        }
+        int activeCount = DatatypeConversion.bitsToIndices(bits, input.length, activeInputs);
+        if (precision == Enums.precisions.FLOAT) {
+            Feeding.feedLayerSparse(first, activeInputs, activeCount, floatActivations[0]);
+            return runFloat(1);
+        }
+        Feeding.feedLayerSparse(first, activeInputs, activeCount, activations[0]);
+        return run(1);
+    }
+
+    /**
+     * Runs a forward pass for a model with an {@link EmbeddingLayer}, given the category IDs of the input.
+     * The first layer only adds up the weights of those categories.
+     * The returned array is owned by the session and is overwritten by the next call.
+     *
+     * @param categoryIds The category IDs of the input
+     * @param count Number of valid entries in categoryIds
+     * @return The output layer activations
+     * @throws LyraError if the model has no embedding layer or an ID is outside the vocabulary
+     */
+    public double[] feedForwardEmbedding(int[] categoryIds, int count) {
+        if (!shapeMatches()) {
+            allocateBuffers();
+        }
+        if (!(model.frontLayer instanceof EmbeddingLayer)) {
+            throw new LyraError("ERROR, MODEL " + model.modelID + " DOES NOT TAKE CATEGORY IDS!");
+        }
+        for (int a = 0; a < count; a++) {
+            if (categoryIds[a] < 0 || categoryIds[a] >= input.length) {
+                throw new LyraError("ERROR, MODEL " + model.modelID + " HAS " + input.length +
+                        " CATEGORIES, BUT RECEIVED ID " + categoryIds[a] + "!");
+            }
+        }
+        Layer first = model.layers.getFirst();
+        if (precision == Enums.precisions.FLOAT) {
+            Feeding.feedLayerSparse(first, categoryIds, count, floatActivations[0]);
+            return runFloat(1);
+        }
+        Feeding.feedLayerSparse(first, categoryIds, count, activations[0]);
+        return run(1);
+    }
+
+    /**
+     * Feeds a typed input through the model and returns the typed prediction,
+     * in the same way as {@link Running#feed(LyraModel, Object)}.
+     *
+     * @param input The input data (must match the model's input type, or be a category ID or
+     *              {@code int[]} of IDs for a model with an {@link EmbeddingLayer})
+     * @return The model's output, converted to the model's output type
+     * @throws LyraError if the input type is wrong or a conversion fails
+     */
+    public Object feed(Object input) {
+        if (model.frontLayer instanceof EmbeddingLayer embedding) {
+            int[] ids = embedding.categoryIds(input);
+            return decodeOutput(feedForwardEmbedding(ids, ids.length));
+        }
+        if (!DatatypeConversion.isValidDataType(model.frontLayer.inputType, input)) {
+            throw new LyraError("ERROR, MODEL " + model.modelID + " TAKES IN A " +
+                    model.frontLayer.inputType.name() + ", BUT RECEIVED A " +
+                    (input == null ? "null" : input.getClass().getSimpleName()) + " INSTEAD!");
+        }
+
+        double[] output;
+        try {
+            // Every type but RAW is binary, so it takes the bit-packed first-layer path
+            if (model.frontLayer.inputType != Enums.IOType.RAW && model.frontLayer.neurons.size() ==
+                    DatatypeConversion.getBitCount(model.frontLayer.inputType)) {
+                output = feedForward(DatatypeConversion.convertToBits(model.frontLayer.inputType, input));
+            } else {
+                output = feedForward(DatatypeConversion.convertToBinaryArray(model.frontLayer.inputType, input));
+            }
+        } catch (LyraWrongDatatypeException e) {
+            throw new LyraError("COULD NOT CONVERT DATATYPE FOR FEEDING!" + e.getMessage());
+        }
+        return decodeOutput(output);
+    }
+
+    private Object decodeOutput(double[] output) {
+        ArrayList<Double> resultBinaryData = new ArrayList<>(output.length);
+        for (double value : output) {
+            resultBinaryData.add(value);
+        }
+        try {
+            return DatatypeConversion.convertFromBinaryArray(model.outputType, resultBinaryData);
+        } catch (LyraWrongDatatypeException e) {
+            throw new LyraError("ERROR, THERE WAS AN ISSUE CONVERTING THE BINARY OUTPUT TO THE DESIRED OUTPUT TYPE!" + e.getMessage());
+        }
+    }
+
+    /**
+     * Feeds an int through an INTEGER input model without boxing or building lists.
+     * The input is packed straight into bits and the output is decoded from the session's buffers.
+     * For a model with an {@link EmbeddingLayer}, the int is the category ID.
+     *
+     * @param value The input
+     * @return The prediction, for INTEGER, SHORT, BYTE, CHAR (as its code) or BOOLEAN (as 0 or 1) outputs
+     * @throws LyraError if the model does not take an INTEGER or gives an output that does not fit in an int
+     */
+    public int feedInt(int value) {
+        checkInputType(Enums.IOType.INTEGER);
+        if (model.frontLayer instanceof EmbeddingLayer) {
+            activeInputs[0] = value;
+            return (int) decodeInteger(feedForwardEmbedding(activeInputs, 1), false);
+        }
+        return (int) decodeInteger(feedForward(value & 0xFFFFFFFFL), false);
+    }
+
+    /**
+     * Feeds a long through a LONG input model without boxing or building lists.
+     * The input is packed straight into bits and the output is decoded from the session's buffers.
+     *
+     * @param value The input
+     * @return The prediction, for LONG, INTEGER, SHORT, BYTE, CHAR (as its code) or BOOLEAN (as 0 or 1) outputs
+     * @throws LyraError if the model does not take a LONG or gives a non-integer output
+     */
+    public long feedLong(long value) {
+        checkInputType(Enums.IOType.LONG);
+        return decodeInteger(feedForward(value), true);
+    }
+
+    /**
+     * Feeds a double through a DOUBLE input model without boxing or building lists.
+     * The input is packed straight into bits and the output is decoded from the session's buffers.
+     *
+     * @param value The input
+     * @return The prediction, for DOUBLE or FLOAT outputs
+     * @throws LyraError if the model does not take a DOUBLE or gives a non-floating-point output
+     */
+    public double feedDouble(double value) {
+        checkInputType(Enums.IOType.DOUBLE);
+        double[] output = feedForward(Double.doubleToLongBits(value));
+        return switch (model.outputType) {
+            case DOUBLE -> Double.longBitsToDouble(DatatypeConversion.packOutputBits(output));
+            case FLOAT -> Float.intBitsToFloat((int) DatatypeConversion.packOutputBits(output));
+            default -> throw wrongOutputType("double");
+        };
+    }
+
+    /**
+     * Feeds a RAW input model from and into caller-owned arrays, without building lists.
+     * The output values are the ones {@link #feed(Object)} would return.
+     *
+     * @param in The input values, one per input neuron
+     * @param out Receives the output values, one per output neuron
+     * @throws LyraError if the model is not RAW to RAW or an array has the wrong size
+     */
+    public void feedRaw(double[] in, double[] out) {
+        checkInputType(Enums.IOType.RAW);
+        if (model.outputType != Enums.IOType.RAW) {
+            throw wrongOutputType("double[]");
+        }
+        double[] output = feedForward(in);
+        if (out.length != output.length) {
+            throw new LyraError("ERROR, MODEL " + model.modelID + " GIVES " + output.length +
+                    " OUTPUT VALUES, BUT THE OUTPUT ARRAY HOLDS " + out.length + "!");
+        }
+        DatatypeConversion.copyRawOutput(output, out);
+    }
+
+    private void checkInputType(Enums.IOType type) {
+        if (model.frontLayer.inputType != type) {
+            throw new LyraError("ERROR, MODEL " + model.modelID + " TAKES IN A " +
+                    model.frontLayer.inputType.name() + ", BUT RECEIVED A " + type.name() + " INSTEAD!");
+        }
+    }
+
+    // Narrows the packed output the same way DatatypeConversion.convertFromBinaryArray does
+    private long decodeInteger(double[] output, boolean allowLong) {
+        return switch (model.outputType) {
+            case LONG -> {
+                if (!allowLong) throw wrongOutputType("int");
+                yield DatatypeConversion.packOutputBits(output);
+            }
+            case INTEGER -> (int) DatatypeConversion.packOutputBits(output);
+            case SHORT -> (short) DatatypeConversion.packOutputBits(output);
+            case BYTE -> (byte) DatatypeConversion.packOutputBits(output);
+            case CHAR -> (char) DatatypeConversion.packOutputBits(output);
+            case BOOLEAN -> Math.round(output[0]) == 1 ? 1 : 0;
+            default -> throw wrongOutputType(allowLong ? "long" : "int");
+        };
+    }
+
+    private LyraError wrongOutputType(String type) {
+        return new LyraError("ERROR, MODEL " + model.modelID + " GIVES A " + model.outputType.name() +
+                ", WHICH CAN NOT BE RETURNED AS A " + type + "!");
+    }
+
+    private double[] run() {
+        if (precision == Enums.precisions.FLOAT) {
+            for (int i = 0; i < input.length; i++) {
+                floatInput[i] = (float) input[i];
+            }
+            return runFloat(0);
+        }
+        return run(0);
+    }
+
+    // Runs layers [firstLayer, end); earlier layers must already be in the activation buffers
+    private double[] run(int firstLayer) {
+        double[] prev = firstLayer == 0 ? input : activations[firstLayer - 1];
+        for (int i = firstLayer; i < model.layers.size(); i++) {
+            Layer layer = model.layers.get(i);
+            double[] in = prev;
+            double[] out = activations[i];
+            if (runsInline(layer)) {
+                Feeding.feedLayer(layer, in, out);
+            } else {
+                LayerScheduler.forEachNeuron(Feeding.getRuntime(), layer, (from, to) -> Feeding.feedLayer(layer, in, out, from, to));
+            }
+            prev = out;
+        }
+        return prev;
+    }
+
+    private double[] runFloat(int firstLayer) {
+        float[] prev = firstLayer == 0 ? floatInput : floatActivations[firstLayer - 1];
+        for (int i = firstLayer; i < model.layers.size(); i++) {
+            Layer layer = model.layers.get(i);
+            float[] in = prev;
+            float[] out = floatActivations[i];
+            if (runsInline(layer)) {
+                Feeding.feedLayer(layer, in, out);
+            } else {
+                LayerScheduler.forEachNeuron(Feeding.getRuntime(), layer, (from, to) -> Feeding.feedLayer(layer, in, out, from, to));
+            }
+            prev = out;
+        }
+        double[] output = activations[activations.length - 1];
+        for (int j = 0; j < output.length; j++) {
+            output[j] = prev[j];
+        }
+        return output;
+    }
+
+    // Small layers skip the scheduler, so a tiny model never touches the runtime or allocates a tile
+    private static boolean runsInline(Layer layer) {
+        return (long) layer.size() * layer.fanIn < LayerScheduler.INLINE_WORK_THRESHOLD;
+    }
+
+    // The model may have been reloaded in place since the buffers were sized
+    private boolean shapeMatches() {
+        if (model.getPrecision() != precision) {
+            return false;
+        }
+        if (model.frontLayer.neurons.size() != input.length || model.layers.size() != activations.length) {
+            return false;
+        }
+        for (int i = 0; i < activations.length; i++) {
+            if (model.layers.get(i).size() != activations[i].length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void allocateBuffers() {
+        precision = model.getPrecision();
+        input = new double[model.frontLayer.neurons.size()];
+        activations = new double[model.layers.size()][];
+        for (int i = 0; i < activations.length; i++) {
+            Layer layer = model.layers.get(i);
+            activations[i] = new double[layer.size()];
+        }
+        if (precision == Enums.precisions.FLOAT) {
+            floatInput = new float[input.length];
+            floatActivations = new float[activations.length][];
+            for (int i = 0; i < activations.length; i++) {
+                floatActivations[i] = new float[activations[i].length];
+            }
+        } else {
+            floatInput = null;
+            floatActivations = null;
+        }
+    }
+}
+
+
+//Before this, feeding a model wrote into the neurons of the model itself, so two threads feeding
+//the same model would mess each other up. A session keeps its own scratch space instead.
+
+//Equinox Electronic
@@ -24,6 +24,10 @@ public class LyraModelBuilder {
     private Enums.IOType inputType;
     private Enums.IOType outputType;
     private Enums.activationFunctions activationFunction;
+    private Enums.precisions precision = Enums.precisions.DOUBLE;
+    private int chunkTableBits = 0;
+    private int predictionCacheSize = 0;
+    private int vocabularySize = 0;
 
     /**
      * Sets the model identifier.
@@ -97,6 +101,45 @@ public class LyraModelBuilder {
         return this;
     }
 
+    /**
+     * Sets the precision the model stores its weights and activations in.
+     * FLOAT halves the memory of the model and doubles the SIMD width of inference;
+     * training still accumulates in double. Defaults to DOUBLE.
+     *
+     * @param p The storage precision
+     * @return This builder instance for method chaining
+     */
+    public LyraModelBuilder precision(Enums.precisions p) {
+        precision = p;
+        return this;
+    }
+
+    /**
+     * Enables the first-layer chunk table with the given chunk width.
+     * Only takes effect for typed binary inputs (not RAW). Defaults to 0, disabled.
+     *
+     * @param bits Bits per chunk, from 1 to 16, or 0 to disable
+     * @return This builder instance for method chaining
+     * @see LyraModel#setChunkTableBits(int)
+     */
+    public LyraModelBuilder chunkTableBits(int bits) {
+        chunkTableBits = bits;
+        return this;
+    }
+
+    /**
+     * Enables a bounded LRU cache of predictions for repeated inputs.
+     * Defaults to 0, disabled.
+     *
+     * @param maxEntries The most predictions to keep, or 0 to disable the cache
+     * @return This builder instance for method chaining
+     * @see LyraModel#setPredictionCacheSize(int)
+     */
+    public LyraModelBuilder predictionCacheSize(int maxEntries) {
+        predictionCacheSize = maxEntries;
+        return this;
+    }
+
     /**
      * Sets the size of the output layer.
      *
@@ -112,6 +155,24 @@ public class LyraModelBuilder {
         return this;
     }
 
+    /**
+     * Makes the model take category IDs through an {@link io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer}
+     * instead of binary data. The input type becomes INTEGER, and inputs are fed as an {@code Integer}
+     * ID or an {@code int[]} of IDs.
+     *
+     * @param s The number of categories
+     * @return This builder instance for method chaining
+     * @throws InvalidModelError if the vocabulary is empty
+     */
+    public LyraModelBuilder embeddingInput(int s) {
+        if (s < 1) {
+            throw new InvalidModelError("EMBEDDING VOCABULARY SIZE MUST BE AT LEAST 1");
+        }
+        vocabularySize = s;
+        inputType = Enums.IOType.INTEGER;
+        return this;
+    }
+
     /**
      * Sets the size of the input layer.
      *
@@ -207,7 +268,7 @@ public class LyraModelBuilder {
                 backLayerActivationFunction == null ||
                 activationFunctionPerLayer.isEmpty() ||
                 activationFunctionPerLayer.size() != layers.size() ||
-                inputType == null || outputType == null) {
+                inputType == null || outputType == null || precision == null) {
             throw new InvalidModelError("ONE OR MORE FIELDS ARE MISSING FROM MODEL BUILDER!");
         }
         if (inputType == Enums.IOType.RAW && frontLayerSize == 0) {
@@ -221,9 +282,20 @@ public class LyraModelBuilder {
         }
 
         LyraModel model = new LyraModel();
-        model = Initialization.initializeModel(model, modelID, modelAuthor, inputType,
-                outputType, layers, activationFunctionPerLayer, frontLayerSize,
-                backLayerSize, backLayerActivationFunction, activationFunction);
+        if (vocabularySize > 0) {
+            model = Initialization.initializeEmbeddingModel(model, modelID, modelAuthor, vocabularySize,
+                    outputType, layers, activationFunctionPerLayer,
+                    backLayerSize, backLayerActivationFunction, activationFunction);
+        } else {
+            model = Initialization.initializeModel(model, modelID, modelAuthor, inputType,
+                    outputType, layers, activationFunctionPerLayer, frontLayerSize,
+                    backLayerSize, backLayerActivationFunction, activationFunction);
+        }
+        if (precision == Enums.precisions.FLOAT) {
+            model.setPrecision(precision);
+        }
+        model.setChunkTableBits(chunkTableBits);
+        model.setPredictionCacheSize(predictionCacheSize);
         Essentials.logger.logString("Model built!");
         return model;
     }
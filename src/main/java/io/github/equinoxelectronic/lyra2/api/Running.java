@@ -1,13 +1,19 @@
 package io.github.equinoxelectronic.lyra2.api;
 
+import io.github.equinoxelectronic.lyra2.api.utility.PredictionCache;
 import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
 import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer;
+import io.github.equinoxelectronic.lyra2.objects.InputTable;
 import io.github.equinoxelectronic.lyra2.objects.LyraModel;
 import io.github.equinoxelectronic.lyra2.processing.DatatypeConversion;
 import io.github.equinoxelectronic.lyra2.processing.Feeding;
 import io.github.equinoxelectronic.lyra2.processing.ModelChecker;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Utility class for executing neural network model inference.
@@ -15,8 +21,28 @@ import java.util.ArrayList;
  */
 public class Running {
 
+    // The session each thread used last, held weakly so it never keeps a discarded model alive
+    private static final ThreadLocal<WeakReference<InferenceSession>> LAST_SESSION = new ThreadLocal<>();
+
+    /**
+     * Batch size limit of the dispatcher created by {@link #getDispatcher()}.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    /**
+     * Wait limit, in microseconds, of the dispatcher created by {@link #getDispatcher()}.
+     */
+    public static final long DEFAULT_MAX_WAIT_MICROS = 2000;
+
+    private static BatchDispatcher dispatcher;
+
     /**
      * Feeds input data through a trained neural network model and returns the predicted output.
+     * This method is thread-safe: each thread runs the model through its own
+     * {@link InferenceSession}, so many threads can share one model instance.
+     * If the model has a current {@link LyraModel#tabulate() input table}, the prediction is
+     * looked up in it instead, and if it has a {@link LyraModel#setPredictionCacheSize(int) prediction cache},
+     * repeated inputs are answered from the cache.
      * The process includes:
      * <ol>
      *   <li>Input validation and type checking</li>
@@ -37,47 +63,236 @@ public class Running {
      *         </ul>
      */
     public static Object feed(LyraModel model, Object input) {
-        //Starts the feeder's executor service
-        Feeding.startExecutor();
+        //A tabulated model was validated when its table was built, and only needs a lookup
+        InputTable table = model.getInputTable();
+        if (table != null && DatatypeConversion.isValidDataType(table.getInputType(), input)) {
+            return table.lookup(input);
+        }
 
-        ArrayList<Double> binaryData = new ArrayList<>();
+        //Repeated inputs are answered from the prediction cache when the model has one
+        PredictionCache cache = model.getPredictionCache();
+        if (cache != null && model.acceptsInput(input)) {
+            return cache.get(input, in -> feedModel(model, in));
+        }
+        return feedModel(model, input);
+    }
 
+    private static Object feedModel(LyraModel model, Object input) {
         ModelChecker.checkModel(model);
 
         //Makes sure the inputted datatype matches the model's input type
-        if(!DatatypeConversion.isValidDataType(model.frontLayer.inputType, input)) {
+        if(!model.acceptsInput(input)) {
             throw new LyraError("ERROR, MODEL " + model.modelID + " TAKES IN A " +
-                    model.frontLayer.inputType.name() + ", BUT RECEIVED A " +
-                    input.getClass().getSimpleName() + " INSTEAD!");
+                    inputDescription(model) + ", BUT RECEIVED A " +
+                    (input == null ? "null" : input.getClass().getSimpleName()) + " INSTEAD!");
         }
 
-        //Converts the object into a list of binary data
-        try {
-            binaryData = DatatypeConversion.convertToBinaryArray(model.frontLayer.inputType, input);
-        } catch (LyraWrongDatatypeException e) {
-            throw new LyraError("COULD NOT CONVERT DATATYPE FOR FEEDING!" + e.getMessage());
+        //Feeds the model through this thread's own session, so concurrent callers never share activations
+        return session(model).feed(input);
+    }
+
+    /**
+     * Feeds an int through an INTEGER input model without boxing or building lists, using the calling
+     * thread's {@link InferenceSession}. Unlike {@link #feed(LyraModel, Object)}, the prediction cache is not used.
+     *
+     * @param model The trained LyraModel to use for inference
+     * @param input The input
+     * @return The prediction, for INTEGER, SHORT, BYTE, CHAR (as its code) or BOOLEAN (as 0 or 1) outputs
+     * @throws LyraError if the model does not take an INTEGER or gives an output that does not fit in an int
+     * @see InferenceSession#feedInt(int)
+     */
+    public static int feedInt(LyraModel model, int input) {
+        return session(model).feedInt(input);
+    }
+
+    /**
+     * Feeds a long through a LONG input model without boxing or building lists, using the calling
+     * thread's {@link InferenceSession}. Unlike {@link #feed(LyraModel, Object)}, the prediction cache is not used.
+     *
+     * @param model The trained LyraModel to use for inference
+     * @param input The input
+     * @return The prediction, for LONG, INTEGER, SHORT, BYTE, CHAR (as its code) or BOOLEAN (as 0 or 1) outputs
+     * @throws LyraError if the model does not take a LONG or gives a non-integer output
+     * @see InferenceSession#feedLong(long)
+     */
+    public static long feedLong(LyraModel model, long input) {
+        return session(model).feedLong(input);
+    }
+
+    /**
+     * Feeds a double through a DOUBLE input model without boxing or building lists, using the calling
+     * thread's {@link InferenceSession}. Unlike {@link #feed(LyraModel, Object)}, the prediction cache is not used.
+     *
+     * @param model The trained LyraModel to use for inference
+     * @param input The input
+     * @return The prediction, for DOUBLE or FLOAT outputs
+     * @throws LyraError if the model does not take a DOUBLE or gives a non-floating-point output
+     * @see InferenceSession#feedDouble(double)
+     */
+    public static double feedDouble(LyraModel model, double input) {
+        return session(model).feedDouble(input);
+    }
+
+    /**
+     * Feeds a RAW to RAW model from and into caller-owned arrays, using the calling thread's
+     * {@link InferenceSession}. Unlike {@link #feed(LyraModel, Object)}, the prediction cache is not used.
+     *
+     * @param model The trained LyraModel to use for inference
+     * @param in The input values, one per input neuron
+     * @param out Receives the output values, one per output neuron
+     * @throws LyraError if the model is not RAW to RAW or an array has the wrong size
+     * @see InferenceSession#feedRaw(double[], double[])
+     */
+    public static void feedRaw(LyraModel model, double[] in, double[] out) {
+        session(model).feedRaw(in, out);
+    }
+
+    /**
+     * Returns the calling thread's inference session for the given model, creating it if needed.
+     * Sessions are kept on the model, one per thread, so repeated calls reuse the same buffers
+     * even when a thread alternates between models, and a discarded model takes its sessions with it.
+     *
+     * @param model The model to run
+     * @return A session owned by the calling thread
+     */
+    public static InferenceSession session(LyraModel model) {
+        WeakReference<InferenceSession> last = LAST_SESSION.get();
+        InferenceSession session = last == null ? null : last.get();
+        if (session == null || session.getModel() != model) {
+            session = model.session();
+            LAST_SESSION.set(new WeakReference<>(session));
+        }
+        return session;
+    }
+
+    /**
+     * Feeds a batch of inputs through a trained model in a single pass.
+     * All inputs are converted first, then every layer runs as one matrix-matrix product
+     * over the whole batch, so the weights are read once per batch instead of once per sample.
+     *
+     * @param model The trained LyraModel to use for inference
+     * @param inputs The inputs to process (each must match the model's expected input type)
+     * @return The model's predictions, in the same order as the inputs
+     * @throws LyraError if any input has the wrong type or an error occurs during feeding or conversion
+     */
+    public static Object[] feedBatch(LyraModel model, Object[] inputs) {
+        InputTable table = model.getInputTable();
+        if (table != null) {
+            Object[] outputs = new Object[inputs.length];
+            for (int n = 0; n < inputs.length; n++) {
+                if (!DatatypeConversion.isValidDataType(table.getInputType(), inputs[n])) {
+                    throw new LyraError("ERROR, MODEL " + model.modelID + " TAKES IN A " +
+                            table.getInputType().name() + ", BUT INPUT " + n + " IS A " +
+                            (inputs[n] == null ? "null" : inputs[n].getClass().getSimpleName()) + " INSTEAD!");
+                }
+                outputs[n] = table.lookup(inputs[n]);
+            }
+            return outputs;
+        }
+
+        ModelChecker.checkModel(model);
+
+        //Category IDs only touch a few weights each, so a batch of them is not worth a matrix product
+        if (model.frontLayer instanceof EmbeddingLayer) {
+            InferenceSession session = session(model);
+            Object[] outputs = new Object[inputs.length];
+            for (int n = 0; n < inputs.length; n++) {
+                if (!model.acceptsInput(inputs[n])) {
+                    throw new LyraError("ERROR, MODEL " + model.modelID + " TAKES IN A " + inputDescription(model) +
+                            ", BUT INPUT " + n + " IS A " +
+                            (inputs[n] == null ? "null" : inputs[n].getClass().getSimpleName()) + " INSTEAD!");
+                }
+                outputs[n] = session.feed(inputs[n]);
+            }
+            return outputs;
+        }
+
+        //Converts every input into binary data
+        double[][] binaryData = new double[inputs.length][];
+        for (int n = 0; n < inputs.length; n++) {
+            Object input = inputs[n];
+            if(!DatatypeConversion.isValidDataType(model.frontLayer.inputType, input)) {
+                throw new LyraError("ERROR, MODEL " + model.modelID + " TAKES IN A " +
+                        model.frontLayer.inputType.name() + ", BUT INPUT " + n + " IS A " +
+                        (input == null ? "null" : input.getClass().getSimpleName()) + " INSTEAD!");
+            }
+            try {
+                ArrayList<Double> bits = DatatypeConversion.convertToBinaryArray(model.frontLayer.inputType, input);
+                binaryData[n] = new double[bits.size()];
+                for (int k = 0; k < binaryData[n].length; k++) {
+                    binaryData[n][k] = bits.get(k);
+                }
+            } catch (LyraWrongDatatypeException e) {
+                throw new LyraError("COULD NOT CONVERT DATATYPE FOR FEEDING!" + e.getMessage());
+            }
         }
 
         //Feeds the model
-        ArrayList<Double> resultBinaryData;
+        double[][] results;
         try {
-            resultBinaryData = Feeding.feedForward(model, binaryData);
+            results = Feeding.feedForwardBatch(model, binaryData);
         } catch (LyraWrongDatatypeException e) {
             throw new LyraError("COULD NOT FEED THE MODEL!" + e.getMessage());
         }
 
-        //Converts the binary output to the desired output
-        Object obj;
-        try {
-            obj = DatatypeConversion.convertFromBinaryArray(model.outputType, resultBinaryData);
-        } catch (LyraWrongDatatypeException e) {
-            throw new LyraError("ERROR, THERE WAS AN ISSUE CONVERTING THE BINARY OUTPUT TO THE DESIRED OUTPUT TYPE!" + e.getMessage());
+        //Converts the binary outputs to the desired output
+        Object[] outputs = new Object[results.length];
+        for (int n = 0; n < results.length; n++) {
+            ArrayList<Double> resultBinaryData = new ArrayList<>(results[n].length);
+            for (double value : results[n]) {
+                resultBinaryData.add(value);
+            }
+            try {
+                outputs[n] = DatatypeConversion.convertFromBinaryArray(model.outputType, resultBinaryData);
+            } catch (LyraWrongDatatypeException e) {
+                throw new LyraError("ERROR, THERE WAS AN ISSUE CONVERTING THE BINARY OUTPUT TO THE DESIRED OUTPUT TYPE!" + e.getMessage());
+            }
+        }
+
+        return outputs;
+    }
+
+    private static String inputDescription(LyraModel model) {
+        if (model.frontLayer instanceof EmbeddingLayer embedding) {
+            return "CATEGORY ID FROM 0 TO " + (embedding.getVocabularySize() - 1);
         }
+        return model.frontLayer.inputType.name();
+    }
 
-        //End the feeder's executor service
-        Feeding.endExecutor();
+    /**
+     * Queues an input for batched inference and returns without waiting for the result.
+     * Concurrent calls are grouped by the {@link BatchDispatcher} returned from {@link #getDispatcher()}
+     * and run together as one {@link #feedBatch(LyraModel, Object[])} pass.
+     *
+     * @param model The trained LyraModel to use for inference
+     * @param input The input data to process (must match the model's expected input type)
+     * @return A future completed with the model's prediction, or exceptionally with a LyraError
+     */
+    public static CompletableFuture<Object> feedAsync(LyraModel model, Object input) {
+        return getDispatcher().submit(model, input);
+    }
 
-        return obj;
+    /**
+     * Returns the dispatcher used by {@link #feedAsync(LyraModel, Object)}, creating one with
+     * {@link #DEFAULT_MAX_BATCH_SIZE} and {@link #DEFAULT_MAX_WAIT_MICROS} on first use.
+     *
+     * @return The shared dispatcher
+     */
+    public static synchronized BatchDispatcher getDispatcher() {
+        if (dispatcher == null || !dispatcher.isRunning()) {
+            dispatcher = new BatchDispatcher(DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_WAIT_MICROS, TimeUnit.MICROSECONDS);
+        }
+        return dispatcher;
+    }
+
+    /**
+     * Replaces the dispatcher used by {@link #feedAsync(LyraModel, Object)}.
+     * The previous dispatcher is not closed.
+     *
+     * @param newDispatcher The dispatcher to use from now on
+     */
+    public static synchronized void setDispatcher(BatchDispatcher newDispatcher) {
+        dispatcher = newDispatcher;
     }
 
     /**
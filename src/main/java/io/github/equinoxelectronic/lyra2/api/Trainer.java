@@ -4,13 +4,21 @@ import io.github.equinoxelectronic.lyra2.Enums;
 import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
 import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
 import io.github.equinoxelectronic.lyra2.objects.DataSet;
+import io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer;
 import io.github.equinoxelectronic.lyra2.objects.LyraModel;
 import io.github.equinoxelectronic.lyra2.processing.DatatypeConversion;
+import io.github.equinoxelectronic.lyra2.processing.Distillation;
 import io.github.equinoxelectronic.lyra2.processing.Feeding;
+import io.github.equinoxelectronic.lyra2.processing.LyraRuntime;
 import io.github.equinoxelectronic.lyra2.processing.ModelChecker;
 import io.github.equinoxelectronic.lyra2.processing.Training;
+import io.github.equinoxelectronic.lyra2.processing.optimizers.Adam;
+import io.github.equinoxelectronic.lyra2.processing.optimizers.Optimizer;
+import io.github.equinoxelectronic.lyra2.processing.optimizers.SGD;
+import io.github.equinoxelectronic.equinox_essentials.Essentials;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Builder class for configuring and executing neural network model training.
@@ -27,9 +35,22 @@ public class Trainer {
     private double learningRate;
     private int statusPrintInterval;
     private double threshold = 0;
+    private int batchSize = 1;
+    private Enums.trainingStrategies strategy = Enums.trainingStrategies.SEQUENTIAL;
+    private Optimizer optimizer;
     private Enums.trainingStoppers primaryStopper;
     private boolean shouldUseProgressBar = false;
     private Enums.computeDevices computeDevice = Enums.computeDevices.CPU_MULTI;
+    private LyraRuntime runtime;
+    private LyraModel teacher;
+    private Distillation.Report distillationReport;
+    private Training.Report trainingReport;
+
+    // Teacher outputs from the last run, reused while the inputs and the teacher's weights stay the same
+    private ArrayList<ArrayList<Double>> teacherTargets;
+    private ArrayList<ArrayList<Double>> teacherTargetsInputs;
+    private LyraModel teacherTargetsTeacher;
+    private long teacherTargetsRevision;
 
     /**
      * Sets the maximum number of training epochs.
@@ -102,21 +123,15 @@ public class Trainer {
 
     /**
      * Sets the training input data.
+     * For a model with an {@link EmbeddingLayer}, each sample is a category ID ({@code Integer}) or an
+     * {@code int[]} of IDs.
      *
      * @param inputData List of input samples
      * @return This trainer instance for method chaining
      * @throws RuntimeException if data conversion fails
      */
     public Trainer setInputData(ArrayList<Object> inputData) {
-        ArrayList<ArrayList<Double>> binaryObjects = new ArrayList<>();
-        for (Object o : inputData) {
-            try {
-                binaryObjects.add(DatatypeConversion.convertToBinaryArray(model.frontLayer.inputType, o));
-            } catch (LyraWrongDatatypeException e) {
-                throw new RuntimeException(e);
-            }
-        }
-        this.inputData = binaryObjects;
+        this.inputData = toInputSamples(inputData);
         return this;
     }
 
@@ -128,45 +143,21 @@ public class Trainer {
      * @throws RuntimeException if data conversion fails
      */
     public Trainer setOutputData(ArrayList<Object> outputData) {
-        ArrayList<ArrayList<Double>> binaryObjects = new ArrayList<>();
-        for (Object o : outputData) {
-            try {
-                binaryObjects.add(DatatypeConversion.convertToBinaryArray(model.frontLayer.inputType, o));
-            } catch (LyraWrongDatatypeException e) {
-                throw new RuntimeException(e);
-            }
-        }
-        this.outputData = binaryObjects;
+        this.outputData = toOutputSamples(outputData);
         return this;
     }
 
     /**
      * Sets both input and output training data from a DataSet object.
+     * For a model with an {@link EmbeddingLayer}, each input is the list of the sample's category IDs.
      *
      * @param ds DataSet containing both input and output samples
      * @return This trainer instance for method chaining
      * @throws RuntimeException if data conversion fails
      */
     public Trainer setTrainingData(DataSet ds) {
-        ArrayList<ArrayList<Double>> binaryObjects = new ArrayList<>();
-        for (Object o : ds.inputs) {
-            try {
-                binaryObjects.add(DatatypeConversion.convertToBinaryArray(model.frontLayer.inputType, o));
-            } catch (LyraWrongDatatypeException e) {
-                throw new RuntimeException(e);
-            }
-        }
-        this.inputData = binaryObjects;
-
-        binaryObjects = new ArrayList<>();
-        for (Object o : ds.outputs) {
-            try {
-                binaryObjects.add(DatatypeConversion.convertToBinaryArray(model.frontLayer.inputType, o));
-            } catch (LyraWrongDatatypeException e) {
-                throw new RuntimeException(e);
-            }
-        }
-        this.outputData = binaryObjects;
+        this.inputData = toInputSamples(ds.inputs);
+        this.outputData = toOutputSamples(ds.outputs);
         return this;
     }
 
@@ -192,6 +183,61 @@ public class Trainer {
         return this;
     }
 
+    /**
+     * Sets how many samples are trained on before the weights are updated.
+     * With 1 (the default) the weights change after every sample. Larger batches run the forward
+     * and backward passes over the whole batch at once and apply the average gradient, which
+     * keeps every core busy with arithmetic on large data sets. Larger batches usually want a
+     * larger learning rate.
+     *
+     * @param batchSize Samples per weight update, at least 1
+     * @return This trainer instance for method chaining
+     * @throws LyraError if the batch size is less than 1
+     */
+    public Trainer setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new LyraError("Batch size must be at least 1");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets how training spreads its work over the cores.
+     * SEQUENTIAL (the default) splits the neurons of each layer between threads, which helps little
+     * for small layers. DATA_PARALLEL gives every thread of the runtime its own slice of each batch
+     * and its own gradient buffers, sums the buffers in a fixed order and updates the weights once,
+     * so it scales with the number of cores and gives the same model on every run with the same
+     * thread count. It needs a batch size of at least 2, set with {@link #setBatchSize(int)}.
+     * HOGWILD lets every thread train on its own samples and update the shared weights after each
+     * one without locks. Threads can overwrite each other's updates, so runs are not reproducible,
+     * but with sparse inputs that rarely happens and it scales almost linearly. It needs a batch
+     * size of 1 and an optimizer without step-dependent updates, so not {@link Adam} or AdamW.
+     * Compare strategies with {@link #getTrainingReport()}.
+     *
+     * @param strategy The training strategy
+     * @return This trainer instance for method chaining
+     */
+    public Trainer setTrainingStrategy(Enums.trainingStrategies strategy) {
+        this.strategy = strategy;
+        return this;
+    }
+
+    /**
+     * Sets the optimizer that turns gradients into weight updates. The default is plain {@link SGD},
+     * which steps every weight by the learning rate times its gradient, clipped to 0.1. Adaptive
+     * optimizers like {@link Adam} usually reach the same error in far fewer epochs, but want a
+     * smaller learning rate (around 0.001). The optimizer's state is reset at the start of every run.
+     *
+     * @param optimizer The optimizer, for example {@code new Adam()}, or null for plain SGD
+     * @return This trainer instance for method chaining
+     * @see io.github.equinoxelectronic.lyra2.processing.optimizers
+     */
+    public Trainer setOptimizer(Optimizer optimizer) {
+        this.optimizer = optimizer;
+        return this;
+    }
+
     /**
      * Sets the error threshold for early stopping.
      *
@@ -215,6 +261,54 @@ public class Trainer {
         return this;
     }
 
+    /**
+     * Sets a long-lived runtime to train on instead of one derived from the compute device.
+     * The trainer never shuts this runtime down.
+     *
+     * @param runtime The runtime to train on
+     * @return This trainer instance for method chaining
+     */
+    public Trainer setRuntime(LyraRuntime runtime) {
+        this.runtime = runtime;
+        return this;
+    }
+
+    /**
+     * Trains the model as a student of a teacher model (knowledge distillation).
+     * The model learns to reproduce the teacher's raw outputs instead of the output data, which then
+     * becomes optional. The teacher is run once per input, in parallel batches, and its outputs are
+     * reused for every epoch and for later runs of this trainer on the same inputs.
+     * After training, a {@link Distillation.Report} comparing the two is logged and kept in
+     * {@link #getDistillationReport()}.
+     *
+     * @param teacher The trained teacher model, or null to train on the output data again
+     * @return This trainer instance for method chaining
+     */
+    public Trainer setTeacher(LyraModel teacher) {
+        this.teacher = teacher;
+        return this;
+    }
+
+    /**
+     * Returns the convergence statistics of the last training run: the error after every epoch,
+     * the throughput and the strategy used, for comparing strategies and settings.
+     *
+     * @return The report, or null if no run has finished
+     */
+    public Training.Report getTrainingReport() {
+        return trainingReport;
+    }
+
+    /**
+     * Returns the teacher-vs-student comparison from the last distillation run. Accuracy is measured
+     * against the output data when it was set, and against the teacher's outputs otherwise.
+     *
+     * @return The report, or null if no distillation run has finished
+     */
+    public Distillation.Report getDistillationReport() {
+        return distillationReport;
+    }
+
     /**
      * Executes the training process with the configured parameters.
      * Validates all parameters before starting training.
@@ -223,9 +317,12 @@ public class Trainer {
      * @throws LyraError if:
      *         <ul>
      *           <li>Model is null</li>
-     *           <li>Input/output data is null</li>
+     *           <li>Input/output data is null (output data may be null when a teacher is set)</li>
+     *           <li>The teacher is the model itself, or takes or gives different data</li>
      *           <li>Learning rate is not positive</li>
      *           <li>Status print interval is negative</li>
+     *           <li>The strategy is DATA_PARALLEL with a batch size of 1, or HOGWILD with a larger one</li>
+     *           <li>The strategy is HOGWILD and the optimizer is Adam or AdamW</li>
      *           <li>Input/output data sizes don't match</li>
      *           <li>Input dimensions don't match model</li>
      *         </ul>
@@ -234,35 +331,127 @@ public class Trainer {
         if (model == null) {
             throw new LyraError("Model cannot be null");
         }
-        if (inputData == null || outputData == null) {
+        if (inputData == null || (outputData == null && teacher == null)) {
             throw new LyraError("Input and output data cannot be null");
         }
+        if (teacher == model) {
+            throw new LyraError("A model cannot be its own teacher");
+        }
         if (learningRate <= 0) {
             throw new LyraError("Learning rate must be positive");
         }
         if (statusPrintInterval < 0) {
             throw new LyraError("Status print interval must be positive");
         }
-        if (inputData.size() != outputData.size()) {
+        if (outputData != null && inputData.size() != outputData.size()) {
             throw new LyraError("Input and output data sizes must match");
         }
-        if (inputData.getFirst().size() != model.frontLayer.neurons.size()) {
+        if (!(model.frontLayer instanceof EmbeddingLayer) && inputData.getFirst().size() != model.frontLayer.neurons.size()) {
             throw new LyraError("Input data dimensions must match model input layer");
         }
         ModelChecker.checkModel(model);
+        if (teacher != null) {
+            Distillation.checkCompatible(teacher, model);
+        }
 
-        // Initialize compute backends
-        Training.startExecutor(computeDevice);
-        Feeding.startExecutor(computeDevice);
+        // Pick the compute backend: an explicit runtime, the shared one for CPU_MULTI,
+        // or a dedicated runtime for the other devices that lives only as long as this run
+        LyraRuntime trainingRuntime = runtime;
+        boolean ownsRuntime = false;
+        if (trainingRuntime == null) {
+            if (computeDevice == Enums.computeDevices.CPU_MULTI) {
+                trainingRuntime = LyraRuntime.getShared();
+            } else {
+                trainingRuntime = new LyraRuntime(computeDevice);
+                ownsRuntime = true;
+            }
+        }
+        // Whatever runtimes the caller gave Training and Feeding are put back once the run is over
+        LyraRuntime previousTraining = callerRuntime(Training.getRuntime());
+        LyraRuntime previousFeeding = callerRuntime(Feeding.getRuntime());
+        Training.setRuntime(trainingRuntime);
+        Feeding.setRuntime(trainingRuntime);
 
         try {
-            return Training.trainModel(model, inputData, outputData, epochsLimit,
+            ArrayList<ArrayList<Double>> targets = teacher == null ? outputData : teacherTargets();
+            Training.Report report = new Training.Report();
+            LyraModel trained = Training.trainModel(model, inputData, targets, epochsLimit,
                     limitEpochs, limitTime, timeLimit, statusPrintInterval, learningRate,
-                    threshold, shouldUseProgressBar, primaryStopper);
+                    threshold, shouldUseProgressBar, primaryStopper, batchSize, strategy,
+                    optimizer != null ? optimizer : new SGD(), report);
+            trainingReport = report;
+            Essentials.logger.logString(report.toString());
+            if (teacher != null) {
+                distillationReport = Distillation.compare(teacher, trained,
+                        new DataSet(inputData, outputData != null ? outputData : targets));
+                Essentials.logger.logString(distillationReport.toString());
+            }
+            return trained;
         } finally {
-            Training.endExecutor();
-            Feeding.endExecutor();
+            Training.setRuntime(previousTraining);
+            Feeding.setRuntime(previousFeeding);
+            if (ownsRuntime) {
+                trainingRuntime.close();
+            }
+        }
+    }
+
+    // The shared runtime is what a null runtime falls back to, so it is put back as null
+    private static LyraRuntime callerRuntime(LyraRuntime current) {
+        return current == LyraRuntime.getShared() ? null : current;
+    }
+
+    // Converts input samples the way Training takes them: category IDs for embedding models, bits otherwise.
+    // A list of numbers is taken as a bag of category IDs, the form a DataSet stores them in.
+    private ArrayList<ArrayList<Double>> toInputSamples(List<?> samples) {
+        ArrayList<ArrayList<Double>> binaryObjects = new ArrayList<>(samples.size());
+        for (Object o : samples) {
+            if (model.frontLayer instanceof EmbeddingLayer embedding) {
+                binaryObjects.add(embedding.toTrainingSample(o instanceof List<?> ids ? categoryIds(ids) : o));
+                continue;
+            }
+            try {
+                binaryObjects.add(DatatypeConversion.convertToBinaryArray(model.frontLayer.inputType, o));
+            } catch (LyraWrongDatatypeException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return binaryObjects;
+    }
+
+    private ArrayList<ArrayList<Double>> toOutputSamples(List<?> samples) {
+        ArrayList<ArrayList<Double>> binaryObjects = new ArrayList<>(samples.size());
+        for (Object o : samples) {
+            try {
+                binaryObjects.add(DatatypeConversion.convertToBinaryArray(model.outputType, o));
+            } catch (LyraWrongDatatypeException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return binaryObjects;
+    }
+
+    private static int[] categoryIds(List<?> values) {
+        int[] ids = new int[values.size()];
+        for (int k = 0; k < ids.length; k++) {
+            if (!(values.get(k) instanceof Number number) || number.doubleValue() != number.intValue()) {
+                throw new LyraError("A category ID must be a whole number, got " + values.get(k));
+            }
+            ids[k] = number.intValue();
+        }
+        return ids;
+    }
+
+    // The teacher's outputs for the current inputs, computed only when something changed since the last run
+    private ArrayList<ArrayList<Double>> teacherTargets() {
+        if (teacherTargets == null || teacherTargetsInputs != inputData || teacherTargetsTeacher != teacher ||
+                teacherTargetsRevision != teacher.getRevision()) {
+            teacherTargets = Distillation.teacherOutputs(teacher, inputData);
+            teacherTargetsInputs = inputData;
+            teacherTargetsTeacher = teacher;
+            teacherTargetsRevision = teacher.getRevision();
         }
+        return teacherTargets;
     }
 
     /**
@@ -0,0 +1,379 @@
+package io.github.equinoxelectronic.lyra2.api.serving;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.objects.CompiledModel;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Loading;
+import io.github.equinoxelectronic.equinox_essentials.Essentials;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A small embedded HTTP server for running models, built on the JDK's {@code com.sun.net.httpserver}.
+ * Every request is handled on its own virtual thread, so blocking on one request never holds up another.
+ *
+ * Routes:
+ * <ul>
+ *   <li>{@code GET /health} - {@code {"status":"ok","models":[...]}}</li>
+ *   <li>{@code POST /models/{name}/predict} - body {@code {"input": 42}}, answers {@code {"output": ...}}</li>
+ *   <li>{@code POST /models/{name}/predict-batch} - body {@code {"inputs": [1, 2, 3]}}, answers {@code {"outputs": [...]}}</li>
+ * </ul>
+ * A predict request sent as {@code application/octet-stream} skips the datatype conversion: the body is the
+ * model's binary input as big-endian doubles, and the answer is the output layer as big-endian doubles.
+ *
+ * Both routes run on the {@link CompiledModel} taken when the model was added, so they skip model
+ * validation and always answer from the same weights. Request bodies larger than
+ * {@link #setMaxRequestSize(int)} are refused with 413.
+ *
+ * The server only listens on the loopback address unless it is given another bind address,
+ * since there is no authentication in front of the models.
+ */
+public class LyraServer implements AutoCloseable {
+
+    private static final String JSON = "application/json";
+    private static final String BINARY = "application/octet-stream";
+
+    private final Map<String, CompiledModel> compiled = new ConcurrentHashMap<>();
+    private final Gson gson = new Gson();
+    private final InetAddress bindAddress;
+    private final int requestedPort;
+    private volatile int maxRequestSize = 16 * 1024 * 1024;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Creates a server that will listen on the given port of the loopback address once started.
+     *
+     * @param port The TCP port, or 0 to pick a free one
+     */
+    public LyraServer(int port) {
+        this(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Creates a server that will listen on the given address and port once started.
+     * Pass the wildcard address to accept requests on every interface.
+     *
+     * @param bindAddress The local address to listen on
+     * @param port The TCP port, or 0 to pick a free one
+     * @throws LyraError if the address is null
+     */
+    public LyraServer(InetAddress bindAddress, int port) {
+        if (bindAddress == null) {
+            throw new LyraError("Bind address must not be null");
+        }
+        this.bindAddress = bindAddress;
+        this.requestedPort = port;
+    }
+
+    /**
+     * Loads a model file and serves it under its model ID.
+     *
+     * @param filepath Path to the .lyra file
+     * @return The name the model is served under
+     */
+    public String loadModel(String filepath) {
+        LyraModel model = Loading.loadModel(filepath);
+        addModel(model.modelID, model);
+        return model.modelID;
+    }
+
+    /**
+     * Serves a model under the given name, replacing any model already served under it.
+     * The model is compiled once here; retrain it and add it again to serve the new weights.
+     *
+     * @param name The name used in the URL
+     * @param model The trained model
+     */
+    public void addModel(String name, LyraModel model) {
+        if (name == null || name.isEmpty() || name.contains("/")) {
+            throw new LyraError("Invalid model name: " + name);
+        }
+        compiled.put(name, model.compile());
+    }
+
+    /**
+     * Stops serving a model.
+     *
+     * @param name The name the model is served under
+     */
+    public void removeModel(String name) {
+        compiled.remove(name);
+    }
+
+    /**
+     * Sets the largest request body the server will read. Larger requests are answered with 413
+     * without reading their body. The default is 16 MiB.
+     *
+     * @param bytes The largest accepted body, in bytes
+     * @throws LyraError if the size is not positive
+     */
+    public void setMaxRequestSize(int bytes) {
+        if (bytes <= 0) {
+            throw new LyraError("Maximum request size must be positive, got " + bytes);
+        }
+        maxRequestSize = bytes;
+    }
+
+    /**
+     * Binds the port and starts answering requests.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new LyraError("Server is already running");
+        }
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(bindAddress, requestedPort), 0);
+        server.setExecutor(executor);
+        server.createContext("/health", this::handleHealth);
+        server.createContext("/models/", this::handleModel);
+        server.start();
+        Essentials.logger.logString("Lyra server listening on " + bindAddress.getHostAddress() + ":" + getPort() + " with " + compiled.size() + " model(s).");
+    }
+
+    /**
+     * Returns the port the server is bound to.
+     *
+     * @return The bound port, or the requested port if the server has not started
+     */
+    public int getPort() {
+        return server == null ? requestedPort : server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, giving open exchanges up to one second to finish.
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(1);
+            executor.close();
+            server = null;
+            executor = null;
+        }
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Use GET");
+                return;
+            }
+            JsonObject body = new JsonObject();
+            body.addProperty("status", "ok");
+            JsonArray names = new JsonArray();
+            compiled.keySet().forEach(names::add);
+            body.add("models", names);
+            send(exchange, 200, JSON, body.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void handleModel(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            // /models/{name}/{action}
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            if (path.length != 4) {
+                sendError(exchange, 404, "Unknown route");
+                return;
+            }
+            String name = path[2];
+            String action = path[3];
+            CompiledModel compiledModel = compiled.get(name);
+            if (compiledModel == null) {
+                sendError(exchange, 404, "No model named " + name);
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendError(exchange, 405, "Use POST");
+                return;
+            }
+            byte[] request = readBody(exchange, maxRequestSize);
+            if (request == null) {
+                sendError(exchange, 413, "Request body is larger than " + maxRequestSize + " bytes");
+                return;
+            }
+
+            try {
+                switch (action) {
+                    case "predict" -> predict(exchange, compiledModel, request);
+                    case "predict-batch" -> predictBatch(exchange, compiledModel, request);
+                    default -> sendError(exchange, 404, "Unknown route");
+                }
+            } catch (LyraError | JsonParseException | IllegalArgumentException | IllegalStateException | UnsupportedOperationException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                sendError(exchange, 500, e.getMessage());
+            }
+        }
+    }
+
+    private void predict(HttpExchange exchange, CompiledModel model, byte[] request) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+
+        if (contentType != null && contentType.startsWith(BINARY)) {
+            if (request.length != model.getInputSize() * Double.BYTES) {
+                throw new LyraError("Expected " + model.getInputSize() + " doubles, received " + request.length + " bytes");
+            }
+            ByteBuffer in = ByteBuffer.wrap(request);
+            double[] input = new double[model.getInputSize()];
+            for (int i = 0; i < input.length; i++) {
+                input[i] = in.getDouble();
+            }
+            double[] output = model.feedForward(input);
+            ByteBuffer out = ByteBuffer.allocate(output.length * Double.BYTES);
+            for (double value : output) {
+                out.putDouble(value);
+            }
+            send(exchange, 200, BINARY, out.array());
+            return;
+        }
+
+        JsonObject body = parseObject(request);
+        Object input = fromJson(body.get("input"), model.getInputType());
+        JsonObject response = new JsonObject();
+        response.add("output", gson.toJsonTree(model.feed(input)));
+        send(exchange, 200, JSON, response.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void predictBatch(HttpExchange exchange, CompiledModel model, byte[] request) throws IOException {
+        JsonObject body = parseObject(request);
+        JsonElement inputsElement = body.get("inputs");
+        if (inputsElement == null || !inputsElement.isJsonArray()) {
+            throw new LyraError("Body must contain an \"inputs\" array");
+        }
+        JsonArray inputsArray = inputsElement.getAsJsonArray();
+        Object[] inputs = new Object[inputsArray.size()];
+        for (int n = 0; n < inputs.length; n++) {
+            inputs[n] = fromJson(inputsArray.get(n), model.getInputType());
+        }
+        // One blocked matrix product per layer over the whole batch
+        Object[] outputs = model.feedBatch(inputs);
+
+        JsonObject response = new JsonObject();
+        response.add("outputs", gson.toJsonTree(outputs));
+        send(exchange, 200, JSON, response.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Converts a JSON value to the boxed type the model takes
+    private static Object fromJson(JsonElement value, Enums.IOType type) {
+        if (value == null || value.isJsonNull()) {
+            throw new LyraError("Missing input value");
+        }
+        return switch (type) {
+            case RAW -> {
+                ArrayList<Double> raw = new ArrayList<>();
+                for (JsonElement element : value.getAsJsonArray()) {
+                    raw.add(element.getAsDouble());
+                }
+                yield raw;
+            }
+            case INTEGER -> {
+                if (!value.isJsonArray()) yield value.getAsInt();
+                // A bag of category IDs for a model with an embedding layer
+                JsonArray array = value.getAsJsonArray();
+                int[] ids = new int[array.size()];
+                for (int k = 0; k < ids.length; k++) {
+                    ids[k] = array.get(k).getAsInt();
+                }
+                yield ids;
+            }
+            case FLOAT -> value.getAsFloat();
+            case DOUBLE -> value.getAsDouble();
+            case LONG -> value.getAsLong();
+            case CHAR -> {
+                String text = value.getAsString();
+                if (text.length() != 1) throw new LyraError("CHAR input must be a single character");
+                yield text.charAt(0);
+            }
+            case BYTE -> value.getAsByte();
+            case SHORT -> value.getAsShort();
+            case BOOLEAN -> value.getAsBoolean();
+        };
+    }
+
+    private static JsonObject parseObject(byte[] body) {
+        JsonElement element = JsonParser.parseString(new String(body, StandardCharsets.UTF_8));
+        if (!element.isJsonObject()) {
+            throw new LyraError("Body must be a JSON object");
+        }
+        return element.getAsJsonObject();
+    }
+
+    // Returns null if the body is longer than limit, without reading more than one byte past it
+    private static byte[] readBody(HttpExchange exchange, int limit) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        try (InputStream in = exchange.getRequestBody()) {
+            if (length != null) {
+                try {
+                    if (Long.parseLong(length.trim()) > limit) {
+                        return null;
+                    }
+                } catch (NumberFormatException e) {
+                    // Counting the bytes below still enforces the limit
+                }
+            }
+            byte[] body = in.readNBytes(limit == Integer.MAX_VALUE ? limit : limit + 1);
+            return body.length > limit ? null : body;
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject body = new JsonObject();
+        body.addProperty("error", message == null ? "Unknown error" : message);
+        send(exchange, status, JSON, body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Starts a server from the command line: {@code LyraServer <port> <model.lyra> [more.lyra ...]}.
+     *
+     * @param args The port followed by one or more model files
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: LyraServer <port> <model.lyra> [more.lyra ...]");
+            return;
+        }
+        LyraServer server = new LyraServer(Integer.parseInt(args[0]));
+        for (int i = 1; i < args.length; i++) {
+            server.loadModel(args[i]);
+        }
+        server.start();
+    }
+}
+
+
+//Before this, if you wanted to use a model from another program, you had to write your own web server around it.
+//Now you can just point this at some model files and it will answer predictions over HTTP.
+
+//Equinox Electronic
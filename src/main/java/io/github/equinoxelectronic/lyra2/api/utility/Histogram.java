@@ -0,0 +1,128 @@
+package io.github.equinoxelectronic.lyra2.api.utility;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of non-negative long values with power-of-two buckets.
+ * Bucket 0 holds the value 0, and bucket b (b &gt; 0) holds values in [2^(b-1), 2^b).
+ * Recording is lock-free, so it is cheap enough to call on every request.
+ */
+public class Histogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private volatile long max;
+
+    /**
+     * Records one value. Negative values are recorded as 0.
+     *
+     * @param value The value to record
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        if (value > max) {
+            synchronized (this) {
+                if (value > max) max = value;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return The sample count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the mean of all recorded values.
+     *
+     * @return The mean, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return The maximum, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns an upper bound for the given percentile: the top of the bucket it falls in.
+     *
+     * @param percentile A percentile between 0 and 100, such as 99
+     * @return The bucket upper bound, capped at the recorded maximum
+     */
+    public long getPercentile(double percentile) {
+        long n = count.sum();
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(n * Math.min(100, Math.max(0, percentile)) / 100.0);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(max, bucketUpperBound(b));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the count in every bucket.
+     *
+     * @return A copy of the bucket counts, index b covering [2^(b-1), 2^b)
+     */
+    public long[] getBuckets() {
+        long[] copy = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            copy[b] = counts.get(b);
+        }
+        return copy;
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public synchronized void reset() {
+        for (int b = 0; b < BUCKETS; b++) {
+            counts.set(b, 0);
+        }
+        count.reset();
+        sum.reset();
+        max = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.2f p50=%d p99=%d max=%d",
+                getCount(), getMean(), getPercentile(50), getPercentile(99), getMax());
+    }
+
+    private static int bucketOf(long value) {
+        return value == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    private static long bucketUpperBound(int bucket) {
+        return bucket == 0 ? 0 : bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
+
+
+//A small histogram for keeping track of things like batch sizes and queue lengths without storing
+//every single number.
+
+//Equinox Electronic
@@ -0,0 +1,252 @@
+package io.github.equinoxelectronic.lyra2.api.utility;
+
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded least-recently-used cache of one model's predictions, keyed on the typed input.
+ * RAW inputs and bags of category IDs are keyed on an immutable copy, so they match by content.
+ *
+ * The cache is split into lock stripes, each an access-ordered map guarded by its own lock, so threads
+ * feeding different inputs rarely wait on each other. Each stripe evicts its least recently used entry
+ * once it is full. Every stripe remembers the model {@link LyraModel#getRevision() revision} its entries
+ * were computed at and empties itself when the model is trained, reloaded or otherwise changed, so a
+ * stale prediction is never served.
+ *
+ * Hits, misses, evictions and invalidations are counted.
+ */
+public class PredictionCache {
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_STRIPE_ENTRIES = 64;
+
+    private final LyraModel model;
+    private final int maxEntries;
+    private final Stripe[] stripes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * One lock's share of the cache: an access-ordered map guarded by the stripe's lock.
+     */
+    private final class Stripe {
+        private final LinkedHashMap<Object, Object> entries;
+        private long revision;
+
+        private Stripe(int capacity) {
+            entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        // Drops every entry computed from older weights
+        private void checkRevision(long current) {
+            if (revision != current) {
+                if (!entries.isEmpty()) {
+                    invalidations.increment();
+                    entries.clear();
+                }
+                revision = current;
+            }
+        }
+    }
+
+    /**
+     * Creates an empty cache for a model.
+     *
+     * @param model The model whose predictions are cached
+     * @param maxEntries The most predictions kept at once
+     * @throws LyraError if maxEntries is less than 1
+     */
+    public PredictionCache(LyraModel model, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new LyraError("A prediction cache must hold at least 1 entry");
+        }
+        this.model = model;
+        this.maxEntries = maxEntries;
+        // Small caches get fewer stripes, so one busy stripe does not evict while others sit empty
+        int stripeCount = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, maxEntries / MIN_STRIPE_ENTRIES)));
+        this.stripes = new Stripe[stripeCount];
+        long revision = model.getRevision();
+        for (int i = 0; i < stripeCount; i++) {
+            // Spread the capacity so the stripes add up to exactly maxEntries
+            stripes[i] = new Stripe(maxEntries / stripeCount + (i < maxEntries % stripeCount ? 1 : 0));
+            stripes[i].revision = revision;
+        }
+    }
+
+    /**
+     * Returns the cached prediction for an input, or computes and caches it.
+     * A prediction computed while the model was being changed is returned but not cached.
+     *
+     * @param input The typed input
+     * @param compute Runs the model on a cache miss
+     * @return The prediction. RAW outputs are returned as a new list.
+     */
+    public Object get(Object input, Function<Object, Object> compute) {
+        Object key = keyOf(input);
+        Stripe stripe = stripeFor(key);
+        long revision = model.getRevision();
+
+        Object cached;
+        synchronized (stripe) {
+            stripe.checkRevision(revision);
+            cached = stripe.entries.get(key);
+        }
+        if (cached != null) {
+            hits.increment();
+            return copyOf(cached);
+        }
+
+        misses.increment();
+        Object output = compute.apply(input);
+        synchronized (stripe) {
+            // Only keep it if the weights did not change while it was computed
+            if (model.getRevision() == revision) {
+                stripe.checkRevision(revision);
+                stripe.entries.put(key, copyOf(output));
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Removes every entry. The counters are kept.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached predictions.
+     *
+     * @return The current entry count
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the most predictions kept at once.
+     *
+     * @return The capacity of the cache
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return The hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that had to run the model.
+     *
+     * @return The miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries dropped to make room for new ones.
+     *
+     * @return The eviction count
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of times a stripe was emptied because the model changed.
+     *
+     * @return The invalidation count
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Returns the fraction of lookups answered from the cache.
+     *
+     * @return The hit rate between 0 and 1, or 0 if nothing was looked up
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Resets the hit, miss, eviction and invalidation counters.
+     */
+    public void resetCounters() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        invalidations.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d/%d hits=%d misses=%d hitRate=%.3f evictions=%d invalidations=%d",
+                size(), maxEntries, getHits(), getMisses(), getHitRate(), getEvictions(), getInvalidations());
+    }
+
+    private Stripe stripeFor(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    // RAW inputs and ID bags are mutable; key them on an immutable copy that compares by content
+    private static Object keyOf(Object input) {
+        if (input instanceof int[] ids) {
+            return IntBuffer.wrap(ids.clone()).asReadOnlyBuffer();
+        }
+        return input instanceof List<?> list ? List.copyOf(list) : input;
+    }
+
+    // RAW outputs are mutable lists; never share one with a caller
+    private static Object copyOf(Object output) {
+        return output instanceof ArrayList<?> list ? new ArrayList<>(list) : output;
+    }
+}
+
+
+//A lot of the time, the same inputs get fed to a model over and over again. This remembers the last few thousand
+//answers so they don't have to be worked out again, and forgets all of them as soon as the model changes.
+
+//Equinox Electronic
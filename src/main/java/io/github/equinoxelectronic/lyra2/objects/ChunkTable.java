@@ -0,0 +1,173 @@
+package io.github.equinoxelectronic.lyra2.objects;
+
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+
+/**
+ * Precomputed partial sums for the first layer of a model with a fixed-width binary input.
+ *
+ * The packed input (see {@link io.github.equinoxelectronic.lyra2.processing.DatatypeConversion#convertToBits})
+ * is split into chunks of {@code chunkBits} bits. For every chunk and every one of its
+ * {@code 2^chunkBits} bit patterns the table holds the sum of the weights of the set bits, for every
+ * neuron of the layer. The pre-activation of the layer is then its biases plus one table row per chunk,
+ * so a 32-bit input with 8-bit chunks costs 4 row additions instead of 32 multiply-adds per neuron.
+ *
+ * The table takes {@code chunks * 2^chunkBits * neurons} doubles; see {@link #estimateBytes(int, int, int)}.
+ * Wider chunks mean fewer lookups but exponentially more memory. A table is a snapshot of the weights
+ * it was built from and is never updated; {@link LyraModel#getChunkTable()} rebuilds it when the model changes.
+ */
+public final class ChunkTable {
+    /**
+     * The widest chunk allowed. A 16-bit chunk already needs 65536 rows.
+     */
+    public static final int MAX_CHUNK_BITS = 16;
+
+    private final int inputWidth;
+    private final int chunkBits;
+    private final int chunkCount;
+    private final int size;
+    private final double[] biases;
+    // Row for chunk c and pattern p starts at ((c << chunkBits) + p) * size
+    private final double[] sums;
+
+    /**
+     * Builds the table for a layer that reads a packed input of {@code layer.fanIn} bits.
+     *
+     * @param layer The first layer of a model
+     * @param chunkBits Bits per chunk, from 1 to {@link #MAX_CHUNK_BITS}
+     * @throws LyraError if the chunk width is out of range or the layer reads more than 64 inputs
+     */
+    public ChunkTable(Layer layer, int chunkBits) {
+        if (chunkBits < 1 || chunkBits > MAX_CHUNK_BITS) {
+            throw new LyraError("Chunk width must be between 1 and " + MAX_CHUNK_BITS + " bits, got " + chunkBits);
+        }
+        if (layer.fanIn < 1 || layer.fanIn > 64) {
+            throw new LyraError("Chunk tables need an input of 1 to 64 bits, but the layer reads " + layer.fanIn);
+        }
+        this.inputWidth = layer.fanIn;
+        this.chunkBits = Math.min(chunkBits, inputWidth);
+        this.chunkCount = (inputWidth + this.chunkBits - 1) / this.chunkBits;
+        this.size = layer.size();
+        this.biases = new double[size];
+        for (int j = 0; j < size; j++) {
+            biases[j] = layer.bias(j);
+        }
+
+        int patterns = 1 << this.chunkBits;
+        this.sums = new double[chunkCount * patterns * size];
+        for (int c = 0; c < chunkCount; c++) {
+            int chunkBase = (c << this.chunkBits) * size;
+            // Pattern 0 stays all zeros; every other pattern is a smaller pattern plus its lowest set bit
+            for (int p = 1; p < patterns; p++) {
+                int low = Integer.numberOfTrailingZeros(p);
+                int bit = c * this.chunkBits + low;
+                int row = chunkBase + p * size;
+                int previous = chunkBase + (p & (p - 1)) * size;
+                if (bit >= inputWidth) {
+                    // Past the end of the input: these bits are always 0, the row is never read
+                    System.arraycopy(sums, previous, sums, row, size);
+                    continue;
+                }
+                // Bit b of the packed input is input neuron inputWidth - 1 - b
+                int input = inputWidth - 1 - bit;
+                for (int j = 0; j < size; j++) {
+                    sums[row + j] = sums[previous + j] + layer.weight(j * inputWidth + input);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the memory a table would take, without building it.
+     *
+     * @param inputWidth Number of input bits
+     * @param neurons Number of neurons in the first layer
+     * @param chunkBits Bits per chunk
+     * @return The size of the table in bytes
+     */
+    public static long estimateBytes(int inputWidth, int neurons, int chunkBits) {
+        int bits = Math.min(chunkBits, inputWidth);
+        long chunks = (inputWidth + bits - 1) / bits;
+        return chunks * (1L << bits) * neurons * Double.BYTES;
+    }
+
+    /**
+     * Writes the pre-activation values of the layer for a packed input into {@code out}.
+     * The caller applies the activation function.
+     *
+     * @param bits The packed input
+     * @param out Buffer of one value per neuron
+     */
+    public void accumulate(long bits, double[] out) {
+        System.arraycopy(biases, 0, out, 0, size);
+        long mask = (1L << chunkBits) - 1;
+        for (int c = 0; c < chunkCount; c++) {
+            int pattern = (int) ((bits >>> (c * chunkBits)) & mask);
+            if (pattern == 0) continue;
+            int row = ((c << chunkBits) + pattern) * size;
+            for (int j = 0; j < size; j++) {
+                out[j] += sums[row + j];
+            }
+        }
+    }
+
+    /**
+     * The FLOAT precision version of {@link #accumulate(long, double[])}. The sums are taken in
+     * double and rounded once at the end.
+     *
+     * @param bits The packed input
+     * @param out Buffer of one value per neuron
+     */
+    public void accumulate(long bits, float[] out) {
+        long mask = (1L << chunkBits) - 1;
+        for (int j = 0; j < size; j++) {
+            double sum = biases[j];
+            for (int c = 0; c < chunkCount; c++) {
+                int pattern = (int) ((bits >>> (c * chunkBits)) & mask);
+                sum += sums[((c << chunkBits) + pattern) * size + j];
+            }
+            out[j] = (float) sum;
+        }
+    }
+
+    /**
+     * Returns the number of input bits the table covers.
+     *
+     * @return The input width
+     */
+    public int getInputWidth() {
+        return inputWidth;
+    }
+
+    /**
+     * Returns the number of bits looked up at once.
+     *
+     * @return The chunk width
+     */
+    public int getChunkBits() {
+        return chunkBits;
+    }
+
+    /**
+     * Returns the number of lookups per input.
+     *
+     * @return The number of chunks
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Returns the memory taken by the partial sums.
+     *
+     * @return The size of the table in bytes
+     */
+    public long getMemoryBytes() {
+        return (long) sums.length * Double.BYTES;
+    }
+}
+
+
+//For a model that takes in something like an int, the first layer only ever sees 32 zeros and ones. So instead of
+//multiplying all of them every time, this works out every possible byte ahead of time and just adds those up.
+
+//Equinox Electronic
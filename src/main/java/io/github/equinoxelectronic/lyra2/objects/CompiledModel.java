@@ -0,0 +1,520 @@
+package io.github.equinoxelectronic.lyra2.objects;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.processing.ActivationMethods;
+import io.github.equinoxelectronic.lyra2.processing.DatatypeConversion;
+import io.github.equinoxelectronic.lyra2.processing.Feeding;
+import io.github.equinoxelectronic.lyra2.processing.LayerScheduler;
+import io.github.equinoxelectronic.lyra2.processing.LyraRuntime;
+import io.github.equinoxelectronic.lyra2.processing.ModelChecker;
+import io.github.equinoxelectronic.lyra2.processing.kernels.Kernels;
+import io.github.equinoxelectronic.lyra2.processing.kernels.MathKernels;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * An immutable, executable snapshot of a {@link LyraModel}, created with {@link LyraModel#compile()}.
+ *
+ * The model is validated once when it is compiled. Its weights are copied, layer shapes are fixed
+ * and every activation function is resolved to its implementation, so the forward pass does no
+ * validation, no logging and no per-value activation dispatch. Training or reloading the source
+ * model afterwards does not affect a compiled model; compile it again to pick up the changes.
+ *
+ * A compiled model is safe to share between threads. Each thread gets its own {@link Workspace},
+ * so {@link #feedForward(double[], double[])} does not allocate once a thread has fed it once.
+ * FLOAT precision models are widened to double when compiled. Pruned layers keep their CSR index
+ * and are run over their non-zero weights only.
+ *
+ * Binary inputs can also be passed bit-packed, as a long or a {@link BitSet}. The first layer is then
+ * computed from a transposed copy of its weights by adding one contiguous weight column per set bit,
+ * so it costs time in proportion to the number of 1 bits rather than to the input width. If the source
+ * model has a {@link ChunkTable} enabled, a snapshot of it is taken at compile time and long inputs are
+ * looked up in it chunk by chunk instead. The same transposed copy serves as the embedding table of a
+ * model with an {@link EmbeddingLayer}: each category ID adds one contiguous row.
+ *
+ * {@link #feedForwardBatch(double[][])} and {@link #feedBatch(Object[])} run many samples at once,
+ * evaluating each layer as one blocked matrix product over the snapshot's weights.
+ */
+public final class CompiledModel {
+    private final String modelID;
+    private final Enums.IOType inputType;
+    private final Enums.IOType outputType;
+    private final int inputSize;
+    private final EmbeddingLayer embedding;
+    private final int[] fanIns;
+    private final int[] sizes;
+    private final double[][] weights;
+    private final double[][] biases;
+    // CSR copies of pruned layers; null entries for dense layers
+    private final int[][] sparseRowStarts;
+    private final int[][] sparseColumns;
+    private final double[][] sparseWeights;
+    // The first layer transposed: the weights of input k to every neuron at [k * size0 .. k * size0 + size0)
+    private final double[] firstLayerColumns;
+    // Null unless the source model had a chunk table enabled when it was compiled
+    private final ChunkTable chunkTable;
+    private final ActivationMethods.ArrayActivation[] activations;
+    private final MathKernels kernels;
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(this::newWorkspace);
+
+    /**
+     * Scratch space for one thread's forward passes: one activation buffer per layer.
+     * A workspace must not be used by two threads at once.
+     */
+    public static final class Workspace {
+        private final double[][] activations;
+        private final int[] activeInputs;
+
+        private Workspace(int inputSize, int[] sizes) {
+            activeInputs = new int[inputSize];
+            activations = new double[sizes.length][];
+            for (int i = 0; i < sizes.length; i++) {
+                activations[i] = new double[sizes[i]];
+            }
+        }
+    }
+
+    /**
+     * Validates and compiles a model.
+     *
+     * @param model The model to compile
+     * @throws io.github.equinoxelectronic.lyra2.exceptions.InvalidModelError if the model is invalid
+     */
+    public CompiledModel(LyraModel model) {
+        ModelChecker.checkModel(model);
+
+        this.modelID = model.modelID;
+        this.inputType = model.frontLayer.inputType;
+        this.outputType = model.outputType;
+        this.inputSize = model.frontLayer.neurons.size();
+        this.embedding = model.frontLayer instanceof EmbeddingLayer layer ? layer : null;
+        this.kernels = Kernels.get();
+
+        int layerCount = model.layers.size();
+        this.fanIns = new int[layerCount];
+        this.sizes = new int[layerCount];
+        this.weights = new double[layerCount][];
+        this.biases = new double[layerCount][];
+        this.activations = new ActivationMethods.ArrayActivation[layerCount];
+        this.sparseRowStarts = new int[layerCount][];
+        this.sparseColumns = new int[layerCount][];
+        this.sparseWeights = new double[layerCount][];
+
+        for (int i = 0; i < layerCount; i++) {
+            Layer layer = model.layers.get(i);
+            fanIns[i] = layer.fanIn;
+            sizes[i] = layer.size();
+            weights[i] = new double[sizes[i] * fanIns[i]];
+            biases[i] = new double[sizes[i]];
+            for (int w = 0; w < weights[i].length; w++) {
+                weights[i][w] = layer.weight(w);
+            }
+            for (int j = 0; j < sizes[i]; j++) {
+                biases[i][j] = layer.bias(j);
+            }
+            activations[i] = ActivationMethods.resolve(layer.activationFunction);
+            if (layer.isSparse()) {
+                sparseRowStarts[i] = layer.sparseRowStarts.clone();
+                sparseColumns[i] = layer.sparseColumns.clone();
+                sparseWeights[i] = new double[sparseColumns[i].length];
+                for (int p = 0; p < sparseWeights[i].length; p++) {
+                    sparseWeights[i][p] = layer.isFloat() ? layer.floatSparseWeights[p] : layer.sparseWeights[p];
+                }
+            }
+        }
+
+        firstLayerColumns = new double[weights[0].length];
+        for (int j = 0; j < sizes[0]; j++) {
+            for (int k = 0; k < fanIns[0]; k++) {
+                firstLayerColumns[k * sizes[0] + j] = weights[0][j * fanIns[0] + k];
+            }
+        }
+        chunkTable = model.getChunkTable();
+    }
+
+    /**
+     * Creates a new set of activation buffers for this model.
+     *
+     * @return A workspace for {@link #feedForward(double[], Workspace)}
+     */
+    public Workspace newWorkspace() {
+        return new Workspace(inputSize, sizes);
+    }
+
+    /**
+     * Runs a forward pass in the given workspace.
+     * The returned array belongs to the workspace and is overwritten by its next pass.
+     *
+     * @param input Input values, one per input neuron
+     * @param workspace Scratch space created by {@link #newWorkspace()}
+     * @return The output layer activations
+     * @throws LyraError if the input has the wrong size
+     */
+    public double[] feedForward(double[] input, Workspace workspace) {
+        if (input.length != inputSize) {
+            throw new LyraError("ERROR, MODEL " + modelID + " TAKES " + inputSize +
+                    " INPUT VALUES, BUT RECEIVED " + input.length + "!");
+        }
+        return run(input, 0, workspace);
+    }
+
+    /**
+     * Runs a forward pass over a bit-packed binary input in the given workspace.
+     * Input neuron i is bit {@code getInputSize() - 1 - i} of {@code bits}, the layout of
+     * {@link DatatypeConversion#convertToBits}. The first layer is read from the chunk table
+     * when the model was compiled with one, and otherwise summed over the set bits.
+     * The returned array belongs to the workspace and is overwritten by its next pass.
+     *
+     * @param bits The packed input
+     * @param workspace Scratch space created by {@link #newWorkspace()}
+     * @return The output layer activations
+     * @throws LyraError if the model takes more than 64 inputs
+     */
+    public double[] feedForward(long bits, Workspace workspace) {
+        if (inputSize > 64) {
+            throw new LyraError("ERROR, MODEL " + modelID + " TAKES " + inputSize +
+                    " INPUT VALUES, WHICH DO NOT FIT IN A LONG!");
+        }
+        if (chunkTable != null) {
+            double[] out = workspace.activations[0];
+            chunkTable.accumulate(bits, out);
+            activations[0].apply(out, 0, out.length);
+            return run(out, 1, workspace);
+        }
+        int activeCount = DatatypeConversion.bitsToIndices(bits, inputSize, workspace.activeInputs);
+        return runSparse(workspace.activeInputs, activeCount, workspace);
+    }
+
+    /**
+     * Runs a forward pass over a binary input given as the set of input neurons that are 1.
+     * The returned array belongs to the workspace and is overwritten by its next pass.
+     *
+     * @param bits Bit i is input neuron i
+     * @param workspace Scratch space created by {@link #newWorkspace()}
+     * @return The output layer activations
+     * @throws LyraError if a set bit is past the last input
+     */
+    public double[] feedForward(BitSet bits, Workspace workspace) {
+        if (bits.length() > inputSize) {
+            throw new LyraError("ERROR, MODEL " + modelID + " TAKES " + inputSize +
+                    " INPUT VALUES, BUT BIT " + (bits.length() - 1) + " IS SET!");
+        }
+        int activeCount = 0;
+        for (int k = bits.nextSetBit(0); k >= 0; k = bits.nextSetBit(k + 1)) {
+            workspace.activeInputs[activeCount++] = k;
+        }
+        return runSparse(workspace.activeInputs, activeCount, workspace);
+    }
+
+    /**
+     * Runs a forward pass for a model with an {@link EmbeddingLayer}, given the category IDs of the input.
+     * The returned array belongs to the workspace and is overwritten by its next pass.
+     *
+     * @param categoryIds The category IDs of the input
+     * @param count Number of valid entries in categoryIds
+     * @param workspace Scratch space created by {@link #newWorkspace()}
+     * @return The output layer activations
+     * @throws LyraError if the model has no embedding layer or an ID is outside the vocabulary
+     */
+    public double[] feedForwardEmbedding(int[] categoryIds, int count, Workspace workspace) {
+        if (embedding == null) {
+            throw new LyraError("ERROR, MODEL " + modelID + " DOES NOT TAKE CATEGORY IDS!");
+        }
+        for (int a = 0; a < count; a++) {
+            if (categoryIds[a] < 0 || categoryIds[a] >= inputSize) {
+                throw new LyraError("ERROR, MODEL " + modelID + " HAS " + inputSize +
+                        " CATEGORIES, BUT RECEIVED ID " + categoryIds[a] + "!");
+            }
+        }
+        return runSparse(categoryIds, count, workspace);
+    }
+
+    // First layer as a sum of the weight columns of the active inputs, then the rest as usual
+    private double[] runSparse(int[] activeInputs, int activeCount, Workspace workspace) {
+        double[] out = workspace.activations[0];
+        int size = out.length;
+        System.arraycopy(biases[0], 0, out, 0, size);
+        for (int a = 0; a < activeCount; a++) {
+            int column = activeInputs[a] * size;
+            for (int j = 0; j < size; j++) {
+                out[j] += firstLayerColumns[column + j];
+            }
+        }
+        activations[0].apply(out, 0, size);
+        return run(out, 1, workspace);
+    }
+
+    // Runs layers [firstLayer, end) starting from the given input
+    private double[] run(double[] input, int firstLayer, Workspace workspace) {
+        double[] prev = input;
+        for (int i = firstLayer; i < sizes.length; i++) {
+            double[] out = workspace.activations[i];
+            double[] w = weights[i];
+            double[] b = biases[i];
+            int fanIn = fanIns[i];
+            if (sparseRowStarts[i] != null) {
+                // Pruned layer: only the non-zero weights
+                int[] rowStarts = sparseRowStarts[i];
+                int[] columns = sparseColumns[i];
+                double[] values = sparseWeights[i];
+                for (int j = 0; j < out.length; j++) {
+                    double sum = b[j];
+                    for (int p = rowStarts[j]; p < rowStarts[j + 1]; p++) {
+                        sum += values[p] * prev[columns[p]];
+                    }
+                    out[j] = sum;
+                }
+            } else {
+                for (int j = 0; j < out.length; j++) {
+                    out[j] = kernels.dot(w, j * fanIn, prev, 0, fanIn) + b[j];
+                }
+            }
+            activations[i].apply(out, 0, out.length);
+            prev = out;
+        }
+        return prev;
+    }
+
+    /**
+     * Runs a forward pass on this thread's workspace and copies the result into {@code output}.
+     * Does not allocate after the calling thread's first pass.
+     *
+     * @param input Input values, one per input neuron
+     * @param output Buffer of length {@link #getOutputSize()} that receives the result
+     * @throws LyraError if the input or output has the wrong size
+     */
+    public void feedForward(double[] input, double[] output) {
+        if (output.length != getOutputSize()) {
+            throw new LyraError("ERROR, MODEL " + modelID + " HAS " + getOutputSize() +
+                    " OUTPUT VALUES, BUT THE OUTPUT BUFFER HOLDS " + output.length + "!");
+        }
+        double[] result = feedForward(input, workspaces.get());
+        System.arraycopy(result, 0, output, 0, output.length);
+    }
+
+    /**
+     * Runs a forward pass and returns the result in a new array.
+     *
+     * @param input Input values, one per input neuron
+     * @return The output layer activations
+     * @throws LyraError if the input has the wrong size
+     */
+    public double[] feedForward(double[] input) {
+        return feedForward(input, workspaces.get()).clone();
+    }
+
+    /**
+     * Runs a forward pass over a whole batch of inputs at once, like
+     * {@link Feeding#feedForwardBatch(LyraModel, double[][])} but on this snapshot's weights.
+     * Sample blocks are spread over the {@link Feeding#getRuntime() feeding runtime}.
+     *
+     * @param inputs Input vectors, one per sample
+     * @return Output vectors, one per sample
+     * @throws LyraError if an input has the wrong size
+     */
+    public double[][] feedForwardBatch(double[][] inputs) {
+        int rows = inputs.length;
+        for (int n = 0; n < rows; n++) {
+            if (inputs[n].length != inputSize) {
+                throw new LyraError("ERROR, MODEL " + modelID + " TAKES " + inputSize +
+                        " INPUT VALUES, BUT INPUT " + n + " HAS " + inputs[n].length + "!");
+            }
+        }
+
+        // Row-major: sample n occupies [n*width .. n*width+width)
+        double[] batch = new double[rows * inputSize];
+        for (int n = 0; n < rows; n++) {
+            System.arraycopy(inputs[n], 0, batch, n * inputSize, inputSize);
+        }
+
+        LyraRuntime runtime = Feeding.getRuntime();
+        for (int i = 0; i < sizes.length; i++) {
+            final int layer = i;
+            final double[] in = batch;
+            final double[] out = new double[rows * sizes[i]];
+            LayerScheduler.forEach(runtime, rows, Feeding.BATCH_SAMPLE_BLOCK, (long) rows * sizes[i] * fanIns[i],
+                    (rowStart, rowEnd) -> multiplyBatch(layer, in, out, rowStart, rowEnd));
+            batch = out;
+        }
+
+        int outSize = getOutputSize();
+        double[][] results = new double[rows][outSize];
+        for (int n = 0; n < rows; n++) {
+            System.arraycopy(batch, n * outSize, results[n], 0, outSize);
+        }
+        return results;
+    }
+
+    // Computes layer i for samples [rowStart, rowEnd) of a row-major batch
+    private void multiplyBatch(int i, double[] in, double[] out, int rowStart, int rowEnd) {
+        int size = sizes[i];
+        int fanIn = fanIns[i];
+        for (int n = rowStart; n < rowEnd; n++) {
+            System.arraycopy(biases[i], 0, out, n * size, size);
+        }
+        if (sparseRowStarts[i] != null) {
+            // Tiling does not help a sparse row; walk each sample's non-zeros directly
+            int[] rowStarts = sparseRowStarts[i];
+            int[] columns = sparseColumns[i];
+            double[] values = sparseWeights[i];
+            for (int n = rowStart; n < rowEnd; n++) {
+                int inOffset = n * fanIn;
+                for (int j = 0; j < size; j++) {
+                    double sum = 0;
+                    for (int p = rowStarts[j]; p < rowStarts[j + 1]; p++) {
+                        sum += values[p] * in[inOffset + columns[p]];
+                    }
+                    out[n * size + j] += sum;
+                }
+            }
+        } else {
+            Feeding.multiplyBlocked(weights[i], fanIn, size, in, out, rowStart, rowEnd);
+        }
+        activations[i].apply(out, rowStart * size, rowEnd * size);
+    }
+
+    /**
+     * Feeds a batch of typed inputs through the model with {@link #feedForwardBatch(double[][])}
+     * and returns the typed predictions in the same order. Models with an {@link EmbeddingLayer}
+     * are fed one input at a time, since their first layer is a lookup rather than a product.
+     *
+     * @param inputs The input data (each must match the model's input type)
+     * @return The model's outputs, converted to the model's output type
+     * @throws LyraError if an input type is wrong or a conversion fails
+     */
+    public Object[] feedBatch(Object[] inputs) {
+        Object[] outputs = new Object[inputs.length];
+        if (embedding != null) {
+            for (int n = 0; n < inputs.length; n++) {
+                outputs[n] = feed(inputs[n]);
+            }
+            return outputs;
+        }
+
+        double[][] rows = new double[inputs.length][];
+        for (int n = 0; n < rows.length; n++) {
+            checkInputType(inputs[n]);
+            rows[n] = toBinaryInput(inputs[n]);
+        }
+        double[][] results = feedForwardBatch(rows);
+        for (int n = 0; n < outputs.length; n++) {
+            outputs[n] = decodeOutput(results[n]);
+        }
+        return outputs;
+    }
+
+    /**
+     * Feeds a typed input through the model and returns the typed prediction,
+     * in the same way as {@link io.github.equinoxelectronic.lyra2.api.Running#feed(LyraModel, Object)}.
+     *
+     * @param input The input data (must match the model's input type)
+     * @return The model's output, converted to the model's output type
+     * @throws LyraError if the input type is wrong or a conversion fails
+     */
+    public Object feed(Object input) {
+        if (embedding != null) {
+            int[] ids = embedding.categoryIds(input);
+            return decodeOutput(runSparse(ids, ids.length, workspaces.get()));
+        }
+        checkInputType(input);
+
+        double[] output;
+        try {
+            // Every type but RAW is binary, so it takes the bit-packed first-layer path
+            if (inputType != Enums.IOType.RAW && inputSize == DatatypeConversion.getBitCount(inputType)) {
+                output = feedForward(DatatypeConversion.convertToBits(inputType, input), workspaces.get());
+            } else {
+                output = feedForward(toBinaryInput(input), workspaces.get());
+            }
+        } catch (LyraWrongDatatypeException e) {
+            throw new LyraError("COULD NOT CONVERT DATATYPE FOR FEEDING!" + e.getMessage());
+        }
+        return decodeOutput(output);
+    }
+
+    private void checkInputType(Object input) {
+        if (!DatatypeConversion.isValidDataType(inputType, input)) {
+            throw new LyraError("ERROR, MODEL " + modelID + " TAKES IN A " + inputType.name() +
+                    ", BUT RECEIVED A " + (input == null ? "null" : input.getClass().getSimpleName()) + " INSTEAD!");
+        }
+    }
+
+    private double[] toBinaryInput(Object input) {
+        try {
+            ArrayList<Double> binaryData = DatatypeConversion.convertToBinaryArray(inputType, input);
+            double[] in = new double[binaryData.size()];
+            for (int i = 0; i < in.length; i++) {
+                in[i] = binaryData.get(i);
+            }
+            return in;
+        } catch (LyraWrongDatatypeException e) {
+            throw new LyraError("COULD NOT CONVERT DATATYPE FOR FEEDING!" + e.getMessage());
+        }
+    }
+
+    private Object decodeOutput(double[] output) {
+        ArrayList<Double> resultBinaryData = new ArrayList<>(output.length);
+        for (double value : output) {
+            resultBinaryData.add(value);
+        }
+        try {
+            return DatatypeConversion.convertFromBinaryArray(outputType, resultBinaryData);
+        } catch (LyraWrongDatatypeException e) {
+            throw new LyraError("ERROR, THERE WAS AN ISSUE CONVERTING THE BINARY OUTPUT TO THE DESIRED OUTPUT TYPE!" + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the ID of the model this was compiled from.
+     *
+     * @return The model ID
+     */
+    public String getModelID() {
+        return modelID;
+    }
+
+    /**
+     * Returns the number of input values the model takes.
+     *
+     * @return The input size
+     */
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    /**
+     * Returns the number of values the model outputs.
+     *
+     * @return The output layer size
+     */
+    public int getOutputSize() {
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * Returns the type of input the model takes.
+     *
+     * @return The input type
+     */
+    public Enums.IOType getInputType() {
+        return inputType;
+    }
+
+    /**
+     * Returns the type of output the model produces.
+     *
+     * @return The output type
+     */
+    public Enums.IOType getOutputType() {
+        return outputType;
+    }
+}
+
+
+//Running a normal model checks the entire thing for problems every single time, which for big models is a lot of
+//wasted time. This checks it once, makes a locked copy of it, and then just does the math from then on.
+
+//Equinox Electronic
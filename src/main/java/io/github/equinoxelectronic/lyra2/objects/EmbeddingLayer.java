@@ -0,0 +1,122 @@
+package io.github.equinoxelectronic.lyra2.objects;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+
+import java.util.ArrayList;
+
+/**
+ * An input layer for categorical features, taking category IDs instead of binary data.
+ *
+ * The layer has one input neuron per category, so the first hidden layer's weights form an
+ * embedding table: the weights of neuron j for category c are at column c of its row. An input
+ * is a category ID ({@link Integer}) or a bag of IDs ({@code int[]}), and the first layer only
+ * adds up the weights of those categories instead of multiplying the whole weight matrix against
+ * a one-hot vector, so its cost is O(width) instead of O(vocabulary × width). Training only
+ * updates the weights of the categories in each sample.
+ *
+ * A bag of IDs behaves like a vector that counts how often each category appears in it.
+ * The input type of an embedding layer is INTEGER.
+ */
+public class EmbeddingLayer extends FrontLayer {
+
+    /**
+     * Creates an embedding input layer.
+     *
+     * @param vocabularySize The number of categories; IDs go from 0 to vocabularySize - 1
+     * @throws LyraError if the vocabulary is empty
+     */
+    public EmbeddingLayer(int vocabularySize) {
+        super(vocabularySize, Enums.IOType.INTEGER);
+        if (vocabularySize < 1) {
+            throw new LyraError("An embedding layer needs at least 1 category");
+        }
+    }
+
+    /**
+     * Returns the number of categories.
+     *
+     * @return The vocabulary size
+     */
+    public int getVocabularySize() {
+        return neurons.size();
+    }
+
+    /**
+     * Checks whether an input is a category ID or a non-empty bag of IDs within the vocabulary.
+     *
+     * @param input The input to check
+     * @return true if the input can be fed to this layer
+     */
+    public boolean isValidInput(Object input) {
+        if (input instanceof Integer id) {
+            return id >= 0 && id < neurons.size();
+        }
+        if (input instanceof int[] ids && ids.length > 0) {
+            for (int id : ids) {
+                if (id < 0 || id >= neurons.size()) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the category IDs of an input.
+     *
+     * @param input A category ID or a bag of IDs
+     * @return The IDs, as a new array
+     * @throws LyraError if the input is not a valid ID or bag of IDs
+     */
+    public int[] categoryIds(Object input) {
+        if (!isValidInput(input)) {
+            throw new LyraError("ERROR, AN EMBEDDING LAYER TAKES A CATEGORY ID OR int[] OF IDS FROM 0 TO " +
+                    (neurons.size() - 1) + ", BUT RECEIVED " + describe(input) + " INSTEAD!");
+        }
+        return input instanceof Integer id ? new int[]{id} : ((int[]) input).clone();
+    }
+
+    /**
+     * Converts an input to the form {@link io.github.equinoxelectronic.lyra2.api.Trainer} keeps
+     * training samples in: its category IDs, stored as doubles.
+     *
+     * @param input A category ID or a bag of IDs
+     * @return The IDs as a list
+     * @throws LyraError if the input is not a valid ID or bag of IDs
+     */
+    public ArrayList<Double> toTrainingSample(Object input) {
+        int[] ids = categoryIds(input);
+        ArrayList<Double> sample = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            sample.add((double) id);
+        }
+        return sample;
+    }
+
+    /**
+     * Expands category IDs into a dense input vector that counts each category, for code paths that
+     * need one value per input neuron.
+     *
+     * @param ids The category IDs
+     * @return A vector of vocabularySize values
+     */
+    public double[] toDense(int[] ids) {
+        double[] dense = new double[neurons.size()];
+        for (int id : ids) {
+            dense[id]++;
+        }
+        return dense;
+    }
+
+    private static String describe(Object input) {
+        if (input == null) return "null";
+        if (input instanceof Integer id) return "ID " + id;
+        return "A " + input.getClass().getSimpleName();
+    }
+}
+
+
+//Some inputs are categories, like a country or a product ID, and there can be thousands of them. Turning them into
+//huge one-hot lists of mostly zeros is slow, so this takes the ID directly and only looks at the weights it needs.
+
+//Equinox Electronic
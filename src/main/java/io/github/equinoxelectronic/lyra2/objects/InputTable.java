@@ -0,0 +1,197 @@
+package io.github.equinoxelectronic.lyra2.objects;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.api.InferenceSession;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.processing.DatatypeConversion;
+
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+
+/**
+ * Every output of a model over its whole input domain, for models with a small input type.
+ *
+ * A BOOLEAN, BYTE or CHAR input has at most 256 possible values and a SHORT input 65536, so the model
+ * can be run once for each of them and the decoded outputs kept in an array. A prediction is then the
+ * array entry at the input's bits: no conversion, no arithmetic. Build one with {@link LyraModel#tabulate()}.
+ *
+ * The table remembers a {@link #fingerprint(LyraModel) fingerprint} of the weights it was computed from,
+ * so a table saved beside a model file is only reused if the model has not changed since.
+ */
+public final class InputTable {
+    private final Enums.IOType inputType;
+    private final Enums.IOType outputType;
+    private final long fingerprint;
+    private final Object[] outputs;
+
+    /**
+     * Creates a table from already computed outputs. Used when loading a table from a file.
+     *
+     * @param inputType The model's input type
+     * @param outputType The model's output type
+     * @param fingerprint Fingerprint of the weights the outputs were computed with
+     * @param outputs The decoded output for every input, indexed by the input's bits
+     * @throws LyraError if the input type cannot be tabulated or the number of outputs is wrong
+     */
+    public InputTable(Enums.IOType inputType, Enums.IOType outputType, long fingerprint, Object[] outputs) {
+        if (domainSize(inputType) != outputs.length) {
+            throw new LyraError("A " + inputType + " input table needs " + domainSize(inputType) +
+                    " outputs, but received " + outputs.length);
+        }
+        this.inputType = inputType;
+        this.outputType = outputType;
+        this.fingerprint = fingerprint;
+        this.outputs = outputs;
+    }
+
+    /**
+     * Runs a model over every possible input, spread over all available cores.
+     *
+     * @param model The trained model
+     * @return The table of its outputs
+     * @throws LyraError if the model's input type is not BOOLEAN, BYTE, CHAR or SHORT
+     */
+    public static InputTable build(LyraModel model) {
+        Enums.IOType type = model.frontLayer.inputType;
+        int size = domainSize(type);
+        if (size == 0) {
+            throw new LyraError("ERROR, ONLY BOOLEAN, BYTE, CHAR AND SHORT INPUTS CAN BE TABULATED, BUT MODEL " +
+                    model.modelID + " TAKES A " + type + "!");
+        }
+
+        // Sessions are not thread-safe, so every worker thread gets its own
+        ThreadLocal<InferenceSession> sessions = ThreadLocal.withInitial(() -> new InferenceSession(model));
+        Object[] outputs = new Object[size];
+        IntStream.range(0, size).parallel().forEach(i -> {
+            try {
+                outputs[i] = sessions.get().feed(DatatypeConversion.convertFromBits(type, i));
+            } catch (LyraWrongDatatypeException e) {
+                throw new LyraError("COULD NOT CONVERT DATATYPE FOR TABULATION!" + e.getMessage());
+            }
+        });
+        return new InputTable(type, model.outputType, fingerprint(model), outputs);
+    }
+
+    /**
+     * Returns the number of possible inputs of a type.
+     *
+     * @param type The input type
+     * @return The size of the input domain, or 0 if the type is too large to tabulate
+     */
+    public static int domainSize(Enums.IOType type) {
+        return switch (type) {
+            case BOOLEAN -> 2;
+            case BYTE, CHAR -> 256;
+            case SHORT -> 65536;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Hashes a model's shape, types and every weight and bias into one value.
+     * Two models with the same fingerprint produce the same outputs.
+     *
+     * @param model The model to fingerprint
+     * @return A 64-bit hash of the model's parameters
+     */
+    public static long fingerprint(LyraModel model) {
+        long h = 0xcbf29ce484222325L;
+        h = mix(h, model.frontLayer.inputType.ordinal());
+        h = mix(h, model.outputType.ordinal());
+        h = mix(h, model.frontLayer.neurons.size());
+        for (Layer layer : model.layers) {
+            h = mix(h, layer.size());
+            h = mix(h, layer.fanIn);
+            h = mix(h, layer.activationFunction.ordinal());
+            int weightCount = layer.size() * layer.fanIn;
+            for (int w = 0; w < weightCount; w++) {
+                h = mix(h, Double.doubleToLongBits(layer.weight(w)));
+            }
+            for (int j = 0; j < layer.size(); j++) {
+                h = mix(h, Double.doubleToLongBits(layer.bias(j)));
+            }
+        }
+        return h;
+    }
+
+    private static long mix(long h, long value) {
+        h ^= value;
+        h *= 0x100000001b3L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Looks up the output for an input.
+     *
+     * @param input The input value (must match the table's input type)
+     * @return The output the model gave for it. RAW outputs are returned as a new list.
+     * @throws LyraError if the input has the wrong type
+     */
+    public Object lookup(Object input) {
+        Object output;
+        try {
+            output = outputs[(int) DatatypeConversion.convertToBits(inputType, input)];
+        } catch (LyraWrongDatatypeException e) {
+            throw new LyraError("ERROR, THIS TABLE TAKES IN A " + inputType.name() + ", BUT RECEIVED A " +
+                    (input == null ? "null" : input.getClass().getSimpleName()) + " INSTEAD!");
+        }
+        if (output instanceof ArrayList<?> list) {
+            // The only mutable output type; hand out a copy so callers cannot change the table
+            return new ArrayList<>(list);
+        }
+        return output;
+    }
+
+    /**
+     * Returns the output stored for the input with the given bits.
+     *
+     * @param index The input's packed bits
+     * @return The stored output, not copied
+     */
+    public Object get(int index) {
+        return outputs[index];
+    }
+
+    /**
+     * Returns the number of entries in the table.
+     *
+     * @return The size of the input domain
+     */
+    public int size() {
+        return outputs.length;
+    }
+
+    /**
+     * Returns the fingerprint of the weights the table was computed from.
+     *
+     * @return The weight fingerprint
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the input type of the table.
+     *
+     * @return The input type
+     */
+    public Enums.IOType getInputType() {
+        return inputType;
+    }
+
+    /**
+     * Returns the output type of the table.
+     *
+     * @return The output type
+     */
+    public Enums.IOType getOutputType() {
+        return outputType;
+    }
+}
+
+
+//If a model only takes in a char, there are only 256 things you could ever ask it. So you might as well ask it
+//all of them once, write down the answers, and then just look them up.
+
+//Equinox Electronic
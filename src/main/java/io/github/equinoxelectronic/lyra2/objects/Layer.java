@@ -2,7 +2,10 @@ package io.github.equinoxelectronic.lyra2.objects;
 
 import io.github.equinoxelectronic.lyra2.Enums;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.RandomAccess;
 
 /**
  * Represents a layer in a neural network, containing neurons and their activation function.
@@ -10,16 +13,77 @@ import java.util.ArrayList;
  * Each layer contains a collection of neurons and applies a specified activation function
  * to their outputs during forward propagation.
  *
+ * The weights of a layer are stored packed in a single primitive array in row-major order
+ * (neuron × fan-in), together with one primitive array of biases. Layers of FLOAT precision
+ * models keep them in {@link #floatWeights} and {@link #floatBiases} instead, and leave the
+ * double arrays null.
+ *
+ * A pruned layer additionally keeps a compressed sparse row (CSR) index of its non-zero weights
+ * ({@link #sparseRowStarts}, {@link #sparseColumns} and {@link #sparseWeights}), which inference
+ * runs on. The packed arrays stay complete, with the pruned weights at zero.
+ *
+ * The {@link #neurons} list is a compatibility view over that storage: each neuron's weights
+ * list reads and writes straight through to the packed array, so no weight is stored twice.
+ *
  * @deprecated The per-layer activation function is being deprecated in favor of a
  *             model-wide activation function. The activationFunction field will be
  *             removed in a future version.
  */
 public class Layer {
     /**
-     * Collection of neurons that make up this layer.
-     * Each neuron contains its own weights and bias values.
+     * Compatibility view of the neurons that make up this layer.
+     * Each neuron's weights list is backed by {@link #weights}. Neuron biases are
+     * mirrored from {@link #biases} whenever {@link #refreshNeurons()} is called.
+     */
+    public transient ArrayList<Neuron> neurons;
+
+    /**
+     * The number of inputs each neuron in this layer receives (size of the previous layer).
+     */
+    public int fanIn;
+
+    /**
+     * Packed connection weights in row-major order.
+     * The weight from input k to neuron j is stored at {@code weights[j * fanIn + k]}.
+     */
+    public double[] weights;
+
+    /**
+     * Packed neuron biases, one per neuron in this layer.
+     */
+    public double[] biases;
+
+    /**
+     * Packed 32-bit weights, same layout as {@link #weights}. Only set for FLOAT precision layers.
+     */
+    public float[] floatWeights;
+
+    /**
+     * Packed 32-bit biases. Only set for FLOAT precision layers.
      */
-    public ArrayList<Neuron> neurons;
+    public float[] floatBiases;
+
+    /**
+     * Compressed sparse row index of the non-zero weights, set once the layer has been pruned.
+     * The non-zeros of neuron j are entries [sparseRowStarts[j], sparseRowStarts[j + 1]) of
+     * {@link #sparseColumns} and {@link #sparseWeights}. Null for dense layers.
+     */
+    public int[] sparseRowStarts;
+
+    /**
+     * Input index of every non-zero weight, ascending within each neuron. Null for dense layers.
+     */
+    public int[] sparseColumns;
+
+    /**
+     * The non-zero weights in CSR order. Only set for sparse DOUBLE precision layers.
+     */
+    public double[] sparseWeights;
+
+    /**
+     * The non-zero weights in CSR order. Only set for sparse FLOAT precision layers.
+     */
+    public float[] floatSparseWeights;
 
     /**
      * The activation function applied to all neurons in this layer.
@@ -32,7 +96,8 @@ public class Layer {
 
     /**
      * Creates a new layer with the specified number of neurons and activation function.
-     * Initializes each neuron with default values (weights and biases will be set later).
+     * The layer starts with a fan-in of zero; weights are expected to be added through the
+     * neuron view and committed with {@link #pack()}.
      *
      * @param neuronsCount The number of neurons to create in this layer
      * @param activationFunction The activation function to use for this layer
@@ -41,11 +106,356 @@ public class Layer {
      */
     @Deprecated
     public Layer(int neuronsCount, Enums.activationFunctions activationFunction) {
-        this.neurons = new ArrayList<>();
-        for (int i = 0; i < neuronsCount; i++) {
-            this.neurons.add(new Neuron());
-        }
+        this(neuronsCount, 0, activationFunction);
+    }
+
+    /**
+     * Creates a new layer with packed storage for the given number of neurons and inputs.
+     * All weights and biases start at zero.
+     *
+     * @param neuronsCount The number of neurons to create in this layer
+     * @param fanIn The number of inputs per neuron (size of the previous layer)
+     * @param activationFunction The activation function to use for this layer
+     */
+    public Layer(int neuronsCount, int fanIn, Enums.activationFunctions activationFunction) {
+        this.fanIn = fanIn;
+        this.weights = new double[neuronsCount * fanIn];
+        this.biases = new double[neuronsCount];
         this.activationFunction = activationFunction;
+        // Every bias starts at zero, like a new neuron's, so only the view has to be built
+        buildNeuronView(neuronsCount);
+    }
+
+    /**
+     * Returns the number of neurons in this layer.
+     *
+     * @return The neuron count
+     */
+    public int size() {
+        return biases != null ? biases.length : floatBiases.length;
+    }
+
+    /**
+     * Checks whether this layer stores its parameters as 32-bit floats.
+     *
+     * @return true if {@link #floatWeights} and {@link #floatBiases} hold the parameters
+     */
+    public boolean isFloat() {
+        return weights == null && floatWeights != null;
+    }
+
+    /**
+     * Reads one packed weight regardless of storage precision.
+     *
+     * @param index Index into the row-major weight matrix
+     * @return The weight
+     */
+    public double weight(int index) {
+        return weights != null ? weights[index] : floatWeights[index];
+    }
+
+    /**
+     * Reads one bias regardless of storage precision.
+     *
+     * @param neuron The neuron index
+     * @return The bias
+     */
+    public double bias(int neuron) {
+        return biases != null ? biases[neuron] : floatBiases[neuron];
+    }
+
+    /**
+     * Checks whether this layer has a CSR index of its non-zero weights.
+     *
+     * @return true if the layer was pruned and is executed as a sparse layer
+     */
+    public boolean isSparse() {
+        return sparseRowStarts != null;
+    }
+
+    /**
+     * Returns the number of weights this layer stores as non-zero.
+     *
+     * @return The CSR entry count for sparse layers, otherwise the full weight count
+     */
+    public int nonZeroCount() {
+        return isSparse() ? sparseRowStarts[size()] : size() * fanIn;
+    }
+
+    /**
+     * Builds the CSR index from the weights that are currently non-zero.
+     * The packed weights are kept as they are, so every zero stays where it is; training then only
+     * updates the weights in the index, which keeps the pruned ones at zero.
+     */
+    public void sparsify() {
+        int count = size();
+        int[] rowStarts = new int[count + 1];
+        int nonZeros = 0;
+        for (int j = 0; j < count; j++) {
+            for (int k = 0; k < fanIn; k++) {
+                if (weight(j * fanIn + k) != 0) nonZeros++;
+            }
+            rowStarts[j + 1] = nonZeros;
+        }
+        int[] columns = new int[nonZeros];
+        int n = 0;
+        for (int j = 0; j < count; j++) {
+            for (int k = 0; k < fanIn; k++) {
+                if (weight(j * fanIn + k) != 0) columns[n++] = k;
+            }
+        }
+        setSparseIndex(rowStarts, columns);
+    }
+
+    /**
+     * Makes the layer sparse with the given CSR structure and copies the matching weights into it.
+     * Weights outside the structure are set to zero.
+     *
+     * @param rowStarts Start of every neuron's entries, plus the total count at the end
+     * @param columns Input index of every entry, ascending within each neuron
+     * @throws IllegalArgumentException if the structure does not fit this layer
+     */
+    public void setSparseIndex(int[] rowStarts, int[] columns) {
+        int count = size();
+        if (rowStarts.length != count + 1 || rowStarts[0] != 0 || rowStarts[count] != columns.length) {
+            throw new IllegalArgumentException("CSR row starts do not match a layer of " + count + " neurons");
+        }
+        for (int j = 0; j < count; j++) {
+            int previous = -1;
+            for (int p = rowStarts[j]; p < rowStarts[j + 1]; p++) {
+                if (columns[p] <= previous || columns[p] >= fanIn) {
+                    throw new IllegalArgumentException("CSR column " + columns[p] + " of neuron " + j + " is out of order or range");
+                }
+                previous = columns[p];
+            }
+        }
+
+        sparseRowStarts = rowStarts;
+        sparseColumns = columns;
+        // Zero everything the index leaves out, so the dense and sparse views agree
+        for (int j = 0; j < count; j++) {
+            int p = rowStarts[j];
+            for (int k = 0; k < fanIn; k++) {
+                if (p < rowStarts[j + 1] && columns[p] == k) {
+                    p++;
+                } else if (weights != null) {
+                    weights[j * fanIn + k] = 0;
+                } else {
+                    floatWeights[j * fanIn + k] = 0;
+                }
+            }
+        }
+        refreshSparseWeights();
+    }
+
+    /**
+     * Copies the packed weights at the CSR positions into the sparse value array.
+     * Call this after writing to {@link #weights} directly on a sparse layer.
+     */
+    public void refreshSparseWeights() {
+        if (!isSparse()) return;
+        int count = size();
+        if (isFloat()) {
+            sparseWeights = null;
+            floatSparseWeights = new float[sparseColumns.length];
+        } else {
+            floatSparseWeights = null;
+            sparseWeights = new double[sparseColumns.length];
+        }
+        for (int j = 0; j < count; j++) {
+            for (int p = sparseRowStarts[j]; p < sparseRowStarts[j + 1]; p++) {
+                int i = j * fanIn + sparseColumns[p];
+                if (isFloat()) {
+                    floatSparseWeights[p] = floatWeights[i];
+                } else {
+                    sparseWeights[p] = weights[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the CSR index. The weights stay as they are, zeros included, but training may
+     * make the pruned ones non-zero again.
+     */
+    public void densify() {
+        sparseRowStarts = null;
+        sparseColumns = null;
+        sparseWeights = null;
+        floatSparseWeights = null;
+    }
+
+    /**
+     * Converts this layer's parameters to 32-bit float storage and drops the double arrays.
+     * Does nothing if the layer already stores floats.
+     */
+    public void toFloat() {
+        if (isFloat()) return;
+        floatWeights = new float[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            floatWeights[i] = (float) weights[i];
+        }
+        floatBiases = new float[biases.length];
+        for (int j = 0; j < biases.length; j++) {
+            floatBiases[j] = (float) biases[j];
+        }
+        weights = null;
+        biases = null;
+        refreshSparseWeights();
+    }
+
+    /**
+     * Converts this layer's parameters to 64-bit double storage and drops the float arrays.
+     * Does nothing if the layer already stores doubles.
+     */
+    public void toDouble() {
+        if (!isFloat()) return;
+        weights = new double[floatWeights.length];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = floatWeights[i];
+        }
+        biases = new double[floatBiases.length];
+        for (int j = 0; j < biases.length; j++) {
+            biases[j] = floatBiases[j];
+        }
+        floatWeights = null;
+        floatBiases = null;
+        refreshSparseWeights();
+    }
+
+    /**
+     * Rebuilds the neuron view if needed and copies the packed biases into it.
+     * Call this after writing to {@link #biases} directly if code still reads {@code Neuron.bias}.
+     */
+    public void refreshNeurons() {
+        int count = size();
+        if (neurons == null || neurons.size() != count) {
+            buildNeuronView(count);
+        }
+        for (int j = 0; j < count; j++) {
+            neurons.get(j).bias = bias(j);
+        }
+    }
+
+    // Creates one neuron per row of the packed weights, reading and writing through to them
+    private void buildNeuronView(int count) {
+        neurons = new ArrayList<>(count);
+        for (int j = 0; j < count; j++) {
+            Neuron neuron = new Neuron();
+            neuron.weights = new RowView(this, j);
+            neurons.add(neuron);
+        }
+    }
+
+    /**
+     * Copies the neuron view back into packed storage.
+     * Needed only when neuron weight lists were replaced (for example
+     * {@code neuron.weights = new ArrayList<>()}) or neuron biases were edited by hand.
+     * The fan-in is taken from the first neuron. The layer keeps its storage precision.
+     */
+    public void pack() {
+        boolean wasFloat = isFloat();
+        int count = neurons.size();
+        int newFanIn = count == 0 ? 0 : neurons.getFirst().weights.size();
+        double[] newWeights = new double[count * newFanIn];
+        double[] newBiases = new double[count];
+        for (int j = 0; j < count; j++) {
+            Neuron neuron = neurons.get(j);
+            if (neuron.weights.size() != newFanIn) {
+                throw new IllegalStateException("Neuron " + j + " has " + neuron.weights.size() +
+                        " weights, expected " + newFanIn);
+            }
+            for (int k = 0; k < newFanIn; k++) {
+                newWeights[j * newFanIn + k] = neuron.weights.get(k);
+            }
+            newBiases[j] = neuron.bias;
+        }
+        fanIn = newFanIn;
+        weights = newWeights;
+        biases = newBiases;
+        floatWeights = null;
+        floatBiases = null;
+        if (wasFloat) {
+            toFloat();
+        }
+        for (int j = 0; j < count; j++) {
+            neurons.get(j).weights = new RowView(this, j);
+        }
+        if (isSparse()) {
+            // The shape or the zeros may have changed, so index the non-zeros again
+            sparsify();
+        }
+    }
+
+    /**
+     * Checks whether every neuron in the view still reads through to packed storage.
+     *
+     * @return false if a neuron's weights list was replaced and {@link #pack()} has not been called
+     */
+    public boolean isPacked() {
+        if (neurons == null || neurons.size() != size()) return false;
+        for (int j = 0; j < neurons.size(); j++) {
+            if (!(neurons.get(j).weights instanceof RowView row) || row.layer != this || row.row != j) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A list view over one row of the packed weight matrix.
+     */
+    private static final class RowView extends AbstractList<Double> implements RandomAccess {
+        private final Layer layer;
+        private final int row;
+
+        private RowView(Layer layer, int row) {
+            this.layer = layer;
+            this.row = row;
+        }
+
+        @Override
+        public Double get(int index) {
+            if (index < 0 || index >= layer.fanIn) throw new IndexOutOfBoundsException(index);
+            return layer.weight(row * layer.fanIn + index);
+        }
+
+        /**
+         * Writes one weight. On a pruned layer only the weights in the CSR index can be written,
+         * and their CSR copy is updated in place; pruned weights can only be set to zero, so a
+         * write never changes the index. Call {@link Layer#densify()} first to revive them.
+         *
+         * @throws IllegalArgumentException if a pruned weight would become non-zero
+         */
+        @Override
+        public Double set(int index, Double element) {
+            if (index < 0 || index >= layer.fanIn) throw new IndexOutOfBoundsException(index);
+            int i = row * layer.fanIn + index;
+            double old = layer.weight(i);
+            int p = -1;
+            if (layer.isSparse()) {
+                p = Arrays.binarySearch(layer.sparseColumns, layer.sparseRowStarts[row],
+                        layer.sparseRowStarts[row + 1], index);
+                if (p < 0) {
+                    if (element == 0) return old;
+                    throw new IllegalArgumentException("Weight " + index + " of neuron " + row +
+                            " was pruned; densify the layer before giving it a value");
+                }
+            }
+            if (layer.weights != null) {
+                layer.weights[i] = element;
+                if (p >= 0) layer.sparseWeights[p] = element;
+            } else {
+                layer.floatWeights[i] = element.floatValue();
+                if (p >= 0) layer.floatSparseWeights[p] = element.floatValue();
+            }
+            return old;
+        }
+
+        @Override
+        public int size() {
+            return layer.fanIn;
+        }
     }
 }
 
@@ -53,5 +463,7 @@ public class Layer {
 //This is a single layer of a model. All layers, save the first one, will
 //be an instance of this. Also note that to have each layer have its own activation function
 //is deprecated, so I intend to take out the activationFunction value eventually.
+//The weights used to live inside of each neuron as an ArrayList<Double>, but that boxed every
+//single weight, so now they are packed into one big array and the neurons just look into it.
 
 //Equinox Electronic
\ No newline at end of file
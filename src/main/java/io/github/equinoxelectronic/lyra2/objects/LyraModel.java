@@ -1,11 +1,18 @@
 package io.github.equinoxelectronic.lyra2.objects;
 
 import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.api.InferenceSession;
 import io.github.equinoxelectronic.lyra2.api.LyraModelBuilder;
+import io.github.equinoxelectronic.lyra2.api.utility.PredictionCache;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.processing.DatatypeConversion;
+import io.github.equinoxelectronic.lyra2.processing.Pruning;
+import io.github.equinoxelectronic.lyra2.processing.Quantizer;
 import io.github.equinoxelectronic.lyra2.processing.lyraFile.Loading;
 import io.github.equinoxelectronic.lyra2.processing.lyraFile.Saving;
 
 import java.util.ArrayList;
+import java.util.WeakHashMap;
 
 /**
  * Represents a neural network model in the Lyra2 framework.
@@ -57,6 +64,30 @@ public class LyraModel {
      */
     public Enums.activationFunctions activationFunction;
 
+    /**
+     * Storage precision of the weights and activations.
+     * Null is treated as DOUBLE for models created before this setting existed.
+     */
+    public Enums.precisions precision = Enums.precisions.DOUBLE;
+
+    // Bumped whenever the weights change, so caches built from them know to rebuild
+    private transient volatile long revision;
+
+    // First-layer lookup table settings; 0 bits means disabled
+    private transient int chunkTableBits;
+    private transient ChunkTable chunkTable;
+    private transient long chunkTableRevision = -1;
+
+    // Outputs over the whole input domain, valid while the revision is unchanged
+    private transient InputTable inputTable;
+    private transient long inputTableRevision = -1;
+
+    // Optional cache in front of Running.feed; null when disabled
+    private transient volatile PredictionCache predictionCache;
+
+    // One session per thread that has run this model, dropped when its thread is gone
+    private transient WeakHashMap<Thread, InferenceSession> sessions;
+
     /**
      * Creates a new model builder for configuring this model.
      *
@@ -66,19 +97,260 @@ public class LyraModel {
         return new LyraModelBuilder();
     }
 
+    /**
+     * Returns the storage precision of this model.
+     *
+     * @return FLOAT or DOUBLE
+     */
+    public Enums.precisions getPrecision() {
+        return precision == null ? Enums.precisions.DOUBLE : precision;
+    }
+
+    /**
+     * Returns the revision of this model's weights. It changes every time the model is trained,
+     * reloaded or converted, so anything derived from the weights can tell when it is stale.
+     *
+     * @return The current revision
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Marks the weights as changed. Training, loading and precision changes call this already;
+     * call it yourself after editing weights or biases by hand.
+     */
+    public synchronized void markModified() {
+        revision++;
+    }
+
+    /**
+     * Turns on the first-layer chunk table for typed binary inputs, or turns it off with 0.
+     * With 8-bit chunks a 32-bit input costs 4 table rows per neuron instead of 32 multiply-adds,
+     * for {@code 4 * 256 * neurons} doubles of memory. Each extra bit of chunk width doubles the memory.
+     * The table is built the first time it is needed and again after every change to the weights.
+     *
+     * @param bits Bits per chunk, from 1 to {@link ChunkTable#MAX_CHUNK_BITS}, or 0 to disable
+     * @throws io.github.equinoxelectronic.lyra2.exceptions.LyraError if the width is out of range
+     * @see ChunkTable#estimateBytes(int, int, int)
+     */
+    public synchronized void setChunkTableBits(int bits) {
+        if (bits < 0 || bits > ChunkTable.MAX_CHUNK_BITS) {
+            throw new LyraError("Chunk width must be between 0 and " + ChunkTable.MAX_CHUNK_BITS + " bits, got " + bits);
+        }
+        chunkTableBits = bits;
+        chunkTable = null;
+        chunkTableRevision = -1;
+    }
+
+    /**
+     * Returns the configured chunk table width.
+     *
+     * @return Bits per chunk, or 0 if the chunk table is disabled
+     */
+    public int getChunkTableBits() {
+        return chunkTableBits;
+    }
+
+    /**
+     * Returns the first-layer chunk table for the current weights, building it if it is missing or stale.
+     *
+     * @return The table, or null if it is disabled or the model does not take a typed binary input
+     *         (RAW and embedding inputs have no table)
+     */
+    public synchronized ChunkTable getChunkTable() {
+        if (chunkTableBits == 0 || frontLayer == null || layers == null || layers.isEmpty()) {
+            return null;
+        }
+        if (chunkTable != null && chunkTableRevision == revision) {
+            return chunkTable;
+        }
+        int width = frontLayer.neurons.size();
+        if (frontLayer.inputType == Enums.IOType.RAW || frontLayer instanceof EmbeddingLayer || width < 1 || width > 64 || layers.getFirst().fanIn != width) {
+            return null;
+        }
+        chunkTableRevision = revision;
+        chunkTable = new ChunkTable(layers.getFirst(), chunkTableBits);
+        return chunkTable;
+    }
+
+    /**
+     * Checks whether an input can be fed to this model: a value of its input type, or a category ID
+     * or {@code int[]} of IDs for a model with an {@link EmbeddingLayer}.
+     *
+     * @param input The input to check
+     * @return true if the input fits the model
+     */
+    public boolean acceptsInput(Object input) {
+        if (frontLayer instanceof EmbeddingLayer embedding) {
+            return embedding.isValidInput(input);
+        }
+        return frontLayer != null && DatatypeConversion.isValidDataType(frontLayer.inputType, input);
+    }
+
+    /**
+     * Runs this model over every possible input and keeps the outputs, so that {@link
+     * io.github.equinoxelectronic.lyra2.api.Running#feed(LyraModel, Object)} becomes a single array lookup.
+     * Only BOOLEAN, BYTE, CHAR and SHORT inputs can be tabulated. The table is dropped as soon as the
+     * weights change, and is saved beside the model file by {@link #save(String)}.
+     *
+     * @return The table
+     * @throws LyraError if the input type is too large to tabulate
+     * @throws io.github.equinoxelectronic.lyra2.exceptions.InvalidModelError if the model is invalid
+     */
+    public InputTable tabulate() {
+        long builtAt = revision;
+        InputTable table = InputTable.build(this);
+        synchronized (this) {
+            // Training during the build would make the table stale before it is even stored
+            if (revision == builtAt) {
+                inputTable = table;
+                inputTableRevision = builtAt;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns the input table for the current weights.
+     *
+     * @return The table, or null if the model has not been tabulated since its weights last changed
+     */
+    public synchronized InputTable getInputTable() {
+        if (inputTable != null && inputTableRevision != revision) {
+            inputTable = null;
+        }
+        return inputTable;
+    }
+
+    /**
+     * Attaches a previously built table, for example one loaded from a file.
+     *
+     * @param table The table to use, or null to drop the current one
+     * @throws LyraError if the table was computed from different weights
+     */
+    public synchronized void setInputTable(InputTable table) {
+        if (table != null && table.getFingerprint() != InputTable.fingerprint(this)) {
+            throw new LyraError("ERROR, THIS INPUT TABLE WAS COMPUTED FROM DIFFERENT WEIGHTS THAN MODEL " + modelID + "!");
+        }
+        inputTable = table;
+        inputTableRevision = revision;
+    }
+
+    /**
+     * Puts a bounded LRU cache of predictions in front of {@link
+     * io.github.equinoxelectronic.lyra2.api.Running#feed(LyraModel, Object)}, or removes it with 0.
+     * Repeated inputs are then answered without running the model. The cache empties itself whenever
+     * the weights change, so it never serves a prediction of an older version of the model.
+     *
+     * @param maxEntries The most predictions to keep, or 0 to disable the cache
+     * @throws LyraError if maxEntries is negative
+     */
+    public void setPredictionCacheSize(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new LyraError("Prediction cache size must not be negative, got " + maxEntries);
+        }
+        predictionCache = maxEntries == 0 ? null : new PredictionCache(this, maxEntries);
+    }
+
+    /**
+     * Returns the prediction cache, for reading its hit, miss and eviction counters.
+     *
+     * @return The cache, or null if it is disabled
+     */
+    public PredictionCache getPredictionCache() {
+        return predictionCache;
+    }
+
+    /**
+     * Returns the calling thread's inference session for this model, creating it the first time.
+     * The sessions are held by the model, so they are collected together with it, and a thread
+     * that switches between several models keeps a session for each of them.
+     *
+     * @return A session owned by the calling thread
+     * @throws io.github.equinoxelectronic.lyra2.exceptions.InvalidModelError if the model is invalid
+     */
+    public synchronized InferenceSession session() {
+        if (sessions == null) {
+            sessions = new WeakHashMap<>();
+        }
+        return sessions.computeIfAbsent(Thread.currentThread(), thread -> new InferenceSession(this));
+    }
+
+    /**
+     * Converts every layer of this model to the given storage precision.
+     * Converting to FLOAT rounds the weights to the nearest 32-bit value.
+     *
+     * @param newPrecision The precision to store the weights in
+     */
+    public void setPrecision(Enums.precisions newPrecision) {
+        for (Layer layer : layers) {
+            if (newPrecision == Enums.precisions.FLOAT) {
+                layer.toFloat();
+            } else {
+                layer.toDouble();
+            }
+            layer.refreshNeurons();
+        }
+        precision = newPrecision;
+        markModified();
+    }
+
+    /**
+     * Validates this model once and returns an immutable executable copy of it.
+     * The compiled copy skips all validation on the hot path; compile again after training.
+     *
+     * @return The compiled model
+     * @throws io.github.equinoxelectronic.lyra2.exceptions.InvalidModelError if the model is invalid
+     */
+    public CompiledModel compile() {
+        return new CompiledModel(this);
+    }
+
+    /**
+     * Creates an int8 inference copy of this model with one weight scale per neuron.
+     * This model is left unchanged.
+     *
+     * @param calibration Representative input samples used to calibrate activation ranges
+     * @return The quantized model
+     * @see Quantizer#quantize(LyraModel, DataSet, Enums.quantizationScales)
+     */
+    public QuantizedModel quantize(DataSet calibration) {
+        return Quantizer.quantize(this, calibration);
+    }
+
+    /**
+     * Sets the smallest weights of every layer to zero and runs the pruned layers as sparse layers.
+     * Fine-tune afterwards with a {@link io.github.equinoxelectronic.lyra2.api.Trainer}; the pruned
+     * weights stay at zero.
+     *
+     * @param sparsity Fraction of each layer's weights to remove, from 0 to 1 (exclusive)
+     * @return The fraction of weights that are zero afterwards
+     * @see Pruning#prune(LyraModel, double, Enums.pruningScopes)
+     */
+    public double prune(double sparsity) {
+        return Pruning.prune(this, sparsity);
+    }
+
     /**
      * Saves the model to a file in Lyra format.
      * Persists all model components and configuration.
+     * If the model has a current {@link #tabulate() input table}, it is saved beside the model file.
      *
      * @param filepath Path where the model should be saved
      */
     public void save(String filepath) {
         Saving.saveModel(filepath, this);
+        InputTable table = getInputTable();
+        if (table != null) {
+            Saving.saveInputTable(filepath, modelID, table);
+        }
     }
 
     /**
      * Loads a model from a Lyra format file.
-     * Updates all current model components with loaded data.
+     * Updates all current model components with loaded data, and picks up an input table
+     * saved beside the file if it still matches the weights.
      *
      * @param filepath Path to the model file to load
      */
@@ -92,6 +364,9 @@ public class LyraModel {
         this.lyraVersion = loaded.lyraVersion;
         this.metadata = loaded.metadata;
         this.activationFunction = loaded.activationFunction;
+        this.precision = loaded.precision;
+        markModified();
+        setInputTable(loaded.getInputTable());
     }
 }
 
@@ -1,6 +1,7 @@
 package io.github.equinoxelectronic.lyra2.objects;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a single neuron in a neural network.
@@ -28,8 +29,10 @@ public class Neuron {
      * Connection weights to neurons in the previous layer.
      * The size of this list matches the number of neurons in the previous layer.
      * Each weight corresponds to a connection from a neuron in the previous layer.
+     * For neurons that belong to a {@link Layer}, this list is a view over the layer's
+     * packed weight array.
      */
-    public ArrayList<Double> weights;
+    public List<Double> weights;
 
     /**
      * Creates a new neuron with default initialization.
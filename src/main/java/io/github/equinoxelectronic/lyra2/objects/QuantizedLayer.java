@@ -0,0 +1,117 @@
+package io.github.equinoxelectronic.lyra2.objects;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.processing.ActivationMethods;
+
+/**
+ * A layer of an int8 quantized model.
+ * Weights are stored as signed bytes in row-major order (neuron × fan-in), and every
+ * neuron's real weights are recovered as {@code weights[j * fanIn + k] * weightScales[j]}.
+ * Layer inputs are quantized to int8 with {@link #inputScale}, the products are summed
+ * in an int32 accumulator together with the int32 bias, and the sum is rescaled to a
+ * real value once per neuron before the activation function.
+ */
+public class QuantizedLayer {
+    /**
+     * The number of inputs each neuron in this layer receives.
+     */
+    public int fanIn;
+
+    /**
+     * Quantized weights in row-major order, in the range [-127, 127].
+     */
+    public byte[] weights;
+
+    /**
+     * Weight scale factor of each neuron. PER_LAYER quantized layers repeat the same value.
+     */
+    public float[] weightScales;
+
+    /**
+     * Scale factor that maps this layer's real inputs onto [-127, 127], found during calibration.
+     */
+    public float inputScale;
+
+    /**
+     * Biases in int32 accumulator units, i.e. divided by {@code weightScales[j] * inputScale}.
+     */
+    public int[] biases;
+
+    /**
+     * The activation function applied to this layer's outputs.
+     */
+    public Enums.activationFunctions activationFunction;
+
+    /**
+     * Creates an empty quantized layer. All weights, scales and biases start at zero.
+     *
+     * @param neuronsCount The number of neurons in this layer
+     * @param fanIn The number of inputs per neuron
+     * @param activationFunction The activation function for this layer
+     */
+    public QuantizedLayer(int neuronsCount, int fanIn, Enums.activationFunctions activationFunction) {
+        this.fanIn = fanIn;
+        this.weights = new byte[neuronsCount * fanIn];
+        this.weightScales = new float[neuronsCount];
+        this.biases = new int[neuronsCount];
+        this.activationFunction = activationFunction;
+    }
+
+    /**
+     * Returns the number of neurons in this layer.
+     *
+     * @return The neuron count
+     */
+    public int size() {
+        return biases.length;
+    }
+
+    /**
+     * Quantizes a real value to int8 with the given scale, rounding to nearest and clamping to [-127, 127].
+     *
+     * @param value The real value
+     * @param scale The scale factor (real units per step)
+     * @return The quantized value
+     */
+    public static byte quantize(double value, float scale) {
+        if (scale == 0) return 0;
+        long q = Math.round(value / scale);
+        return (byte) Math.max(-127, Math.min(127, q));
+    }
+
+    /**
+     * Runs this layer over real inputs.
+     *
+     * @param inputs Real activations of the previous layer
+     * @param quantizedInputs Scratch buffer of length {@link #fanIn}
+     * @param outputs Buffer that receives this layer's real activations
+     */
+    public void feed(double[] inputs, byte[] quantizedInputs, double[] outputs) {
+        for (int k = 0; k < fanIn; k++) {
+            quantizedInputs[k] = quantize(inputs[k], inputScale);
+        }
+        for (int j = 0; j < outputs.length; j++) {
+            int acc = biases[j];
+            int row = j * fanIn;
+            for (int k = 0; k < fanIn; k++) {
+                acc += weights[row + k] * quantizedInputs[k];
+            }
+            outputs[j] = ActivationMethods.activate(acc * ((double) weightScales[j] * inputScale), activationFunction);
+        }
+    }
+
+    /**
+     * Returns the memory taken by this layer's parameters.
+     *
+     * @return Size of the weights, scales and biases in bytes
+     */
+    public long parameterBytes() {
+        return weights.length + 4L * weightScales.length + 4L * biases.length + 4;
+    }
+}
+
+
+//One layer of an int8 model. A weight here is one byte instead of the eight a double takes,
+//and the math inside a neuron is all plain ints until the very end.
+
+//Equinox Electronic
@@ -0,0 +1,180 @@
+package io.github.equinoxelectronic.lyra2.objects;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.processing.DatatypeConversion;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Loading;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Saving;
+
+import java.util.ArrayList;
+
+/**
+ * An int8 inference-only version of a trained {@link LyraModel}, produced by
+ * {@link io.github.equinoxelectronic.lyra2.processing.Quantizer}.
+ * It cannot be trained; quantize the model again after retraining it.
+ *
+ * A quantized model is read-only once built, so any number of threads may feed it at once.
+ */
+public class QuantizedModel {
+    /**
+     * Identifier of the model this was quantized from.
+     */
+    public String modelID;
+
+    /**
+     * Name of the model's creator or maintainer.
+     */
+    public String modelAuthor;
+
+    /**
+     * Optional metadata for storing additional model information.
+     */
+    public String metadata;
+
+    /**
+     * Version of Lyra framework used to create the model.
+     */
+    public String lyraVersion;
+
+    /**
+     * The input layer, carrying the input size and type.
+     */
+    public FrontLayer frontLayer;
+
+    /**
+     * Expected data type for model outputs.
+     */
+    public Enums.IOType outputType;
+
+    /**
+     * Global activation function of the source model.
+     */
+    public Enums.activationFunctions activationFunction;
+
+    /**
+     * Whether weight scales were chosen per layer or per neuron.
+     */
+    public Enums.quantizationScales scales;
+
+    /**
+     * The quantized hidden and output layers.
+     */
+    public ArrayList<QuantizedLayer> layers;
+
+    /**
+     * Runs a forward pass over binary input data.
+     *
+     * @param binaryData Input values, one per input neuron
+     * @return The output layer activations
+     * @throws LyraError if the input has the wrong size
+     */
+    public double[] feedForward(double[] binaryData) {
+        if (binaryData.length != frontLayer.neurons.size()) {
+            throw new LyraError("ERROR, MODEL " + modelID + " TAKES " + frontLayer.neurons.size() +
+                    " INPUT VALUES, BUT RECEIVED " + binaryData.length + "!");
+        }
+        double[] prev = binaryData;
+        for (QuantizedLayer layer : layers) {
+            double[] out = new double[layer.size()];
+            layer.feed(prev, new byte[layer.fanIn], out);
+            prev = out;
+        }
+        return prev;
+    }
+
+    /**
+     * Runs a forward pass over binary input data.
+     *
+     * @param binaryData Input values, one per input neuron
+     * @return The output layer activations
+     * @throws LyraError if the input has the wrong size
+     */
+    public ArrayList<Double> feedForward(ArrayList<Double> binaryData) {
+        double[] input = new double[binaryData.size()];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = binaryData.get(i);
+        }
+        double[] output = feedForward(input);
+        ArrayList<Double> result = new ArrayList<>(output.length);
+        for (double value : output) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    /**
+     * Feeds a typed input through the model and returns the typed prediction,
+     * in the same way as {@link io.github.equinoxelectronic.lyra2.api.Running#feed(LyraModel, Object)}.
+     *
+     * @param input The input data (must match the model's input type)
+     * @return The model's output, converted to the model's output type
+     * @throws LyraError if the input type is wrong or a conversion fails
+     */
+    public Object feed(Object input) {
+        if (!DatatypeConversion.isValidDataType(frontLayer.inputType, input)) {
+            throw new LyraError("ERROR, MODEL " + modelID + " TAKES IN A " +
+                    frontLayer.inputType.name() + ", BUT RECEIVED A " +
+                    (input == null ? "null" : input.getClass().getSimpleName()) + " INSTEAD!");
+        }
+
+        ArrayList<Double> output;
+        try {
+            output = feedForward(DatatypeConversion.convertToBinaryArray(frontLayer.inputType, input));
+        } catch (LyraWrongDatatypeException e) {
+            throw new LyraError("COULD NOT CONVERT DATATYPE FOR FEEDING!" + e.getMessage());
+        }
+
+        try {
+            return DatatypeConversion.convertFromBinaryArray(outputType, output);
+        } catch (LyraWrongDatatypeException e) {
+            throw new LyraError("ERROR, THERE WAS AN ISSUE CONVERTING THE BINARY OUTPUT TO THE DESIRED OUTPUT TYPE!" + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the memory taken by the quantized parameters.
+     *
+     * @return Size of all weights, scales and biases in bytes
+     */
+    public long parameterBytes() {
+        long bytes = 0;
+        for (QuantizedLayer layer : layers) {
+            bytes += layer.parameterBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Saves the model to a file in the quantized Lyra format.
+     *
+     * @param filepath Path where the model should be saved
+     */
+    public void save(String filepath) {
+        Saving.saveQuantizedModel(filepath, this);
+    }
+
+    /**
+     * Loads a quantized model from a file, replacing all components of this one.
+     *
+     * @param filepath Path to the model file to load
+     */
+    public void load(String filepath) {
+        QuantizedModel loaded = Loading.loadQuantizedModel(filepath);
+        this.modelID = loaded.modelID;
+        this.modelAuthor = loaded.modelAuthor;
+        this.metadata = loaded.metadata;
+        this.lyraVersion = loaded.lyraVersion;
+        this.frontLayer = loaded.frontLayer;
+        this.outputType = loaded.outputType;
+        this.activationFunction = loaded.activationFunction;
+        this.scales = loaded.scales;
+        this.layers = loaded.layers;
+    }
+}
+
+
+//This is the int8 version of a model. It is only good for running, not training, but it is a lot smaller
+//and a lot more of it fits in the cache.
+
+//Equinox Electronic
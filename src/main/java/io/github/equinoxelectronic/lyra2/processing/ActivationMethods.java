@@ -1,6 +1,8 @@
 package io.github.equinoxelectronic.lyra2.processing;
 
 import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.processing.kernels.Kernels;
+import io.github.equinoxelectronic.lyra2.processing.kernels.MathKernels;
 
 /**
  * Provides implementations of common neural network activation functions and their derivatives.
@@ -41,6 +43,63 @@ public class ActivationMethods {
         };
     }
 
+    /**
+     * Applies the specified activation function in place to a range of values.
+     * Runs on the SIMD kernels when the Vector API is enabled.
+     *
+     * @param values The values to activate
+     * @param from First index, inclusive
+     * @param to Last index, exclusive
+     * @param function The activation function to apply
+     */
+    public static void activate(double[] values, int from, int to, Enums.activationFunctions function) {
+        Kernels.get().activate(values, from, to, function);
+    }
+
+    /**
+     * An activation function already resolved to its implementation, applied in place to a range of values.
+     */
+    @FunctionalInterface
+    public interface ArrayActivation {
+        /**
+         * Activates values[from..to) in place.
+         *
+         * @param values The values to activate
+         * @param from First index, inclusive
+         * @param to Last index, exclusive
+         */
+        void apply(double[] values, int from, int to);
+    }
+
+    /**
+     * Resolves an activation function once so that callers on a hot path do not pay for
+     * the enum dispatch on every value. When the SIMD kernels are active the result hands the
+     * whole range to them, which picks the lane operation once per call.
+     *
+     * @param function The activation function to resolve
+     * @return The resolved implementation
+     */
+    public static ArrayActivation resolve(Enums.activationFunctions function) {
+        if (Kernels.isVectorized()) {
+            MathKernels kernels = Kernels.get();
+            return (values, from, to) -> kernels.activate(values, from, to, function);
+        }
+        return switch (function) {
+            case SIGMOID -> (values, from, to) -> {
+                for (int i = from; i < to; i++) values[i] = 1.0 / (1.0 + Math.exp(-values[i]));
+            };
+            case TANH -> (values, from, to) -> {
+                for (int i = from; i < to; i++) values[i] = Math.tanh(values[i]);
+            };
+            case RELU -> (values, from, to) -> {
+                for (int i = from; i < to; i++) values[i] = Math.max(0, values[i]);
+            };
+            case LEAKY_RELU -> (values, from, to) -> {
+                for (int i = from; i < to; i++) values[i] = values[i] > 0 ? values[i] : 0.01 * values[i];
+            };
+        };
+    }
+
     /**
      * Computes the derivative of the specified activation function at the given point.
      * These derivatives are essential for backpropagation during network training.
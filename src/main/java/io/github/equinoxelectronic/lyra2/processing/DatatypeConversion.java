@@ -109,6 +109,108 @@ public class DatatypeConversion {
         };
     }
 
+    /**
+     * Converts a value to its bits packed into a single long, without building a list.
+     * The layout matches {@link #convertToBinaryArray}: input neuron i holds bit
+     * {@code getBitCount(type) - 1 - i} of the result, and every higher bit is zero.
+     *
+     * @param inputType The type of input being converted (anything but RAW)
+     * @param input The value to convert
+     * @return The packed bits
+     * @throws LyraWrongDatatypeException if the input does not match the type, or the type is RAW
+     */
+    public static long convertToBits(Enums.IOType inputType, Object input) throws LyraWrongDatatypeException {
+        if (!isValidDataType(inputType, input)) {
+            throw new LyraWrongDatatypeException("Invalid input type or null input");
+        }
+
+        return switch (inputType) {
+            case INTEGER -> (Integer) input & 0xFFFFFFFFL;
+            case FLOAT -> Float.floatToIntBits((Float) input) & 0xFFFFFFFFL;
+            case DOUBLE -> Double.doubleToLongBits((Double) input);
+            case LONG -> (Long) input;
+            case CHAR -> (Character) input & 0xFFL;
+            case BYTE -> (Byte) input & 0xFFL;
+            case SHORT -> (Short) input & 0xFFFFL;
+            case BOOLEAN -> (Boolean) input ? 1L : 0L;
+            case RAW -> throw new LyraWrongDatatypeException("RAW inputs cannot be bit-packed");
+        };
+    }
+
+    /**
+     * Lists the input neurons that are 1 in a packed input, in ascending order.
+     *
+     * @param bits Packed input from {@link #convertToBits}
+     * @param width Number of input neurons (the type's bit count)
+     * @param indices Receives the neuron indices; must hold at least {@code Long.bitCount(bits)} entries
+     * @return The number of indices written
+     */
+    public static int bitsToIndices(long bits, int width, int[] indices) {
+        int count = 0;
+        // The most significant used bit is neuron 0
+        long remaining = width == 64 ? bits : bits & ((1L << width) - 1);
+        while (remaining != 0) {
+            int bit = 63 - Long.numberOfLeadingZeros(remaining);
+            indices[count++] = width - 1 - bit;
+            remaining &= ~(1L << bit);
+        }
+        return count;
+    }
+
+    /**
+     * Converts packed bits back to a value, the inverse of {@link #convertToBits}.
+     *
+     * @param type The type to convert to (anything but RAW)
+     * @param bits The packed bits
+     * @return The value of the given type
+     * @throws LyraWrongDatatypeException if the type is RAW
+     */
+    public static Object convertFromBits(Enums.IOType type, long bits) throws LyraWrongDatatypeException {
+        return switch (type) {
+            case INTEGER -> (int) bits;
+            case FLOAT -> Float.intBitsToFloat((int) bits);
+            case DOUBLE -> Double.longBitsToDouble(bits);
+            case LONG -> bits;
+            case CHAR -> (char) (bits & 0xFF);
+            case BYTE -> (byte) bits;
+            case SHORT -> (short) bits;
+            case BOOLEAN -> (bits & 1) != 0;
+            case RAW -> throw new LyraWrongDatatypeException("RAW values cannot be bit-packed");
+        };
+    }
+
+    /**
+     * Packs output values into a long without building a list, reading them exactly the way
+     * {@link #convertFromBinaryArray} does: the first 32 values are rounded, the rest are truncated,
+     * and value 0 ends up in the most significant used bit.
+     *
+     * @param values The output layer activations
+     * @return The packed bits, ready to be narrowed to the output type
+     */
+    public static long packOutputBits(double[] values) {
+        long bits = 0;
+        for (int i = 0; i < values.length; i++) {
+            int bit = i < 32 ? (int) Math.round(values[i]) : (int) values[i];
+            bits = (bits << 1) | bit;
+        }
+        return bits;
+    }
+
+    /**
+     * Copies RAW output values the way {@link #convertFromBinaryArray} returns them, with the
+     * first 32 values rounded, but into an existing array instead of a new list.
+     *
+     * @param values The output layer activations
+     * @param out Receives the output values; must be at least as long as values
+     */
+    public static void copyRawOutput(double[] values, double[] out) {
+        int rounded = Math.min(32, values.length);
+        for (int i = 0; i < rounded; i++) {
+            out[i] = Math.round(values[i]);
+        }
+        System.arraycopy(values, rounded, out, rounded, values.length - rounded);
+    }
+
     /**
      * Converts a binary array back to its original datatype.
      * This is the inverse operation of convertToBinaryArray.
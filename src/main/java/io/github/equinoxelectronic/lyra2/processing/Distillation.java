@@ -0,0 +1,237 @@
+package io.github.equinoxelectronic.lyra2.processing;
+
+import io.github.equinoxelectronic.lyra2.api.InferenceSession;
+import io.github.equinoxelectronic.lyra2.api.utility.MetricsCalculator;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.objects.DataSet;
+import io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+
+/**
+ * Knowledge distillation: training a small student model on the outputs of a large teacher model
+ * instead of the ground-truth labels.
+ *
+ * The teacher is run once over the training inputs with {@link Feeding#feedForwardBatch(LyraModel, double[][])},
+ * a block of samples at a time, and its raw outputs become the student's targets for every epoch.
+ * Set a teacher on a {@link io.github.equinoxelectronic.lyra2.api.Trainer} to use it.
+ */
+public class Distillation {
+    // Samples per teacher batch, so huge data sets are not packed into one giant array
+    private static final int TEACHER_BATCH_SIZE = 1024;
+    // Passes used to time each model in compare
+    private static final int TIMING_ROUNDS = 3;
+
+    /**
+     * Checks that a student can be trained on a teacher's outputs.
+     *
+     * @param teacher The trained teacher model
+     * @param student The student model
+     * @throws LyraError if the models take different inputs or give different outputs
+     */
+    public static void checkCompatible(LyraModel teacher, LyraModel student) {
+        ModelChecker.checkModel(teacher);
+        ModelChecker.checkModel(student);
+        if (teacher.frontLayer.inputType != student.frontLayer.inputType ||
+                (teacher.frontLayer instanceof EmbeddingLayer) != (student.frontLayer instanceof EmbeddingLayer) ||
+                teacher.frontLayer.neurons.size() != student.frontLayer.neurons.size()) {
+            throw new LyraError("The teacher takes " + teacher.frontLayer.neurons.size() + " " +
+                    teacher.frontLayer.inputType + " inputs, but the student takes " +
+                    student.frontLayer.neurons.size() + " " + student.frontLayer.inputType);
+        }
+        if (teacher.outputType != student.outputType ||
+                teacher.layers.getLast().size() != student.layers.getLast().size()) {
+            throw new LyraError("The teacher gives " + teacher.layers.getLast().size() + " " +
+                    teacher.outputType + " outputs, but the student gives " +
+                    student.layers.getLast().size() + " " + student.outputType);
+        }
+    }
+
+    /**
+     * Runs the teacher over every input, in parallel batches.
+     *
+     * @param teacher The trained teacher model
+     * @param inputs Binary input vectors, one per sample
+     * @return The teacher's raw outputs, one per sample
+     * @throws LyraError if an input does not fit the teacher
+     */
+    public static ArrayList<ArrayList<Double>> teacherOutputs(LyraModel teacher, ArrayList<ArrayList<Double>> inputs) {
+        return batchOutputs(teacher, inputs);
+    }
+
+    /**
+     * Compares a student against its teacher over a labelled data set, and times both.
+     *
+     * @param teacher The teacher model
+     * @param student The trained student model
+     * @param dataSet Inputs and wanted outputs to evaluate on
+     * @return The comparison report
+     * @throws LyraError if the data set is empty
+     */
+    public static Report compare(LyraModel teacher, LyraModel student, DataSet dataSet) {
+        if (dataSet == null || dataSet.inputs == null || dataSet.inputs.isEmpty()) {
+            throw new LyraError("The comparison needs at least one sample");
+        }
+        checkCompatible(teacher, student);
+
+        ArrayList<ArrayList<Double>> teacherRows = batchOutputs(teacher, dataSet.inputs);
+        ArrayList<ArrayList<Double>> studentRows = batchOutputs(student, dataSet.inputs);
+
+        Report report = new Report();
+        report.samples = dataSet.inputs.size();
+        report.teacherAccuracy = MetricsCalculator.calculateAccuracy(teacherRows, dataSet.outputs);
+        report.studentAccuracy = MetricsCalculator.calculateAccuracy(studentRows, dataSet.outputs);
+        report.teacherMSE = MetricsCalculator.calculateMSE(teacherRows, dataSet.outputs);
+        report.studentMSE = MetricsCalculator.calculateMSE(studentRows, dataSet.outputs);
+        report.agreement = MetricsCalculator.calculateAccuracy(studentRows, teacherRows);
+        report.teacherNanosPerSample = nanosPerSample(teacher, dataSet.inputs);
+        report.studentNanosPerSample = nanosPerSample(student, dataSet.inputs);
+        report.teacherParameters = parameterCount(teacher);
+        report.studentParameters = parameterCount(student);
+        return report;
+    }
+
+    /**
+     * The result of {@link #compare(LyraModel, LyraModel, DataSet)}.
+     * Accuracy and MSE are computed with {@link MetricsCalculator} against the wanted outputs;
+     * agreement compares the student's raw outputs with the teacher's. Latency is the single-sample
+     * time of an {@link InferenceSession}, the way a deployed model is usually called.
+     */
+    public static class Report {
+        /** Number of samples evaluated */
+        public int samples;
+        /** Accuracy of the teacher */
+        public double teacherAccuracy;
+        /** Accuracy of the student */
+        public double studentAccuracy;
+        /** Mean squared error of the teacher */
+        public double teacherMSE;
+        /** Mean squared error of the student */
+        public double studentMSE;
+        /** Share of outputs where both models are within 0.5 of each other */
+        public double agreement;
+        /** Average time the teacher takes for one sample */
+        public double teacherNanosPerSample;
+        /** Average time the student takes for one sample */
+        public double studentNanosPerSample;
+        /** Weights and biases in the teacher */
+        public long teacherParameters;
+        /** Weights and biases in the student */
+        public long studentParameters;
+
+        /**
+         * Returns how many times faster the student is than the teacher.
+         *
+         * @return Teacher latency divided by student latency
+         */
+        public double speedup() {
+            return teacherNanosPerSample / Math.max(1, studentNanosPerSample);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "Distillation report (%d samples)%n" +
+                    "  accuracy:   %.4f -> %.4f%n" +
+                    "  MSE:        %.6f -> %.6f%n" +
+                    "  agreement:  %.4f%n" +
+                    "  latency:    %.0f -> %.0f ns per sample (%.1fx faster)%n" +
+                    "  parameters: %d -> %d",
+                    samples, teacherAccuracy, studentAccuracy, teacherMSE, studentMSE, agreement,
+                    teacherNanosPerSample, studentNanosPerSample, speedup(),
+                    teacherParameters, studentParameters);
+        }
+    }
+
+    private static ArrayList<ArrayList<Double>> batchOutputs(LyraModel model, ArrayList<ArrayList<Double>> inputs) {
+        if (model.frontLayer instanceof EmbeddingLayer) {
+            return embeddingOutputs(model, inputs);
+        }
+        ArrayList<ArrayList<Double>> outputs = new ArrayList<>(inputs.size());
+        for (int start = 0; start < inputs.size(); start += TEACHER_BATCH_SIZE) {
+            int end = Math.min(inputs.size(), start + TEACHER_BATCH_SIZE);
+            try {
+                outputs.addAll(Feeding.feedForwardBatch(model, new ArrayList<>(inputs.subList(start, end))));
+            } catch (LyraWrongDatatypeException e) {
+                throw new LyraError("The data does not fit model " + model.modelID + "! " + e.getMessage());
+            }
+        }
+        return outputs;
+    }
+
+    // Category ID samples are cheap one by one, so they are spread over the cores sample by sample
+    private static ArrayList<ArrayList<Double>> embeddingOutputs(LyraModel model, ArrayList<ArrayList<Double>> inputs) {
+        ThreadLocal<InferenceSession> sessions = ThreadLocal.withInitial(() -> new InferenceSession(model));
+        double[][] rows = new double[inputs.size()][];
+        IntStream.range(0, rows.length).parallel().forEach(n ->
+                rows[n] = sessions.get().feedForwardEmbedding(categoryIds(inputs.get(n)), inputs.get(n).size()).clone());
+        ArrayList<ArrayList<Double>> outputs = new ArrayList<>(rows.length);
+        for (double[] row : rows) {
+            ArrayList<Double> output = new ArrayList<>(row.length);
+            for (double value : row) {
+                output.add(value);
+            }
+            outputs.add(output);
+        }
+        return outputs;
+    }
+
+    private static int[] categoryIds(ArrayList<Double> sample) {
+        int[] ids = new int[sample.size()];
+        for (int k = 0; k < ids.length; k++) {
+            ids[k] = sample.get(k).intValue();
+        }
+        return ids;
+    }
+
+    // Best of a few passes over the samples, so the first pass can warm the JIT up
+    private static double nanosPerSample(LyraModel model, ArrayList<ArrayList<Double>> inputs) {
+        InferenceSession session = new InferenceSession(model);
+        double[][] rows = new double[inputs.size()][];
+        for (int n = 0; n < rows.length; n++) {
+            ArrayList<Double> input = inputs.get(n);
+            rows[n] = new double[input.size()];
+            for (int k = 0; k < rows[n].length; k++) {
+                rows[n][k] = input.get(k);
+            }
+        }
+
+        boolean embedding = model.frontLayer instanceof EmbeddingLayer;
+        int[][] ids = new int[embedding ? rows.length : 0][];
+        for (int n = 0; n < ids.length; n++) {
+            ids[n] = categoryIds(inputs.get(n));
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < TIMING_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int n = 0; n < rows.length; n++) {
+                if (embedding) {
+                    session.feedForwardEmbedding(ids[n], ids[n].length);
+                } else {
+                    session.feedForward(rows[n]);
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / rows.length;
+    }
+
+    private static long parameterCount(LyraModel model) {
+        long count = 0;
+        for (Layer layer : model.layers) {
+            count += layer.size() * (long) layer.fanIn + layer.size();
+        }
+        return count;
+    }
+}
+
+
+//A big model is usually more accurate, but a small model is a lot faster. This trains the small one to copy
+//the big one, which tends to work better than training the small one on the real answers by itself.
+
+//Equinox Electronic
@@ -3,56 +3,83 @@ package io.github.equinoxelectronic.lyra2.processing;
 import io.github.equinoxelectronic.lyra2.Enums;
 import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
 import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
 import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.lyra2.processing.kernels.Kernels;
+import io.github.equinoxelectronic.lyra2.processing.kernels.MathKernels;
 
-import com.aparapi.Kernel;
-import com.aparapi.Range;
 
 import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Handles forward propagation (inference) in neural networks with parallel processing support.
  * This class implements the feed-forward algorithm for neural network computation,
- * utilizing parallel processing to accelerate neuron calculations within each layer.
+ * splitting large layers into tiles of neurons that run in parallel on the current {@link LyraRuntime}.
  */
 public class Feeding {
 
     /**
      * Thread pool executor for parallel neuron processing.
-     * The pool size is set to the number of available processors for optimal performance.
+     * Mirrors the pool of the runtime set through {@link #startExecutor(Enums.computeDevices)}.
+     *
+     * @deprecated Use {@link #getRuntime()} instead. This field is null while Feeding runs on the shared runtime.
      */
+    @Deprecated
     public static ExecutorService executor;
 
-    // Tracks the selected compute device for feed-forward
-    private static Enums.computeDevices currentDevice = Enums.computeDevices.CPU_MULTI;
+    // The runtime feed-forward work runs on; null means the JVM-wide shared runtime
+    private static LyraRuntime runtime;
 
     /**
-     * Initializes the thread pool executor for parallel processing.
-     * Should be called before performing any feed-forward operations.
+     * Smallest block of samples a batched forward pass hands to one worker.
      */
+    public static final int BATCH_SAMPLE_BLOCK = 64;
+
+    // Tile sizes for batched inference: a 32 × 128 tile of doubles is 32KB, about one L1 data cache
+    private static final int BATCH_NEURON_BLOCK = 32;
+    private static final int BATCH_INPUT_BLOCK = 128;
+
+    /**
+     * Returns the runtime feed-forward work runs on.
+     *
+     * @return The runtime set with {@link #setRuntime(LyraRuntime)}, or the shared runtime
+     */
+    public static LyraRuntime getRuntime() {
+        LyraRuntime current = runtime;
+        return current != null && current.isRunning() ? current : LyraRuntime.getShared();
+    }
+
+    /**
+     * Makes all feed-forward work run on the given runtime.
+     * The caller keeps ownership of the runtime and is responsible for closing it.
+     *
+     * @param newRuntime The runtime to use, or null to go back to the shared runtime
+     */
+    public static void setRuntime(LyraRuntime newRuntime) {
+        runtime = newRuntime;
+        executor = newRuntime == null ? null : newRuntime.executor();
+    }
+
+    /**
+     * Creates a dedicated runtime for the given compute device and makes Feeding use it
+     * until {@link #endExecutor()} is called.
+     *
+     * @param device The compute device to run on
+     * @deprecated Use {@link #setRuntime(LyraRuntime)} with a long-lived runtime, or rely on the shared runtime.
+     */
+    @Deprecated
     public static void startExecutor(Enums.computeDevices device) {
-        currentDevice = device;
-        switch (device) {
-            case CPU_SINGLE:
-                executor = Executors.newSingleThreadExecutor();
-                break;
-            case CPU_MULTI:
-                executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-                break;
-            case GPU:
-                // For GPU mode, Aparapi manages device execution; still keep a small pool if needed
-                executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
-                break;
-            default:
-                executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        }
+        setRuntime(new LyraRuntime(device));
     }
 
-    // Backwards-compatible default: multi-threaded CPU
+    /**
+     * Backwards-compatible default: multi-threaded CPU.
+     *
+     * @deprecated Feeding runs on the shared runtime without any setup.
+     */
+    @Deprecated
     public static void startExecutor() {
         startExecutor(Enums.computeDevices.CPU_MULTI);
     }
@@ -61,7 +88,7 @@ public class Feeding {
      * Performs forward propagation through the neural network.
      * The process includes:
      * 1. Input layer initialization
-     * 2. Layer-by-layer forward propagation with parallel neuron processing
+     * 2. Layer-by-layer forward propagation with tiled parallel neuron processing
      * 3. Output collection from the final layer
      *
      * The computation for each neuron involves:
@@ -78,192 +105,607 @@ public class Feeding {
             throws LyraWrongDatatypeException {
         ModelChecker.checkModel(model);
 
-        if (currentDevice == Enums.computeDevices.GPU) {
+        LyraRuntime runtime = getRuntime();
+        if (runtime.getDevice() == Enums.computeDevices.GPU) {
             return feedForwardGPU(model, binaryData);
         }
+        if (model.getPrecision() == Enums.precisions.FLOAT) {
+            return feedForwardFloat(model, binaryData, runtime);
+        }
 
         // Initialize input layer
-        for (int i = 0; i < model.frontLayer.neurons.size(); i++) {
-            model.frontLayer.neurons.get(i).value = binaryData.get(i);
+        double[] prevLayerValues = new double[model.frontLayer.neurons.size()];
+        for (int i = 0; i < prevLayerValues.length; i++) {
+            prevLayerValues[i] = binaryData.get(i);
+            model.frontLayer.neurons.get(i).value = prevLayerValues[i];
         }
 
-        // Process each layer
-        for (int i = 0; i < model.layers.size(); i++) {
-            final int layerIndex = i;
-            ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
-
-            // Get previous layer values
-            ArrayList<Double> prevLayerValues = getPreviousLayerValues(model, i);
-            final int prevLayerSize = prevLayerValues.size();
+        return feedLayers(model, 0, prevLayerValues, runtime);
+    }
 
-            // Process neurons in parallel
-            for (int j = 0; j < model.layers.get(i).neurons.size(); j++) {
-                final int neuronIndex = j;
-                final ArrayList<Double> finalPrevLayerValues = new ArrayList<>(prevLayerValues);
+    /**
+     * Performs forward propagation for a model with an
+     * {@link io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer}, given the category IDs of the input.
+     * The first layer only adds up the weights of those categories; the rest runs as in {@link #feedForward}.
+     * Like feedForward, the activations are mirrored into the model's neurons, but the front layer's are not.
+     *
+     * @param model The neural network model to process
+     * @param categoryIds The category IDs of the input
+     * @param count Number of valid entries in categoryIds
+     * @return Output values from the final layer
+     * @throws LyraWrongDatatypeException if the model has no embedding layer or an ID is outside its vocabulary
+     */
+    public static ArrayList<Double> feedForwardEmbedding(LyraModel model, int[] categoryIds, int count)
+            throws LyraWrongDatatypeException {
+        ModelChecker.checkModel(model);
+        checkCategoryIds(model, categoryIds, count);
+
+        LyraRuntime runtime = getRuntime();
+        Layer first = model.layers.getFirst();
+        if (model.getPrecision() == Enums.precisions.FLOAT) {
+            float[] values = new float[first.size()];
+            feedLayerSparse(first, categoryIds, count, values);
+            for (int j = 0; j < values.length; j++) {
+                first.neurons.get(j).value = values[j];
+            }
+            return feedLayers(model, 1, values, runtime);
+        }
 
-                CompletableFuture<Void> future = CompletableFuture.runAsync(() ->
-                                processNeuron(model, layerIndex, neuronIndex, finalPrevLayerValues, prevLayerSize),
-                        executor
-                );
+        double[] values = new double[first.size()];
+        feedLayerSparse(first, categoryIds, count, values);
+        for (int j = 0; j < values.length; j++) {
+            first.neurons.get(j).value = values[j];
+        }
+        return feedLayers(model, 1, values, runtime);
+    }
 
-                futures.add(future);
+    // An ID outside the vocabulary would read another neuron's weight row, so every one is checked
+    private static void checkCategoryIds(LyraModel model, int[] categoryIds, int count)
+            throws LyraWrongDatatypeException {
+        if (!(model.frontLayer instanceof EmbeddingLayer)) {
+            throw new LyraWrongDatatypeException("Model " + model.modelID + " does not take category IDs");
+        }
+        if (count < 0 || count > categoryIds.length) {
+            throw new LyraWrongDatatypeException("Count " + count + " does not fit " + categoryIds.length + " category IDs");
+        }
+        int vocabulary = model.frontLayer.neurons.size();
+        for (int a = 0; a < count; a++) {
+            if (categoryIds[a] < 0 || categoryIds[a] >= vocabulary) {
+                throw new LyraWrongDatatypeException("Model " + model.modelID + " has " + vocabulary +
+                        " categories, but received ID " + categoryIds[a]);
             }
+        }
+    }
+
+    // Runs layers [firstLayer, end) from the given activations, mirroring them into the neuron view
+    private static ArrayList<Double> feedLayers(LyraModel model, int firstLayer, double[] prevLayerValues, LyraRuntime runtime) {
+        // Process each layer
+        for (int i = firstLayer; i < model.layers.size(); i++) {
+            final Layer layer = model.layers.get(i);
+            final double[] inputs = prevLayerValues;
+            final double[] outputs = new double[layer.size()];
+
+            // Process neurons in cache-sized tiles; returns once the whole layer is done
+            LayerScheduler.forEachNeuron(runtime, layer, (from, to) -> feedNeurons(layer, inputs, outputs, from, to));
 
-            // Wait for all neurons in current layer to complete
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            // Mirror the activations into the neuron view
+            for (int j = 0; j < outputs.length; j++) {
+                layer.neurons.get(j).value = outputs[j];
+            }
+            prevLayerValues = outputs;
         }
 
         // Collect output values
-        ArrayList<Double> output = new ArrayList<>();
-        for (int i = 0; i < model.layers.getLast().neurons.size(); i++) {
-            output.add(model.layers.getLast().neurons.get(i).value);
+        ArrayList<Double> output = new ArrayList<>(prevLayerValues.length);
+        for (double value : prevLayerValues) {
+            output.add(value);
         }
 
         return output;
     }
 
     /**
-     * Safely shuts down the thread pool executor.
-     * Attempts graceful shutdown first, then forces shutdown if necessary.
+     * The FLOAT precision version of {@link #feedForward}: activations are kept as 32-bit floats.
      */
-    public static void endExecutor() {
-        if (executor != null) {
-            executor.shutdown();
-            try {
-                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
+    private static ArrayList<Double> feedForwardFloat(LyraModel model, ArrayList<Double> binaryData, LyraRuntime runtime) {
+        float[] prevLayerValues = new float[model.frontLayer.neurons.size()];
+        for (int i = 0; i < prevLayerValues.length; i++) {
+            prevLayerValues[i] = binaryData.get(i).floatValue();
+            model.frontLayer.neurons.get(i).value = prevLayerValues[i];
+        }
+
+        return feedLayers(model, 0, prevLayerValues, runtime);
+    }
+
+    // The FLOAT precision version of feedLayers
+    private static ArrayList<Double> feedLayers(LyraModel model, int firstLayer, float[] prevLayerValues, LyraRuntime runtime) {
+        for (int i = firstLayer; i < model.layers.size(); i++) {
+            final Layer layer = model.layers.get(i);
+            final float[] inputs = prevLayerValues;
+            final float[] outputs = new float[layer.size()];
+
+            LayerScheduler.forEachNeuron(runtime, layer, (from, to) -> {
+                for (int j = from; j < to; j++) {
+                    outputs[j] = processNeuron(layer, j, inputs);
                 }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
+            });
+
+            for (int j = 0; j < outputs.length; j++) {
+                layer.neurons.get(j).value = outputs[j];
             }
+            prevLayerValues = outputs;
+        }
+
+        ArrayList<Double> output = new ArrayList<>(prevLayerValues.length);
+        for (float value : prevLayerValues) {
+            output.add((double) value);
         }
+        return output;
     }
 
     /**
-     * Retrieves values from the previous layer for processing.
+     * Performs forward propagation for a whole batch of inputs at once.
+     * Every layer is evaluated as one blocked matrix-matrix product over the batch,
+     * so each tile of weights is loaded into cache once and reused for a block of samples
+     * instead of being streamed again for every sample.
      *
-     * @param model The neural network model
-     * @param currentLayer Index of the current layer
-     * @return List of values from the previous layer
+     * Sample blocks are spread over the runtime's worker pool by the {@link LayerScheduler};
+     * small batches are processed on the calling thread. Unlike {@link #feedForward}, the neuron values of
+     * the model are not touched.
+     *
+     * @param model The neural network model to process
+     * @param inputs One binary input vector per row
+     * @return One output vector per input row
+     * @throws LyraWrongDatatypeException if an input row has the wrong size
      */
-    private static ArrayList<Double> getPreviousLayerValues(LyraModel model, int currentLayer) {
-        ArrayList<Double> prevLayerValues = new ArrayList<>();
-        if (currentLayer == 0) {
-            for (int k = 0; k < model.frontLayer.neurons.size(); k++) {
-                prevLayerValues.add(model.frontLayer.neurons.get(k).value);
+    public static double[][] feedForwardBatch(LyraModel model, double[][] inputs)
+            throws LyraWrongDatatypeException {
+        ModelChecker.checkModel(model);
+
+        LyraRuntime runtime = getRuntime();
+        int rows = inputs.length;
+        int width = model.frontLayer.neurons.size();
+        for (int n = 0; n < rows; n++) {
+            if (inputs[n].length != width) {
+                throw new LyraWrongDatatypeException("Input " + n + " has " + inputs[n].length +
+                        " values, but the model takes " + width);
+            }
+        }
+        if (model.getPrecision() == Enums.precisions.FLOAT) {
+            return feedForwardBatchFloat(model, inputs, runtime);
+        }
+
+        // Pack the batch row-major: sample n occupies [n*width .. n*width+width)
+        double[] activations = new double[rows * width];
+        for (int n = 0; n < rows; n++) {
+            System.arraycopy(inputs[n], 0, activations, n * width, width);
+        }
+
+        for (Layer layer : model.layers) {
+            final double[] in = activations;
+            final double[] out = new double[rows * layer.size()];
+
+            LayerScheduler.forEach(runtime, rows, BATCH_SAMPLE_BLOCK, (long) rows * layer.size() * layer.fanIn,
+                    (rowStart, rowEnd) -> multiplyBlocked(layer, in, out, rowStart, rowEnd));
+            activations = out;
+        }
+
+        int outSize = model.layers.getLast().size();
+        double[][] results = new double[rows][outSize];
+        for (int n = 0; n < rows; n++) {
+            System.arraycopy(activations, n * outSize, results[n], 0, outSize);
+        }
+        return results;
+    }
+
+    /**
+     * The FLOAT precision version of {@link #feedForwardBatch(LyraModel, double[][])}.
+     */
+    private static double[][] feedForwardBatchFloat(LyraModel model, double[][] inputs, LyraRuntime runtime) {
+        int rows = inputs.length;
+        int width = model.frontLayer.neurons.size();
+
+        float[] activations = new float[rows * width];
+        for (int n = 0; n < rows; n++) {
+            for (int k = 0; k < width; k++) {
+                activations[n * width + k] = (float) inputs[n][k];
+            }
+        }
+
+        for (Layer layer : model.layers) {
+            final float[] in = activations;
+            final float[] out = new float[rows * layer.size()];
+
+            LayerScheduler.forEach(runtime, rows, BATCH_SAMPLE_BLOCK, (long) rows * layer.size() * layer.fanIn,
+                    (rowStart, rowEnd) -> multiplyBlocked(layer, in, out, rowStart, rowEnd));
+            activations = out;
+        }
+
+        int outSize = model.layers.getLast().size();
+        double[][] results = new double[rows][outSize];
+        for (int n = 0; n < rows; n++) {
+            for (int j = 0; j < outSize; j++) {
+                results[n][j] = activations[n * outSize + j];
+            }
+        }
+        return results;
+    }
+
+    /**
+     * List-based convenience overload of {@link #feedForwardBatch(LyraModel, double[][])}.
+     *
+     * @param model The neural network model to process
+     * @param inputs Binary input vectors, one per sample
+     * @return Output vectors, one per sample
+     * @throws LyraWrongDatatypeException if an input has the wrong size
+     */
+    public static ArrayList<ArrayList<Double>> feedForwardBatch(LyraModel model, ArrayList<ArrayList<Double>> inputs)
+            throws LyraWrongDatatypeException {
+        double[][] rows = new double[inputs.size()][];
+        for (int n = 0; n < rows.length; n++) {
+            ArrayList<Double> input = inputs.get(n);
+            rows[n] = new double[input.size()];
+            for (int k = 0; k < rows[n].length; k++) {
+                rows[n][k] = input.get(k);
+            }
+        }
+
+        double[][] results = feedForwardBatch(model, rows);
+        ArrayList<ArrayList<Double>> outputs = new ArrayList<>(results.length);
+        for (double[] result : results) {
+            ArrayList<Double> output = new ArrayList<>(result.length);
+            for (double value : result) {
+                output.add(value);
+            }
+            outputs.add(output);
+        }
+        return outputs;
+    }
+
+    /**
+     * Shuts down the runtime created by {@link #startExecutor(Enums.computeDevices)} and
+     * returns Feeding to the shared runtime. Runtimes passed to {@link #setRuntime(LyraRuntime)}
+     * are only released, never shut down, since the caller owns them.
+     *
+     * @deprecated Pair with {@link #startExecutor(Enums.computeDevices)} only.
+     */
+    @Deprecated
+    public static void endExecutor() {
+        LyraRuntime current = runtime;
+        if (current != null && current != LyraRuntime.getShared()) {
+            current.close();
+        }
+        setRuntime(null);
+    }
+
+    /**
+     * Computes every neuron of one layer on the calling thread.
+     * Reads only the layer's packed weights and biases, so any number of threads may
+     * evaluate the same layer at once as long as each passes its own buffers.
+     *
+     * @param layer The layer to evaluate
+     * @param prevLayerValues Activations of the previous layer (length must be the layer's fan-in)
+     * @param outputs Buffer that receives the activations (length must be the layer size)
+     */
+    public static void feedLayer(Layer layer, double[] prevLayerValues, double[] outputs) {
+        feedLayer(layer, prevLayerValues, outputs, 0, outputs.length);
+    }
+
+    /**
+     * Computes neurons [from, to) of one layer on the calling thread, so a layer can be split
+     * over the {@link LayerScheduler} while each tile still runs through the vector kernels.
+     *
+     * @param layer The layer to evaluate
+     * @param prevLayerValues Activations of the previous layer
+     * @param outputs Buffer that receives the activations
+     * @param from First neuron, inclusive
+     * @param to Last neuron, exclusive
+     */
+    public static void feedLayer(Layer layer, double[] prevLayerValues, double[] outputs, int from, int to) {
+        MathKernels kernels = Kernels.get();
+        int fanIn = layer.fanIn;
+        if (layer.isSparse()) {
+            for (int j = from; j < to; j++) {
+                outputs[j] = sparseDot(layer, j, prevLayerValues, 0) + layer.biases[j];
             }
         } else {
-            for (int k = 0; k < model.layers.get(currentLayer - 1).neurons.size(); k++) {
-                prevLayerValues.add(model.layers.get(currentLayer - 1).neurons.get(k).value);
+            for (int j = from; j < to; j++) {
+                outputs[j] = kernels.dot(layer.weights, j * fanIn, prevLayerValues, 0, fanIn) + layer.biases[j];
             }
         }
-        return prevLayerValues;
+        kernels.activate(outputs, from, to, layer.activationFunction);
+    }
+
+    /**
+     * Computes every neuron of a FLOAT precision layer on the calling thread.
+     *
+     * @param layer The layer to evaluate (must store 32-bit parameters)
+     * @param prevLayerValues Activations of the previous layer
+     * @param outputs Buffer that receives the activations
+     */
+    public static void feedLayer(Layer layer, float[] prevLayerValues, float[] outputs) {
+        feedLayer(layer, prevLayerValues, outputs, 0, outputs.length);
+    }
+
+    /**
+     * The FLOAT precision version of {@link #feedLayer(Layer, double[], double[], int, int)}.
+     *
+     * @param layer The layer to evaluate (must store 32-bit parameters)
+     * @param prevLayerValues Activations of the previous layer
+     * @param outputs Buffer that receives the activations
+     * @param from First neuron, inclusive
+     * @param to Last neuron, exclusive
+     */
+    public static void feedLayer(Layer layer, float[] prevLayerValues, float[] outputs, int from, int to) {
+        MathKernels kernels = Kernels.get();
+        int fanIn = layer.fanIn;
+        if (layer.isSparse()) {
+            for (int j = from; j < to; j++) {
+                outputs[j] = sparseDot(layer, j, prevLayerValues, 0) + layer.floatBiases[j];
+            }
+        } else {
+            for (int j = from; j < to; j++) {
+                outputs[j] = kernels.dot(layer.floatWeights, j * fanIn, prevLayerValues, 0, fanIn) + layer.floatBiases[j];
+            }
+        }
+        kernels.activate(outputs, from, to, layer.activationFunction);
+    }
+
+    /**
+     * Computes a layer whose input is binary, given only the inputs that are 1.
+     * Each output is its bias plus the weights of the active inputs, so the work is proportional
+     * to the number of set bits and no multiplications are done.
+     *
+     * @param layer The layer to evaluate (normally the first hidden layer)
+     * @param activeInputs Indices of the inputs that are 1, as from {@link DatatypeConversion#bitsToIndices}
+     * @param activeCount Number of valid entries in activeInputs
+     * @param outputs Buffer that receives the activations
+     */
+    public static void feedLayerSparse(Layer layer, int[] activeInputs, int activeCount, double[] outputs) {
+        int fanIn = layer.fanIn;
+        double[] weights = layer.weights;
+        for (int j = 0; j < outputs.length; j++) {
+            int row = j * fanIn;
+            double sum = layer.biases[j];
+            for (int a = 0; a < activeCount; a++) {
+                sum += weights[row + activeInputs[a]];
+            }
+            outputs[j] = sum;
+        }
+        Kernels.get().activate(outputs, 0, outputs.length, layer.activationFunction);
+    }
+
+    /**
+     * The FLOAT precision version of {@link #feedLayerSparse(Layer, int[], int, double[])}.
+     *
+     * @param layer The layer to evaluate (must store 32-bit parameters)
+     * @param activeInputs Indices of the inputs that are 1
+     * @param activeCount Number of valid entries in activeInputs
+     * @param outputs Buffer that receives the activations
+     */
+    public static void feedLayerSparse(Layer layer, int[] activeInputs, int activeCount, float[] outputs) {
+        int fanIn = layer.fanIn;
+        float[] weights = layer.floatWeights;
+        for (int j = 0; j < outputs.length; j++) {
+            int row = j * fanIn;
+            float sum = layer.floatBiases[j];
+            for (int a = 0; a < activeCount; a++) {
+                sum += weights[row + activeInputs[a]];
+            }
+            outputs[j] = sum;
+        }
+        Kernels.get().activate(outputs, 0, outputs.length, layer.activationFunction);
+    }
+
+    /**
+     * Dot product of one neuron's non-zero weights with an input vector, for pruned layers.
+     *
+     * @param layer A sparse DOUBLE precision layer
+     * @param neuron The neuron index
+     * @param values The input vector
+     * @param offset Where the input vector starts in values
+     * @return The weighted sum without the bias
+     */
+    private static double sparseDot(Layer layer, int neuron, double[] values, int offset) {
+        int[] columns = layer.sparseColumns;
+        double[] weights = layer.sparseWeights;
+        double sum = 0;
+        for (int p = layer.sparseRowStarts[neuron], end = layer.sparseRowStarts[neuron + 1]; p < end; p++) {
+            sum += weights[p] * values[offset + columns[p]];
+        }
+        return sum;
+    }
+
+    /**
+     * The FLOAT precision version of {@link #sparseDot(Layer, int, double[], int)}.
+     */
+    private static float sparseDot(Layer layer, int neuron, float[] values, int offset) {
+        int[] columns = layer.sparseColumns;
+        float[] weights = layer.floatSparseWeights;
+        float sum = 0;
+        for (int p = layer.sparseRowStarts[neuron], end = layer.sparseRowStarts[neuron + 1]; p < end; p++) {
+            sum += weights[p] * values[offset + columns[p]];
+        }
+        return sum;
+    }
+
+    // Computes neurons [from, to) of a DOUBLE precision layer into outputs; training runs its forward pass through this
+    static void feedNeurons(Layer layer, double[] prevLayerValues, double[] outputs, int from, int to) {
+        for (int j = from; j < to; j++) {
+            outputs[j] = processNeuron(layer, j, prevLayerValues);
+        }
     }
 
     /**
      * Processes a single neuron in the network.
-     * Calculates weighted sum, adds bias, and applies activation function.
+     * Calculates weighted sum over the neuron's packed weight row, adds bias,
+     * and applies activation function.
      *
-     * @param model The neural network model
-     * @param layerIndex Current layer index
+     * @param layer The layer containing the neuron
      * @param neuronIndex Current neuron index
      * @param prevLayerValues Values from previous layer
-     * @param prevLayerSize Size of previous layer
+     * @return The activated value of the neuron
      */
-    private static void processNeuron(LyraModel model, int layerIndex, int neuronIndex,
-                                      ArrayList<Double> prevLayerValues, int prevLayerSize) {
-        double value = 0;
-
-        // Calculate weighted sum
-        for (int k = 0; k < prevLayerSize; k++) {
-            value += prevLayerValues.get(k) *
-                    model.layers.get(layerIndex).neurons.get(neuronIndex).weights.get(k);
-        }
+    private static double processNeuron(Layer layer, int neuronIndex, double[] prevLayerValues) {
+        // Calculate weighted sum, over the non-zeros only for pruned layers
+        double value = layer.isSparse()
+                ? sparseDot(layer, neuronIndex, prevLayerValues, 0)
+                : Kernels.get().dot(layer.weights, neuronIndex * layer.fanIn, prevLayerValues, 0, layer.fanIn);
 
         // Add bias and apply activation function
-        value += model.layers.get(layerIndex).neurons.get(neuronIndex).bias;
-        value = ActivationMethods.activate(value,
-                model.layers.get(layerIndex).activationFunction);
-        model.layers.get(layerIndex).neurons.get(neuronIndex).value = value;
+        value += layer.biases[neuronIndex];
+        return ActivationMethods.activate(value, layer.activationFunction);
     }
 
-    //================ GPU forward path using Aparapi ================
-    private static ArrayList<Double> feedForwardGPU(LyraModel model, ArrayList<Double> binaryData) {
-        // set input layer from binaryData
-        for (int i = 0; i < model.frontLayer.neurons.size(); i++) {
-            model.frontLayer.neurons.get(i).value = binaryData.get(i);
-        }
-
-        // process each layer using a kernel that computes one neuron per work-item
-        for (int layerIdx = 0; layerIdx < model.layers.size(); layerIdx++) {
-            final int prevSize = (layerIdx == 0) ? model.frontLayer.neurons.size() : model.layers.get(layerIdx - 1).neurons.size();
-            final int outSize = model.layers.get(layerIdx).neurons.size();
-
-            // build prev activations array
-            float[] prev = new float[prevSize];
-            if (layerIdx == 0) {
-                for (int i = 0; i < prevSize; i++) prev[i] = (float) model.frontLayer.neurons.get(i).value;
-            } else {
-                for (int i = 0; i < prevSize; i++) prev[i] = (float) model.layers.get(layerIdx - 1).neurons.get(i).value;
-            }
+    /**
+     * Processes a single neuron of a FLOAT precision layer.
+     */
+    private static float processNeuron(Layer layer, int neuronIndex, float[] prevLayerValues) {
+        float value = layer.isSparse()
+                ? sparseDot(layer, neuronIndex, prevLayerValues, 0)
+                : Kernels.get().dot(layer.floatWeights, neuronIndex * layer.fanIn, prevLayerValues, 0, layer.fanIn);
+        value += layer.floatBiases[neuronIndex];
+        return (float) ActivationMethods.activate(value, layer.activationFunction);
+    }
 
-            // flatten weights row-major: neuron j has weights at [j*prevSize .. j*prevSize+prevSize)
-            float[] weights = new float[outSize * prevSize];
-            float[] bias = new float[outSize];
-            for (int j = 0; j < outSize; j++) {
-                bias[j] = (float) model.layers.get(layerIdx).neurons.get(j).bias;
-                for (int k = 0; k < prevSize; k++) {
-                    weights[j * prevSize + k] = (float) model.layers.get(layerIdx).neurons.get(j).weights.get(k).doubleValue();
+    /**
+     * Computes one layer for samples [rowStart, rowEnd) of a row-major batch.
+     * The weight matrix is walked in tiles of BATCH_NEURON_BLOCK neurons by BATCH_INPUT_BLOCK
+     * inputs; each tile is applied to every sample of the block before moving on, so it stays
+     * in cache while it is being reused.
+     *
+     * @param layer The layer to evaluate
+     * @param in Previous layer activations, row-major (samples × fan-in)
+     * @param out Output activations, row-major (samples × layer size)
+     * @param rowStart First sample to compute
+     * @param rowEnd One past the last sample to compute
+     */
+    static void multiplyBlocked(Layer layer, double[] in, double[] out, int rowStart, int rowEnd) {
+        final MathKernels kernels = Kernels.get();
+        final int fanIn = layer.fanIn;
+        final int outSize = layer.size();
+        final double[] weights = layer.weights;
+        final double[] biases = layer.biases;
+
+        for (int n = rowStart; n < rowEnd; n++) {
+            System.arraycopy(biases, 0, out, n * outSize, outSize);
+        }
+
+        if (layer.isSparse()) {
+            // Tiling does not help a sparse row; walk each sample's non-zeros directly
+            for (int n = rowStart; n < rowEnd; n++) {
+                for (int j = 0; j < outSize; j++) {
+                    out[n * outSize + j] += sparseDot(layer, j, in, n * fanIn);
                 }
             }
+            kernels.activate(out, rowStart * outSize, rowEnd * outSize, layer.activationFunction);
+            return;
+        }
 
-            final int activationId = mapActivation(model.layers.get(layerIdx).activationFunction);
-            final float[] out = new float[outSize];
+        multiplyBlocked(weights, fanIn, outSize, in, out, rowStart, rowEnd);
+        kernels.activate(out, rowStart * outSize, rowEnd * outSize, layer.activationFunction);
+    }
 
-            Kernel kernel = new Kernel() {
-                @Override public void run() {
-                    int gid = getGlobalId();
-                    float sum = 0f;
-                    for (int k = 0; k < prevSize; k++) {
-                        sum += prev[k] * weights[gid * prevSize + k];
-                    }
-                    sum += bias[gid];
-                    // activation
-                    if (activationId == 0) { // RELU
-                        sum = sum > 0f ? sum : 0f;
-                    } else if (activationId == 1) { // LEAKY_RELU
-                        sum = sum > 0f ? sum : 0.01f * sum;
-                    } else if (activationId == 2) { // TANH
-                        // tanh via sigmoid formula
-                        float ex = (float)exp(-2f * sum);
-                        sum = (2f / (1f + ex)) - 1f;
-                    } else { // default
-                        // identity
+    /**
+     * Adds the weighted sums of a dense weight matrix to samples [rowStart, rowEnd) of a row-major batch,
+     * tiled like {@link #multiplyBlocked(Layer, double[], double[], int, int)}. The caller sets the
+     * biases in {@code out} beforehand and applies the activation afterwards, so this also serves
+     * weights that are not held in a {@link Layer}, like those of a
+     * {@link io.github.equinoxelectronic.lyra2.objects.CompiledModel}.
+     *
+     * @param weights Packed weights, row-major (layer size × fan-in)
+     * @param fanIn Inputs per neuron
+     * @param outSize Neurons in the layer
+     * @param in Previous layer activations, row-major (samples × fan-in)
+     * @param out Accumulated sums, row-major (samples × layer size)
+     * @param rowStart First sample to compute
+     * @param rowEnd One past the last sample to compute
+     */
+    public static void multiplyBlocked(double[] weights, int fanIn, int outSize, double[] in, double[] out,
+                                       int rowStart, int rowEnd) {
+        final MathKernels kernels = Kernels.get();
+        for (int kk = 0; kk < fanIn; kk += BATCH_INPUT_BLOCK) {
+            int kLength = Math.min(fanIn, kk + BATCH_INPUT_BLOCK) - kk;
+            for (int jj = 0; jj < outSize; jj += BATCH_NEURON_BLOCK) {
+                int jEnd = Math.min(outSize, jj + BATCH_NEURON_BLOCK);
+                for (int n = rowStart; n < rowEnd; n++) {
+                    int inOffset = n * fanIn + kk;
+                    int outOffset = n * outSize;
+                    for (int j = jj; j < jEnd; j++) {
+                        out[outOffset + j] += kernels.dot(in, inOffset, weights, j * fanIn + kk, kLength);
                     }
-                    out[gid] = sum;
                 }
-            };
-            kernel.execute(Range.create(outSize));
-            kernel.dispose();
+            }
+        }
+    }
 
-            // write back to model
-            for (int j = 0; j < outSize; j++) {
-                model.layers.get(layerIdx).neurons.get(j).value = (double) out[j];
+    /**
+     * The FLOAT precision version of {@link #multiplyBlocked(Layer, double[], double[], int, int)}.
+     */
+    private static void multiplyBlocked(Layer layer, float[] in, float[] out, int rowStart, int rowEnd) {
+        final MathKernels kernels = Kernels.get();
+        final int fanIn = layer.fanIn;
+        final int outSize = layer.size();
+        final float[] weights = layer.floatWeights;
+        final float[] biases = layer.floatBiases;
+
+        for (int n = rowStart; n < rowEnd; n++) {
+            System.arraycopy(biases, 0, out, n * outSize, outSize);
+        }
+
+        if (layer.isSparse()) {
+            // Tiling does not help a sparse row; walk each sample's non-zeros directly
+            for (int n = rowStart; n < rowEnd; n++) {
+                for (int j = 0; j < outSize; j++) {
+                    out[n * outSize + j] += sparseDot(layer, j, in, n * fanIn);
+                }
             }
+            kernels.activate(out, rowStart * outSize, rowEnd * outSize, layer.activationFunction);
+            return;
         }
 
-        ArrayList<Double> output = new ArrayList<>();
-        for (int i = 0; i < model.layers.getLast().neurons.size(); i++) {
-            output.add(model.layers.getLast().neurons.get(i).value);
+        for (int kk = 0; kk < fanIn; kk += BATCH_INPUT_BLOCK) {
+            int kLength = Math.min(fanIn, kk + BATCH_INPUT_BLOCK) - kk;
+            for (int jj = 0; jj < outSize; jj += BATCH_NEURON_BLOCK) {
+                int jEnd = Math.min(outSize, jj + BATCH_NEURON_BLOCK);
+                for (int n = rowStart; n < rowEnd; n++) {
+                    int inOffset = n * fanIn + kk;
+                    int outOffset = n * outSize;
+                    for (int j = jj; j < jEnd; j++) {
+                        out[outOffset + j] += kernels.dot(in, inOffset, weights, j * fanIn + kk, kLength);
+                    }
+                }
+            }
         }
-        return output;
+
+        kernels.activate(out, rowStart * outSize, rowEnd * outSize, layer.activationFunction);
     }
 
-    private static int mapActivation(Enums.activationFunctions fn) {
-        if (fn == Enums.activationFunctions.RELU) return 0;
-        if (fn == Enums.activationFunctions.LEAKY_RELU) return 1;
-        if (fn == Enums.activationFunctions.TANH) return 2;
-        return -1; // identity fallback
+    //================ GPU forward path using Aparapi ================
+    private static ArrayList<Double> feedForwardGPU(LyraModel model, ArrayList<Double> binaryData) {
+        double[] input = new double[model.frontLayer.neurons.size()];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = binaryData.get(i);
+            model.frontLayer.neurons.get(i).value = input[i];
+        }
+
+        // Weights stay on the device between calls; see GpuForward
+        float[][] activations = GpuForward.feedForward(model, input);
+
+        // write back to model
+        for (int layerIdx = 0; layerIdx < activations.length; layerIdx++) {
+            Layer layer = model.layers.get(layerIdx);
+            for (int j = 0; j < activations[layerIdx].length; j++) {
+                layer.neurons.get(j).value = activations[layerIdx][j];
+            }
+        }
+
+        float[] last = activations[activations.length - 1];
+        ArrayList<Double> output = new ArrayList<>(last.length);
+        for (float value : last) {
+            output.add((double) value);
+        }
+        return output;
     }
 }
 
@@ -0,0 +1,271 @@
+package io.github.equinoxelectronic.lyra2.processing;
+
+import com.aparapi.Kernel;
+import com.aparapi.Range;
+import com.aparapi.device.Device;
+import com.aparapi.device.JavaDevice;
+import com.aparapi.internal.kernel.KernelManager;
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The Aparapi forward pass, with weights kept on the device between calls.
+ *
+ * For every model the weights and biases of all layers are flattened into two float buffers
+ * and uploaded with an explicit {@code put}. They are only refilled when the model's
+ * {@link LyraModel#getRevision() revision} changes, and only reallocated when its shape changes.
+ * One kernel per model is reused for every call and every layer: the layer shape is passed in
+ * scalar fields, and all activations live in one device buffer, so each layer reads the previous
+ * layer's output where it already is. Per call, only the input goes up and the activations come
+ * back down once, after the last layer.
+ *
+ * Without an OpenCL device Aparapi runs the same kernel in its Java thread pool;
+ * {@link #setDevice(Device)} forces a device, for example {@link JavaDevice#THREAD_POOL}, which is
+ * how the path is verified on machines without a GPU.
+ */
+public class GpuForward {
+
+    private static final Map<LyraModel, ModelBuffers> BUFFERS = new WeakHashMap<>();
+    private static Device device;
+
+    /**
+     * Forces an Aparapi device for kernels created from now on.
+     * Pass null to let Aparapi choose ({@link Device#best()}, which falls back to the Java thread pool).
+     * Kernels that already exist keep their device until {@link #release(LyraModel)} is called.
+     *
+     * @param newDevice The device, for example {@link Device#firstGPU()} or {@link JavaDevice#THREAD_POOL}
+     */
+    public static synchronized void setDevice(Device newDevice) {
+        device = newDevice;
+    }
+
+    /**
+     * Runs a forward pass on the device.
+     *
+     * @param model The model to run (already validated by the caller)
+     * @param input Input values, one per input neuron
+     * @return The activations of every layer; index 0 is the first hidden layer
+     */
+    public static float[][] feedForward(LyraModel model, double[] input) {
+        ModelBuffers buffers = buffersFor(model);
+        synchronized (buffers) {
+            return buffers.run(input);
+        }
+    }
+
+    /**
+     * Frees the device buffers and kernel held for a model.
+     *
+     * @param model The model whose device state should be dropped
+     */
+    public static void release(LyraModel model) {
+        ModelBuffers buffers;
+        synchronized (GpuForward.class) {
+            buffers = BUFFERS.remove(model);
+        }
+        if (buffers != null) {
+            synchronized (buffers) {
+                buffers.kernel.dispose();
+            }
+        }
+    }
+
+    private static ModelBuffers buffersFor(LyraModel model) {
+        ModelBuffers stale = null;
+        ModelBuffers buffers;
+        synchronized (GpuForward.class) {
+            buffers = BUFFERS.get(model);
+            if (buffers == null || !buffers.matches(model)) {
+                stale = buffers;
+                buffers = new ModelBuffers(model, device);
+                BUFFERS.put(model, buffers);
+            }
+        }
+        if (buffers.revision != model.getRevision()) {
+            // Same shape, new weights: refill the existing buffers and upload them again
+            synchronized (buffers) {
+                buffers.upload(model);
+            }
+        }
+        if (stale != null) {
+            synchronized (stale) {
+                stale.kernel.dispose();
+            }
+        }
+        return buffers;
+    }
+
+    /**
+     * The flattened parameters of one model revision and the kernel they are bound to.
+     */
+    private static final class ModelBuffers {
+        private volatile long revision;
+        private final int inputSize;
+        private final int[] sizes;
+        private final int[] fanIns;
+        private final int[] weightOffsets;
+        private final int[] biasOffsets;
+        // activation offset of layer i's input; layer i writes at activationOffsets[i + 1]
+        private final int[] activationOffsets;
+        private final int[] activationIds;
+        private final LayerKernel kernel;
+        // Null when Aparapi picks the device
+        private final Device device;
+
+        private ModelBuffers(LyraModel model, Device device) {
+            this.device = device;
+            inputSize = model.frontLayer.neurons.size();
+            int layerCount = model.layers.size();
+            sizes = new int[layerCount];
+            fanIns = new int[layerCount];
+            weightOffsets = new int[layerCount];
+            biasOffsets = new int[layerCount];
+            activationOffsets = new int[layerCount + 1];
+            activationIds = new int[layerCount];
+
+            int weightCount = 0;
+            int biasCount = 0;
+            activationOffsets[0] = 0;
+            for (int i = 0; i < layerCount; i++) {
+                Layer layer = model.layers.get(i);
+                sizes[i] = layer.size();
+                fanIns[i] = layer.fanIn;
+                weightOffsets[i] = weightCount;
+                biasOffsets[i] = biasCount;
+                weightCount += sizes[i] * fanIns[i];
+                biasCount += sizes[i];
+                activationOffsets[i + 1] = activationOffsets[i] + (i == 0 ? inputSize : sizes[i - 1]);
+                activationIds[i] = mapActivation(layer.activationFunction);
+            }
+
+            int activationCount = activationOffsets[layerCount] + sizes[layerCount - 1];
+
+            kernel = new LayerKernel(new float[weightCount], new float[biasCount], new float[activationCount]);
+            if (device != null) {
+                KernelManager.instance().setPreferredDevices(kernel, new LinkedHashSet<>(List.of(device)));
+            }
+            kernel.setExplicit(true);
+            upload(model);
+        }
+
+        // Flattens the current weights into the kernel's buffers and sends them to the device
+        private void upload(LyraModel model) {
+            revision = model.getRevision();
+            for (int i = 0; i < sizes.length; i++) {
+                Layer layer = model.layers.get(i);
+                if (layer.isFloat()) {
+                    System.arraycopy(layer.floatWeights, 0, kernel.weights, weightOffsets[i], sizes[i] * fanIns[i]);
+                    System.arraycopy(layer.floatBiases, 0, kernel.biases, biasOffsets[i], sizes[i]);
+                    continue;
+                }
+                for (int w = 0; w < sizes[i] * fanIns[i]; w++) {
+                    kernel.weights[weightOffsets[i] + w] = (float) layer.weights[w];
+                }
+                for (int j = 0; j < sizes[i]; j++) {
+                    kernel.biases[biasOffsets[i] + j] = (float) layer.biases[j];
+                }
+            }
+            kernel.put(kernel.weights).put(kernel.biases);
+        }
+
+        private boolean matches(LyraModel model) {
+            if (model.layers.size() != sizes.length || model.frontLayer.neurons.size() != inputSize) return false;
+            for (int i = 0; i < sizes.length; i++) {
+                Layer layer = model.layers.get(i);
+                if (layer.size() != sizes[i] || layer.fanIn != fanIns[i]) return false;
+                if (mapActivation(layer.activationFunction) != activationIds[i]) return false;
+            }
+            return true;
+        }
+
+        private float[][] run(double[] input) {
+            float[] activations = kernel.activations;
+            for (int i = 0; i < inputSize; i++) {
+                activations[i] = (float) input[i];
+            }
+            kernel.put(activations);
+
+            // Each layer reads its input from and writes its output to the device-side buffer
+            for (int i = 0; i < sizes.length; i++) {
+                kernel.fanIn = fanIns[i];
+                kernel.weightOffset = weightOffsets[i];
+                kernel.biasOffset = biasOffsets[i];
+                kernel.inputOffset = activationOffsets[i];
+                kernel.outputOffset = activationOffsets[i + 1];
+                kernel.activationId = activationIds[i];
+                kernel.execute(device != null ? device.createRange(sizes[i]) : Range.create(sizes[i]));
+            }
+            kernel.get(activations);
+
+            float[][] layers = new float[sizes.length][];
+            for (int i = 0; i < sizes.length; i++) {
+                layers[i] = new float[sizes[i]];
+                System.arraycopy(activations, activationOffsets[i + 1], layers[i], 0, sizes[i]);
+            }
+            return layers;
+        }
+    }
+
+    /**
+     * Computes one neuron per work item for the layer described by the scalar fields.
+     */
+    private static final class LayerKernel extends Kernel {
+        final float[] weights;
+        final float[] biases;
+        final float[] activations;
+        int fanIn;
+        int weightOffset;
+        int biasOffset;
+        int inputOffset;
+        int outputOffset;
+        int activationId;
+
+        private LayerKernel(float[] weights, float[] biases, float[] activations) {
+            this.weights = weights;
+            this.biases = biases;
+            this.activations = activations;
+        }
+
+        @Override
+        public void run() {
+            int gid = getGlobalId();
+            int row = weightOffset + gid * fanIn;
+            float sum = biases[biasOffset + gid];
+            for (int k = 0; k < fanIn; k++) {
+                sum += activations[inputOffset + k] * weights[row + k];
+            }
+            if (activationId == 0) { // RELU
+                sum = sum > 0f ? sum : 0f;
+            } else if (activationId == 1) { // LEAKY_RELU
+                sum = sum > 0f ? sum : 0.01f * sum;
+            } else if (activationId == 2) { // TANH
+                float ex = exp(-2f * sum);
+                sum = (2f / (1f + ex)) - 1f;
+            } else if (activationId == 3) { // SIGMOID
+                sum = 1f / (1f + exp(-sum));
+            }
+            activations[outputOffset + gid] = sum;
+        }
+    }
+
+    private static int mapActivation(Enums.activationFunctions fn) {
+        return switch (fn) {
+            case RELU -> 0;
+            case LEAKY_RELU -> 1;
+            case TANH -> 2;
+            case SIGMOID -> 3;
+        };
+    }
+}
+
+
+//The old gpu code turned every weight into a float and made a brand-new kernel for every layer, every single time
+//it was called. Now the weights get sent to the gpu once and just stay there until the model changes.
+
+//Equinox Electronic
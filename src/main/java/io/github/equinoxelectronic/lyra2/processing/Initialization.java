@@ -3,10 +3,10 @@ package io.github.equinoxelectronic.lyra2.processing;
 import io.github.equinoxelectronic.equinox_essentials.Essentials;
 import io.github.equinoxelectronic.lyra2.Enums;
 import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer;
 import io.github.equinoxelectronic.lyra2.objects.FrontLayer;
 import io.github.equinoxelectronic.lyra2.objects.Layer;
 import io.github.equinoxelectronic.lyra2.objects.LyraModel;
-import io.github.equinoxelectronic.lyra2.objects.Neuron;
 
 import java.util.ArrayList;
 import java.util.Objects;
@@ -58,6 +58,53 @@ public class Initialization {
         initializeModelMetadata(model, modelID, modelAuthor, outputType, activationFunction);
         validateLayerConfiguration(neuronsPerLayer, activationFunctions);
         createInputLayer(model, inputType, firstLayerSize);
+        return initializeLayers(model, neuronsPerLayer, activationFunctions, outputType,
+                lastLayerSize, lastLayerActivationFunction);
+    }
+
+    /**
+     * Initializes a model whose input is an {@link EmbeddingLayer} of category IDs.
+     * The first hidden layer is initialized as an embedding table: since only a few of its inputs are
+     * ever non-zero at once, its weights are scaled for a fan-in of 1 instead of the vocabulary size.
+     *
+     * @param model Empty model instance to initialize
+     * @param modelID Unique identifier for the model
+     * @param modelAuthor Author/creator of the model
+     * @param vocabularySize Number of categories the model takes
+     * @param outputType Output data type (RAW or specific type)
+     * @param neuronsPerLayer List of neuron counts for each hidden layer
+     * @param activationFunctions List of activation functions for each layer
+     * @param lastLayerSize Size of output layer (used only for RAW output type)
+     * @param lastLayerActivationFunction Activation function for output layer
+     * @param activationFunction Default activation function for hidden layers
+     * @return Initialized neural network model ready for training
+     * @throws IllegalArgumentException if layer count doesn't match activation function count
+     */
+    public static LyraModel initializeEmbeddingModel(LyraModel model,
+                                                     String modelID,
+                                                     String modelAuthor,
+                                                     int vocabularySize,
+                                                     Enums.IOType outputType,
+                                                     ArrayList<Integer> neuronsPerLayer,
+                                                     ArrayList<Enums.activationFunctions> activationFunctions,
+                                                     int lastLayerSize,
+                                                     Enums.activationFunctions lastLayerActivationFunction,
+                                                     Enums.activationFunctions activationFunction) {
+        Essentials.logger.logString("Initializing model...");
+
+        initializeModelMetadata(model, modelID, modelAuthor, outputType, activationFunction);
+        validateLayerConfiguration(neuronsPerLayer, activationFunctions);
+        model.frontLayer = new EmbeddingLayer(vocabularySize);
+        return initializeLayers(model, neuronsPerLayer, activationFunctions, outputType,
+                lastLayerSize, lastLayerActivationFunction);
+    }
+
+    private static LyraModel initializeLayers(LyraModel model,
+                                              ArrayList<Integer> neuronsPerLayer,
+                                              ArrayList<Enums.activationFunctions> activationFunctions,
+                                              Enums.IOType outputType,
+                                              int lastLayerSize,
+                                              Enums.activationFunctions lastLayerActivationFunction) {
         createHiddenLayers(model, neuronsPerLayer, activationFunctions);
         createOutputLayer(model, outputType, lastLayerSize, lastLayerActivationFunction);
         initializeWeightsAndBiases(model);
@@ -103,18 +150,21 @@ public class Initialization {
                                            ArrayList<Enums.activationFunctions> activationFunctions) {
         neuronsPerLayer.removeFirst(); // Remove input layer size
         model.layers = new ArrayList<>();
+        int fanIn = model.frontLayer.neurons.size();
         for (int i = 0; i < neuronsPerLayer.size(); i++) {
-            model.layers.add(new Layer(neuronsPerLayer.get(i), activationFunctions.get(i)));
+            model.layers.add(new Layer(neuronsPerLayer.get(i), fanIn, activationFunctions.get(i)));
+            fanIn = neuronsPerLayer.get(i);
         }
     }
 
     private static void createOutputLayer(LyraModel model, Enums.IOType outputType,
                                           int lastLayerSize, Enums.activationFunctions lastLayerActivationFunction) {
+        int fanIn = model.layers.isEmpty() ? model.frontLayer.neurons.size() : model.layers.getLast().size();
         try {
             if (outputType != Enums.IOType.RAW) {
-                model.layers.add(new Layer(DatatypeConversion.getBitCount(outputType), lastLayerActivationFunction));
+                model.layers.add(new Layer(DatatypeConversion.getBitCount(outputType), fanIn, lastLayerActivationFunction));
             } else {
-                model.layers.add(new Layer(lastLayerSize, lastLayerActivationFunction));
+                model.layers.add(new Layer(lastLayerSize, fanIn, lastLayerActivationFunction));
             }
         } catch (LyraWrongDatatypeException e) {
             throw new RuntimeException("Failed to create output layer: " + e.getMessage(), e);
@@ -125,30 +175,30 @@ public class Initialization {
         Random rand = new Random();
         Essentials.logger.logVerbose("Initializing weights and biases...", VERBOSE);
 
-        for (int i = 0; i < model.layers.size(); i++) {
-            Layer currentLayer = model.layers.get(i);
-            int fanIn = (i > 0) ? model.layers.get(i - 1).neurons.size() : model.frontLayer.neurons.size();
-
-            for (Neuron neuron : currentLayer.neurons) {
-                initializeNeuron(neuron, fanIn, currentLayer.activationFunction, rand);
-            }
+        for (Layer currentLayer : model.layers) {
+            // An embedding table only ever sees one input per category, so it is scaled for a fan-in of 1
+            boolean embeddingTable = currentLayer == model.layers.getFirst() && model.frontLayer instanceof EmbeddingLayer;
+            initializeLayer(currentLayer, currentLayer.activationFunction, embeddingTable ? 1 : currentLayer.fanIn, rand);
+            currentLayer.refreshNeurons();
         }
     }
 
-    private static void initializeNeuron(Neuron neuron, int fanIn,
-                                         Enums.activationFunctions activationFunction, Random rand) {
-        neuron.bias = rand.nextDouble() - 0.5; // Initialize bias in [-0.5, 0.5]
-        neuron.weights = new ArrayList<>();
+    private static void initializeLayer(Layer layer, Enums.activationFunctions activationFunction, int effectiveFanIn, Random rand) {
+        int fanIn = layer.fanIn;
 
         // Choose initialization strategy based on activation function
         double stdDev = (Objects.requireNonNull(activationFunction) == Enums.activationFunctions.RELU ||
                 activationFunction == Enums.activationFunctions.LEAKY_RELU) ?
-                Math.sqrt(2.0 / fanIn) :  // He initialization
-                Math.sqrt(1.0 / fanIn);    // Xavier initialization
+                Math.sqrt(2.0 / effectiveFanIn) :  // He initialization
+                Math.sqrt(1.0 / effectiveFanIn);    // Xavier initialization
+
+        for (int j = 0; j < layer.size(); j++) {
+            layer.biases[j] = rand.nextDouble() - 0.5; // Initialize bias in [-0.5, 0.5]
 
-        // Initialize weights using Gaussian distribution
-        for (int i = 0; i < fanIn; i++) {
-            neuron.weights.add(rand.nextGaussian() * stdDev);
+            // Initialize weights using Gaussian distribution
+            for (int k = 0; k < fanIn; k++) {
+                layer.weights[j * fanIn + k] = rand.nextGaussian() * stdDev;
+            }
         }
     }
 }
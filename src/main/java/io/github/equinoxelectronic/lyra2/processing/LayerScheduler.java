@@ -0,0 +1,126 @@
+package io.github.equinoxelectronic.lyra2.processing;
+
+import io.github.equinoxelectronic.lyra2.objects.Layer;
+
+import java.io.Serial;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits the neurons of a layer into cache-sized tiles and runs them on a runtime's fork/join pool.
+ * Small layers are run inline on the calling thread, since handing a few thousand multiply-adds
+ * to another thread costs more than doing them. Every call returns only after all tiles are done,
+ * which acts as the barrier between consecutive layers.
+ */
+public class LayerScheduler {
+
+    /**
+     * Layers with less work than this many multiply-adds run inline on the calling thread.
+     */
+    public static final long INLINE_WORK_THRESHOLD = 1 << 15;
+
+    // Target weights per tile: 4096 doubles is 32KB, about one L1 data cache
+    private static final int TILE_WEIGHTS = 4096;
+
+    /**
+     * The work done for one contiguous range of indices.
+     */
+    @FunctionalInterface
+    public interface RangeBody {
+        /**
+         * Processes indices [from, to).
+         *
+         * @param from First index, inclusive
+         * @param to Last index, exclusive
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * Runs the body over every neuron of a layer, tiled so that each tile's weight rows fit in cache.
+     *
+     * @param runtime The runtime whose pool runs the tiles
+     * @param layer The layer whose neurons are processed
+     * @param body The work for a range of neurons
+     */
+    public static void forEachNeuron(LyraRuntime runtime, Layer layer, RangeBody body) {
+        forEachNeuron(runtime, layer, layer.fanIn, body);
+    }
+
+    /**
+     * Runs the body over every neuron of a layer when each neuron only touches some of its weights,
+     * like an embedding layer that only reads the columns of the given categories.
+     *
+     * @param runtime The runtime whose pool runs the tiles
+     * @param layer The layer whose neurons are processed
+     * @param columns Weights touched per neuron
+     * @param body The work for a range of neurons
+     */
+    public static void forEachNeuron(LyraRuntime runtime, Layer layer, int columns, RangeBody body) {
+        columns = Math.max(1, columns);
+        int grain = Math.max(1, TILE_WEIGHTS / columns);
+        forEach(runtime, layer.size(), grain, (long) layer.size() * columns, body);
+    }
+
+    /**
+     * Runs the body over [0, count) in chunks of at least {@code grain} indices.
+     *
+     * @param runtime The runtime whose pool runs the chunks
+     * @param count Number of indices
+     * @param grain Smallest chunk worth handing to another thread
+     * @param work Approximate number of multiply-adds in the whole range
+     * @param body The work for a range of indices
+     */
+    public static void forEach(LyraRuntime runtime, int count, int grain, long work, RangeBody body) {
+        if (count <= 0) return;
+        if (work < INLINE_WORK_THRESHOLD || count <= grain || runtime.getParallelism() == 1) {
+            body.run(0, count);
+            return;
+        }
+
+        ForkJoinPool pool = runtime.pool();
+        Tile tile = new Tile(body, 0, count, grain);
+        if (ForkJoinTask.getPool() == pool) {
+            tile.invoke();
+        } else {
+            pool.invoke(tile);
+        }
+    }
+
+    /**
+     * Recursively halves a range until it is no larger than the grain.
+     */
+    private static final class Tile extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        // Tiles only live for one forEach call and are never serialized
+        private final transient RangeBody body;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        private Tile(RangeBody body, int from, int to, int grain) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Tile(body, from, mid, grain), new Tile(body, mid, to, grain));
+        }
+    }
+}
+
+
+//Before this, every single neuron got its own task, which for small layers was way slower than
+//just doing the math. Now a layer is cut into a few chunks, or just run on the spot if it is tiny.
+
+//Equinox Electronic
@@ -0,0 +1,168 @@
+package io.github.equinoxelectronic.lyra2.processing;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-lived compute runtime that owns the worker pool used by {@link Feeding} and {@link Training}.
+ * Creating and tearing down a thread pool costs far more than a forward pass through a small model,
+ * so one runtime is meant to be created once and shared by every call in the JVM.
+ *
+ * The runtime returned by {@link #getShared()} is created on first use and runs on daemon threads,
+ * so it never keeps the JVM alive. Runtimes created directly must be closed by their owner.
+ */
+public class LyraRuntime implements AutoCloseable {
+
+    private static LyraRuntime shared;
+
+    private final Enums.computeDevices device;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a runtime for the given compute device.
+     * <ul>
+     *   <li>CPU_SINGLE - one worker thread</li>
+     *   <li>CPU_MULTI - one worker per available processor</li>
+     *   <li>GPU - half the available processors, for the CPU work around Aparapi kernels</li>
+     * </ul>
+     *
+     * @param device The compute device this runtime serves
+     */
+    public LyraRuntime(Enums.computeDevices device) {
+        this(device, defaultParallelism(device));
+    }
+
+    /**
+     * Creates a runtime with an explicit number of worker threads.
+     *
+     * @param device The compute device this runtime serves
+     * @param parallelism Number of worker threads
+     * @throws LyraError if parallelism is not positive
+     */
+    public LyraRuntime(Enums.computeDevices device, int parallelism) {
+        if (parallelism < 1) {
+            throw new LyraError("Runtime parallelism must be at least 1");
+        }
+        this.device = device;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Returns the JVM-wide runtime, creating a CPU_MULTI runtime on first use.
+     *
+     * @return The shared runtime
+     */
+    public static synchronized LyraRuntime getShared() {
+        if (shared == null || !shared.isRunning()) {
+            shared = new LyraRuntime(Enums.computeDevices.CPU_MULTI);
+        }
+        return shared;
+    }
+
+    /**
+     * Replaces the JVM-wide runtime. The previous runtime is not shut down.
+     *
+     * @param runtime The runtime every default caller should use from now on
+     */
+    public static synchronized void setShared(LyraRuntime runtime) {
+        shared = runtime;
+    }
+
+    /**
+     * Shuts down the JVM-wide runtime if one has been created.
+     * The next call to {@link #getShared()} creates a fresh one.
+     */
+    public static synchronized void shutdownShared() {
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    /**
+     * Returns the worker pool of this runtime.
+     *
+     * @return The executor that runs compute tasks
+     */
+    public ExecutorService executor() {
+        return pool;
+    }
+
+    /**
+     * Returns the worker pool of this runtime as a fork/join pool.
+     *
+     * @return The pool that runs compute tasks
+     */
+    public ForkJoinPool pool() {
+        return pool;
+    }
+
+    /**
+     * Returns the compute device this runtime serves.
+     *
+     * @return The compute device
+     */
+    public Enums.computeDevices getDevice() {
+        return device;
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return The pool parallelism
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Checks whether this runtime still accepts work.
+     *
+     * @return true until {@link #shutdown()} or {@link #close()} is called
+     */
+    public boolean isRunning() {
+        return !pool.isShutdown();
+    }
+
+    /**
+     * Stops accepting new work. Tasks already submitted still run to completion.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Shuts the runtime down and waits up to 5 seconds for running tasks before forcing termination.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int defaultParallelism(Enums.computeDevices device) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return switch (device) {
+            case CPU_SINGLE -> 1;
+            case CPU_MULTI -> processors;
+            case GPU -> Math.max(1, processors / 2);
+        };
+    }
+}
+
+
+//Before this class existed, every single prediction made a brand-new thread pool and then shut it down
+//again, which took way longer than the actual math. Now one runtime sticks around and everybody shares it.
+
+//Equinox Electronic
@@ -1,8 +1,11 @@
 package io.github.equinoxelectronic.lyra2.processing;
 
+import io.github.equinoxelectronic.lyra2.Enums;
 import io.github.equinoxelectronic.lyra2.exceptions.InvalidModelError;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
 import io.github.equinoxelectronic.lyra2.objects.LyraModel;
-import io.github.equinoxelectronic.lyra2.objects.Neuron;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedLayer;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedModel;
 import io.github.equinoxelectronic.equinox_essentials.Essentials;
 
 import static io.github.equinoxelectronic.lyra2.Config.VERBOSE;
@@ -46,6 +49,56 @@ public class ModelChecker {
         Essentials.logger.logVerbose("Model has passed all checks!", VERBOSE);
     }
 
+    /**
+     * Validates the structure of an int8 quantized model: layer shapes, array lengths and scales.
+     *
+     * @param model The quantized model to validate
+     * @throws InvalidModelError if the model or any layer is malformed
+     */
+    public static void checkQuantizedModel(QuantizedModel model) {
+        Essentials.logger.logVerbose("Checking quantized model...", VERBOSE);
+
+        if (model == null) {
+            throw new InvalidModelError("Model is null");
+        }
+        if (model.frontLayer == null || model.frontLayer.neurons == null || model.frontLayer.neurons.isEmpty()) {
+            throw new InvalidModelError("Model's front layer is null or empty!");
+        }
+        if (model.layers == null || model.layers.isEmpty()) {
+            throw new InvalidModelError("Model has no layers!");
+        }
+        if (model.outputType == null) {
+            throw new InvalidModelError("Model's output type is null!");
+        }
+
+        int expectedFanIn = model.frontLayer.neurons.size();
+        for (int i = 0; i < model.layers.size(); i++) {
+            QuantizedLayer layer = model.layers.get(i);
+            if (layer == null || layer.weights == null || layer.weightScales == null || layer.biases == null) {
+                throw new InvalidModelError("Quantized layer " + i + " is null or incomplete!");
+            }
+            if (layer.activationFunction == null) {
+                throw new InvalidModelError("Quantized layer " + i + " has no activation function!");
+            }
+            if (layer.size() == 0 || layer.fanIn != expectedFanIn ||
+                    layer.weights.length != layer.size() * layer.fanIn ||
+                    layer.weightScales.length != layer.size()) {
+                throw new InvalidModelError("Quantized layer " + i + "'s shape does not match the previous layer!");
+            }
+            if (!Float.isFinite(layer.inputScale) || layer.inputScale < 0) {
+                throw new InvalidModelError("Quantized layer " + i + "'s input scale is invalid!");
+            }
+            for (float scale : layer.weightScales) {
+                if (!Float.isFinite(scale) || scale < 0) {
+                    throw new InvalidModelError("Quantized layer " + i + " has an invalid weight scale!");
+                }
+            }
+            expectedFanIn = layer.size();
+        }
+
+        Essentials.logger.logVerbose("Quantized model has passed all checks!", VERBOSE);
+    }
+
     /**
      * Validates input type compatibility with the model.
      * Ensures that the provided input matches the model's expected input type.
@@ -95,62 +148,77 @@ public class ModelChecker {
     }
 
     private static void validateLayer(LyraModel model, int layerIndex) {
-        if (model.layers.get(layerIndex) == null) {
+        Layer layer = model.layers.get(layerIndex);
+        if (layer == null) {
             throw new InvalidModelError("Layer " + layerIndex + " is null!");
         }
-        if (model.layers.get(layerIndex).neurons.isEmpty()) {
+        boolean hasDouble = layer.weights != null && layer.biases != null;
+        boolean hasFloat = layer.floatWeights != null && layer.floatBiases != null;
+        if (!hasDouble && !hasFloat) {
+            throw new InvalidModelError("Layer " + layerIndex + "'s weights or biases are null!");
+        }
+        if (layer.isFloat() != (model.getPrecision() == Enums.precisions.FLOAT)) {
+            throw new InvalidModelError("Layer " + layerIndex + "'s storage does not match the model's " +
+                    model.getPrecision().name() + " precision! Use LyraModel.setPrecision() to change it.");
+        }
+        if (layer.size() == 0) {
             throw new InvalidModelError("Layer " + layerIndex + " has no neurons!");
         }
-        if (model.layers.get(layerIndex).activationFunction == null) {
+        if (layer.activationFunction == null) {
             throw new InvalidModelError("Layer " + layerIndex + " has no activation function!");
         }
+        if (!layer.isPacked()) {
+            throw new InvalidModelError("Layer " + layerIndex + "'s neurons were edited without calling Layer.pack()!");
+        }
     }
 
     private static void validateLayerNeurons(LyraModel model, int layerIndex) {
         Essentials.logger.logVerbose("Checking each neuron in layer " + layerIndex + "...", VERBOSE);
 
-        for (int j = 0; j < model.layers.get(layerIndex).neurons.size(); j++) {
-            Neuron neuron = model.layers.get(layerIndex).neurons.get(j);
-            validateNeuron(model, layerIndex, j, neuron);
-            validateNeuronWeights(model, layerIndex, j, neuron);
-        }
-    }
-
-    private static void validateNeuron(LyraModel model, int layerIndex, int neuronIndex, Neuron neuron) {
-        if (neuron == null) {
-            throw new InvalidModelError("Neuron " + neuronIndex + " in layer " + layerIndex + " is null!");
-        }
-        if (neuron.weights == null) {
-            throw new InvalidModelError("Neuron " + neuronIndex + " in layer " + layerIndex + "'s weights are null!");
-        }
-        if (Double.isNaN(neuron.bias)) {
-            throw new InvalidModelError("Neuron " + neuronIndex + " in layer " + layerIndex + "'s bias is NaN!");
-        }
-    }
-
-    private static void validateNeuronWeights(LyraModel model, int layerIndex, int neuronIndex, Neuron neuron) {
+        Layer layer = model.layers.get(layerIndex);
         int expectedWeightCount = layerIndex == 0 ?
                 model.frontLayer.neurons.size() :
-                model.layers.get(layerIndex - 1).neurons.size();
+                model.layers.get(layerIndex - 1).size();
 
-        if (neuron.weights.size() != expectedWeightCount) {
+        int weightCount = layer.isFloat() ? layer.floatWeights.length : layer.weights.length;
+        if (layer.fanIn != expectedWeightCount || weightCount != layer.size() * layer.fanIn) {
             throw new InvalidModelError(String.format(
-                    "Neuron %d in layer %d's weight count does not match the amount of neurons in the %s layer! (%d != %d)",
-                    neuronIndex, layerIndex,
+                    "Layer %d's weight count does not match the amount of neurons in the %s layer! (%d != %d)",
+                    layerIndex,
                     layerIndex == 0 ? "front" : "previous",
-                    neuron.weights.size(), expectedWeightCount
+                    layer.fanIn, expectedWeightCount
             ));
         }
 
-        validateWeightValues(model, layerIndex, neuronIndex, neuron);
+        for (int j = 0; j < layer.size(); j++) {
+            if (Double.isNaN(layer.bias(j))) {
+                throw new InvalidModelError("Neuron " + j + " in layer " + layerIndex + "'s bias is NaN!");
+            }
+        }
+
+        if (layer.isSparse()) {
+            int nonZeros = layer.sparseColumns == null ? -1 : layer.sparseColumns.length;
+            int values = layer.isFloat()
+                    ? (layer.floatSparseWeights == null ? -1 : layer.floatSparseWeights.length)
+                    : (layer.sparseWeights == null ? -1 : layer.sparseWeights.length);
+            if (layer.sparseRowStarts.length != layer.size() + 1 || nonZeros != values ||
+                    layer.sparseRowStarts[layer.size()] != nonZeros) {
+                throw new InvalidModelError("Layer " + layerIndex + "'s sparse index does not match its weights! " +
+                        "Call Layer.sparsify() after changing a pruned layer.");
+            }
+        }
+
+        validateWeightValues(layer, layerIndex);
     }
 
-    private static void validateWeightValues(LyraModel model, int layerIndex, int neuronIndex, Neuron neuron) {
-        Essentials.logger.logVerbose("Checking each weight in neuron " + neuronIndex + " in layer " + layerIndex + "...", VERBOSE);
+    private static void validateWeightValues(Layer layer, int layerIndex) {
+        Essentials.logger.logVerbose("Checking each weight in layer " + layerIndex + "...", VERBOSE);
 
-        for (int k = 0; k < neuron.weights.size(); k++) {
-            if (Double.isNaN(neuron.weights.get(k))) {
-                throw new InvalidModelError("Weight " + k + " in neuron " + neuronIndex + " in layer " + layerIndex + " is NaN!");
+        int weightCount = layer.size() * layer.fanIn;
+        for (int i = 0; i < weightCount; i++) {
+            if (Double.isNaN(layer.weight(i))) {
+                throw new InvalidModelError("Weight " + (i % layer.fanIn) + " in neuron " + (i / layer.fanIn) +
+                        " in layer " + layerIndex + " is NaN!");
             }
         }
     }
@@ -0,0 +1,150 @@
+package io.github.equinoxelectronic.lyra2.processing;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.equinox_essentials.Essentials;
+
+import java.util.Arrays;
+
+/**
+ * Magnitude pruning of trained models.
+ *
+ * The smallest weights (by absolute value) are set to zero until the target sparsity is reached,
+ * either with one threshold for the whole model or separately for every layer. Every layer that
+ * ends up with zeros is then given a compressed sparse row index ({@link Layer#sparsify()}), so
+ * inference only touches the remaining weights and saved files only store them.
+ *
+ * A pruned model can be fine-tuned with the normal {@link io.github.equinoxelectronic.lyra2.api.Trainer}:
+ * training only updates the weights in a layer's sparse index, so the pruned ones stay at zero.
+ */
+public class Pruning {
+
+    /**
+     * Prunes every layer of a model to the given sparsity.
+     *
+     * @param model The trained model to prune in place
+     * @param sparsity Fraction of weights to set to zero, from 0 to 1 (exclusive)
+     * @return The fraction of weights that are zero afterwards
+     * @throws LyraError if the sparsity is out of range
+     */
+    public static double prune(LyraModel model, double sparsity) {
+        return prune(model, sparsity, Enums.pruningScopes.PER_LAYER);
+    }
+
+    /**
+     * Prunes a model to the given sparsity.
+     *
+     * @param model The trained model to prune in place
+     * @param sparsity Fraction of weights to set to zero, from 0 to 1 (exclusive)
+     * @param scope Whether the threshold is shared by the whole model or set per layer
+     * @return The fraction of weights that are zero afterwards
+     * @throws LyraError if the sparsity is out of range
+     */
+    public static double prune(LyraModel model, double sparsity, Enums.pruningScopes scope) {
+        ModelChecker.checkModel(model);
+        if (!(sparsity >= 0 && sparsity < 1)) {
+            throw new LyraError("Sparsity must be at least 0 and less than 1, got " + sparsity);
+        }
+        if (scope == null) {
+            throw new LyraError("Pruning scope must not be null");
+        }
+
+        if (scope == Enums.pruningScopes.PER_LAYER) {
+            for (Layer layer : model.layers) {
+                int total = layer.size() * layer.fanIn;
+                pruneBelow(layer, threshold(magnitudes(layer), (int) Math.round(total * sparsity)));
+            }
+        } else {
+            int total = 0;
+            for (Layer layer : model.layers) {
+                total += layer.size() * layer.fanIn;
+            }
+            double[] all = new double[total];
+            int offset = 0;
+            for (Layer layer : model.layers) {
+                double[] magnitudes = magnitudes(layer);
+                System.arraycopy(magnitudes, 0, all, offset, magnitudes.length);
+                offset += magnitudes.length;
+            }
+            double threshold = threshold(all, (int) Math.round(total * sparsity));
+            for (Layer layer : model.layers) {
+                pruneBelow(layer, threshold);
+            }
+        }
+
+        for (Layer layer : model.layers) {
+            if (layer.isSparse() || hasZero(layer)) {
+                layer.sparsify();
+            }
+            layer.refreshNeurons();
+        }
+        model.markModified();
+
+        double achieved = sparsity(model);
+        Essentials.logger.logString(String.format("Pruned model %s to %.1f%% sparsity.", model.modelID, achieved * 100));
+        return achieved;
+    }
+
+    /**
+     * Returns the fraction of a model's weights that are zero.
+     *
+     * @param model The model to inspect
+     * @return The sparsity, from 0 to 1
+     */
+    public static double sparsity(LyraModel model) {
+        long total = 0;
+        long zeros = 0;
+        for (Layer layer : model.layers) {
+            int count = layer.size() * layer.fanIn;
+            total += count;
+            for (int i = 0; i < count; i++) {
+                if (layer.weight(i) == 0) zeros++;
+            }
+        }
+        return total == 0 ? 0 : (double) zeros / total;
+    }
+
+    private static double[] magnitudes(Layer layer) {
+        double[] magnitudes = new double[layer.size() * layer.fanIn];
+        for (int i = 0; i < magnitudes.length; i++) {
+            magnitudes[i] = Math.abs(layer.weight(i));
+        }
+        return magnitudes;
+    }
+
+    // The magnitude at or below which `count` weights fall; -1 prunes nothing. Sorts the array in place.
+    private static double threshold(double[] magnitudes, int count) {
+        if (count <= 0 || magnitudes.length == 0) return -1;
+        Arrays.sort(magnitudes);
+        return magnitudes[Math.min(count, magnitudes.length) - 1];
+    }
+
+    private static void pruneBelow(Layer layer, double threshold) {
+        int count = layer.size() * layer.fanIn;
+        for (int i = 0; i < count; i++) {
+            if (Math.abs(layer.weight(i)) <= threshold) {
+                if (layer.isFloat()) {
+                    layer.floatWeights[i] = 0;
+                } else {
+                    layer.weights[i] = 0;
+                }
+            }
+        }
+    }
+
+    private static boolean hasZero(Layer layer) {
+        int count = layer.size() * layer.fanIn;
+        for (int i = 0; i < count; i++) {
+            if (layer.weight(i) == 0) return true;
+        }
+        return false;
+    }
+}
+
+
+//Most of the weights in a trained model end up being really close to zero, so they barely do anything. This gets
+//rid of those, so the model only has to do math with the weights that actually matter.
+
+//Equinox Electronic
@@ -0,0 +1,281 @@
+package io.github.equinoxelectronic.lyra2.processing;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.api.utility.MetricsCalculator;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.objects.DataSet;
+import io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer;
+import io.github.equinoxelectronic.lyra2.objects.FrontLayer;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedLayer;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedModel;
+import io.github.equinoxelectronic.equinox_essentials.Essentials;
+
+import java.util.ArrayList;
+
+/**
+ * Post-training int8 quantization of trained models.
+ *
+ * Weights are mapped symmetrically onto [-127, 127] with one scale per layer or per neuron.
+ * The input range of every layer is calibrated by running the original model over a sample
+ * {@link DataSet} and recording the largest absolute activation that reaches the layer, so the
+ * int8 activations cover the values the model actually sees.
+ */
+public class Quantizer {
+
+    // Scale used when a layer or neuron only ever sees zeros, so nothing divides by zero
+    private static final float EMPTY_RANGE_SCALE = 1f / 127f;
+
+    /**
+     * Quantizes a model with one weight scale per neuron.
+     *
+     * @param model The trained model to quantize
+     * @param calibration Representative input samples; only the inputs are used
+     * @return The int8 model
+     * @throws LyraError if the calibration set is empty or does not fit the model, or the model takes category IDs
+     */
+    public static QuantizedModel quantize(LyraModel model, DataSet calibration) {
+        return quantize(model, calibration, Enums.quantizationScales.PER_NEURON);
+    }
+
+    /**
+     * Quantizes a model to int8.
+     *
+     * @param model The trained model to quantize
+     * @param calibration Representative input samples; only the inputs are used
+     * @param scales Whether weights get one scale per layer or per neuron
+     * @return The int8 model
+     * @throws LyraError if the calibration set is empty or does not fit the model
+     */
+    public static QuantizedModel quantize(LyraModel model, DataSet calibration, Enums.quantizationScales scales) {
+        ModelChecker.checkModel(model);
+        if (calibration == null || calibration.inputs == null || calibration.inputs.isEmpty()) {
+            throw new LyraError("Quantization needs at least one calibration sample");
+        }
+        if (scales == null) {
+            throw new LyraError("Quantization scales must not be null");
+        }
+        if (model.frontLayer instanceof EmbeddingLayer) {
+            throw new LyraError("Models with an embedding input layer cannot be quantized");
+        }
+        Essentials.logger.logString("Quantizing model " + model.modelID + " to int8...");
+
+        float[] inputScales = calibrate(model, calibration);
+
+        QuantizedModel quantized = new QuantizedModel();
+        quantized.modelID = model.modelID;
+        quantized.modelAuthor = model.modelAuthor;
+        quantized.metadata = model.metadata;
+        quantized.lyraVersion = model.lyraVersion;
+        quantized.frontLayer = new FrontLayer(model.frontLayer.neurons.size(), model.frontLayer.inputType);
+        quantized.outputType = model.outputType;
+        quantized.activationFunction = model.activationFunction;
+        quantized.scales = scales;
+        quantized.layers = new ArrayList<>(model.layers.size());
+
+        for (int i = 0; i < model.layers.size(); i++) {
+            quantized.layers.add(quantizeLayer(model.layers.get(i), inputScales[i], scales));
+        }
+
+        ModelChecker.checkQuantizedModel(quantized);
+        Essentials.logger.logString("Quantized model " + model.modelID + " to " + quantized.parameterBytes() + " bytes.");
+        return quantized;
+    }
+
+    /**
+     * Compares a quantized model against the model it was made from over a labelled data set.
+     *
+     * @param model The original model
+     * @param quantized The quantized model
+     * @param dataSet Inputs and wanted outputs to evaluate on
+     * @return The comparison report
+     * @throws LyraError if the data set is empty
+     */
+    public static Report compare(LyraModel model, QuantizedModel quantized, DataSet dataSet) {
+        if (dataSet == null || dataSet.inputs == null || dataSet.inputs.isEmpty()) {
+            throw new LyraError("The comparison needs at least one sample");
+        }
+        ModelChecker.checkQuantizedModel(quantized);
+
+        double[][] inputs = new double[dataSet.inputs.size()][];
+        for (int n = 0; n < inputs.length; n++) {
+            inputs[n] = toArray(dataSet.inputs.get(n));
+        }
+        double[][] referenceRows;
+        try {
+            referenceRows = Feeding.feedForwardBatch(model, inputs);
+        } catch (LyraWrongDatatypeException e) {
+            throw new LyraError("The comparison data does not fit the model! " + e.getMessage());
+        }
+
+        ArrayList<ArrayList<Double>> reference = new ArrayList<>(inputs.length);
+        ArrayList<ArrayList<Double>> predicted = new ArrayList<>(inputs.length);
+        double maxError = 0;
+        for (int n = 0; n < inputs.length; n++) {
+            double[] q = quantized.feedForward(inputs[n]);
+            ArrayList<Double> referenceRow = new ArrayList<>(q.length);
+            ArrayList<Double> predictedRow = new ArrayList<>(q.length);
+            for (int j = 0; j < q.length; j++) {
+                referenceRow.add(referenceRows[n][j]);
+                predictedRow.add(q[j]);
+                maxError = Math.max(maxError, Math.abs(q[j] - referenceRows[n][j]));
+            }
+            reference.add(referenceRow);
+            predicted.add(predictedRow);
+        }
+
+        Report report = new Report();
+        report.samples = inputs.length;
+        report.referenceAccuracy = MetricsCalculator.calculateAccuracy(reference, dataSet.outputs);
+        report.quantizedAccuracy = MetricsCalculator.calculateAccuracy(predicted, dataSet.outputs);
+        report.referenceMSE = MetricsCalculator.calculateMSE(reference, dataSet.outputs);
+        report.quantizedMSE = MetricsCalculator.calculateMSE(predicted, dataSet.outputs);
+        report.agreement = MetricsCalculator.calculateAccuracy(predicted, reference);
+        report.outputMSE = MetricsCalculator.calculateMSE(predicted, reference);
+        report.maxAbsoluteError = maxError;
+        report.referenceBytes = parameterBytes(model);
+        report.quantizedBytes = quantized.parameterBytes();
+        return report;
+    }
+
+    /**
+     * The result of {@link #compare(LyraModel, QuantizedModel, DataSet)}.
+     * Accuracy and MSE are computed with {@link MetricsCalculator} against the wanted outputs;
+     * agreement and output MSE compare the two models' raw outputs with each other.
+     */
+    public static class Report {
+        /** Number of samples evaluated */
+        public int samples;
+        /** Accuracy of the original model */
+        public double referenceAccuracy;
+        /** Accuracy of the quantized model */
+        public double quantizedAccuracy;
+        /** Mean squared error of the original model */
+        public double referenceMSE;
+        /** Mean squared error of the quantized model */
+        public double quantizedMSE;
+        /** Share of outputs where both models are within 0.5 of each other */
+        public double agreement;
+        /** Mean squared difference between the two models' outputs */
+        public double outputMSE;
+        /** Largest difference between the two models' outputs */
+        public double maxAbsoluteError;
+        /** Memory taken by the original model's weights and biases */
+        public long referenceBytes;
+        /** Memory taken by the quantized model's weights, scales and biases */
+        public long quantizedBytes;
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "Quantization report (%d samples)%n" +
+                    "  accuracy:  %.4f -> %.4f%n" +
+                    "  MSE:       %.6f -> %.6f%n" +
+                    "  agreement: %.4f (output MSE %.6f, max error %.6f)%n" +
+                    "  memory:    %d -> %d bytes (%.1fx smaller)",
+                    samples, referenceAccuracy, quantizedAccuracy, referenceMSE, quantizedMSE,
+                    agreement, outputMSE, maxAbsoluteError,
+                    referenceBytes, quantizedBytes, (double) referenceBytes / Math.max(1, quantizedBytes));
+        }
+    }
+
+    /**
+     * Runs the original model over the calibration inputs and records the largest absolute value
+     * that reaches each layer. Returns one input scale per layer.
+     */
+    private static float[] calibrate(LyraModel model, DataSet calibration) {
+        int width = model.frontLayer.neurons.size();
+        double[] maxAbs = new double[model.layers.size()];
+
+        for (ArrayList<Double> sample : calibration.inputs) {
+            if (sample.size() != width) {
+                throw new LyraError("Calibration sample has " + sample.size() + " values, but the model takes " + width);
+            }
+            double[] prev = toArray(sample);
+            for (int i = 0; i < model.layers.size(); i++) {
+                for (double value : prev) {
+                    maxAbs[i] = Math.max(maxAbs[i], Math.abs(value));
+                }
+                prev = feedLayer(model.layers.get(i), prev);
+            }
+        }
+
+        float[] inputScales = new float[maxAbs.length];
+        for (int i = 0; i < maxAbs.length; i++) {
+            inputScales[i] = maxAbs[i] > 0 ? (float) (maxAbs[i] / 127.0) : EMPTY_RANGE_SCALE;
+        }
+        return inputScales;
+    }
+
+    private static QuantizedLayer quantizeLayer(Layer layer, float inputScale, Enums.quantizationScales scales) {
+        int fanIn = layer.fanIn;
+        int size = layer.size();
+        QuantizedLayer quantized = new QuantizedLayer(size, fanIn, layer.activationFunction);
+        quantized.inputScale = inputScale;
+
+        float layerScale = 0;
+        if (scales == Enums.quantizationScales.PER_LAYER) {
+            layerScale = weightScale(layer, 0, size * fanIn);
+        }
+
+        for (int j = 0; j < size; j++) {
+            float scale = scales == Enums.quantizationScales.PER_LAYER ?
+                    layerScale : weightScale(layer, j * fanIn, fanIn);
+            quantized.weightScales[j] = scale;
+            for (int k = 0; k < fanIn; k++) {
+                quantized.weights[j * fanIn + k] = QuantizedLayer.quantize(layer.weight(j * fanIn + k), scale);
+            }
+
+            // The bias joins the int32 accumulator, so it is stored in accumulator units
+            long bias = Math.round(layer.bias(j) / ((double) scale * inputScale));
+            quantized.biases[j] = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, bias));
+        }
+        return quantized;
+    }
+
+    private static float weightScale(Layer layer, int from, int length) {
+        double maxAbs = 0;
+        for (int i = from; i < from + length; i++) {
+            maxAbs = Math.max(maxAbs, Math.abs(layer.weight(i)));
+        }
+        return maxAbs > 0 ? (float) (maxAbs / 127.0) : EMPTY_RANGE_SCALE;
+    }
+
+    // Precision-independent single-sample layer pass used for calibration
+    private static double[] feedLayer(Layer layer, double[] inputs) {
+        double[] outputs = new double[layer.size()];
+        for (int j = 0; j < outputs.length; j++) {
+            double sum = layer.bias(j);
+            for (int k = 0; k < layer.fanIn; k++) {
+                sum += layer.weight(j * layer.fanIn + k) * inputs[k];
+            }
+            outputs[j] = ActivationMethods.activate(sum, layer.activationFunction);
+        }
+        return outputs;
+    }
+
+    private static long parameterBytes(LyraModel model) {
+        long bytes = 0;
+        for (Layer layer : model.layers) {
+            int bytesPerValue = layer.isFloat() ? 4 : 8;
+            bytes += (long) bytesPerValue * (layer.size() * (long) layer.fanIn + layer.size());
+        }
+        return bytes;
+    }
+
+    private static double[] toArray(ArrayList<Double> values) {
+        double[] array = new double[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
+
+
+//This turns a trained model into an int8 model. It runs some sample data through the model first to see
+//how big the numbers in each layer get, and then picks the scales so nothing gets cut off.
+
+//Equinox Electronic
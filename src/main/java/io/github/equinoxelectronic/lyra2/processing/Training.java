@@ -3,16 +3,18 @@ package io.github.equinoxelectronic.lyra2.processing;
 import io.github.equinoxelectronic.lyra2.Enums;
 import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
 import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer;
 import io.github.equinoxelectronic.lyra2.objects.Layer;
 import io.github.equinoxelectronic.lyra2.objects.LyraModel;
-import io.github.equinoxelectronic.lyra2.objects.Neuron;
+import io.github.equinoxelectronic.lyra2.processing.kernels.Kernels;
+import io.github.equinoxelectronic.lyra2.processing.kernels.MathKernels;
+import io.github.equinoxelectronic.lyra2.processing.optimizers.Optimizer;
+import io.github.equinoxelectronic.lyra2.processing.optimizers.SGD;
 import io.github.equinoxelectronic.equinox_essentials.Essentials;
 
 import java.util.ArrayList;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implements neural network training with parallel processing capabilities.
@@ -21,51 +23,62 @@ import java.util.concurrent.TimeUnit;
  * - Multiple training stopping criteria
  * - Progress monitoring and reporting
  * - Gradient clipping for training stability
+ *
+ * For a model with an {@link EmbeddingLayer}, each training input is the list of its category IDs
+ * (as doubles), and only the first-layer weights of those categories are updated.
  */
 public class Training {
+    // Samples per forward/backward block in mini-batch training
+    private static final int BATCH_SAMPLE_BLOCK = 64;
+
+    // The runtime training work runs on; null means the JVM-wide shared runtime
+    private static LyraRuntime runtime;
 
-    //The executor service
     /**
-     * Thread pool executor for parallel processing during training.
-     * Sized according to available processor cores for optimal performance.
+     * Returns the runtime training work runs on.
+     *
+     * @return The runtime set with {@link #setRuntime(LyraRuntime)}, or the shared runtime
      */
-    private static ExecutorService executor;
+    public static LyraRuntime getRuntime() {
+        LyraRuntime current = runtime;
+        return current != null && current.isRunning() ? current : LyraRuntime.getShared();
+    }
 
     /**
-     * Initializes the thread pool executor for parallel training operations.
-     * Should be called before starting any training process.
+     * Makes all training work run on the given runtime.
+     * The caller keeps ownership of the runtime and is responsible for closing it.
+     *
+     * @param newRuntime The runtime to use, or null to go back to the shared runtime
+     */
+    public static void setRuntime(LyraRuntime newRuntime) {
+        runtime = newRuntime;
+    }
+
+    /**
+     * Creates a dedicated runtime for the given compute device and makes Training use it
+     * until {@link #endExecutor()} is called.
+     *
+     * @param device The compute device to run on
+     * @deprecated Use {@link #setRuntime(LyraRuntime)} with a long-lived runtime, or rely on the shared runtime.
      */
+    @Deprecated
     public static void startExecutor(Enums.computeDevices device) {
-        switch (device) {
-            case CPU_SINGLE:
-                executor = Executors.newSingleThreadExecutor();
-                break;
-            case CPU_MULTI:
-                executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-                break;
-            case GPU:
-                // Use a CPU pool for backprop/updates while forward-pass may run on GPU
-                executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-            default:
-                executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        }
+        setRuntime(new LyraRuntime(device));
     }
 
     /**
-     * Safely shuts down the thread pool executor.
-     * Attempts graceful shutdown with timeout before forced termination.
+     * Shuts down the runtime created by {@link #startExecutor(Enums.computeDevices)} and
+     * returns Training to the shared runtime.
+     *
+     * @deprecated Pair with {@link #startExecutor(Enums.computeDevices)} only.
      */
+    @Deprecated
     public static void endExecutor() {
-        if(executor != null) {
-            executor.shutdown();
-            try {
-                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
-            }
+        LyraRuntime current = runtime;
+        if (current != null && current != LyraRuntime.getShared()) {
+            current.close();
         }
+        setRuntime(null);
     }
 
 
@@ -101,189 +114,944 @@ public class Training {
                                        double errorThreshold,
                                        boolean progressBar,
                                        Enums.trainingStoppers primaryStopper) {
+        return trainModel(model, inputDataSet, wantedOutputDataSet, epochs, shouldLimitEpochs, shouldLimitTime,
+                timeLimit, statusPrintInterval, learningRate, errorThreshold, progressBar, primaryStopper, 1,
+                Enums.trainingStrategies.SEQUENTIAL, new SGD(), null);
+    }
+
+    /**
+     * Trains a neural network model with mini-batch gradient descent.
+     * With a batch size of 1 this is the per-sample training of
+     * {@link #trainModel(LyraModel, ArrayList, ArrayList, long, boolean, boolean, long, int, double, double, boolean, Enums.trainingStoppers)}.
+     * Larger batches run the forward and backward passes as matrix products over the whole batch,
+     * add the gradients up in primitive buffers, and update the weights once per batch with the
+     * average gradient.
+     * With {@link Enums.trainingStrategies#DATA_PARALLEL}, every batch is split between one worker
+     * per runtime thread instead. Each worker keeps its own gradient buffers, and they are summed
+     * in a fixed tree, so a run gives the same model every time with the same number of threads.
+     * With {@link Enums.trainingStrategies#HOGWILD}, one worker per runtime thread takes samples
+     * from the data set and updates the shared weights after each one without any locking. Its
+     * threads step the optimizer concurrently, so optimizers with step-dependent updates like Adam
+     * are rejected.
+     *
+     * @param model The neural network model to train
+     * @param inputDataSet Training input samples
+     * @param wantedOutputDataSet Target output samples
+     * @param epochs Maximum number of training epochs
+     * @param shouldLimitEpochs Whether to use epoch limit
+     * @param shouldLimitTime Whether to use time limit
+     * @param timeLimit Maximum training time in seconds
+     * @param statusPrintInterval Epochs between progress updates
+     * @param learningRate Learning rate for weight updates
+     * @param errorThreshold Error threshold for early stopping
+     * @param progressBar Whether to show progress bar
+     * @param primaryStopper Primary criterion for stopping training
+     * @param batchSize Samples per weight update, at least 1
+     * @param strategy How the work is spread over the cores; DATA_PARALLEL needs a batch size above 1
+     *                 and HOGWILD a batch size of 1 and an optimizer whose updates do not depend on the step count
+     * @param optimizer Turns gradients into updates; {@link SGD} is the plain per-weight step
+     * @param report Receives the run's convergence statistics, or null
+     * @return The trained neural network model
+     * @throws RuntimeException if forward pass fails
+     * @throws LyraError if training parameters are invalid
+     */
+    public static LyraModel trainModel(LyraModel model,
+                                       ArrayList<ArrayList<Double>> inputDataSet,
+                                       ArrayList<ArrayList<Double>> wantedOutputDataSet,
+                                       long epochs,
+                                       boolean shouldLimitEpochs,
+                                       boolean shouldLimitTime,
+                                       long timeLimit,
+                                       int statusPrintInterval,
+                                       double learningRate,
+                                       double errorThreshold,
+                                       boolean progressBar,
+                                       Enums.trainingStoppers primaryStopper,
+                                       int batchSize,
+                                       Enums.trainingStrategies strategy,
+                                       Optimizer optimizer,
+                                       Report report) {
 
         Essentials.logger.logString("Starting model training...");
+        if (batchSize < 1) {
+            throw new LyraError("Batch size must be at least 1");
+        }
+        if (strategy == null) {
+            throw new LyraError("Training strategy must not be null");
+        }
+        if (optimizer == null) {
+            throw new LyraError("Optimizer must not be null");
+        }
+        if (strategy == Enums.trainingStrategies.DATA_PARALLEL && batchSize < 2) {
+            throw new LyraError("Data-parallel training needs a batch size of at least 2");
+        }
+        if (strategy == Enums.trainingStrategies.HOGWILD && batchSize != 1) {
+            throw new LyraError("Hogwild training updates the weights after every sample; leave the batch size at 1");
+        }
+        if (strategy == Enums.trainingStrategies.HOGWILD && optimizer.dependsOnStepCount()) {
+            throw new LyraError("Hogwild training cannot use " + optimizer.getClass().getSimpleName()
+                    + ", whose updates depend on the step count; use SGD, Momentum, Nesterov or RMSProp");
+        }
         ModelChecker.checkModel(model);
-        int epoch = 0;
-        int goodScoreStreak = 0;
-        long startTimeInSeconds = System.currentTimeMillis() / 1000;
-        double avgError;
-
-        //Starts a progress bar
-        if(progressBar) {
-            switch (primaryStopper) {
-                case EPOCH:
-                    if(epochs <= 0) {throw new LyraError("Epoch count must be greater than 0");}
-                    Essentials.logger.createProgressBar("Training", (int) epochs);
+        if (model.frontLayer instanceof EmbeddingLayer) {
+            checkCategoryIds(model, inputDataSet);
+        }
+        // FLOAT precision models are trained in double and narrowed again afterwards,
+        // so small updates are not lost to float rounding
+        Enums.precisions storedPrecision = model.getPrecision();
+        if (storedPrecision != Enums.precisions.DOUBLE) {
+            model.setPrecision(Enums.precisions.DOUBLE);
+        }
+        // Narrow back even if training fails, so a FLOAT model is never left widened
+        try {
+            optimizer.initialize(model);
+            LyraRuntime runtime = getRuntime();
+            // Every buffer training needs is allocated here, once, and reused for every sample and epoch
+            int batchRows = Math.min(batchSize, inputDataSet.size());
+            Workspace workspace = null;
+            Workspace[] workerSpaces = null;
+            if (strategy == Enums.trainingStrategies.DATA_PARALLEL) {
+                // One workspace per worker, each big enough for its slice of a batch
+                int workers = Math.max(1, Math.min(runtime.getParallelism(), batchRows));
+                workerSpaces = new Workspace[workers];
+                for (int w = 0; w < workers; w++) {
+                    workerSpaces[w] = new Workspace(model, (batchRows + workers - 1) / workers, true);
+                }
+            } else if (strategy == Enums.trainingStrategies.HOGWILD) {
+                // Every worker runs one sample at a time and updates the weights straight from its deltas
+                workerSpaces = new Workspace[Math.max(1, Math.min(runtime.getParallelism(), inputDataSet.size()))];
+                for (int w = 0; w < workerSpaces.length; w++) {
+                    workerSpaces[w] = new Workspace(model, 1, false);
+                }
+            } else {
+                workspace = new Workspace(model, batchRows, batchSize > 1);
+            }
+            if (report != null) {
+                report.strategy = strategy;
+                report.optimizer = optimizer.getClass().getSimpleName();
+                report.batchSize = batchSize;
+                report.threads = workerSpaces != null ? workerSpaces.length : runtime.getParallelism();
+            }
+            long startNanos = System.nanoTime();
+            int epoch = 0;
+            int goodScoreStreak = 0;
+            long startTimeInSeconds = System.currentTimeMillis() / 1000;
+            double avgError;
+
+            //Starts a progress bar
+            if(progressBar) {
+                switch (primaryStopper) {
+                    case EPOCH:
+                        if(epochs <= 0) {throw new LyraError("Epoch count must be greater than 0");}
+                        Essentials.logger.createProgressBar("Training", (int) epochs);
+                        break;
+                    case TIME:
+                        System.out.println(timeLimit);
+                        if(timeLimit < 1) {throw new LyraError("Time limit must be larger than 0");}
+                        Essentials.logger.createProgressBar("Training", (int) (timeLimit));
+                        break;
+                    case ERROR:
+                        if(errorThreshold <= 0) {throw new LyraError("Error threshold must be greater than 0");}
+                        Essentials.logger.createProgressBar("Training", (int) (errorThreshold * 1000));
+                        break;
+                }
+            }
+
+            while (true) {
+                double totalError = 0;
+
+                if (strategy == Enums.trainingStrategies.HOGWILD) {
+                    totalError = trainEpochHogwild(model, inputDataSet, wantedOutputDataSet, learningRate,
+                            optimizer, runtime, workerSpaces);
+                } else if (workerSpaces != null) {
+                    for (int from = 0; from < inputDataSet.size(); from += batchSize) {
+                        int to = Math.min(inputDataSet.size(), from + batchSize);
+                        totalError += trainBatchDataParallel(model, inputDataSet, wantedOutputDataSet, from, to,
+                                learningRate, optimizer, runtime, workerSpaces);
+                    }
+                } else if (batchSize > 1) {
+                    for (int from = 0; from < inputDataSet.size(); from += batchSize) {
+                        int to = Math.min(inputDataSet.size(), from + batchSize);
+                        totalError += trainBatch(model, inputDataSet, wantedOutputDataSet, from, to,
+                                learningRate, optimizer, runtime, workspace);
+                    }
+                } else {
+                    // Iterate through each training example
+                    for (int i = 0; i < inputDataSet.size(); i++) {
+                        totalError += trainSample(model, inputDataSet, wantedOutputDataSet, i, learningRate,
+                                optimizer, runtime, workspace);
+                    }
+                }
+
+                avgError = totalError / (inputDataSet.size() * model.layers.getLast().neurons.size());
+                if (report != null) {
+                    report.epochErrors.add(avgError);
+                }
+
+                // Print progress at the interval
+                if(statusPrintInterval != 0 && !progressBar) {
+                    if (epoch % statusPrintInterval == 0) {
+                        Essentials.logger.logString(String.format("Epoch: %d, Time (in seconds): %d, Average Error: %.6f", 
+                            epoch, (System.currentTimeMillis() / 1000) - startTimeInSeconds, avgError));
+                    }
+                }
+
+                //Updates progress bar
+                if(progressBar) {
+                    switch (primaryStopper) {
+                        case EPOCH:
+                            Essentials.logger.updateProgressBar(epoch, (int) epochs);
+                            break;
+                        case TIME:
+                            Essentials.logger.updateProgressBar((int) ((System.currentTimeMillis() / 1000) - startTimeInSeconds), (int) timeLimit);
+                            break;
+                        case ERROR:
+                            Essentials.logger.updateProgressBar((int) (totalError / (inputDataSet.size() * model.layers.getLast().neurons.size()) * 1000), (int) (errorThreshold * 1000));
+                            break;
+                        default:
+                            throw new RuntimeException("Unknown stopper");
+                    }
+                }
+
+                //Checks to see if training should stop
+                if(totalError < errorThreshold) {
+                    goodScoreStreak++;
+                }
+                if(goodScoreStreak >= 5) {
+                    Essentials.logger.logString("Ended training because of good score.");
                     break;
-                case TIME:
-                    System.out.println(timeLimit);
-                    if(timeLimit < 1) {throw new LyraError("Time limit must be larger than 0");}
-                    Essentials.logger.createProgressBar("Training", (int) (timeLimit));
+                }
+                if(epoch >= epochs && shouldLimitEpochs) {
+                    Essentials.logger.logString("Ended training because epoch limit reached.");
                     break;
-                case ERROR:
-                    if(errorThreshold <= 0) {throw new LyraError("Error threshold must be greater than 0");}
-                    Essentials.logger.createProgressBar("Training", (int) (errorThreshold * 1000));
+                }
+                if(shouldLimitTime && (System.currentTimeMillis() / 1000) - startTimeInSeconds >= timeLimit) {
+                    Essentials.logger.logString("Ended training because time limit reached.");
                     break;
+                }
+                epoch++;
             }
-        }
 
-        while (true) {
-            double totalError = 0;
+            // Mirror the trained biases into the neuron view
+            for (Layer layer : model.layers) {
+                layer.refreshNeurons();
+            }
 
-            // Iterate through each training example
-            for (int i = 0; i < inputDataSet.size(); i++) {
-                ArrayList<Double> input = inputDataSet.get(i);
-                ArrayList<Double> target = wantedOutputDataSet.get(i);
+            if (report != null) {
+                report.samples = (long) report.epochErrors.size() * inputDataSet.size();
+                report.seconds = (System.nanoTime() - startNanos) / 1e9;
+            }
 
-                // Forward pass
-                ArrayList<Double> output;
-                try {
-                    output = Feeding.feedForward(model, input);
-                } catch (LyraWrongDatatypeException e) {
-                    throw new RuntimeException(e);
-                }
+            Essentials.logger.updateProgressBar(100, 100);
+            Essentials.logger.logString("Training Completed! Average Error: " + avgError);
+        } finally {
+            if (storedPrecision != Enums.precisions.DOUBLE) {
+                model.setPrecision(storedPrecision);
+            }
+        }
 
-                // Store activations for backprop
-                ArrayList<ArrayList<Double>> layerActivations = new ArrayList<>();
-                layerActivations.add(input);
-                for (Layer layer : model.layers) {
-                    ArrayList<Double> layerOutput = new ArrayList<>();
-                    for (Neuron neuron : layer.neurons) {
-                        layerOutput.add(neuron.value);
-                    }
-                    layerActivations.add(layerOutput);
+        return model;
+    }
+    // Category IDs index straight into the embedding table, so they are all checked once before training starts
+    private static void checkCategoryIds(LyraModel model, ArrayList<ArrayList<Double>> inputs) {
+        int vocabulary = model.frontLayer.neurons.size();
+        for (int n = 0; n < inputs.size(); n++) {
+            for (double id : inputs.get(n)) {
+                if (!(id >= 0 && id < vocabulary) || id != Math.floor(id)) {
+                    throw new RuntimeException(new LyraWrongDatatypeException("Training input " + n +
+                            " has category ID " + id + ", but model " + model.modelID + " has " + vocabulary + " categories"));
                 }
+            }
+        }
+    }
 
-                // Calculate output layer gradients
-                Layer outputLayer = model.layers.getLast();
-                ArrayList<Double> outputDeltas = new ArrayList<>();
-
-                for (int j = 0; j < outputLayer.neurons.size(); j++) {
-                    double error = target.get(j) - output.get(j);
-                    double outVal = output.get(j);
-                    double derivative = 1 - (outVal * outVal) + 1e-7;
-                    double delta = clipGradient(error * derivative, 1.0);
-                    outputDeltas.add(delta);
-                    totalError += Math.pow(error, 2);
+    private static double clipGradient(double value, double threshold) {
+        return Math.max(Math.min(value, threshold), -threshold);
+    }
+
+    // The derivative of an activation function, given the neuron's activation
+    private static double derivative(double activation, Enums.activationFunctions function) {
+        if (function == Enums.activationFunctions.LEAKY_RELU) {
+            return activation > 0 ? 1.0 : 0.01;
+        } else if (function == Enums.activationFunctions.TANH) {
+            return 1 - (activation * activation) + 1e-7;
+        } else if (function == Enums.activationFunctions.RELU) {
+            return activation > 0 ? 1.0 : 0.0;
+        }
+        throw new RuntimeException("Unsupported activation function");
+    }
+
+    /**
+     * Convergence statistics of one training run, for comparing strategies and settings.
+     * Pass one to {@link #trainModel(LyraModel, ArrayList, ArrayList, long, boolean, boolean, long, int, double, double, boolean, Enums.trainingStoppers, int, Enums.trainingStrategies, Optimizer, Report)}
+     * to have it filled in.
+     */
+    public static class Report {
+        /** How the work was spread over the cores */
+        public Enums.trainingStrategies strategy;
+        /** Name of the optimizer */
+        public String optimizer;
+        /** Samples per weight update */
+        public int batchSize;
+        /** Worker threads the run used */
+        public int threads;
+        /** Samples trained on, over all epochs */
+        public long samples;
+        /** Wall-clock training time */
+        public double seconds;
+        /** Average error after each epoch, as logged during training */
+        public ArrayList<Double> epochErrors = new ArrayList<>();
+
+        /**
+         * Returns the training throughput.
+         *
+         * @return Samples trained on per second
+         */
+        public double samplesPerSecond() {
+            return samples / Math.max(1e-9, seconds);
+        }
+
+        /**
+         * Returns the average error after the last epoch.
+         *
+         * @return The final error, or NaN if no epoch finished
+         */
+        public double finalError() {
+            return epochErrors.isEmpty() ? Double.NaN : epochErrors.getLast();
+        }
+
+        /**
+         * Returns how many epochs it took to get the average error down to a target.
+         *
+         * @param error The target average error
+         * @return The number of epochs, or -1 if the run never got there
+         */
+        public int epochsToReach(double error) {
+            for (int i = 0; i < epochErrors.size(); i++) {
+                if (epochErrors.get(i) <= error) return i + 1;
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "Training report (%s, %s, batch size %d, %d threads)%n" +
+                    "  epochs:     %d%n" +
+                    "  error:      %.6f -> %.6f%n" +
+                    "  throughput: %.0f samples per second",
+                    strategy, optimizer, batchSize, threads, epochErrors.size(),
+                    epochErrors.isEmpty() ? Double.NaN : epochErrors.getFirst(), finalError(), samplesPerSecond());
+        }
+    }
+
+    /**
+     * Trains on one sample and updates the weights right away. The forward pass, the backward pass
+     * and the update each split a layer's neurons over the runtime, and all of them work in the
+     * workspace's buffers, so nothing is allocated per sample. On a GPU runtime the forward pass of
+     * a dense model runs on the device instead, as {@link Feeding#feedForward} does, and its
+     * activations are copied into the workspace.
+     *
+     * @return The sample's summed squared error
+     */
+    private static double trainSample(LyraModel model, ArrayList<ArrayList<Double>> inputs,
+                                      ArrayList<ArrayList<Double>> targets, int sample, double learningRate,
+                                      Optimizer optimizer, LyraRuntime runtime, Workspace workspace) {
+        int layerCount = model.layers.size();
+        double[] outputs = workspace.activations[layerCount];
+        workspace.optimizer = optimizer;
+        workspace.learningRate = learningRate;
+
+        // Forward pass; category IDs only touch their own weight columns, so there is no dense input vector
+        loadInputs(inputs, sample, sample + 1, workspace);
+        int firstDense = 0;
+        if (workspace.embedding) {
+            Feeding.feedLayerSparse(model.layers.getFirst(), workspace.categoryIds[0], workspace.idCounts[0],
+                    workspace.activations[1]);
+            firstDense = 1;
+        } else if (runtime.getDevice() == Enums.computeDevices.GPU) {
+            // On a GPU runtime the forward pass runs on the device, which keeps the weights between samples
+            float[][] deviceActivations = GpuForward.feedForward(model, workspace.activations[0]);
+            for (int i = 0; i < layerCount; i++) {
+                double[] layerActivations = workspace.activations[i + 1];
+                for (int j = 0; j < layerActivations.length; j++) {
+                    layerActivations[j] = deviceActivations[i][j];
                 }
+            }
+            firstDense = layerCount;
+        }
+        for (int i = firstDense; i < layerCount; i++) {
+            workspace.layer = i;
+            LayerScheduler.forEachNeuron(runtime, model.layers.get(i), workspace.forwardTiles);
+        }
 
-                // Backpropagate through hidden layers
-                ArrayList<ArrayList<Double>> allDeltas = new ArrayList<>();
-                allDeltas.add(outputDeltas);
+        // Calculate output layer gradients
+        ArrayList<Double> target = targets.get(sample);
+        double[] outputDeltas = workspace.deltas[layerCount - 1];
+        double totalError = 0;
+        for (int j = 0; j < outputs.length; j++) {
+            double outVal = outputs[j];
+            double error = target.get(j) - outVal;
+            outputDeltas[j] = clipGradient(error * (1 - (outVal * outVal) + 1e-7), 1.0);
+            totalError += error * error;
+        }
 
-                for (int layerIdx = model.layers.size() - 2; layerIdx >= 0; layerIdx--) {
-                    Layer currentLayer = model.layers.get(layerIdx);
-                    Layer nextLayer = model.layers.get(layerIdx + 1);
-                    ArrayList<Double> currentDeltas = new ArrayList<>();
+        // Backpropagate through hidden layers
+        for (int i = layerCount - 2; i >= 0; i--) {
+            workspace.layer = i;
+            LayerScheduler.forEachNeuron(runtime, model.layers.get(i), model.layers.get(i + 1).size(),
+                    workspace.backwardTiles);
+        }
 
-                    for (int j = 0; j < currentLayer.neurons.size(); j++) {
-                        double sum = 0.0;
-                        for (int k = 0; k < nextLayer.neurons.size(); k++) {
-                            sum = clipGradient(sum + nextLayer.neurons.get(k).weights.get(j) * 
-                                allDeltas.get(0).get(k), 1.0);
-                        }
-                        double activation = layerActivations.get(layerIdx + 1).get(j);
-                        double derivative;
-                        if (currentLayer.activationFunction == Enums.activationFunctions.LEAKY_RELU) {
-                            derivative = activation > 0 ? 1.0 : 0.01;
-                        } else if (currentLayer.activationFunction == Enums.activationFunctions.TANH) {
-                            derivative = 1 - (activation * activation) + 1e-7;
-                        } else if (currentLayer.activationFunction == Enums.activationFunctions.RELU) {
-                            derivative = activation > 0 ? 1.0 : 0.0;
-                        } else {
-                            throw new RuntimeException("Unsupported activation function");
+        // Tiled parallel weight updates
+        optimizer.nextStep();
+        for (int i = 0; i < layerCount; i++) {
+            workspace.layer = i;
+            // An embedding layer only touches a few columns per neuron, so it is scheduled by that work
+            int columns = workspace.embedding && i == 0 ? workspace.idCounts[0] : model.layers.get(i).fanIn;
+            LayerScheduler.forEachNeuron(runtime, model.layers.get(i), columns, workspace.updateTiles);
+        }
+        workspace.clearTouched();
+        // The next forward pass must see the new weights (the GPU path caches them)
+        model.markModified();
+        return totalError;
+    }
+
+    // Computes neurons [from, to) of the workspace's current layer from the layer before it
+    private static void forwardTile(Workspace workspace, int from, int to) {
+        int i = workspace.layer;
+        Feeding.feedNeurons(workspace.model.layers.get(i), workspace.activations[i], workspace.activations[i + 1],
+                from, to);
+    }
+
+    // Computes the deltas of neurons [from, to) of the workspace's current layer from the next layer's deltas
+    private static void backwardTile(Workspace workspace, int from, int to) {
+        int i = workspace.layer;
+        Layer layer = workspace.model.layers.get(i);
+        Layer next = workspace.model.layers.get(i + 1);
+        double[] nextDeltas = workspace.deltas[i + 1];
+        double[] deltas = workspace.deltas[i];
+        double[] activations = workspace.activations[i + 1];
+        int nextSize = next.size();
+        int nextFanIn = next.fanIn;
+        for (int j = from; j < to; j++) {
+            double sum = 0.0;
+            for (int k = 0; k < nextSize; k++) {
+                sum = clipGradient(sum + next.weights[k * nextFanIn + j] * nextDeltas[k], 1.0);
+            }
+            deltas[j] = clipGradient(sum * derivative(activations[j], layer.activationFunction), 1.0);
+        }
+    }
+
+    // Updates the biases and weights of neurons [from, to) of the workspace's current layer
+    private static void updateTile(Workspace workspace, int from, int to) {
+        int i = workspace.layer;
+        Layer layer = workspace.model.layers.get(i);
+        Optimizer optimizer = workspace.optimizer;
+        double learningRate = workspace.learningRate;
+        double[] previous = workspace.activations[i];
+        double[] deltas = workspace.deltas[i];
+        int fanIn = layer.fanIn;
+        boolean embeddingLayer = workspace.embedding && i == 0;
+        for (int j = from; j < to; j++) {
+            double delta = clipGradient(deltas[j], 1.0);
+            layer.biases[j] += optimizer.biasStep(i, j, delta, learningRate);
+            if (embeddingLayer) {
+                // Embedding table: only the rows of this sample's categories change
+                updateEmbeddingColumns(optimizer, i, layer, j, delta, workspace.categoryIds[0],
+                        workspace.idCounts[0], learningRate);
+            } else if (layer.isSparse()) {
+                // Pruned layers only update their non-zeros, so pruned weights stay at zero
+                updateSparseRow(optimizer, i, layer, j, delta, previous, 0, learningRate);
+            } else {
+                // Update weights in the neuron's packed row
+                optimizer.updateWeights(i, layer.weights, j * fanIn, previous, 0, delta, fanIn, learningRate);
+            }
+        }
+    }
+
+    /**
+     * Runs one epoch of Hogwild training: every worker takes the next sample from a shared counter,
+     * runs it forward and backward on its own thread and adds its update straight to the shared
+     * weights, without locks. Updates from different threads can overwrite each other, which is
+     * rare when each sample only touches a few weights (embedding and sparse binary inputs), and
+     * costs little accuracy when it does. The first layer only writes the columns of inputs that
+     * are not zero, so sparse inputs keep their updates apart.
+     *
+     * @return The epoch's summed squared error
+     */
+    private static double trainEpochHogwild(LyraModel model, ArrayList<ArrayList<Double>> inputs,
+                                            ArrayList<ArrayList<Double>> targets, double learningRate,
+                                            Optimizer optimizer, LyraRuntime runtime, Workspace[] workers) {
+        AtomicInteger next = new AtomicInteger();
+        // Every worker is its own task, whatever the size of the model
+        LayerScheduler.forEach(runtime, workers.length, 1, Long.MAX_VALUE, (first, last) -> {
+            for (int w = first; w < last; w++) {
+                Workspace buffers = workers[w];
+                buffers.error = 0;
+                for (int i = next.getAndIncrement(); i < inputs.size(); i = next.getAndIncrement()) {
+                    buffers.error += forwardBackward(model, inputs, targets, i, i + 1, buffers, null);
+                    applySample(model, buffers, learningRate, optimizer);
+                }
+            }
+        });
+        model.markModified();
+
+        double error = 0;
+        for (Workspace buffers : workers) {
+            error += buffers.error;
+        }
+        return error;
+    }
+
+    // The per-sample update of trainModel, from one-sample buffers, writing only the weights the sample moves
+    private static void applySample(LyraModel model, Workspace buffers, double learningRate, Optimizer optimizer) {
+        boolean embedding = model.frontLayer instanceof EmbeddingLayer;
+        optimizer.nextStep();
+        for (int i = 0; i < model.layers.size(); i++) {
+            Layer layer = model.layers.get(i);
+            int fanIn = layer.fanIn;
+            double[] deltas = buffers.deltas[i];
+            double[] previous = buffers.activations[i];
+            for (int j = 0; j < layer.size(); j++) {
+                double delta = deltas[j];
+                layer.biases[j] += optimizer.biasStep(i, j, delta, learningRate);
+                if (embedding && i == 0) {
+                    updateEmbeddingColumns(optimizer, i, layer, j, delta, buffers.categoryIds[0], buffers.idCounts[0],
+                            learningRate);
+                } else if (layer.isSparse()) {
+                    updateSparseRow(optimizer, i, layer, j, delta, previous, 0, learningRate);
+                } else if (i == 0) {
+                    int rowOffset = j * fanIn;
+                    for (int k = 0; k < fanIn; k++) {
+                        if (previous[k] != 0) {
+                            layer.weights[rowOffset + k] += optimizer.weightStep(i, rowOffset + k,
+                                    delta * previous[k], layer.weights[rowOffset + k], learningRate);
                         }
-                        double delta = clipGradient(sum * derivative, 1.0);
-                        currentDeltas.add(delta);
                     }
-                    allDeltas.add(0, currentDeltas);
+                } else {
+                    optimizer.updateWeights(i, layer.weights, j * fanIn, previous, 0, delta, fanIn, learningRate);
                 }
+            }
+        }
+        buffers.clearTouched();
+    }
 
-                // Parallel weight updates
-                for (int layerIdx = 0; layerIdx < model.layers.size(); layerIdx++) {
-                    Layer currentLayer = model.layers.get(layerIdx);
-                    ArrayList<Double> prevActivations = layerActivations.get(layerIdx);
-                    ArrayList<Double> deltas = allDeltas.get(layerIdx);
-
-                    ArrayList<CompletableFuture<Void>> updateFutures = new ArrayList<>();
-
-                    for (int j = 0; j < currentLayer.neurons.size(); j++) {
-                        final int neuronIdx = j;
-                        updateFutures.add(CompletableFuture.runAsync(() -> {
-                            Neuron neuron = currentLayer.neurons.get(neuronIdx);
-                            double delta = clipGradient(deltas.get(neuronIdx), 1.0);
-
-                            // Update bias
-                            double biasUpdate = clipGradient(learningRate * delta, 0.1);
-                            neuron.bias += biasUpdate;
-
-                            // Update weights
-                            for (int k = 0; k < neuron.weights.size(); k++) {
-                                double weightUpdate = clipGradient(learningRate * delta * 
-                                    prevActivations.get(k), 0.1);
-                                neuron.weights.set(k, neuron.weights.get(k) + weightUpdate);
-                            }
-                        }, executor));
-                    }
+    /**
+     * Primitive buffers for training, sized once from the model's shape (for one sample, one batch
+     * or one worker's slice of it) and reused for every sample and epoch of a run, so steady-state
+     * training does not allocate. Activations and deltas are row-major: sample n of a layer occupies
+     * [n*size .. n*size+size). A workspace must not be used by two workers at once.
+     */
+    private static final class Workspace {
+        final LyraModel model;
+        final boolean embedding;
+        // activations[0] is the packed input (unused for embedding models), activations[i + 1] is layer i
+        final double[][] activations;
+        final double[][] deltas;
+        // Summed gradients; null unless the workspace was made for mini-batches
+        final double[][] weightGradients;
+        final double[][] biasGradients;
+        // Embedding models: each row's category IDs (grown only for a bag longer than any before it),
+        // how many there are, one row of the first layer, and the columns that have a gradient
+        final int[][] categoryIds;
+        final int[] idCounts;
+        final double[] firstRow;
+        final boolean[] touched;
+        final int[] touchedColumns;
+        int touchedCount;
+        // Summed squared error of the last slice this worker ran
+        double error;
 
-                    CompletableFuture.allOf(updateFutures.toArray(new CompletableFuture[0])).join();
+        // Per-sample training: the layer and settings the tile bodies below work on, so that handing
+        // a layer to the scheduler does not create a new lambda for every sample
+        int layer;
+        Optimizer optimizer;
+        double learningRate;
+        final LayerScheduler.RangeBody forwardTiles = (from, to) -> forwardTile(this, from, to);
+        final LayerScheduler.RangeBody backwardTiles = (from, to) -> backwardTile(this, from, to);
+        final LayerScheduler.RangeBody updateTiles = (from, to) -> updateTile(this, from, to);
+
+        Workspace(LyraModel model, int rows, boolean gradients) {
+            int layers = model.layers.size();
+            this.model = model;
+            this.embedding = model.frontLayer instanceof EmbeddingLayer;
+            activations = new double[layers + 1][];
+            deltas = new double[layers][];
+            weightGradients = gradients ? new double[layers][] : null;
+            biasGradients = gradients ? new double[layers][] : null;
+            activations[0] = new double[embedding ? 0 : rows * model.frontLayer.neurons.size()];
+            for (int i = 0; i < layers; i++) {
+                Layer layer = model.layers.get(i);
+                activations[i + 1] = new double[rows * layer.size()];
+                deltas[i] = new double[rows * layer.size()];
+                if (gradients) {
+                    weightGradients[i] = new double[layer.size() * layer.fanIn];
+                    biasGradients[i] = new double[layer.size()];
                 }
             }
+            categoryIds = new int[embedding ? rows : 0][];
+            for (int n = 0; n < categoryIds.length; n++) {
+                categoryIds[n] = new int[1];
+            }
+            idCounts = new int[categoryIds.length];
+            firstRow = new double[embedding ? model.layers.getFirst().size() : 0];
+            touched = new boolean[embedding ? model.frontLayer.neurons.size() : 0];
+            touchedColumns = new int[touched.length];
+        }
 
-            avgError = totalError / (inputDataSet.size() * model.layers.getLast().neurons.size());
+        void touch(int column) {
+            if (!touched[column]) {
+                touched[column] = true;
+                touchedColumns[touchedCount++] = column;
+            }
+        }
 
-            // Print progress at the interval
-            if(statusPrintInterval != 0 && !progressBar) {
-                if (epoch % statusPrintInterval == 0) {
-                    Essentials.logger.logString(String.format("Epoch: %d, Time (in seconds): %d, Average Error: %.6f", 
-                        epoch, (System.currentTimeMillis() / 1000) - startTimeInSeconds, avgError));
-                }
+        void clearTouched() {
+            for (int t = 0; t < touchedCount; t++) {
+                touched[touchedColumns[t]] = false;
             }
+            touchedCount = 0;
+        }
+    }
 
-            //Updates progress bar
-            if(progressBar) {
-                switch (primaryStopper) {
-                    case EPOCH:
-                        Essentials.logger.updateProgressBar(epoch, (int) epochs);
-                        break;
-                    case TIME:
-                        Essentials.logger.updateProgressBar((int) ((System.currentTimeMillis() / 1000) - startTimeInSeconds), (int) timeLimit);
-                        break;
-                    case ERROR:
-                        Essentials.logger.updateProgressBar((int) (totalError / (inputDataSet.size() * model.layers.getLast().neurons.size()) * 1000), (int) (errorThreshold * 1000));
-                        break;
-                    default:
-                        throw new RuntimeException("Unknown stopper");
+    /**
+     * Trains on samples [from, to) as one batch: a batched forward pass, a batched backward pass,
+     * and one update per weight with the average of the batch's gradients.
+     *
+     * @return The batch's summed squared error
+     */
+    private static double trainBatch(LyraModel model, ArrayList<ArrayList<Double>> inputs,
+                                     ArrayList<ArrayList<Double>> targets, int from, int to,
+                                     double learningRate, Optimizer optimizer, LyraRuntime runtime,
+                                     Workspace buffers) {
+        double error = forwardBackward(model, inputs, targets, from, to, buffers, runtime);
+        accumulateGradients(model, buffers, to - from, runtime);
+        optimizer.nextStep();
+        applyGradients(model, buffers, 1.0 / (to - from), learningRate, optimizer, runtime);
+        // The next forward pass must see the new weights (the GPU path caches them)
+        model.markModified();
+        return error;
+    }
+
+    /**
+     * Trains on samples [from, to) as one batch split between workers. Each worker runs its own
+     * slice of the batch on one thread, into its own buffers; the workers' gradients are then added
+     * up pairwise in a fixed tree and applied once. Nothing writes the weights until every worker
+     * is done, so all of them read the same weights without copying them. Slices and tree only
+     * depend on the number of workers, so the result is the same on every run with the same count.
+     *
+     * @return The batch's summed squared error
+     */
+    private static double trainBatchDataParallel(LyraModel model, ArrayList<ArrayList<Double>> inputs,
+                                                 ArrayList<ArrayList<Double>> targets, int from, int to,
+                                                 double learningRate, Optimizer optimizer, LyraRuntime runtime,
+                                                 Workspace[] workers) {
+        int rows = to - from;
+        int slice = (rows + workers.length - 1) / workers.length;
+        int active = (rows + slice - 1) / slice;
+
+        // Every worker is its own task, whatever the size of the model
+        LayerScheduler.forEach(runtime, active, 1, Long.MAX_VALUE, (first, last) -> {
+            for (int w = first; w < last; w++) {
+                int sliceFrom = from + w * slice;
+                int sliceTo = Math.min(to, sliceFrom + slice);
+                workers[w].error = forwardBackward(model, inputs, targets, sliceFrom, sliceTo, workers[w], null);
+                accumulateGradients(model, workers[w], sliceTo - sliceFrom, null);
+            }
+        });
+
+        // Tree reduction: at each level, worker k * 2 * stride takes in worker k * 2 * stride + stride
+        for (int stride = 1; stride < active; stride *= 2) {
+            int step = stride * 2;
+            int offset = stride;
+            int pairs = (active - stride + step - 1) / step;
+            LayerScheduler.forEach(runtime, pairs, 1, Long.MAX_VALUE, (first, last) -> {
+                for (int p = first; p < last; p++) {
+                    addGradients(model, workers[p * step], workers[p * step + offset]);
                 }
+            });
+        }
+
+        optimizer.nextStep();
+        applyGradients(model, workers[0], 1.0 / rows, learningRate, optimizer, runtime);
+        model.markModified();
+
+        double error = 0;
+        for (int w = 0; w < active; w++) {
+            error += workers[w].error;
+        }
+        return error;
+    }
+
+    /**
+     * Runs samples [from, to) forward and backward, leaving every layer's activations and deltas
+     * in the buffers. With a null runtime everything runs on the calling thread.
+     *
+     * @return The summed squared error of the samples
+     */
+    private static double forwardBackward(LyraModel model, ArrayList<ArrayList<Double>> inputs,
+                                          ArrayList<ArrayList<Double>> targets, int from, int to,
+                                          Workspace buffers, LyraRuntime runtime) {
+        MathKernels kernels = Kernels.get();
+        int rows = to - from;
+        int layerCount = model.layers.size();
+        boolean embedding = model.frontLayer instanceof EmbeddingLayer;
+        double[][] activations = buffers.activations;
+
+        // Forward pass, one layer at a time over the whole batch
+        loadInputs(inputs, from, to, buffers);
+        int firstDense = 0;
+        if (embedding) {
+            Layer first = model.layers.getFirst();
+            double[] row = buffers.firstRow;
+            for (int n = 0; n < rows; n++) {
+                Feeding.feedLayerSparse(first, buffers.categoryIds[n], buffers.idCounts[n], row);
+                System.arraycopy(row, 0, activations[1], n * row.length, row.length);
             }
+            firstDense = 1;
+        }
+        for (int i = firstDense; i < layerCount; i++) {
+            Layer layer = model.layers.get(i);
+            double[] in = activations[i];
+            double[] out = activations[i + 1];
+            forRows(runtime, rows, (long) rows * layer.size() * layer.fanIn,
+                    (rowStart, rowEnd) -> Feeding.multiplyBlocked(layer, in, out, rowStart, rowEnd));
+        }
 
-            //Checks to see if training should stop
-            if(totalError < errorThreshold) {
-                goodScoreStreak++;
+        // Output deltas and error
+        double totalError = 0;
+        int outSize = model.layers.getLast().size();
+        double[] outputs = activations[layerCount];
+        double[] outputDeltas = buffers.deltas[layerCount - 1];
+        for (int n = 0; n < rows; n++) {
+            ArrayList<Double> target = targets.get(from + n);
+            for (int j = 0; j < outSize; j++) {
+                double outVal = outputs[n * outSize + j];
+                double error = target.get(j) - outVal;
+                outputDeltas[n * outSize + j] = clipGradient(error * (1 - (outVal * outVal) + 1e-7), 1.0);
+                totalError += error * error;
             }
-            if(goodScoreStreak >= 5) {
-                Essentials.logger.logString("Ended training because of good score.");
-                break;
+        }
+
+        // Backward pass: each layer's deltas are the next layer's deltas times its weight matrix
+        for (int i = layerCount - 2; i >= 0; i--) {
+            Layer layer = model.layers.get(i);
+            Layer next = model.layers.get(i + 1);
+            int size = layer.size();
+            int nextSize = next.size();
+            double[] nextDeltas = buffers.deltas[i + 1];
+            double[] deltas = buffers.deltas[i];
+            double[] layerActivations = activations[i + 1];
+            forRows(runtime, rows, (long) rows * nextSize * size, (rowStart, rowEnd) -> {
+                for (int n = rowStart; n < rowEnd; n++) {
+                    int offset = n * size;
+                    Arrays.fill(deltas, offset, offset + size, 0);
+                    for (int k = 0; k < nextSize; k++) {
+                        kernels.axpy(nextDeltas[n * nextSize + k], next.weights, k * size, deltas, offset, size);
+                    }
+                    for (int j = 0; j < size; j++) {
+                        deltas[offset + j] = clipGradient(clipGradient(deltas[offset + j], 1.0) *
+                                derivative(layerActivations[offset + j], layer.activationFunction), 1.0);
+                    }
+                }
+            });
+        }
+        return totalError;
+    }
+
+    // Copies samples [from, to) into the workspace: the packed inputs, or each sample's category IDs
+    private static void loadInputs(ArrayList<ArrayList<Double>> inputs, int from, int to, Workspace workspace) {
+        if (workspace.embedding) {
+            for (int n = 0; n < to - from; n++) {
+                ArrayList<Double> input = inputs.get(from + n);
+                int count = input.size();
+                int[] ids = workspace.categoryIds[n];
+                if (ids.length < count) {
+                    ids = workspace.categoryIds[n] = new int[count];
+                }
+                for (int k = 0; k < count; k++) {
+                    ids[k] = input.get(k).intValue();
+                    workspace.touch(ids[k]);
+                }
+                workspace.idCounts[n] = count;
             }
-            if(epoch >= epochs && shouldLimitEpochs) {
-                Essentials.logger.logString("Ended training because epoch limit reached.");
-                break;
+        } else {
+            double[] packed = workspace.activations[0];
+            int width = workspace.model.frontLayer.neurons.size();
+            for (int n = 0; n < to - from; n++) {
+                ArrayList<Double> input = inputs.get(from + n);
+                for (int k = 0; k < width; k++) {
+                    packed[n * width + k] = input.get(k);
+                }
             }
-            if(shouldLimitTime && (System.currentTimeMillis() / 1000) - startTimeInSeconds >= timeLimit) {
-                Essentials.logger.logString("Ended training because time limit reached.");
-                break;
+        }
+    }
+
+    // Sums each neuron's gradients over the samples in the buffers; embedding columns must start at zero
+    private static void accumulateGradients(LyraModel model, Workspace buffers, int rows, LyraRuntime runtime) {
+        MathKernels kernels = Kernels.get();
+        boolean embedding = model.frontLayer instanceof EmbeddingLayer;
+        for (int i = 0; i < model.layers.size(); i++) {
+            Layer layer = model.layers.get(i);
+            int size = layer.size();
+            int fanIn = layer.fanIn;
+            double[] deltas = buffers.deltas[i];
+            double[] previous = buffers.activations[i];
+            double[] weightGradients = buffers.weightGradients[i];
+            double[] biasGradients = buffers.biasGradients[i];
+            boolean embeddingLayer = embedding && i == 0;
+            int columns = embeddingLayer ? Math.max(1, buffers.touchedCount) : fanIn;
+
+            forNeurons(runtime, layer, columns * rows, (neuronFrom, neuronTo) -> {
+                for (int j = neuronFrom; j < neuronTo; j++) {
+                    int rowOffset = j * fanIn;
+                    double biasGradient = 0;
+                    if (embeddingLayer) {
+                        // Only the batch's categories get a gradient
+                        for (int n = 0; n < rows; n++) {
+                            double delta = deltas[n * size + j];
+                            int[] ids = buffers.categoryIds[n];
+                            biasGradient += delta;
+                            for (int t = 0; t < buffers.idCounts[n]; t++) {
+                                weightGradients[rowOffset + ids[t]] += delta;
+                            }
+                        }
+                    } else {
+                        Arrays.fill(weightGradients, rowOffset, rowOffset + fanIn, 0);
+                        for (int n = 0; n < rows; n++) {
+                            double delta = deltas[n * size + j];
+                            biasGradient += delta;
+                            kernels.axpy(delta, previous, n * fanIn, weightGradients, rowOffset, fanIn);
+                        }
+                    }
+                    biasGradients[j] = biasGradient;
+                }
+            });
+        }
+    }
+
+    // Adds one worker's gradients into another's and leaves the source's embedding columns at zero
+    private static void addGradients(LyraModel model, Workspace into, Workspace source) {
+        MathKernels kernels = Kernels.get();
+        boolean embedding = model.frontLayer instanceof EmbeddingLayer;
+        for (int i = 0; i < model.layers.size(); i++) {
+            Layer layer = model.layers.get(i);
+            double[] target = into.weightGradients[i];
+            double[] gradients = source.weightGradients[i];
+            if (embedding && i == 0) {
+                int fanIn = layer.fanIn;
+                for (int t = 0; t < source.touchedCount; t++) {
+                    int column = source.touchedColumns[t];
+                    into.touch(column);
+                    for (int j = 0; j < layer.size(); j++) {
+                        target[j * fanIn + column] += gradients[j * fanIn + column];
+                        gradients[j * fanIn + column] = 0;
+                    }
+                }
+                source.clearTouched();
+            } else {
+                kernels.axpy(1.0, gradients, 0, target, 0, gradients.length);
             }
-            epoch++;
+            kernels.axpy(1.0, source.biasGradients[i], 0, into.biasGradients[i], 0, layer.size());
         }
+    }
 
-        Essentials.logger.updateProgressBar(100, 100);
-        Essentials.logger.logString("Training Completed! Average Error: " + avgError);
+    // Applies the summed gradients in the buffers, times scale, as one optimizer step per weight
+    private static void applyGradients(LyraModel model, Workspace buffers, double scale, double learningRate,
+                                       Optimizer optimizer, LyraRuntime runtime) {
+        boolean embedding = model.frontLayer instanceof EmbeddingLayer;
+        for (int i = 0; i < model.layers.size(); i++) {
+            Layer layer = model.layers.get(i);
+            int fanIn = layer.fanIn;
+            double[] weightGradients = buffers.weightGradients[i];
+            double[] biasGradients = buffers.biasGradients[i];
+            boolean embeddingLayer = embedding && i == 0;
+            int columns = embeddingLayer ? Math.max(1, buffers.touchedCount) : fanIn;
+            int layerIndex = i;
 
-        return model;
+            // Every neuron's row is independent
+            forNeurons(runtime, layer, columns, (neuronFrom, neuronTo) -> {
+                for (int j = neuronFrom; j < neuronTo; j++) {
+                    int rowOffset = j * fanIn;
+                    if (embeddingLayer) {
+                        for (int t = 0; t < buffers.touchedCount; t++) {
+                            int column = buffers.touchedColumns[t];
+                            applyGradient(optimizer, layerIndex, layer, j, column,
+                                    scale * weightGradients[rowOffset + column], learningRate);
+                            weightGradients[rowOffset + column] = 0;
+                        }
+                    } else if (layer.isSparse()) {
+                        // Pruned layers only update their non-zeros, so pruned weights stay at zero
+                        updateSparseRow(optimizer, layerIndex, layer, j, scale, weightGradients, rowOffset, learningRate);
+                    } else {
+                        optimizer.updateWeights(layerIndex, layer.weights, rowOffset, weightGradients, rowOffset,
+                                scale, fanIn, learningRate);
+                    }
+                    layer.biases[j] += optimizer.biasStep(layerIndex, j, scale * biasGradients[j], learningRate);
+                }
+            });
+        }
+        buffers.clearTouched();
     }
-    private static double clipGradient(double value, double threshold) {
-        return Math.max(Math.min(value, threshold), -threshold);
+
+    // Splits samples over the runtime, or runs them on the calling thread when there is no runtime (a worker)
+    private static void forRows(LyraRuntime runtime, int rows, long work, LayerScheduler.RangeBody body) {
+        if (runtime == null) {
+            body.run(0, rows);
+        } else {
+            LayerScheduler.forEach(runtime, rows, BATCH_SAMPLE_BLOCK, work, body);
+        }
+    }
+
+    // Splits a layer's neurons over the runtime, or runs them on the calling thread when there is no runtime
+    private static void forNeurons(LyraRuntime runtime, Layer layer, int columns, LayerScheduler.RangeBody body) {
+        if (runtime == null) {
+            body.run(0, layer.size());
+        } else {
+            LayerScheduler.forEachNeuron(runtime, layer, columns, body);
+        }
+    }
+
+    // Updates one weight through the optimizer, and its CSR copy if the layer is pruned; pruned weights stay at zero
+    private static void applyGradient(Optimizer optimizer, int layerIndex, Layer layer, int neuron, int column,
+                                      double gradient, double learningRate) {
+        int p = -1;
+        if (layer.isSparse()) {
+            p = Arrays.binarySearch(layer.sparseColumns, layer.sparseRowStarts[neuron],
+                    layer.sparseRowStarts[neuron + 1], column);
+            if (p < 0) return;
+        }
+        int index = neuron * layer.fanIn + column;
+        double updated = layer.weights[index] +
+                optimizer.weightStep(layerIndex, index, gradient, layer.weights[index], learningRate);
+        layer.weights[index] = updated;
+        if (p >= 0) {
+            layer.sparseWeights[p] = updated;
+        }
+    }
+
+    // Updates the non-zeros of a pruned row, whose gradients are scale * values[valuesOffset + column],
+    // keeping the packed weight and its CSR copy together
+    private static void updateSparseRow(Optimizer optimizer, int layerIndex, Layer layer, int neuron, double scale,
+                                        double[] values, int valuesOffset, double learningRate) {
+        int rowOffset = neuron * layer.fanIn;
+        for (int p = layer.sparseRowStarts[neuron]; p < layer.sparseRowStarts[neuron + 1]; p++) {
+            int index = rowOffset + layer.sparseColumns[p];
+            double gradient = scale * values[valuesOffset + layer.sparseColumns[p]];
+            double updated = layer.weights[index] +
+                    optimizer.weightStep(layerIndex, index, gradient, layer.weights[index], learningRate);
+            layer.weights[index] = updated;
+            layer.sparseWeights[p] = updated;
+        }
+    }
+
+    // Updates the weights of the first count categories; an input of 1 per ID means each gradient is just the delta
+    private static void updateEmbeddingColumns(Optimizer optimizer, int layerIndex, Layer layer, int neuron,
+                                               double delta, int[] categoryIds, int count, double learningRate) {
+        for (int t = 0; t < count; t++) {
+            applyGradient(optimizer, layerIndex, layer, neuron, categoryIds[t], delta, learningRate);
+        }
     }
 
     /**
@@ -295,62 +1063,50 @@ public class Training {
      * @return Output values from the final layer
      */
 private static ArrayList<Double> parallelForwardPass(LyraModel model, ArrayList<Double> input) {
+    LyraRuntime runtime = getRuntime();
+
     // Set input layer values
-    for (int i = 0; i < model.frontLayer.neurons.size(); i++) {
-        model.frontLayer.neurons.get(i).value = input.get(i);
+    double[] prevLayerValues = new double[model.frontLayer.neurons.size()];
+    for (int i = 0; i < prevLayerValues.length; i++) {
+        prevLayerValues[i] = input.get(i);
+        model.frontLayer.neurons.get(i).value = prevLayerValues[i];
     }
 
-    // Process each layer in sequence, but neurons within each layer in parallel
+    // Process each layer in sequence, but tiles of neurons within each layer in parallel
     for (int layerIdx = 0; layerIdx < model.layers.size(); layerIdx++) {
         Layer currentLayer = model.layers.get(layerIdx);
-        ArrayList<CompletableFuture<Void>> neuronFutures = new ArrayList<>();
-
-        // Get previous layer values
-        ArrayList<Double> prevLayerValues = new ArrayList<>();
-        if (layerIdx == 0) {
-            for (int k = 0; k < model.frontLayer.neurons.size(); k++) {
-                prevLayerValues.add(model.frontLayer.neurons.get(k).value);
-            }
-        } else {
-            for (int k = 0; k < model.layers.get(layerIdx - 1).neurons.size(); k++) {
-                prevLayerValues.add(model.layers.get(layerIdx - 1).neurons.get(k).value);
-            }
-        }
+        final double[] finalPrevLayerValues = prevLayerValues;
+        final double[] values = new double[currentLayer.size()];
+        final int fanIn = currentLayer.fanIn;
 
-        // Process neurons in parallel
-        final ArrayList<Double> finalPrevLayerValues = new ArrayList<>(prevLayerValues);
-        for (int neuronIdx = 0; neuronIdx < currentLayer.neurons.size(); neuronIdx++) {
-            final int finalNeuronIdx = neuronIdx;
-            neuronFutures.add(CompletableFuture.runAsync(() -> {
-                Neuron neuron = currentLayer.neurons.get(finalNeuronIdx);
-                double value = 0;
-                
+        // Process neurons in tiles, waiting for the whole layer before moving on
+        LayerScheduler.forEachNeuron(runtime, currentLayer, (from, to) -> {
+            for (int neuronIdx = from; neuronIdx < to; neuronIdx++) {
                 // Calculate weighted sum
-                for (int k = 0; k < finalPrevLayerValues.size(); k++) {
-                    value += finalPrevLayerValues.get(k) * neuron.weights.get(k);
-                }
-                
+                double value = Kernels.get().dot(currentLayer.weights, neuronIdx * fanIn,
+                        finalPrevLayerValues, 0, fanIn);
+
                 // Add bias and apply activation
-                value += neuron.bias;
-                value = ActivationMethods.activate(value, currentLayer.activationFunction);
-                neuron.value = value;
-            }, executor));
-        }
+                value += currentLayer.biases[neuronIdx];
+                values[neuronIdx] = ActivationMethods.activate(value, currentLayer.activationFunction);
+            }
+        });
 
-        // Wait for all neurons in this layer to complete
-        CompletableFuture.allOf(neuronFutures.toArray(new CompletableFuture[0])).join();
+        for (int j = 0; j < values.length; j++) {
+            currentLayer.neurons.get(j).value = values[j];
+        }
+        prevLayerValues = values;
     }
 
     // Collect output
     ArrayList<Double> output = new ArrayList<>();
-    for (Neuron neuron : model.layers.getLast().neurons) {
-        output.add(neuron.value);
+    for (double value : prevLayerValues) {
+        output.add(value);
     }
     return output;
 }
 }
 
-
 //=================================================================================
 //== This is probably to most complicated class in this entire API. This is the  ==
 //== class responsible for the training of the model. It uses pretty conventional==
@@ -0,0 +1,55 @@
+package io.github.equinoxelectronic.lyra2.processing.kernels;
+
+import io.github.equinoxelectronic.lyra2.Config;
+import io.github.equinoxelectronic.equinox_essentials.Essentials;
+
+/**
+ * Selects the math kernel implementation once, at class initialization.
+ * The SIMD kernels are used when the JVM was started with {@code --add-modules jdk.incubator.vector};
+ * otherwise the scalar kernels are used. Setting the system property {@code lyra2.kernels=scalar}
+ * forces the scalar kernels.
+ */
+public class Kernels {
+
+    private static final MathKernels INSTANCE = select();
+
+    /**
+     * Returns the kernel implementation chosen for this JVM.
+     *
+     * @return The active kernels
+     */
+    public static MathKernels get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Checks whether the SIMD kernels are in use.
+     *
+     * @return true if the Vector API kernels were selected
+     */
+    public static boolean isVectorized() {
+        return !(INSTANCE instanceof ScalarKernels);
+    }
+
+    private static MathKernels select() {
+        if ("scalar".equalsIgnoreCase(System.getProperty("lyra2.kernels"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new ScalarKernels();
+        }
+        try {
+            // Loaded reflectively so the Vector API classes are never linked when the module is absent
+            return (MathKernels) Class.forName(Kernels.class.getPackageName() + ".VectorKernels")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            Essentials.logger.logVerbose("Vector API kernels unavailable, using scalar kernels: " + e, Config.VERBOSE);
+            return new ScalarKernels();
+        }
+    }
+}
+
+
+//This picks between the SIMD kernels and the plain ones. Because the Vector API is still an incubator
+//module, it is not there unless you ask for it, so Lyra2 has to check before using it.
+
+//Equinox Electronic
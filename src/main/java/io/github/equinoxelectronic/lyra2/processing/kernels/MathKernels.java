@@ -0,0 +1,87 @@
+package io.github.equinoxelectronic.lyra2.processing.kernels;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+
+/**
+ * The inner loops of inference and training over primitive arrays.
+ * Implementations must give the same results as {@link ScalarKernels} up to floating point
+ * reassociation; {@link Kernels#get()} picks the fastest one available at runtime.
+ */
+public interface MathKernels {
+
+    /**
+     * Computes the dot product of two array ranges.
+     *
+     * @param a First array
+     * @param aOffset Start index in the first array
+     * @param b Second array
+     * @param bOffset Start index in the second array
+     * @param length Number of elements to multiply
+     * @return The sum of a[aOffset + i] * b[bOffset + i]
+     */
+    double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    /**
+     * Adds a scaled vector to another: y[i] += alpha * x[i].
+     *
+     * @param alpha Scale factor
+     * @param x Source array
+     * @param xOffset Start index in the source
+     * @param y Destination array
+     * @param yOffset Start index in the destination
+     * @param length Number of elements to update
+     */
+    void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length);
+
+    /**
+     * Adds a scaled vector to another, clipping every increment to [-clip, clip]:
+     * y[i] += clamp(alpha * x[i], -clip, clip). This is the weight update used by training.
+     *
+     * @param alpha Scale factor
+     * @param x Source array
+     * @param xOffset Start index in the source
+     * @param y Destination array
+     * @param yOffset Start index in the destination
+     * @param length Number of elements to update
+     * @param clip Largest allowed magnitude of one increment
+     */
+    void axpyClipped(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length, double clip);
+
+    /**
+     * Applies an activation function in place to values[from, to).
+     *
+     * @param values The values to activate
+     * @param from First index, inclusive
+     * @param to Last index, exclusive
+     * @param function The activation function
+     */
+    void activate(double[] values, int from, int to, Enums.activationFunctions function);
+
+    /**
+     * Computes the dot product of two 32-bit array ranges, accumulating in float.
+     *
+     * @param a First array
+     * @param aOffset Start index in the first array
+     * @param b Second array
+     * @param bOffset Start index in the second array
+     * @param length Number of elements to multiply
+     * @return The sum of a[aOffset + i] * b[bOffset + i]
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Applies an activation function in place to 32-bit values[from, to).
+     *
+     * @param values The values to activate
+     * @param from First index, inclusive
+     * @param to Last index, exclusive
+     * @param function The activation function
+     */
+    void activate(float[] values, int from, int to, Enums.activationFunctions function);
+}
+
+
+//These are the little loops that all the math in Lyra2 boils down to, pulled out into one place
+//so they can be swapped for SIMD versions.
+
+//Equinox Electronic
@@ -0,0 +1,62 @@
+package io.github.equinoxelectronic.lyra2.processing.kernels;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.processing.ActivationMethods;
+
+/**
+ * Plain Java implementation of the math kernels.
+ * Used whenever the {@code jdk.incubator.vector} module is not enabled.
+ */
+public class ScalarKernels implements MathKernels {
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void axpyClipped(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length, double clip) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += Math.max(Math.min(alpha * x[xOffset + i], clip), -clip);
+        }
+    }
+
+    @Override
+    public void activate(double[] values, int from, int to, Enums.activationFunctions function) {
+        for (int i = from; i < to; i++) {
+            values[i] = ActivationMethods.activate(values[i], function);
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void activate(float[] values, int from, int to, Enums.activationFunctions function) {
+        for (int i = from; i < to; i++) {
+            values[i] = (float) ActivationMethods.activate(values[i], function);
+        }
+    }
+}
+
+
+//The fallback for when SIMD is not available. Same math, one number at a time.
+
+//Equinox Electronic
@@ -0,0 +1,149 @@
+package io.github.equinoxelectronic.lyra2.processing.kernels;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of the math kernels using the JDK Vector API.
+ * Loops run over the widest vector shape the CPU supports and finish the tail with scalar code.
+ *
+ * This class links against {@code jdk.incubator.vector}, so it must only be loaded when that module
+ * is present; {@link Kernels} takes care of that.
+ */
+public class VectorKernels implements MathKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final DoubleVector ONE = DoubleVector.broadcast(SPECIES, 1.0);
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final FloatVector FLOAT_ONE = FloatVector.broadcast(FLOAT_SPECIES, 1.0f);
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int upper = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        int upper = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, xOffset + i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, yOffset + i);
+            vx.fma(DoubleVector.broadcast(SPECIES, alpha), vy).intoArray(y, yOffset + i);
+        }
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void axpyClipped(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length, double clip) {
+        int upper = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector step = DoubleVector.fromArray(SPECIES, x, xOffset + i)
+                    .mul(alpha)
+                    .min(clip)
+                    .max(-clip);
+            DoubleVector.fromArray(SPECIES, y, yOffset + i).add(step).intoArray(y, yOffset + i);
+        }
+        for (; i < length; i++) {
+            y[yOffset + i] += Math.max(Math.min(alpha * x[xOffset + i], clip), -clip);
+        }
+    }
+
+    @Override
+    public void activate(double[] values, int from, int to, Enums.activationFunctions function) {
+        int length = to - from;
+        int upper = from + SPECIES.loopBound(length);
+        int i = from;
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+            v = switch (function) {
+                case RELU -> v.max(0.0);
+                case LEAKY_RELU -> {
+                    VectorMask<Double> positive = v.compare(VectorOperators.GT, 0.0);
+                    yield v.mul(0.01).blend(v, positive);
+                }
+                case TANH -> v.lanewise(VectorOperators.TANH);
+                case SIGMOID -> ONE.div(v.neg().lanewise(VectorOperators.EXP).add(1.0));
+            };
+            v.intoArray(values, i);
+        }
+        for (; i < to; i++) {
+            values[i] = switch (function) {
+                case SIGMOID -> 1.0 / (1.0 + Math.exp(-values[i]));
+                case TANH -> Math.tanh(values[i]);
+                case RELU -> Math.max(0, values[i]);
+                case LEAKY_RELU -> values[i] > 0 ? values[i] : 0.01 * values[i];
+            };
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(FLOAT_SPECIES);
+        int upper = FLOAT_SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += FLOAT_SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void activate(float[] values, int from, int to, Enums.activationFunctions function) {
+        int length = to - from;
+        int upper = from + FLOAT_SPECIES.loopBound(length);
+        int i = from;
+        for (; i < upper; i += FLOAT_SPECIES.length()) {
+            FloatVector v = FloatVector.fromArray(FLOAT_SPECIES, values, i);
+            v = switch (function) {
+                case RELU -> v.max(0.0f);
+                case LEAKY_RELU -> {
+                    VectorMask<Float> positive = v.compare(VectorOperators.GT, 0.0f);
+                    yield v.mul(0.01f).blend(v, positive);
+                }
+                case TANH -> v.lanewise(VectorOperators.TANH);
+                case SIGMOID -> FLOAT_ONE.div(v.neg().lanewise(VectorOperators.EXP).add(1.0f));
+            };
+            v.intoArray(values, i);
+        }
+        for (; i < to; i++) {
+            values[i] = switch (function) {
+                case SIGMOID -> (float) (1.0 / (1.0 + Math.exp(-values[i])));
+                case TANH -> (float) Math.tanh(values[i]);
+                case RELU -> Math.max(0f, values[i]);
+                case LEAKY_RELU -> values[i] > 0 ? values[i] : 0.01f * values[i];
+            };
+        }
+    }
+}
+
+
+//The fast version of the kernels. It does 2, 4 or 8 doubles (or twice as many floats) at once depending on the CPU.
+//It needs the JVM to be started with --add-modules jdk.incubator.vector.
+
+//Equinox Electronic
@@ -1,7 +1,14 @@
 package io.github.equinoxelectronic.lyra2.processing.lyraFile;
 
 import io.github.equinoxelectronic.lyra2.Config;
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.objects.InputTable;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
 import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedModel;
+import io.github.equinoxelectronic.lyra2.processing.DatatypeConversion;
+import io.github.equinoxelectronic.lyra2.processing.ModelChecker;
 import io.github.equinoxelectronic.lyra2.processing.Versioning;
 import com.google.gson.Gson;
 import io.github.equinoxelectronic.equinox_essentials.Essentials;
@@ -9,6 +16,7 @@ import org.tukaani.xz.XZInputStream;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Objects;
 import java.util.Scanner;
@@ -42,6 +50,11 @@ public class Loading {
             throw new RuntimeException("Failed to load model from " + filepath, e);
         }
 
+        // The neuron view is not serialized, so rebuild it over the packed weights
+        for (Layer layer : model.layers) {
+            layer.refreshNeurons();
+        }
+
         if(model.lyraVersion != Config.version) {
             model = Versioning.updateModel(model);
         }
@@ -88,6 +101,8 @@ public class Loading {
                 model = Versioning.updateModel(model);
             }
 
+            attachInputTable(model, filepath);
+
             Essentials.logger.logString("Loaded model " + model.modelID + " by " + model.modelAuthor + " successfully!");
             return model;
         } catch (IOException e) {
@@ -95,6 +110,89 @@ public class Loading {
         }
     }
 
+    /**
+     * Loads an int8 quantized model saved with {@link Saving#saveQuantizedModel(String, QuantizedModel)}.
+     *
+     * @param filepath Path to the model file (with or without .lyra extension)
+     * @return The loaded QuantizedModel instance
+     * @throws RuntimeException if the file cannot be read, decompressed, or parsed
+     */
+    public static QuantizedModel loadQuantizedModel(String filepath) {
+        if (!(filepath.endsWith(".lyra"))) {
+            filepath = filepath + ".lyra";
+        }
+
+        try (Scanner reader = new Scanner(new FileReader(filepath))) {
+            if (!reader.hasNextLine()) {
+                throw new IOException("Empty model file: " + filepath);
+            }
+            String decompressed = decompressString(reader.nextLine());
+            if (decompressed == null || decompressed.isEmpty()) {
+                throw new IOException("Decompression failed for: " + filepath);
+            }
+
+            QuantizedModel model = Parser.parseQuantizedModelFile(decompressed);
+            ModelChecker.checkQuantizedModel(model);
+
+            Essentials.logger.logString("Loaded quantized model " + model.modelID + " by " + model.modelAuthor + " successfully!");
+            return model;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load model from " + filepath, e);
+        }
+    }
+
+    /**
+     * Loads an input table saved with {@link Saving#saveInputTable(String, String, InputTable)}.
+     *
+     * @param filepath Path to the .lyratable file
+     * @return The loaded table
+     * @throws RuntimeException if the file cannot be read or is not an input table
+     */
+    public static InputTable loadInputTable(String filepath) {
+        try (DataInputStream in = new DataInputStream(new XZInputStream(new FileInputStream(filepath)))) {
+            String header = in.readUTF();
+            if (!header.equals(Config.lyraTableFileHeader + Config.fileVersion)) {
+                throw new IOException("Not an input table file: " + filepath);
+            }
+            in.readUTF(); // model ID, informational
+            long fingerprint = in.readLong();
+            Enums.IOType inputType = Enums.IOType.valueOf(in.readUTF());
+            Enums.IOType outputType = Enums.IOType.valueOf(in.readUTF());
+            Object[] outputs = new Object[in.readInt()];
+            for (int i = 0; i < outputs.length; i++) {
+                if (outputType == Enums.IOType.RAW) {
+                    ArrayList<Double> values = new ArrayList<>();
+                    int count = in.readInt();
+                    for (int k = 0; k < count; k++) {
+                        values.add(in.readDouble());
+                    }
+                    outputs[i] = values;
+                } else if (outputType == Enums.IOType.CHAR) {
+                    outputs[i] = (char) in.readLong();
+                } else {
+                    outputs[i] = DatatypeConversion.convertFromBits(outputType, in.readLong());
+                }
+            }
+            return new InputTable(inputType, outputType, fingerprint, outputs);
+        } catch (IOException | LyraWrongDatatypeException | IllegalArgumentException e) {
+            throw new RuntimeException("Failed to load input table from " + filepath, e);
+        }
+    }
+
+    // Picks up the table saved beside a model file, unless it belongs to other weights
+    private static void attachInputTable(LyraModel model, String modelFilepath) {
+        String tablePath = Saving.tableFilepath(modelFilepath);
+        if (!new File(tablePath).isFile()) {
+            return;
+        }
+        InputTable table = loadInputTable(tablePath);
+        if (table.getFingerprint() != InputTable.fingerprint(model)) {
+            Essentials.logger.logString("Ignoring input table " + tablePath + ", the model has changed since it was saved.");
+            return;
+        }
+        model.setInputTable(table);
+    }
+
     /**
      * Decompresses a Base64-encoded XZ-compressed string.
      * Uses a 4KB buffer for efficient memory usage during decompression.
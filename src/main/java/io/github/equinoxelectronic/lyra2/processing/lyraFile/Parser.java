@@ -3,12 +3,15 @@ package io.github.equinoxelectronic.lyra2.processing.lyraFile;
 import io.github.equinoxelectronic.lyra2.Config;
 import io.github.equinoxelectronic.lyra2.Enums;
 import io.github.equinoxelectronic.lyra2.exceptions.LyraModelLoadingError;
+import io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer;
 import io.github.equinoxelectronic.lyra2.objects.FrontLayer;
 import io.github.equinoxelectronic.lyra2.objects.Layer;
 import io.github.equinoxelectronic.lyra2.objects.LyraModel;
-import io.github.equinoxelectronic.lyra2.objects.Neuron;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedLayer;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedModel;
 
 import java.util.ArrayList;
+import java.util.Base64;
 
 /**
  * Parser for Lyra model files. Converts the string representation of a model
@@ -43,6 +46,7 @@ public class Parser {
      * [7] - Activation function
      * [8] - Front layer size
      * [9] - Network layers data
+     * [10] - Precision (optional, DOUBLE when missing)
      *
      * @param fileContent String containing the model data in Lyra format
      * @return Fully constructed and configured LyraModel instance
@@ -52,6 +56,9 @@ public class Parser {
         String[] parts = fileContent.split("␞");
 
         // Verify header and version
+        if (parts[0].startsWith(Config.lyraQuantizedFileHeader)) {
+            throw new LyraModelLoadingError("This is a quantized model file, load it with Loading.loadQuantizedModel");
+        }
         if (!parts[0].startsWith(Config.lyraFileHeader + Config.fileVersion)) {
             throw new LyraModelLoadingError("Invalid file format or version mismatch");
         }
@@ -70,9 +77,12 @@ public class Parser {
         // Set activation function
         model.activationFunction = Enums.activationFunctions.valueOf(parts[7]);
 
-        // Initialize input layer
-        int frontLayerSize = Integer.parseInt(parts[8]);
-        model.frontLayer = new FrontLayer(frontLayerSize, inputType);
+        // Initialize input layer; an E prefix marks an embedding layer of category IDs
+        if (parts[8].startsWith("E")) {
+            model.frontLayer = new EmbeddingLayer(Integer.parseInt(parts[8].substring(1)));
+        } else {
+            model.frontLayer = new FrontLayer(Integer.parseInt(parts[8]), inputType);
+        }
 
         // Parse and construct network layers
         String[] layersData = parts[9].split("/");
@@ -81,9 +91,15 @@ public class Parser {
         for (String layerData : layersData) {
             if (layerData.isEmpty()) continue;
 
-            // Parse neurons in current layer
+            if (layerData.startsWith("~")) {
+                model.layers.add(parseSparseLayer(layerData, model.activationFunction, model.layers.size()));
+                continue;
+            }
+
+            // Parse neurons in current layer. The fan-in is taken from the first neuron.
             String[] neuronsData = layerData.split(";");
-            Layer layer = new Layer(neuronsData.length, model.activationFunction);
+            int fanIn = neuronsData[0].split("\\^")[1].split(",").length;
+            Layer layer = new Layer(neuronsData.length, fanIn, model.activationFunction);
 
             // Configure each neuron
             for (int i = 0; i < neuronsData.length; i++) {
@@ -91,20 +107,152 @@ public class Parser {
 
                 // Parse bias and weights
                 String[] neuronParts = neuronsData[i].split("\\^");
-                Neuron neuron = layer.neurons.get(i);
 
                 // Set bias value
-                neuron.bias = Double.parseDouble(neuronParts[0]);
+                layer.biases[i] = Double.parseDouble(neuronParts[0]);
 
-                // Parse and set weights
+                // Parse and set weights straight into the packed row
                 String[] weightStrings = neuronParts[1].split(",");
-                neuron.weights = new ArrayList<>();
-                for (String w : weightStrings) {
-                    if (!w.isEmpty()) {
-                        neuron.weights.add(Double.parseDouble(w));
+                if (weightStrings.length != fanIn) {
+                    throw new LyraModelLoadingError("Neuron " + i + " has " + weightStrings.length +
+                            " weights, expected " + fanIn);
+                }
+                for (int k = 0; k < fanIn; k++) {
+                    layer.weights[i * fanIn + k] = Double.parseDouble(weightStrings[k]);
+                }
+            }
+            layer.refreshNeurons();
+
+            model.layers.add(layer);
+        }
+
+        // Files written before the precision field existed are DOUBLE
+        if (parts.length > 10 && !parts[10].isBlank()) {
+            Enums.precisions precision;
+            try {
+                precision = Enums.precisions.valueOf(parts[10].trim());
+            } catch (IllegalArgumentException e) {
+                throw new LyraModelLoadingError("Unknown model precision: " + parts[10]);
+            }
+            model.setPrecision(precision);
+        }
+
+        return model;
+    }
+
+    /**
+     * Parses a pruned layer written as ~[fanIn]~[bias]^[column]:[weight],...;...
+     * Every weight that is not listed is zero, and the listed ones become the layer's CSR index.
+     *
+     * @param layerData The layer's text
+     * @param activationFunction The model's activation function
+     * @param index Position of the layer, for error messages
+     * @return The sparse layer
+     * @throws LyraModelLoadingError if the layer is malformed
+     */
+    private static Layer parseSparseLayer(String layerData, Enums.activationFunctions activationFunction, int index) {
+        int fanInEnd = layerData.indexOf('~', 1);
+        if (fanInEnd < 0) {
+            throw new LyraModelLoadingError("Sparse layer " + index + " has no fan-in");
+        }
+        int fanIn = Integer.parseInt(layerData.substring(1, fanInEnd));
+        String[] neuronsData = layerData.substring(fanInEnd + 1).split(";");
+
+        Layer layer = new Layer(neuronsData.length, fanIn, activationFunction);
+        int[] rowStarts = new int[neuronsData.length + 1];
+        ArrayList<Integer> columns = new ArrayList<>();
+        for (int j = 0; j < neuronsData.length; j++) {
+            String[] neuronParts = neuronsData[j].split("\\^", -1);
+            layer.biases[j] = Double.parseDouble(neuronParts[0]);
+            if (neuronParts.length > 1 && !neuronParts[1].isEmpty()) {
+                for (String entry : neuronParts[1].split(",")) {
+                    int separator = entry.indexOf(':');
+                    int column = Integer.parseInt(entry.substring(0, separator));
+                    if (column < 0 || column >= fanIn) {
+                        throw new LyraModelLoadingError("Sparse layer " + index + " has column " + column +
+                                " outside a fan-in of " + fanIn);
                     }
+                    layer.weights[j * fanIn + column] = Double.parseDouble(entry.substring(separator + 1));
+                    columns.add(column);
                 }
             }
+            rowStarts[j + 1] = columns.size();
+        }
+
+        int[] columnArray = new int[columns.size()];
+        for (int p = 0; p < columnArray.length; p++) {
+            columnArray[p] = columns.get(p);
+        }
+        try {
+            layer.setSparseIndex(rowStarts, columnArray);
+        } catch (IllegalArgumentException e) {
+            throw new LyraModelLoadingError("Sparse layer " + index + " is malformed: " + e.getMessage());
+        }
+        layer.refreshNeurons();
+        return layer;
+    }
+
+    /**
+     * Parses the string representation of an int8 quantized model.
+     *
+     * File Structure:
+     * [0] - Quantized header and version
+     * [1] - [8] - Same as {@link #parseModelFile(String)}
+     * [9] - Scale granularity
+     * [10] - Quantized layers data
+     *
+     * @param fileContent String containing the model data in quantized Lyra format
+     * @return The quantized model
+     * @throws LyraModelLoadingError if the file format is invalid or version is incompatible
+     */
+    public static QuantizedModel parseQuantizedModelFile(String fileContent) throws LyraModelLoadingError {
+        String[] parts = fileContent.split("␞");
+
+        if (!parts[0].startsWith(Config.lyraQuantizedFileHeader + Config.fileVersion) || parts.length < 11) {
+            throw new LyraModelLoadingError("Invalid quantized file format or version mismatch");
+        }
+
+        QuantizedModel model = new QuantizedModel();
+        model.modelID = parts[1];
+        model.modelAuthor = parts[2];
+        model.metadata = parts[3];
+        model.lyraVersion = parts[4];
+        Enums.IOType inputType = Enums.IOType.valueOf(parts[5]);
+        model.outputType = Enums.IOType.valueOf(parts[6]);
+        model.activationFunction = Enums.activationFunctions.valueOf(parts[7]);
+        model.frontLayer = new FrontLayer(Integer.parseInt(parts[8]), inputType);
+        model.scales = Enums.quantizationScales.valueOf(parts[9]);
+
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        model.layers = new ArrayList<>();
+        for (String layerData : parts[10].split("/")) {
+            if (layerData.isEmpty()) continue;
+
+            // [fanIn]^[inputScale]^[weightScales]^[biases]^[weights]
+            String[] fields = layerData.split("\\^", -1);
+            if (fields.length != 5) {
+                throw new LyraModelLoadingError("Quantized layer " + model.layers.size() + " is malformed");
+            }
+            int fanIn = Integer.parseInt(fields[0]);
+            String[] scales = fields[2].split(",");
+            String[] biases = fields[3].split(",");
+            if (scales.length != biases.length) {
+                throw new LyraModelLoadingError("Quantized layer " + model.layers.size() + " has " + scales.length +
+                        " scales but " + biases.length + " biases");
+            }
+
+            QuantizedLayer layer = new QuantizedLayer(biases.length, fanIn, model.activationFunction);
+            layer.inputScale = Float.parseFloat(fields[1]);
+            for (int j = 0; j < biases.length; j++) {
+                layer.weightScales[j] = Float.parseFloat(scales[j]);
+                layer.biases[j] = Integer.parseInt(biases[j]);
+            }
+            byte[] weights = decoder.decode(fields[4]);
+            if (weights.length != layer.weights.length) {
+                throw new LyraModelLoadingError("Quantized layer " + model.layers.size() + " has " + weights.length +
+                        " weights, expected " + layer.weights.length);
+            }
+            layer.weights = weights;
 
             model.layers.add(layer);
         }
@@ -1,6 +1,12 @@
 package io.github.equinoxelectronic.lyra2.processing.lyraFile;
 
+import io.github.equinoxelectronic.lyra2.Config;
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.objects.InputTable;
 import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedModel;
+import io.github.equinoxelectronic.lyra2.processing.DatatypeConversion;
 import io.github.equinoxelectronic.lyra2.processing.ModelChecker;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -9,9 +15,12 @@ import org.tukaani.xz.LZMA2Options;
 import org.tukaani.xz.XZOutputStream;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
 
 /**
@@ -34,7 +43,7 @@ public class Saving {
     public static void saveModelAsJSON(String filepath, LyraModel model) {
         ModelChecker.checkModel(model);
 
-        filepath = normalizeFilepath(filepath, model);
+        filepath = normalizeFilepath(filepath, model.modelID);
 
         Gson gson = new GsonBuilder().setPrettyPrinting().create();
         try (FileWriter writer = new FileWriter(filepath)) {
@@ -63,7 +72,7 @@ public class Saving {
     public static void saveModel(String filepath, LyraModel model) {
         ModelChecker.checkModel(model);
 
-        filepath = normalizeFilepath(filepath, model);
+        filepath = normalizeFilepath(filepath, model.modelID);
 
         String serializedModel = Serializer.serializeModel(model);
 
@@ -81,6 +90,90 @@ public class Saving {
         Essentials.logger.logString("Saved model to " + filepath + " successfully!");
     }
 
+    /**
+     * Saves an int8 quantized model to a compressed .lyra file.
+     * The file uses the quantized format variant and can only be read back with
+     * {@link Loading#loadQuantizedModel(String)}.
+     *
+     * @param filepath Path where the model should be saved
+     * @param model The quantized model to save
+     * @throws RuntimeException if the model cannot be saved or compressed
+     */
+    public static void saveQuantizedModel(String filepath, QuantizedModel model) {
+        ModelChecker.checkQuantizedModel(model);
+
+        filepath = normalizeFilepath(filepath, model.modelID);
+
+        String serializedModel;
+        try {
+            serializedModel = compressString(Serializer.serializeQuantizedModel(model));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to compress model data", e);
+        }
+
+        try (FileWriter writer = new FileWriter(filepath)) {
+            writer.write(serializedModel);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save model to " + filepath, e);
+        }
+        Essentials.logger.logString("Saved quantized model to " + filepath + " successfully!");
+    }
+
+    /**
+     * Saves an input table beside a model file, replacing the model's .lyra extension with .lyratable.
+     * Each entry is stored as the bits of its decoded output, or as doubles for RAW outputs, and the
+     * whole file is XZ compressed.
+     *
+     * @param modelFilepath Path the model itself is saved to
+     * @param modelID ID of the model (used for the filename if the path is a directory)
+     * @param table The table to save
+     * @throws RuntimeException if the table cannot be written
+     */
+    public static void saveInputTable(String modelFilepath, String modelID, InputTable table) {
+        String filepath = tableFilepath(normalizeFilepath(modelFilepath, modelID));
+
+        try (DataOutputStream out = new DataOutputStream(new XZOutputStream(
+                new FileOutputStream(filepath), new LZMA2Options(LZMA2Options.PRESET_DEFAULT)))) {
+            out.writeUTF(Config.lyraTableFileHeader + Config.fileVersion);
+            out.writeUTF(modelID);
+            out.writeLong(table.getFingerprint());
+            out.writeUTF(table.getInputType().name());
+            out.writeUTF(table.getOutputType().name());
+            out.writeInt(table.size());
+            for (int i = 0; i < table.size(); i++) {
+                Object output = table.get(i);
+                if (table.getOutputType() == Enums.IOType.RAW) {
+                    ArrayList<?> values = (ArrayList<?>) output;
+                    out.writeInt(values.size());
+                    for (Object value : values) {
+                        out.writeDouble((Double) value);
+                    }
+                } else if (table.getOutputType() == Enums.IOType.CHAR) {
+                    // A decoded CHAR output can use all 16 bits, but convertToBits keeps only the 8 an input has
+                    out.writeLong((Character) output);
+                } else {
+                    out.writeLong(DatatypeConversion.convertToBits(table.getOutputType(), output));
+                }
+            }
+        } catch (IOException | LyraWrongDatatypeException e) {
+            throw new RuntimeException("Failed to save input table to " + filepath, e);
+        }
+        Essentials.logger.logString("Saved input table to " + filepath + " successfully!");
+    }
+
+    /**
+     * Returns where the input table of a model file is kept.
+     *
+     * @param modelFilepath Path of the .lyra model file
+     * @return The same path with the .lyratable extension
+     */
+    static String tableFilepath(String modelFilepath) {
+        if (modelFilepath.endsWith(".lyra")) {
+            modelFilepath = modelFilepath.substring(0, modelFilepath.length() - ".lyra".length());
+        }
+        return modelFilepath + Config.lyraTableExtension;
+    }
+
     /**
      * Compresses a string using LZMA2 compression and encodes it in Base64.
      * Uses maximum compression level for optimal file size reduction.
@@ -104,13 +197,13 @@ public class Saving {
      * and handling directory paths appropriately.
      *
      * @param filepath Original filepath
-     * @param model Model being saved (used for filename if needed)
+     * @param modelID ID of the model being saved (used for filename if needed)
      * @return Normalized filepath
      */
-    private static String normalizeFilepath(String filepath, LyraModel model) {
+    private static String normalizeFilepath(String filepath, String modelID) {
         filepath = filepath.trim();
         if (filepath.endsWith("/") || filepath.endsWith("\\")) {
-            filepath = filepath + model.modelID + ".lyra";
+            filepath = filepath + modelID + ".lyra";
         }
         if (!filepath.endsWith(".lyra")) {
             filepath = filepath + ".lyra";
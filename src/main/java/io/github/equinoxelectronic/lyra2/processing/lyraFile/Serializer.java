@@ -1,7 +1,14 @@
 package io.github.equinoxelectronic.lyra2.processing.lyraFile;
 
 import io.github.equinoxelectronic.lyra2.Config;
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
 import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedLayer;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedModel;
+
+import java.util.Base64;
 
 /**
  * Serializes neural network models into a compact string format.
@@ -14,8 +21,9 @@ import io.github.equinoxelectronic.lyra2.objects.LyraModel;
  * 3. Version: [lyraVersion]␞
  * 4. I/O Configuration: [inputType]␞[outputType]␞
  * 5. Network Configuration: [activationFunction]␞
- * 6. Front Layer: [neuronCount]␞
- * 7. Hidden Layers: [layer1]/[layer2]/...
+ * 6. Front Layer: [neuronCount]␞ (E[vocabularySize]␞ for an embedding layer)
+ * 7. Hidden Layers: [layer1]/[layer2]/... (pruned layers start with ~[fanIn]~ and list only non-zeros)
+ * 8. Precision (optional): ␞[precision], only written for FLOAT models
  *
  * Delimiter Characters:
  * - ␞ (U+241E): Separates major sections
@@ -23,6 +31,7 @@ import io.github.equinoxelectronic.lyra2.objects.LyraModel;
  * - ; : Separates neurons within a layer
  * - ^ : Separates bias from weights in a neuron
  * - , : Separates weights within a neuron
+ * - : : Separates column from weight in a pruned layer
  */
 public class Serializer {
 
@@ -68,21 +77,43 @@ public class Serializer {
         // Network configuration
         s.append(model.activationFunction.name()).append("␞");
 
-        // Front layer size
+        // Front layer size, marked with E for an embedding layer of category IDs
+        if (model.frontLayer instanceof EmbeddingLayer) {
+            s.append("E");
+        }
         s.append(model.frontLayer.neurons.size()).append("␞");
 
         // Hidden layers serialization
         for (int i = 0; i < model.layers.size(); i++) {
+            Layer layer = model.layers.get(i);
+            int fanIn = layer.fanIn;
+
+            if (layer.isSparse()) {
+                serializeSparseLayer(s, layer);
+                if (i < model.layers.size() - 1) {
+                    s.append("/");
+                }
+                continue;
+            }
+
             // Serialize neurons in current layer
-            for (int j = 0; j < model.layers.get(i).neurons.size(); j++) {
+            for (int j = 0; j < layer.size(); j++) {
                 // Add bias
-                s.append(model.layers.get(i).neurons.get(j).bias)
-                        .append("^");
+                if (layer.isFloat()) {
+                    s.append(layer.floatBiases[j]);
+                } else {
+                    s.append(layer.biases[j]);
+                }
+                s.append("^");
 
                 // Add weights
-                for (int k = 0; k < model.layers.get(i).neurons.get(j).weights.size(); k++) {
-                    s.append(model.layers.get(i).neurons.get(j).weights.get(k));
-                    if (k < model.layers.get(i).neurons.get(j).weights.size() - 1) {
+                for (int k = 0; k < fanIn; k++) {
+                    if (layer.isFloat()) {
+                        s.append(layer.floatWeights[j * fanIn + k]);
+                    } else {
+                        s.append(layer.weights[j * fanIn + k]);
+                    }
+                    if (k < fanIn - 1) {
                         s.append(",");
                     }
                 }
@@ -95,6 +126,101 @@ public class Serializer {
             }
         }
 
+        // Precision, left out for DOUBLE models so their files stay as they were
+        if (model.getPrecision() != Enums.precisions.DOUBLE) {
+            s.append("␞").append(model.getPrecision().name());
+        }
+
+        return s.toString();
+    }
+
+    /**
+     * Writes a pruned layer with only its non-zero weights: ~[fanIn]~ followed by one
+     * [bias]^[column]:[weight],[column]:[weight]; entry per neuron. The fan-in is written
+     * explicitly, since it can no longer be counted from the weights.
+     *
+     * Example format:
+     * ~32~0.5^3:0.12,17:-0.4;0.1^;-0.2^0:0.9;
+     *
+     * @param s The builder to append to
+     * @param layer A sparse layer
+     */
+    private static void serializeSparseLayer(StringBuilder s, Layer layer) {
+        s.append("~").append(layer.fanIn).append("~");
+        for (int j = 0; j < layer.size(); j++) {
+            if (layer.isFloat()) {
+                s.append(layer.floatBiases[j]);
+            } else {
+                s.append(layer.biases[j]);
+            }
+            s.append("^");
+            for (int p = layer.sparseRowStarts[j]; p < layer.sparseRowStarts[j + 1]; p++) {
+                s.append(layer.sparseColumns[p]).append(":");
+                if (layer.isFloat()) {
+                    s.append(layer.floatSparseWeights[p]);
+                } else {
+                    s.append(layer.sparseWeights[p]);
+                }
+                if (p < layer.sparseRowStarts[j + 1] - 1) {
+                    s.append(",");
+                }
+            }
+            s.append(";");
+        }
+    }
+
+    /**
+     * Serializes an int8 quantized model into its string representation.
+     * The layout follows {@link #serializeModel(LyraModel)} up to the front layer size, but starts with
+     * {@link Config#lyraQuantizedFileHeader} and adds the scale granularity. Each layer is written as
+     * [fanIn]^[inputScale]^[weightScales]^[int32 biases]^[weights], where the int8 weights are
+     * Base64 (URL alphabet, so no '/') encoded.
+     *
+     * Example format:
+     * LyraNeural2 int8 ...1.0.0␞modelID␞author␞metadata␞version␞INPUT␞OUTPUT␞TANH␞32␞PER_NEURON␞
+     * 32^0.0078^0.01,0.02^15,-3^f38A.../2^0.0071^0.009^40^fw
+     *
+     * @param model The quantized model to serialize
+     * @return String representation of the model
+     * @see Parser#parseQuantizedModelFile(String) for the corresponding deserialization method
+     */
+    public static String serializeQuantizedModel(QuantizedModel model) {
+        StringBuilder s = new StringBuilder();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+        s.append(Config.lyraQuantizedFileHeader)
+                .append(Config.fileVersion)
+                .append("␞");
+        s.append(model.modelID).append("␞")
+                .append(model.modelAuthor).append("␞")
+                .append(model.metadata).append("␞");
+        s.append(model.lyraVersion).append("␞");
+        s.append(model.frontLayer.inputType.name()).append("␞")
+                .append(model.outputType.name()).append("␞");
+        s.append(model.activationFunction.name()).append("␞");
+        s.append(model.frontLayer.neurons.size()).append("␞");
+        s.append(model.scales.name()).append("␞");
+
+        for (int i = 0; i < model.layers.size(); i++) {
+            QuantizedLayer layer = model.layers.get(i);
+            s.append(layer.fanIn).append("^")
+                    .append(layer.inputScale).append("^");
+            for (int j = 0; j < layer.size(); j++) {
+                s.append(layer.weightScales[j]);
+                if (j < layer.size() - 1) s.append(",");
+            }
+            s.append("^");
+            for (int j = 0; j < layer.size(); j++) {
+                s.append(layer.biases[j]);
+                if (j < layer.size() - 1) s.append(",");
+            }
+            s.append("^").append(encoder.encodeToString(layer.weights));
+
+            if (i < model.layers.size() - 1) {
+                s.append("/");
+            }
+        }
+
         return s.toString();
     }
 }
@@ -0,0 +1,90 @@
+package io.github.equinoxelectronic.lyra2.processing.optimizers;
+
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+
+/**
+ * Adam: every parameter keeps a decaying average of its gradients (the first moment) and of its
+ * squared gradients (the second moment), both corrected for starting at zero. The step is the
+ * first moment divided by the root of the second, so it is close to the learning rate in size
+ * whatever the scale of the gradients. Learning rates around 0.001 are a good start.
+ */
+public class Adam extends OptimizerState {
+    private final double beta1;
+    private final double beta2;
+    private final double epsilon;
+    // Bias corrections for the current step, computed once per step instead of once per parameter
+    private double correction1;
+    private double correction2;
+
+    /**
+     * Creates Adam with beta1 = 0.9, beta2 = 0.999 and epsilon = 1e-8.
+     */
+    public Adam() {
+        this(0.9, 0.999, 1e-8);
+    }
+
+    /**
+     * Creates Adam.
+     *
+     * @param beta1 Decay of the gradient average, from 0 to less than 1
+     * @param beta2 Decay of the squared-gradient average, from 0 to less than 1
+     * @param epsilon Small value added to the denominator so it is never zero
+     * @throws LyraError if a beta is out of range or epsilon is not positive
+     */
+    public Adam(double beta1, double beta2, double epsilon) {
+        super(2);
+        if (!(beta1 >= 0 && beta1 < 1) || !(beta2 >= 0 && beta2 < 1)) {
+            throw new LyraError("Adam betas must be at least 0 and less than 1, got " + beta1 + " and " + beta2);
+        }
+        if (!(epsilon > 0)) {
+            throw new LyraError("Adam epsilon must be positive, got " + epsilon);
+        }
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public void initialize(LyraModel model) {
+        super.initialize(model);
+        correction1 = 1 - beta1;
+        correction2 = 1 - beta2;
+    }
+
+    @Override
+    public void nextStep() {
+        super.nextStep();
+        long current = step.get();
+        correction1 = 1 - Math.pow(beta1, current);
+        correction2 = 1 - Math.pow(beta2, current);
+    }
+
+    // The bias corrections belong to one step, so concurrent Hogwild steps would mix them up
+    @Override
+    public boolean dependsOnStepCount() {
+        return true;
+    }
+
+    @Override
+    public double weightStep(int layer, int index, double gradient, double weight, double learningRate) {
+        return adamStep(weightMoments[0][layer], weightMoments[1][layer], index, gradient, learningRate);
+    }
+
+    @Override
+    public double biasStep(int layer, int neuron, double gradient, double learningRate) {
+        return adamStep(biasMoments[0][layer], biasMoments[1][layer], neuron, gradient, learningRate);
+    }
+
+    private double adamStep(double[] first, double[] second, int index, double gradient, double learningRate) {
+        first[index] = beta1 * first[index] + (1 - beta1) * gradient;
+        second[index] = beta2 * second[index] + (1 - beta2) * gradient * gradient;
+        return learningRate * (first[index] / correction1) / (Math.sqrt(second[index] / correction2) + epsilon);
+    }
+}
+
+
+//The optimizer most people reach for first. It combines momentum with RMSProp's per-weight step sizes, and it
+//usually gets to a good error in a lot fewer epochs than plain gradient descent.
+
+//Equinox Electronic
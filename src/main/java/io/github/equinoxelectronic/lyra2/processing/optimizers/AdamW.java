@@ -0,0 +1,56 @@
+package io.github.equinoxelectronic.lyra2.processing.optimizers;
+
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+
+/**
+ * AdamW: {@link Adam} with decoupled weight decay. Every step also shrinks each weight by
+ * learningRate * weightDecay * weight, separately from the gradient, so the decay is not scaled
+ * down by Adam's step sizes. Biases are not decayed.
+ */
+public class AdamW extends Adam {
+    private final double weightDecay;
+
+    /**
+     * Creates AdamW with the default Adam settings and a weight decay of 0.01.
+     */
+    public AdamW() {
+        this(0.01);
+    }
+
+    /**
+     * Creates AdamW with the default Adam settings.
+     *
+     * @param weightDecay Fraction of each weight removed per step, relative to the learning rate
+     * @throws LyraError if the weight decay is negative
+     */
+    public AdamW(double weightDecay) {
+        this(0.9, 0.999, 1e-8, weightDecay);
+    }
+
+    /**
+     * Creates AdamW.
+     *
+     * @param beta1 Decay of the gradient average, from 0 to less than 1
+     * @param beta2 Decay of the squared-gradient average, from 0 to less than 1
+     * @param epsilon Small value added to the denominator so it is never zero
+     * @param weightDecay Fraction of each weight removed per step, relative to the learning rate
+     * @throws LyraError if a setting is out of range
+     */
+    public AdamW(double beta1, double beta2, double epsilon, double weightDecay) {
+        super(beta1, beta2, epsilon);
+        if (!(weightDecay >= 0)) {
+            throw new LyraError("AdamW weight decay must not be negative, got " + weightDecay);
+        }
+        this.weightDecay = weightDecay;
+    }
+
+    @Override
+    public double weightStep(int layer, int index, double gradient, double weight, double learningRate) {
+        return super.weightStep(layer, index, gradient, weight, learningRate) - learningRate * weightDecay * weight;
+    }
+}
+
+
+//Adam, but it also keeps the weights from growing too big, which tends to make models generalize better.
+
+//Equinox Electronic
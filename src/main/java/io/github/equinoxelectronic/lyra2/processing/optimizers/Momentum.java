@@ -0,0 +1,53 @@
+package io.github.equinoxelectronic.lyra2.processing.optimizers;
+
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+
+/**
+ * SGD with momentum: every parameter keeps a velocity, a decaying sum of its past gradients,
+ * and moves by the learning rate times that velocity. Steps keep going in directions the
+ * gradients agree on and cancel out where they keep flipping.
+ */
+public class Momentum extends OptimizerState {
+    /** Fraction of the velocity kept from one step to the next */
+    protected final double momentum;
+
+    /**
+     * Creates momentum SGD with a momentum of 0.9.
+     */
+    public Momentum() {
+        this(0.9);
+    }
+
+    /**
+     * Creates momentum SGD.
+     *
+     * @param momentum Fraction of the velocity kept each step, from 0 (plain SGD) to less than 1
+     * @throws LyraError if the momentum is out of range
+     */
+    public Momentum(double momentum) {
+        super(1);
+        if (!(momentum >= 0 && momentum < 1)) {
+            throw new LyraError("Momentum must be at least 0 and less than 1, got " + momentum);
+        }
+        this.momentum = momentum;
+    }
+
+    @Override
+    public double weightStep(int layer, int index, double gradient, double weight, double learningRate) {
+        double[] velocity = weightMoments[0][layer];
+        velocity[index] = momentum * velocity[index] + gradient;
+        return learningRate * velocity[index];
+    }
+
+    @Override
+    public double biasStep(int layer, int neuron, double gradient, double learningRate) {
+        double[] velocity = biasMoments[0][layer];
+        velocity[neuron] = momentum * velocity[neuron] + gradient;
+        return learningRate * velocity[neuron];
+    }
+}
+
+
+//Like a ball rolling downhill: it speeds up on long slopes and doesn't get thrown around by every little bump.
+
+//Equinox Electronic
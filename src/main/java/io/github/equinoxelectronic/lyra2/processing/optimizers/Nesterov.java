@@ -0,0 +1,46 @@
+package io.github.equinoxelectronic.lyra2.processing.optimizers;
+
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+
+/**
+ * Nesterov accelerated gradient: momentum SGD that steps with the gradient plus the updated
+ * velocity, which looks one step ahead and overshoots less than plain {@link Momentum}.
+ */
+public class Nesterov extends Momentum {
+
+    /**
+     * Creates Nesterov momentum with a momentum of 0.9.
+     */
+    public Nesterov() {
+        super();
+    }
+
+    /**
+     * Creates Nesterov momentum.
+     *
+     * @param momentum Fraction of the velocity kept each step, from 0 to less than 1
+     * @throws LyraError if the momentum is out of range
+     */
+    public Nesterov(double momentum) {
+        super(momentum);
+    }
+
+    @Override
+    public double weightStep(int layer, int index, double gradient, double weight, double learningRate) {
+        double[] velocity = weightMoments[0][layer];
+        velocity[index] = momentum * velocity[index] + gradient;
+        return learningRate * (gradient + momentum * velocity[index]);
+    }
+
+    @Override
+    public double biasStep(int layer, int neuron, double gradient, double learningRate) {
+        double[] velocity = biasMoments[0][layer];
+        velocity[neuron] = momentum * velocity[neuron] + gradient;
+        return learningRate * (gradient + momentum * velocity[neuron]);
+    }
+}
+
+
+//Momentum, but it checks where it is about to end up before committing to the step.
+
+//Equinox Electronic
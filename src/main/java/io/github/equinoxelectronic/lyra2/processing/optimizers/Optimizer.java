@@ -0,0 +1,95 @@
+package io.github.equinoxelectronic.lyra2.processing.optimizers;
+
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+
+/**
+ * Turns gradients into weight and bias updates during training.
+ *
+ * Gradients point downhill, the way {@link io.github.equinoxelectronic.lyra2.processing.Training}
+ * computes them (wanted output minus actual output, backpropagated), so every step is added to
+ * the parameter. Any per-weight state lives in flat arrays laid out like the layer's packed weight
+ * matrix, so weight j * fanIn + k of a layer has its moments at the same index.
+ *
+ * Training calls {@link #initialize(LyraModel)} at the start of every run, {@link #nextStep()}
+ * before every update (each sample, or each batch), and then one of the update methods for every
+ * parameter that has a gradient. Weights without a gradient in a step, like pruned weights and the
+ * embedding columns a sample does not use, are skipped, so their state only changes when they
+ * have a gradient.
+ *
+ * Hogwild training calls {@link #nextStep()} and the update methods from several threads at once,
+ * without ordering a thread's updates after its own step, so it only takes optimizers whose updates
+ * do not depend on the step count (see {@link #dependsOnStepCount()}).
+ */
+public interface Optimizer {
+
+    /**
+     * Allocates the optimizer's state for a model's shape and resets it.
+     *
+     * @param model The model about to be trained
+     */
+    void initialize(LyraModel model);
+
+    /**
+     * Starts a new update step.
+     */
+    void nextStep();
+
+    /**
+     * Tells whether updates depend on how many steps have been taken, like Adam's bias correction.
+     * Hogwild training rejects these optimizers, since its threads step and update concurrently.
+     *
+     * @return true if the size of an update changes with the step count
+     */
+    default boolean dependsOnStepCount() {
+        return false;
+    }
+
+    /**
+     * Returns the change to make to one weight.
+     *
+     * @param layer Index of the layer in the model
+     * @param index Index of the weight in the layer's packed matrix (neuron * fanIn + input)
+     * @param gradient The weight's gradient for this step
+     * @param weight The weight's current value
+     * @param learningRate The learning rate
+     * @return The amount to add to the weight
+     */
+    double weightStep(int layer, int index, double gradient, double weight, double learningRate);
+
+    /**
+     * Returns the change to make to one bias.
+     *
+     * @param layer Index of the layer in the model
+     * @param neuron Index of the neuron in the layer
+     * @param gradient The bias's gradient for this step
+     * @param learningRate The learning rate
+     * @return The amount to add to the bias
+     */
+    double biasStep(int layer, int neuron, double gradient, double learningRate);
+
+    /**
+     * Updates a run of weights in one row of a layer, whose gradients are scale * gradients[gradientOffset + i].
+     *
+     * @param layer Index of the layer in the model
+     * @param weights The layer's packed weights
+     * @param offset Index of the first weight to update
+     * @param gradients Array holding the unscaled gradients
+     * @param gradientOffset Index of the first weight's gradient
+     * @param scale Factor applied to every gradient
+     * @param length Number of weights to update
+     * @param learningRate The learning rate
+     */
+    default void updateWeights(int layer, double[] weights, int offset, double[] gradients, int gradientOffset,
+                               double scale, int length, double learningRate) {
+        for (int i = 0; i < length; i++) {
+            weights[offset + i] += weightStep(layer, offset + i, scale * gradients[gradientOffset + i],
+                    weights[offset + i], learningRate);
+        }
+    }
+}
+
+
+//Plain gradient descent takes the same size of step everywhere, which is slow when some weights need big steps
+//and others need tiny ones. The optimizers here remember how each weight has been moving and adjust for it.
+
+//Equinox Electronic
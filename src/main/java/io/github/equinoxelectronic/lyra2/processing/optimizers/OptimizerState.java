@@ -0,0 +1,56 @@
+package io.github.equinoxelectronic.lyra2.processing.optimizers;
+
+import io.github.equinoxelectronic.lyra2.objects.Layer;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class for optimizers that keep per-parameter state, like a running average of gradients.
+ * Every moment is one array per layer for the weights, the same length as the packed weight
+ * matrix, and one per layer for the biases.
+ */
+public abstract class OptimizerState implements Optimizer {
+    /** Weight moments: [moment][layer][neuron * fanIn + input] */
+    protected double[][][] weightMoments;
+    /** Bias moments: [moment][layer][neuron] */
+    protected double[][][] biasMoments;
+    /** Update steps taken since {@link #initialize(LyraModel)}, counted exactly even when Hogwild workers step at once */
+    protected final AtomicLong step = new AtomicLong();
+
+    private final int moments;
+
+    /**
+     * Creates the state holder.
+     *
+     * @param moments Number of values kept per parameter
+     */
+    protected OptimizerState(int moments) {
+        this.moments = moments;
+    }
+
+    @Override
+    public void initialize(LyraModel model) {
+        int layers = model.layers.size();
+        weightMoments = new double[moments][layers][];
+        biasMoments = new double[moments][layers][];
+        for (int m = 0; m < moments; m++) {
+            for (int i = 0; i < layers; i++) {
+                Layer layer = model.layers.get(i);
+                weightMoments[m][i] = new double[layer.size() * layer.fanIn];
+                biasMoments[m][i] = new double[layer.size()];
+            }
+        }
+        step.set(0);
+    }
+
+    @Override
+    public void nextStep() {
+        step.incrementAndGet();
+    }
+}
+
+
+//All the optimizers that remember things about each weight keep those things the same way, so that part lives here.
+
+//Equinox Electronic
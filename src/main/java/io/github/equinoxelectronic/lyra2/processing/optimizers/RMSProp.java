@@ -0,0 +1,59 @@
+package io.github.equinoxelectronic.lyra2.processing.optimizers;
+
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+
+/**
+ * RMSProp: every parameter keeps a decaying average of its squared gradients, and its step is
+ * the gradient divided by the root of that average. Parameters with large gradients take smaller
+ * steps and parameters with small gradients take larger ones.
+ */
+public class RMSProp extends OptimizerState {
+    private final double decay;
+    private final double epsilon;
+
+    /**
+     * Creates RMSProp with a decay of 0.9 and an epsilon of 1e-8.
+     */
+    public RMSProp() {
+        this(0.9, 1e-8);
+    }
+
+    /**
+     * Creates RMSProp.
+     *
+     * @param decay Fraction of the squared-gradient average kept each step, from 0 to less than 1
+     * @param epsilon Small value added to the denominator so it is never zero
+     * @throws LyraError if the decay is out of range or epsilon is not positive
+     */
+    public RMSProp(double decay, double epsilon) {
+        super(1);
+        if (!(decay >= 0 && decay < 1)) {
+            throw new LyraError("RMSProp decay must be at least 0 and less than 1, got " + decay);
+        }
+        if (!(epsilon > 0)) {
+            throw new LyraError("RMSProp epsilon must be positive, got " + epsilon);
+        }
+        this.decay = decay;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public double weightStep(int layer, int index, double gradient, double weight, double learningRate) {
+        return rmsStep(weightMoments[0][layer], index, gradient, learningRate);
+    }
+
+    @Override
+    public double biasStep(int layer, int neuron, double gradient, double learningRate) {
+        return rmsStep(biasMoments[0][layer], neuron, gradient, learningRate);
+    }
+
+    private double rmsStep(double[] squares, int index, double gradient, double learningRate) {
+        squares[index] = decay * squares[index] + (1 - decay) * gradient * gradient;
+        return learningRate * gradient / (Math.sqrt(squares[index]) + epsilon);
+    }
+}
+
+
+//Gives every weight its own step size, based on how big its gradients have been lately.
+
+//Equinox Electronic
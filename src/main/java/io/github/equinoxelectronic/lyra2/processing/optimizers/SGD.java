@@ -0,0 +1,63 @@
+package io.github.equinoxelectronic.lyra2.processing.optimizers;
+
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.lyra2.processing.kernels.Kernels;
+
+/**
+ * Plain stochastic gradient descent: every step is the learning rate times the gradient, clipped
+ * to a largest magnitude. This is the default, and with the default clip of 0.1 it trains exactly
+ * like Lyra2 always has.
+ */
+public class SGD implements Optimizer {
+    private final double clip;
+
+    /**
+     * Creates plain SGD with steps clipped to 0.1.
+     */
+    public SGD() {
+        this(0.1);
+    }
+
+    /**
+     * Creates plain SGD.
+     *
+     * @param clip Largest magnitude of a single step, or {@link Double#POSITIVE_INFINITY} for no clipping
+     * @throws LyraError if the clip is not positive
+     */
+    public SGD(double clip) {
+        if (!(clip > 0)) {
+            throw new LyraError("SGD step clip must be positive, got " + clip);
+        }
+        this.clip = clip;
+    }
+
+    @Override
+    public void initialize(LyraModel model) {
+    }
+
+    @Override
+    public void nextStep() {
+    }
+
+    @Override
+    public double weightStep(int layer, int index, double gradient, double weight, double learningRate) {
+        return Math.max(Math.min(learningRate * gradient, clip), -clip);
+    }
+
+    @Override
+    public double biasStep(int layer, int neuron, double gradient, double learningRate) {
+        return Math.max(Math.min(learningRate * gradient, clip), -clip);
+    }
+
+    @Override
+    public void updateWeights(int layer, double[] weights, int offset, double[] gradients, int gradientOffset,
+                              double scale, int length, double learningRate) {
+        Kernels.get().axpyClipped(learningRate * scale, gradients, gradientOffset, weights, offset, length, clip);
+    }
+}
+
+
+//The simplest way to train: nudge every weight a little bit in the direction that lowers the error.
+
+//Equinox Electronic
@@ -0,0 +1,93 @@
+package io.github.equinoxelectronic.lyra2.api;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks when the batch dispatcher closes a batch, and what happens to requests when it is shut down.
+ */
+class BatchDispatcherTest {
+
+    private final LyraModel model = new LyraModel().builder().name("batched").author("Equinox Electronic")
+            .inputType(Enums.IOType.INTEGER).outputType(Enums.IOType.INTEGER)
+            .setActivationFunction(Enums.activationFunctions.TANH)
+            .addHiddenLayer(0).addHiddenLayer(8)
+            .build();
+
+    @Test
+    void aLoneRequestRunsOnceItsDeadlinePasses() throws Exception {
+        try (BatchDispatcher dispatcher = new BatchDispatcher(64, 20, TimeUnit.MILLISECONDS)) {
+            long start = System.nanoTime();
+            Object output = dispatcher.submit(model, 5).get(5, TimeUnit.SECONDS);
+            long waited = System.nanoTime() - start;
+
+            assertEquals(Running.feed(model, 5), output);
+            assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(20), "ran after " + waited + " ns");
+            assertEquals(1, dispatcher.getBatchSizeHistogram().getCount());
+            assertEquals(1, dispatcher.getBatchSizeHistogram().getMax());
+        }
+    }
+
+    @Test
+    void aFullBatchRunsWithoutWaitingForTheDeadline() throws Exception {
+        try (BatchDispatcher dispatcher = new BatchDispatcher(4, 1, TimeUnit.HOURS)) {
+            List<CompletableFuture<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(dispatcher.submit(model, i));
+            }
+
+            for (int i = 0; i < 4; i++) {
+                assertEquals(Running.feed(model, i), results.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(4, dispatcher.getBatchSizeHistogram().getMax());
+        }
+    }
+
+    @Test
+    void closeRunsWhatIsQueuedAndRefusesNewRequests() throws Exception {
+        BatchDispatcher dispatcher = new BatchDispatcher(64, 1, TimeUnit.HOURS);
+        List<CompletableFuture<Object>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(dispatcher.submit(model, i));
+        }
+
+        dispatcher.close();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(results.get(i).isDone());
+            assertEquals(Running.feed(model, i), results.get(i).get());
+        }
+        assertFalse(dispatcher.isRunning());
+        ExecutionException refused = assertThrows(ExecutionException.class, () -> dispatcher.submit(model, 7).get());
+        assertInstanceOf(LyraError.class, refused.getCause());
+    }
+
+    @Test
+    void aWrongInputFailsOnlyItsOwnRequest() throws Exception {
+        try (BatchDispatcher dispatcher = new BatchDispatcher(2, 1, TimeUnit.HOURS)) {
+            CompletableFuture<Object> wrong = dispatcher.submit(model, "five");
+            CompletableFuture<Object> first = dispatcher.submit(model, 5);
+            CompletableFuture<Object> second = dispatcher.submit(model, 6);
+
+            assertTrue(wrong.isCompletedExceptionally());
+            assertEquals(Running.feed(model, 5), first.get(5, TimeUnit.SECONDS));
+            assertEquals(Running.feed(model, 6), second.get(5, TimeUnit.SECONDS));
+        }
+    }
+}
+
+
+//The whole point of the dispatcher is that it waits a little, but never longer than it was told to, and that
+//nobody is left hanging when it shuts down. These make sure of both.
+
+//Equinox Electronic
@@ -0,0 +1,58 @@
+package io.github.equinoxelectronic.lyra2.api;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks which inference session Running hands out for a model and a thread.
+ */
+class RunningTest {
+
+    private static LyraModel newModel() {
+        return new LyraModel().builder().name("running").author("Equinox Electronic")
+                .inputType(Enums.IOType.INTEGER).outputType(Enums.IOType.INTEGER)
+                .setActivationFunction(Enums.activationFunctions.TANH)
+                .addHiddenLayer(0).addHiddenLayer(8)
+                .build();
+    }
+
+    @Test
+    void alternatingBetweenModelsKeepsASessionForEach() {
+        LyraModel first = newModel();
+        LyraModel second = newModel();
+        InferenceSession firstSession = Running.session(first);
+        InferenceSession secondSession = Running.session(second);
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(firstSession, Running.session(first));
+            assertSame(secondSession, Running.session(second));
+            assertEquals(Running.feed(first, i), Running.feed(first, i));
+        }
+        assertSame(first, firstSession.getModel());
+        assertSame(second, secondSession.getModel());
+    }
+
+    @Test
+    void everyThreadGetsItsOwnSession() throws Exception {
+        LyraModel model = newModel();
+        InferenceSession mine = Running.session(model);
+
+        InferenceSession theirs = CompletableFuture.supplyAsync(() -> Running.session(model))
+                .get(5, TimeUnit.SECONDS);
+
+        assertNotSame(mine, theirs);
+        assertSame(mine, Running.session(model));
+        assertSame(mine, model.session());
+    }
+}
+
+
+//Sessions used to be one per thread, which meant a thread switching between two models built a new one every call.
+
+//Equinox Electronic
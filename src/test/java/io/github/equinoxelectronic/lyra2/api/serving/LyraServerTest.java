@@ -0,0 +1,169 @@
+package io.github.equinoxelectronic.lyra2.api.serving;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.api.Running;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts a server on a free port and checks every route over HTTP, including the requests it refuses.
+ */
+class LyraServerTest {
+
+    private final LyraModel model = new LyraModel().builder().name("served").author("Equinox Electronic")
+            .inputType(Enums.IOType.INTEGER).outputType(Enums.IOType.INTEGER)
+            .setActivationFunction(Enums.activationFunctions.TANH)
+            .addHiddenLayer(0).addHiddenLayer(8)
+            .build();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private LyraServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new LyraServer(0);
+        server.addModel("adder", model);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+        client.close();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path));
+    }
+
+    private HttpResponse<String> post(String path, String json) throws Exception {
+        return client.send(request(path).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(request(path).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static JsonObject json(HttpResponse<String> response) {
+        return JsonParser.parseString(response.body()).getAsJsonObject();
+    }
+
+    @Test
+    void healthListsTheModels() throws Exception {
+        HttpResponse<String> response = get("/health");
+
+        assertEquals(200, response.statusCode());
+        assertEquals("ok", json(response).get("status").getAsString());
+        assertEquals("adder", json(response).getAsJsonArray("models").get(0).getAsString());
+    }
+
+    @Test
+    void predictAnswersLikeRunningFeed() throws Exception {
+        HttpResponse<String> response = post("/models/adder/predict", "{\"input\": 5}");
+
+        assertEquals(200, response.statusCode());
+        assertEquals(Running.feed(model, 5), json(response).get("output").getAsInt());
+    }
+
+    @Test
+    void predictBatchAnswersEveryInputInOrder() throws Exception {
+        HttpResponse<String> response = post("/models/adder/predict-batch", "{\"inputs\": [1, 2, 3, -40000]}");
+
+        assertEquals(200, response.statusCode());
+        JsonArray outputs = json(response).getAsJsonArray("outputs");
+        assertEquals(4, outputs.size());
+        int[] inputs = {1, 2, 3, -40000};
+        for (int n = 0; n < inputs.length; n++) {
+            assertEquals(Running.feed(model, inputs[n]), outputs.get(n).getAsInt());
+        }
+    }
+
+    @Test
+    void octetStreamTakesAndReturnsRawDoubles() throws Exception {
+        double[] input = new double[32];
+        for (int k = 0; k < input.length; k += 3) {
+            input[k] = 1;
+        }
+        ByteBuffer body = ByteBuffer.allocate(input.length * Double.BYTES);
+        for (double value : input) {
+            body.putDouble(value);
+        }
+
+        HttpResponse<byte[]> response = client.send(request("/models/adder/predict")
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.array())).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, response.statusCode());
+        double[] expected = Running.session(model).feedForward(input);
+        ByteBuffer output = ByteBuffer.wrap(response.body());
+        assertEquals(expected.length * Double.BYTES, response.body().length);
+        for (double value : expected) {
+            assertEquals(value, output.getDouble(), 1e-12);
+        }
+    }
+
+    @Test
+    void badRequestsAreAnswered400() throws Exception {
+        assertEquals(400, post("/models/adder/predict", "{\"input\": ").statusCode());
+        assertEquals(400, post("/models/adder/predict", "[5]").statusCode());
+        assertEquals(400, post("/models/adder/predict", "{\"input\": \"five\"}").statusCode());
+        assertEquals(400, post("/models/adder/predict-batch", "{\"input\": 5}").statusCode());
+
+        HttpResponse<String> shortBinary = client.send(request("/models/adder/predict")
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(new byte[12])).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, shortBinary.statusCode());
+        assertTrue(json(shortBinary).has("error"));
+    }
+
+    @Test
+    void unknownModelsAndRoutesAreAnswered404() throws Exception {
+        assertEquals(404, post("/models/nothing/predict", "{\"input\": 5}").statusCode());
+        assertEquals(404, post("/models/adder/train", "{\"input\": 5}").statusCode());
+        assertEquals(404, post("/models/adder", "{\"input\": 5}").statusCode());
+
+        server.removeModel("adder");
+        assertEquals(404, post("/models/adder/predict", "{\"input\": 5}").statusCode());
+    }
+
+    @Test
+    void wrongMethodsAreAnswered405() throws Exception {
+        assertEquals(405, get("/models/adder/predict").statusCode());
+        assertEquals(405, post("/health", "{}").statusCode());
+    }
+
+    @Test
+    void oversizedBodiesAreAnswered413() throws Exception {
+        server.setMaxRequestSize(16);
+
+        assertEquals(413, post("/models/adder/predict", "{\"input\": 5, \"padding\": \"xxxxxxxxxx\"}").statusCode());
+        assertEquals(200, post("/models/adder/predict", "{\"input\": 5}").statusCode());
+    }
+
+    @Test
+    void aRunningServerCannotBeStartedAgain() {
+        assertTrue(server.getPort() > 0);
+        assertThrows(LyraError.class, server::start);
+    }
+}
+
+
+//Everything here goes through a real socket, so if the routing, the status codes or the binary format ever drift
+//from what the README promises, one of these will notice.
+
+//Equinox Electronic
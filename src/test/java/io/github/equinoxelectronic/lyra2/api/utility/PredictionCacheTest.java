@@ -0,0 +1,108 @@
+package io.github.equinoxelectronic.lyra2.api.utility;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.api.Running;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the prediction cache answers repeated inputs, evicts the least recently used entry,
+ * and never serves a prediction from before the model was changed.
+ */
+class PredictionCacheTest {
+
+    private static LyraModel newModel(int cacheSize) {
+        return new LyraModel().builder().name("cached").author("Equinox Electronic")
+                .inputType(Enums.IOType.INTEGER).outputType(Enums.IOType.INTEGER)
+                .setActivationFunction(Enums.activationFunctions.TANH)
+                .addHiddenLayer(0).addHiddenLayer(8)
+                .predictionCacheSize(cacheSize)
+                .build();
+    }
+
+    @Test
+    void repeatedInputsAreComputedOnce() {
+        PredictionCache cache = new PredictionCache(newModel(0), 10);
+        AtomicInteger computed = new AtomicInteger();
+        Function<Object, Object> compute = input -> computed.incrementAndGet();
+
+        assertEquals(1, cache.get(5, compute));
+        assertEquals(1, cache.get(5, compute));
+        assertEquals(2, cache.get(6, compute));
+
+        assertEquals(2, computed.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void markModifiedInvalidatesEveryEntry() {
+        LyraModel model = newModel(0);
+        PredictionCache cache = new PredictionCache(model, 10);
+        AtomicInteger computed = new AtomicInteger();
+        Function<Object, Object> compute = input -> computed.incrementAndGet();
+        cache.get(5, compute);
+
+        model.markModified();
+
+        assertEquals(2, cache.get(5, compute));
+        assertEquals(1, cache.getInvalidations());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        PredictionCache cache = new PredictionCache(newModel(0), 2);
+        AtomicInteger computed = new AtomicInteger();
+        Function<Object, Object> compute = input -> computed.incrementAndGet();
+        cache.get(1, compute);
+        cache.get(2, compute);
+        cache.get(1, compute);
+
+        cache.get(3, compute);
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1, cache.get(1, compute));
+        assertEquals(3, cache.get(3, compute));
+        assertEquals(4, cache.get(2, compute));
+    }
+
+    // Zeroes the output weights, so odd neurons output tanh(odd) and even ones 0 whatever the input
+    private static void setOddOutputs(LyraModel model, double odd) {
+        Layer output = model.layers.getLast();
+        Arrays.fill(output.weights, 0);
+        for (int j = 0; j < output.biases.length; j++) {
+            output.biases[j] = j % 2 == 1 ? odd : 0;
+        }
+        model.markModified();
+    }
+
+    @Test
+    void runningFeedServesTheNewWeightsAfterMarkModified() {
+        LyraModel model = newModel(100);
+        setOddOutputs(model, 0);
+        assertEquals(0, Running.feed(model, 5));
+        assertEquals(0, Running.feed(model, 5));
+        assertEquals(1, model.getPredictionCache().getHits());
+
+        setOddOutputs(model, 3);
+
+        // The outputs are read most significant bit first, so every odd neuron is a set bit of 0x55555555
+        assertEquals(0x55555555, Running.feed(model, 5));
+        assertEquals(1, model.getPredictionCache().getHits());
+    }
+}
+
+
+//A cache that hands back an answer from before the model was trained is worse than no cache at all,
+//so most of this is about making sure changing the model really empties it.
+
+//Equinox Electronic
@@ -0,0 +1,127 @@
+package io.github.equinoxelectronic.lyra2.objects;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.api.Running;
+import io.github.equinoxelectronic.lyra2.processing.DatatypeConversion;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Parser;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Serializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that a model reading its first layer from a chunk table gives the same outputs as the same
+ * model without one, for chunk widths that do and do not divide the input width.
+ */
+class ChunkTableTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    private static LyraModel newModel(Enums.IOType type) {
+        return new LyraModel().builder().name("chunked").author("Equinox Electronic")
+                .inputType(type).outputType(type)
+                .setActivationFunction(Enums.activationFunctions.TANH)
+                .addHiddenLayer(0).addHiddenLayer(6).addHiddenLayer(5)
+                .build();
+    }
+
+    // A copy without a chunk table, since the table is not saved
+    private static LyraModel copy(LyraModel model) {
+        return Parser.parseModelFile(Serializer.serializeModel(model));
+    }
+
+    private static Object[] inputs(Enums.IOType type) {
+        Random random = new Random(14);
+        Object[] inputs = new Object[20];
+        for (int n = 0; n < inputs.length; n++) {
+            inputs[n] = switch (type) {
+                case INTEGER -> n < 4 ? new int[]{0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE}[n] : random.nextInt();
+                case LONG -> n < 4 ? new long[]{0, -1, Long.MIN_VALUE, Long.MAX_VALUE}[n] : random.nextLong();
+                case DOUBLE -> n < 4 ? new double[]{0, -1, Double.MIN_VALUE, Double.MAX_VALUE}[n] : random.nextGaussian() * 1e6;
+                default -> throw new IllegalArgumentException(type.name());
+            };
+        }
+        return inputs;
+    }
+
+    private static double[] binary(Enums.IOType type, Object input) throws Exception {
+        ArrayList<Double> values = DatatypeConversion.convertToBinaryArray(type, input);
+        double[] binary = new double[values.size()];
+        for (int k = 0; k < binary.length; k++) {
+            binary[k] = values.get(k);
+        }
+        return binary;
+    }
+
+    // The tabled model is fed bit-packed, the plain one a full binary array, so the bit order has to agree
+    private static void assertSameOutputs(LyraModel tabled, LyraModel plain, Enums.IOType type) throws Exception {
+        CompiledModel compiled = tabled.compile();
+        CompiledModel.Workspace workspace = compiled.newWorkspace();
+        for (Object input : inputs(type)) {
+            long bits = DatatypeConversion.convertToBits(type, input);
+            double[] expected = Running.session(plain).feedForward(binary(type, input));
+
+            assertArrayEquals(expected, Running.session(tabled).feedForward(bits), TOLERANCE, type + " input " + input);
+            assertArrayEquals(expected, compiled.feedForward(bits, workspace), TOLERANCE, type + " input " + input);
+            assertEquals(Running.feed(plain, input), Running.feed(tabled, input));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 8, 16})
+    void tabledModelsMatchPlainModels(int chunkBits) throws Exception {
+        for (Enums.IOType type : new Enums.IOType[]{Enums.IOType.INTEGER, Enums.IOType.LONG, Enums.IOType.DOUBLE}) {
+            LyraModel tabled = newModel(type);
+            LyraModel plain = copy(tabled);
+            tabled.setChunkTableBits(chunkBits);
+
+            ChunkTable table = tabled.getChunkTable();
+            assertEquals(DatatypeConversion.getBitCount(type), table.getInputWidth());
+            assertEquals((table.getInputWidth() + chunkBits - 1) / chunkBits, table.getChunkCount());
+            assertSameOutputs(tabled, plain, type);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 8, 16})
+    void theTableIsRebuiltWhenTheRevisionChanges(int chunkBits) throws Exception {
+        LyraModel tabled = newModel(Enums.IOType.INTEGER);
+        tabled.setChunkTableBits(chunkBits);
+        ChunkTable before = tabled.getChunkTable();
+        assertSame(before, tabled.getChunkTable());
+
+        Layer first = tabled.layers.getFirst();
+        for (int w = 0; w < first.weights.length; w++) {
+            first.weights[w] = (w % 7) * 0.25 - 0.75;
+        }
+        tabled.markModified();
+
+        assertNotSame(before, tabled.getChunkTable());
+        assertSameOutputs(tabled, copy(tabled), Enums.IOType.INTEGER);
+    }
+
+    @Test
+    void chunksWiderThanTheInputAreNarrowed() {
+        LyraModel model = new LyraModel().builder().name("narrow").author("Equinox Electronic")
+                .inputType(Enums.IOType.BYTE).outputType(Enums.IOType.BYTE)
+                .setActivationFunction(Enums.activationFunctions.TANH)
+                .addHiddenLayer(0).addHiddenLayer(4)
+                .build();
+        model.setChunkTableBits(16);
+
+        assertEquals(8, model.getChunkTable().getChunkBits());
+        assertEquals(1, model.getChunkTable().getChunkCount());
+        assertEquals(ChunkTable.estimateBytes(8, 4, 16), model.getChunkTable().getMemoryBytes());
+    }
+}
+
+
+//The one thing that is easy to get wrong in a table like this is which bit is which input, and that only shows up
+//when the bits are not all the same. So these feed a lot of different numbers through both ways and compare.
+
+//Equinox Electronic
@@ -0,0 +1,135 @@
+package io.github.equinoxelectronic.lyra2.objects;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.api.Running;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Loading;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Parser;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Saving;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Serializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that a tabulated model answers exactly like the model it was built from, and that a table
+ * is never used once the weights it was built from have changed.
+ */
+class InputTableTest {
+
+    @TempDir
+    Path folder;
+
+    private static LyraModel newModel(Enums.IOType type) {
+        return new LyraModel().builder().name("tabulated").author("Equinox Electronic")
+                .inputType(type).outputType(type)
+                .setActivationFunction(Enums.activationFunctions.TANH)
+                .addHiddenLayer(0).addHiddenLayer(6).addHiddenLayer(4)
+                .build();
+    }
+
+    private static LyraModel copy(LyraModel model) {
+        return Parser.parseModelFile(Serializer.serializeModel(model));
+    }
+
+    // A table of the right fingerprint whose every entry is the given value, so any answer from it is obvious
+    private static InputTable fakeTable(LyraModel model, Object value) {
+        Object[] outputs = new Object[InputTable.domainSize(model.frontLayer.inputType)];
+        Arrays.fill(outputs, value);
+        return new InputTable(model.frontLayer.inputType, model.outputType, InputTable.fingerprint(model), outputs);
+    }
+
+    @Test
+    void tabulatedCharModelsAnswerLikeTheModel() {
+        LyraModel tabulated = newModel(Enums.IOType.CHAR);
+        LyraModel plain = copy(tabulated);
+        tabulated.tabulate();
+
+        assertNotNull(tabulated.getInputTable());
+        for (char c = 0; c < 256; c++) {
+            assertEquals(Running.feed(plain, c), Running.feed(tabulated, c), "input " + (int) c);
+        }
+    }
+
+    @Test
+    void tabulatedShortModelsAnswerLikeTheModel() {
+        LyraModel tabulated = newModel(Enums.IOType.SHORT);
+        LyraModel plain = copy(tabulated);
+        tabulated.tabulate();
+
+        assertEquals(65536, tabulated.getInputTable().size());
+        for (int s = Short.MIN_VALUE; s <= Short.MAX_VALUE; s += 97) {
+            assertEquals(Running.feed(plain, (short) s), Running.feed(tabulated, (short) s), "input " + s);
+        }
+        assertEquals(Running.feed(plain, Short.MAX_VALUE), Running.feed(tabulated, Short.MAX_VALUE));
+        assertEquals(Running.feed(plain, (short) -1), Running.feed(tabulated, (short) -1));
+    }
+
+    @Test
+    void theTableIsIgnoredAfterMarkModified() {
+        LyraModel model = newModel(Enums.IOType.CHAR);
+        model.setInputTable(fakeTable(model, 'x'));
+        assertEquals('x', Running.feed(model, 'a'));
+
+        model.markModified();
+
+        assertNull(model.getInputTable());
+        assertEquals(Running.feed(copy(model), 'a'), Running.feed(model, 'a'));
+    }
+
+    @Test
+    void aTableFromOtherWeightsCannotBeAttached() {
+        LyraModel model = newModel(Enums.IOType.CHAR);
+        InputTable table = fakeTable(model, 'x');
+        model.layers.getFirst().biases[0] += 1;
+        model.markModified();
+
+        assertThrows(LyraError.class, () -> model.setInputTable(table));
+    }
+
+    @Test
+    void aSavedTableIsLoadedWithItsModel() {
+        LyraModel model = newModel(Enums.IOType.CHAR);
+        model.tabulate();
+        String path = folder.resolve("model.lyra").toString();
+
+        model.save(path);
+        LyraModel loaded = Loading.loadModel(path);
+
+        assertNotNull(loaded.getInputTable());
+        assertEquals(model.getInputTable().getFingerprint(), loaded.getInputTable().getFingerprint());
+        for (char c = 0; c < 256; c++) {
+            assertEquals(model.getInputTable().get(c), loaded.getInputTable().get(c));
+        }
+    }
+
+    @Test
+    void aTableWithAStaleFingerprintIsRejectedOnLoad() {
+        LyraModel model = newModel(Enums.IOType.CHAR);
+        model.tabulate();
+        String path = folder.resolve("model.lyra").toString();
+        model.save(path);
+
+        // Retrain and save only the model, leaving the old table beside it
+        model.layers.getFirst().biases[0] += 1;
+        model.markModified();
+        Saving.saveModel(path, model);
+
+        InputTable stale = Loading.loadInputTable(folder.resolve("model.lyratable").toString());
+        LyraModel loaded = Loading.loadModel(path);
+
+        assertNotEquals(InputTable.fingerprint(loaded), stale.getFingerprint());
+        assertNull(loaded.getInputTable());
+        assertEquals(Running.feed(model, 'a'), Running.feed(loaded, 'a'));
+    }
+}
+
+
+//A table that is even slightly out of date gives wrong answers with no way of telling, so half of these are
+//about making sure an old table never gets used.
+
+//Equinox Electronic
@@ -0,0 +1,139 @@
+package io.github.equinoxelectronic.lyra2.objects;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the neuron view and the packed weight arrays of a {@link Layer} stay in step.
+ */
+class LayerTest {
+
+    // A 3 neuron layer with 4 inputs, where weight k of neuron j is j * 10 + k + 1
+    private static Layer numberedLayer() {
+        Layer layer = new Layer(3, 4, Enums.activationFunctions.TANH);
+        for (int i = 0; i < layer.weights.length; i++) {
+            layer.weights[i] = (i / 4) * 10 + i % 4 + 1;
+        }
+        for (int j = 0; j < 3; j++) {
+            layer.biases[j] = -j;
+        }
+        layer.refreshNeurons();
+        return layer;
+    }
+
+    @Test
+    void neuronViewReadsThePackedRows() {
+        Layer layer = numberedLayer();
+
+        assertEquals(3, layer.neurons.size());
+        for (int j = 0; j < 3; j++) {
+            List<Double> row = layer.neurons.get(j).weights;
+            assertEquals(4, row.size());
+            for (int k = 0; k < 4; k++) {
+                assertEquals(j * 10 + k + 1, row.get(k));
+            }
+            assertEquals(-j, layer.neurons.get(j).bias);
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> layer.neurons.getFirst().weights.get(4));
+    }
+
+    @Test
+    void neuronViewWritesThroughToThePackedRows() {
+        Layer layer = numberedLayer();
+
+        assertEquals(23.0, layer.neurons.get(2).weights.set(2, 0.5));
+
+        assertEquals(0.5, layer.weights[2 * 4 + 2]);
+        assertEquals(0.5, layer.weight(10));
+        assertTrue(layer.isPacked());
+    }
+
+    @Test
+    void packCopiesReplacedWeightListsBack() {
+        Layer layer = numberedLayer();
+        for (Neuron neuron : layer.neurons) {
+            neuron.weights = new ArrayList<>(List.of(1.0, 2.0));
+            neuron.bias = 7;
+        }
+        assertFalse(layer.isPacked());
+
+        layer.pack();
+
+        assertTrue(layer.isPacked());
+        assertEquals(2, layer.fanIn);
+        assertArrayEquals(new double[]{1, 2, 1, 2, 1, 2}, layer.weights);
+        assertArrayEquals(new double[]{7, 7, 7}, layer.biases);
+    }
+
+    @Test
+    void packRejectsRowsOfDifferentLengths() {
+        Layer layer = numberedLayer();
+        layer.neurons.get(1).weights = new ArrayList<>(List.of(1.0));
+
+        assertThrows(IllegalStateException.class, layer::pack);
+    }
+
+    @Test
+    void floatLayersKeepTheViewWorking() {
+        Layer layer = numberedLayer();
+        layer.toFloat();
+
+        assertTrue(layer.isFloat());
+        assertNull(layer.weights);
+        assertEquals(12.0, layer.neurons.get(1).weights.get(1));
+
+        layer.neurons.get(1).weights.set(1, 0.25);
+        assertEquals(0.25f, layer.floatWeights[5]);
+
+        layer.toDouble();
+        assertFalse(layer.isFloat());
+        assertEquals(0.25, layer.weights[5]);
+        assertEquals(-2.0, layer.bias(2));
+    }
+
+    @Test
+    void prunedWeightsCanOnlyBeWrittenAsZero() {
+        Layer layer = numberedLayer();
+        layer.weights[1] = 0;
+        layer.weights[6] = 0;
+        layer.sparsify();
+        assertEquals(10, layer.nonZeroCount());
+
+        List<Double> first = layer.neurons.getFirst().weights;
+        first.set(0, 9.0);
+        assertEquals(9.0, layer.weights[0]);
+        assertEquals(9.0, layer.sparseWeights[0]);
+
+        first.set(1, 0.0);
+        assertEquals(10, layer.nonZeroCount());
+        assertThrows(IllegalArgumentException.class, () -> first.set(1, 3.0));
+        assertEquals(0.0, layer.weights[1]);
+
+        layer.densify();
+        first.set(1, 3.0);
+        assertEquals(3.0, layer.weights[1]);
+    }
+
+    @Test
+    void sparsifyIndexesTheNonZeroWeights() {
+        Layer layer = numberedLayer();
+        layer.weights[1] = 0;
+        layer.weights[6] = 0;
+        layer.sparsify();
+
+        assertArrayEquals(new int[]{0, 3, 6, 10}, layer.sparseRowStarts);
+        assertArrayEquals(new int[]{0, 2, 3, 0, 1, 3, 0, 1, 2, 3}, layer.sparseColumns);
+        assertArrayEquals(new double[]{1, 3, 4, 11, 12, 14, 21, 22, 23, 24}, layer.sparseWeights);
+    }
+}
+
+
+//The layers used to keep every weight in its own neuron. Now they live in one array, and the neurons
+//just look into it, so these make sure both ways of getting at a weight still agree.
+
+//Equinox Electronic
@@ -0,0 +1,124 @@
+package io.github.equinoxelectronic.lyra2.processing;
+
+import com.aparapi.device.JavaDevice;
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.api.LyraModelBuilder;
+import io.github.equinoxelectronic.lyra2.api.Running;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the Aparapi forward pass in Aparapi's Java thread pool and checks it against an {@link
+ * io.github.equinoxelectronic.lyra2.api.InferenceSession}, including after the weights or the shape change.
+ */
+class GpuForwardTest {
+
+    // The kernel computes in float, the session in double
+    private static final double TOLERANCE = 1e-4;
+
+    private LyraModel model;
+
+    @BeforeEach
+    void useThreadPool() {
+        GpuForward.setDevice(JavaDevice.THREAD_POOL);
+    }
+
+    @AfterEach
+    void releaseDevice() {
+        if (model != null) {
+            GpuForward.release(model);
+        }
+        GpuForward.setDevice(null);
+    }
+
+    private static LyraModel newModel(Enums.activationFunctions activation, int... hiddenSizes) {
+        LyraModelBuilder builder = new LyraModel().builder().name("gpu").author("Equinox Electronic")
+                .inputType(Enums.IOType.SHORT).outputType(Enums.IOType.BYTE)
+                .setActivationFunction(activation)
+                .addHiddenLayer(0);
+        for (int size : hiddenSizes) {
+            builder.addHiddenLayer(size);
+        }
+        return builder.build();
+    }
+
+    private static double[] input(int width) {
+        double[] input = new double[width];
+        for (int k = 0; k < width; k += 2) {
+            input[k] = 1;
+        }
+        return input;
+    }
+
+    private static void assertMatchesSession(LyraModel model, double[] input) {
+        float[][] layers = GpuForward.feedForward(model, input);
+        double[] expected = Running.session(model).feedForward(input);
+
+        assertEquals(model.layers.size(), layers.length);
+        float[] output = layers[layers.length - 1];
+        assertEquals(expected.length, output.length);
+        for (int j = 0; j < expected.length; j++) {
+            assertEquals(expected[j], output[j], TOLERANCE, "output " + j);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Enums.activationFunctions.class)
+    void matchesTheSessionForEveryActivation(Enums.activationFunctions activation) {
+        model = newModel(activation, 12, 10);
+
+        assertMatchesSession(model, input(16));
+    }
+
+    @Test
+    void newWeightsAreUploadedAfterMarkModified() {
+        model = newModel(Enums.activationFunctions.TANH, 12);
+        double[] input = input(16);
+        float[] before = GpuForward.feedForward(model, input)[1].clone();
+
+        Layer output = model.layers.getLast();
+        Arrays.fill(output.weights, 0);
+        Arrays.fill(output.biases, 0.5);
+        model.markModified();
+
+        float[] after = GpuForward.feedForward(model, input)[1];
+        assertFalse(Arrays.equals(before, after));
+        for (float value : after) {
+            assertEquals(Math.tanh(0.5), value, TOLERANCE);
+        }
+        assertMatchesSession(model, input);
+    }
+
+    @Test
+    void buffersAreReallocatedWhenTheShapeChanges() {
+        model = newModel(Enums.activationFunctions.TANH, 12);
+        assertMatchesSession(model, input(16));
+
+        // Reload a wider model into the same object
+        LyraModel wider = newModel(Enums.activationFunctions.SIGMOID, 20, 6);
+        model.frontLayer = wider.frontLayer;
+        model.layers = wider.layers;
+        model.markModified();
+
+        float[][] layers = GpuForward.feedForward(model, input(16));
+        assertEquals(20, layers[0].length);
+        assertEquals(6, layers[1].length);
+        assertEquals(8, layers[2].length);
+        assertMatchesSession(model, input(16));
+    }
+}
+
+
+//Nobody here has a graphics card to test on, but Aparapi can run the exact same kernel on normal threads,
+//which is good enough to catch the kernel and the buffer bookkeeping doing the wrong thing.
+
+//Equinox Electronic
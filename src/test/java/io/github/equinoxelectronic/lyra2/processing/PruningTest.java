@@ -0,0 +1,209 @@
+package io.github.equinoxelectronic.lyra2.processing;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.api.Running;
+import io.github.equinoxelectronic.lyra2.api.Trainer;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Parser;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Serializer;
+import io.github.equinoxelectronic.lyra2.processing.optimizers.Adam;
+import io.github.equinoxelectronic.lyra2.processing.optimizers.Optimizer;
+import io.github.equinoxelectronic.lyra2.processing.optimizers.SGD;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that pruning reaches its target sparsity, that the sparse index computes the same outputs
+ * as the dense weights, and that the zeros survive saving and fine-tuning.
+ */
+class PruningTest {
+
+    private static LyraModel newModel() {
+        return new LyraModel().builder().name("pruned").author("Equinox Electronic")
+                .inputType(Enums.IOType.BYTE).outputType(Enums.IOType.BYTE)
+                .setActivationFunction(Enums.activationFunctions.TANH)
+                .addHiddenLayer(0).addHiddenLayer(12).addHiddenLayer(10)
+                .build();
+    }
+
+    private static LyraModel copy(LyraModel model) {
+        return Parser.parseModelFile(Serializer.serializeModel(model));
+    }
+
+    private static int zeros(Layer layer) {
+        int zeros = 0;
+        for (int w = 0; w < layer.size() * layer.fanIn; w++) {
+            if (layer.weight(w) == 0) zeros++;
+        }
+        return zeros;
+    }
+
+    private static double[] input(int value) {
+        double[] input = new double[8];
+        for (int k = 0; k < 8; k++) {
+            input[k] = (value >>> (7 - k)) & 1;
+        }
+        return input;
+    }
+
+    @Test
+    void perLayerPruningHitsTheTargetInEveryLayer() {
+        LyraModel model = newModel();
+
+        double achieved = Pruning.prune(model, 0.6, Enums.pruningScopes.PER_LAYER);
+
+        int total = 0;
+        for (Layer layer : model.layers) {
+            int weights = layer.size() * layer.fanIn;
+            total += weights;
+            assertEquals(Math.round(weights * 0.6), zeros(layer));
+            assertTrue(layer.isSparse());
+            assertEquals(weights - zeros(layer), layer.nonZeroCount());
+        }
+        assertEquals(0.6, achieved, 1.0 / total);
+        assertEquals(achieved, Pruning.sparsity(model));
+    }
+
+    @Test
+    void globalPruningRemovesTheSmallestWeightsOfTheWholeModel() {
+        LyraModel model = newModel();
+        LyraModel original = copy(model);
+
+        Pruning.prune(model, 0.6, Enums.pruningScopes.GLOBAL);
+
+        int total = 0;
+        int pruned = 0;
+        double largestPruned = 0;
+        double smallestKept = Double.MAX_VALUE;
+        for (int i = 0; i < model.layers.size(); i++) {
+            Layer layer = model.layers.get(i);
+            Layer before = original.layers.get(i);
+            for (int w = 0; w < layer.size() * layer.fanIn; w++) {
+                total++;
+                double magnitude = Math.abs(before.weight(w));
+                if (layer.weight(w) == 0) {
+                    pruned++;
+                    largestPruned = Math.max(largestPruned, magnitude);
+                } else {
+                    assertEquals(before.weight(w), layer.weight(w));
+                    smallestKept = Math.min(smallestKept, magnitude);
+                }
+            }
+        }
+        assertEquals(Math.round(total * 0.6), pruned);
+        assertTrue(largestPruned < smallestKept, largestPruned + " was pruned but " + smallestKept + " was kept");
+    }
+
+    @Test
+    void sparseLayersComputeTheSameOutputsAsDenseOnes() {
+        LyraModel sparse = newModel();
+        sparse.prune(0.5);
+        LyraModel dense = copy(sparse);
+        for (Layer layer : dense.layers) {
+            layer.densify();
+            assertFalse(layer.isSparse());
+        }
+        dense.markModified();
+
+        double[][] batch = new double[256][];
+        for (int value = 0; value < 256; value++) {
+            batch[value] = input(value);
+            assertArrayEquals(Running.session(dense).feedForward(batch[value]),
+                    Running.session(sparse).feedForward(batch[value]), 1e-12, "input " + value);
+            assertEquals(Running.feed(dense, (byte) value), Running.feed(sparse, (byte) value));
+        }
+        double[][] denseBatch = dense.compile().feedForwardBatch(batch);
+        double[][] sparseBatch = sparse.compile().feedForwardBatch(batch);
+        for (int value = 0; value < 256; value++) {
+            assertArrayEquals(denseBatch[value], sparseBatch[value], 1e-12);
+        }
+    }
+
+    @Test
+    void sparseLayersRoundTripWithAnAllZeroRow() {
+        LyraModel model = newModel();
+        Layer first = model.layers.getFirst();
+        // Rows 3 and the last one lose every weight, so they are written with an empty weight list
+        for (int k = 0; k < first.fanIn; k++) {
+            first.weights[3 * first.fanIn + k] = 0;
+            first.weights[(first.size() - 1) * first.fanIn + k] = 0;
+        }
+        model.prune(0.3);
+        assertEquals(first.sparseRowStarts[3], first.sparseRowStarts[4]);
+
+        String serialized = Serializer.serializeModel(model);
+        LyraModel parsed = Parser.parseModelFile(serialized);
+
+        assertTrue(serialized.contains("~" + first.fanIn + "~"));
+        for (int i = 0; i < model.layers.size(); i++) {
+            Layer want = model.layers.get(i);
+            Layer got = parsed.layers.get(i);
+            assertTrue(got.isSparse());
+            assertEquals(want.fanIn, got.fanIn);
+            assertArrayEquals(want.sparseRowStarts, got.sparseRowStarts, "row starts of layer " + i);
+            assertArrayEquals(want.sparseColumns, got.sparseColumns, "columns of layer " + i);
+            assertArrayEquals(want.sparseWeights, got.sparseWeights, "weights of layer " + i);
+            assertArrayEquals(want.weights, got.weights);
+            assertArrayEquals(want.biases, got.biases);
+        }
+        for (int value = 0; value < 256; value++) {
+            assertArrayEquals(Running.session(model).feedForward(input(value)),
+                    Running.session(parsed).feedForward(input(value)), 0);
+        }
+    }
+
+    private static void fineTune(LyraModel model, Optimizer optimizer) {
+        ArrayList<Object> inputs = new ArrayList<>();
+        ArrayList<Object> outputs = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            inputs.add((byte) i);
+            outputs.add((byte) (i * 3));
+        }
+        new Trainer().configure()
+                .setModel(model)
+                .setInputData(inputs)
+                .setOutputData(outputs)
+                .setEpochLimit(3)
+                .setLearningRate(optimizer instanceof Adam ? 0.001 : 0.05)
+                .setBatchSize(8)
+                .setOptimizer(optimizer)
+                .train();
+    }
+
+    @Test
+    void fineTuningKeepsPrunedWeightsAtZero() {
+        for (Optimizer optimizer : new Optimizer[]{new SGD(), new Adam()}) {
+            LyraModel model = newModel();
+            model.prune(0.5);
+            LyraModel pruned = copy(model);
+
+            fineTune(model, optimizer);
+
+            boolean changed = false;
+            for (int i = 0; i < model.layers.size(); i++) {
+                Layer before = pruned.layers.get(i);
+                Layer after = model.layers.get(i);
+                assertArrayEquals(before.sparseColumns, after.sparseColumns);
+                for (int w = 0; w < after.size() * after.fanIn; w++) {
+                    if (before.weight(w) == 0) {
+                        assertEquals(0.0, after.weight(w), optimizer.getClass().getSimpleName() + " weight " + w);
+                    } else if (before.weight(w) != after.weight(w)) {
+                        changed = true;
+                    }
+                }
+            }
+            assertTrue(changed, optimizer.getClass().getSimpleName() + " did not train");
+            assertEquals(0.5, Pruning.sparsity(model), 0.01);
+        }
+    }
+}
+
+
+//Pruning is only worth it if the model still gives the same answers from fewer weights, and if those weights
+//stay gone. Training them back to something other than zero would quietly undo the whole thing.
+
+//Equinox Electronic
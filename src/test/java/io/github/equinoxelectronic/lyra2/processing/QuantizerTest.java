@@ -0,0 +1,150 @@
+package io.github.equinoxelectronic.lyra2.processing;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.api.Running;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraModelLoadingError;
+import io.github.equinoxelectronic.lyra2.objects.DataSet;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedLayer;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedModel;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Loading;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Parser;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Saving;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Serializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that an int8 model stays close to the model it was quantized from, survives saving and loading,
+ * and cannot be mistaken for a normal model file.
+ */
+class QuantizerTest {
+
+    // Well above the worst error seen over many random models of this shape (about 0.04)
+    private static final double MAX_ERROR = 0.06;
+
+    @TempDir
+    Path folder;
+
+    private static LyraModel newModel() {
+        return new LyraModel().builder().name("quantized").author("Equinox Electronic")
+                .inputType(Enums.IOType.BYTE).outputType(Enums.IOType.BYTE)
+                .setActivationFunction(Enums.activationFunctions.TANH)
+                .addHiddenLayer(0).addHiddenLayer(16).addHiddenLayer(12)
+                .build();
+    }
+
+    private static double[] input(int value) {
+        double[] input = new double[8];
+        for (int k = 0; k < 8; k++) {
+            input[k] = ((value & 0xFF) >>> (7 - k)) & 1;
+        }
+        return input;
+    }
+
+    // Every fourth byte, so the check below also runs on inputs the scales were not fitted to
+    private static DataSet calibration() throws Exception {
+        ArrayList<ArrayList<Double>> inputs = new ArrayList<>();
+        for (int b = -128; b < 128; b += 4) {
+            inputs.add(DatatypeConversion.convertToBinaryArray(Enums.IOType.BYTE, (byte) b));
+        }
+        return new DataSet(inputs, null);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Enums.quantizationScales.class)
+    void quantizedOutputsStayCloseToTheFloatModel(Enums.quantizationScales scales) throws Exception {
+        LyraModel model = newModel();
+
+        QuantizedModel quantized = Quantizer.quantize(model, calibration(), scales);
+
+        assertEquals(scales, quantized.scales);
+        ArrayList<ArrayList<Double>> inputs = new ArrayList<>();
+        ArrayList<ArrayList<Double>> labels = new ArrayList<>();
+        double maxError = 0;
+        for (int b = 0; b < 256; b++) {
+            double[] expected = Running.session(model).feedForward(input(b));
+            double[] actual = quantized.feedForward(input(b));
+            for (int j = 0; j < expected.length; j++) {
+                assertEquals(expected[j], actual[j], MAX_ERROR, scales + " input " + b + " output " + j);
+                maxError = Math.max(maxError, Math.abs(expected[j] - actual[j]));
+            }
+            inputs.add(DatatypeConversion.convertToBinaryArray(Enums.IOType.BYTE, (byte) b));
+            labels.add(DatatypeConversion.convertToBinaryArray(Enums.IOType.BYTE, (byte) (b * 3)));
+        }
+
+        Quantizer.Report report = Quantizer.compare(model, quantized, new DataSet(inputs, labels));
+        assertEquals(maxError, report.maxAbsoluteError, 1e-12);
+        assertTrue(report.quantizedBytes < report.referenceBytes);
+    }
+
+    @Test
+    void perLayerScalesShareOneScalePerLayer() throws Exception {
+        QuantizedModel quantized = Quantizer.quantize(newModel(), calibration(), Enums.quantizationScales.PER_LAYER);
+
+        for (QuantizedLayer layer : quantized.layers) {
+            for (float scale : layer.weightScales) {
+                assertEquals(layer.weightScales[0], scale);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Enums.quantizationScales.class)
+    void quantizedModelsRoundTripThroughSavingAndLoading(Enums.quantizationScales scales) throws Exception {
+        QuantizedModel quantized = Quantizer.quantize(newModel(), calibration(), scales);
+        String path = folder.resolve("int8.lyra").toString();
+
+        Saving.saveQuantizedModel(path, quantized);
+        QuantizedModel loaded = Loading.loadQuantizedModel(path);
+
+        assertEquals(quantized.modelID, loaded.modelID);
+        assertEquals(quantized.scales, loaded.scales);
+        assertEquals(quantized.outputType, loaded.outputType);
+        assertEquals(quantized.layers.size(), loaded.layers.size());
+        for (int i = 0; i < quantized.layers.size(); i++) {
+            QuantizedLayer want = quantized.layers.get(i);
+            QuantizedLayer got = loaded.layers.get(i);
+            assertEquals(want.fanIn, got.fanIn);
+            assertEquals(want.inputScale, got.inputScale);
+            assertArrayEquals(want.weights, got.weights, "weights of layer " + i);
+            assertArrayEquals(want.weightScales, got.weightScales, "scales of layer " + i);
+            assertArrayEquals(want.biases, got.biases, "biases of layer " + i);
+        }
+        for (int b = 0; b < 256; b++) {
+            assertArrayEquals(quantized.feedForward(input(b)), loaded.feedForward(input(b)), 0);
+            assertEquals(quantized.feed((byte) b), loaded.feed((byte) b));
+        }
+    }
+
+    @Test
+    void quantizedFilesAreNotReadAsNormalModels() throws Exception {
+        QuantizedModel quantized = Quantizer.quantize(newModel(), calibration());
+
+        String serialized = Serializer.serializeQuantizedModel(quantized);
+        String path = folder.resolve("int8.lyra").toString();
+        Saving.saveQuantizedModel(path, quantized);
+
+        assertThrows(LyraModelLoadingError.class, () -> Parser.parseModelFile(serialized));
+        assertThrows(LyraModelLoadingError.class, () -> Loading.loadModel(path));
+    }
+
+    @Test
+    void anEmptyCalibrationSetIsRefused() {
+        assertThrows(LyraError.class, () -> Quantizer.quantize(newModel(), new DataSet(new ArrayList<>(), null)));
+    }
+}
+
+
+//Quantizing always loses a little, so the question is whether it loses only a little. These put a number on that,
+//and make sure the int8 file can never be loaded as if it were a normal model.
+
+//Equinox Electronic
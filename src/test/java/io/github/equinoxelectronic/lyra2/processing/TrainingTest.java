@@ -0,0 +1,141 @@
+package io.github.equinoxelectronic.lyra2.processing;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.api.Trainer;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraError;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Parser;
+import io.github.equinoxelectronic.lyra2.processing.lyraFile.Serializer;
+import io.github.equinoxelectronic.lyra2.processing.optimizers.Adam;
+import io.github.equinoxelectronic.lyra2.processing.optimizers.Optimizer;
+import io.github.equinoxelectronic.lyra2.processing.optimizers.SGD;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that data-parallel training computes the same batch gradients as sequential mini-batch training.
+ */
+class TrainingTest {
+
+    private final LyraRuntime runtime = new LyraRuntime(Enums.computeDevices.CPU_MULTI, 4);
+
+    @AfterEach
+    void shutDown() {
+        runtime.close();
+    }
+
+    private static LyraModel newModel() {
+        return new LyraModel().builder().name("training").author("Equinox Electronic")
+                .inputType(Enums.IOType.BYTE).outputType(Enums.IOType.BYTE)
+                .setActivationFunction(Enums.activationFunctions.TANH)
+                .addHiddenLayer(0).addHiddenLayer(12).addHiddenLayer(12)
+                .build();
+    }
+
+    private static LyraModel copy(LyraModel model) {
+        return Parser.parseModelFile(Serializer.serializeModel(model));
+    }
+
+    private LyraModel train(LyraModel model, Enums.trainingStrategies strategy, Optimizer optimizer) {
+        ArrayList<Object> inputs = new ArrayList<>();
+        ArrayList<Object> outputs = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            inputs.add((byte) i);
+            outputs.add((byte) (i * 3));
+        }
+        Trainer trainer = new Trainer();
+        trainer.configure()
+                .setModel(model)
+                .setInputData(inputs)
+                .setOutputData(outputs)
+                .setEpochLimit(3)
+                .setLearningRate(optimizer instanceof Adam ? 0.001 : 0.05)
+                .setBatchSize(8)
+                .setTrainingStrategy(strategy)
+                .setOptimizer(optimizer)
+                .setRuntime(runtime);
+        return trainer.train();
+    }
+
+    private static void assertSameWeights(LyraModel expected, LyraModel actual, double tolerance) {
+        for (int i = 0; i < expected.layers.size(); i++) {
+            Layer want = expected.layers.get(i);
+            Layer got = actual.layers.get(i);
+            assertArrayEquals(want.weights, got.weights, tolerance, "weights of layer " + i);
+            assertArrayEquals(want.biases, got.biases, tolerance, "biases of layer " + i);
+        }
+    }
+
+    @Test
+    void dataParallelMatchesSequentialMiniBatches() {
+        LyraModel sequential = newModel();
+        LyraModel parallel = copy(sequential);
+
+        train(sequential, Enums.trainingStrategies.SEQUENTIAL, new SGD());
+        train(parallel, Enums.trainingStrategies.DATA_PARALLEL, new SGD());
+
+        assertSameWeights(sequential, parallel, 1e-9);
+    }
+
+    @Test
+    void dataParallelMatchesSequentialMiniBatchesWithAdam() {
+        LyraModel sequential = newModel();
+        LyraModel parallel = copy(sequential);
+
+        train(sequential, Enums.trainingStrategies.SEQUENTIAL, new Adam());
+        train(parallel, Enums.trainingStrategies.DATA_PARALLEL, new Adam());
+
+        assertSameWeights(sequential, parallel, 1e-9);
+    }
+
+    @Test
+    void dataParallelRunsAreReproducible() {
+        LyraModel first = newModel();
+        LyraModel second = copy(first);
+
+        train(first, Enums.trainingStrategies.DATA_PARALLEL, new SGD());
+        train(second, Enums.trainingStrategies.DATA_PARALLEL, new SGD());
+
+        assertSameWeights(first, second, 0);
+    }
+
+    @Test
+    void trainingChangesTheWeights() {
+        LyraModel untrained = newModel();
+        LyraModel trained = copy(untrained);
+
+        train(trained, Enums.trainingStrategies.DATA_PARALLEL, new SGD());
+
+        assertNotEquals(untrained.layers.getLast().weights[0], trained.layers.getLast().weights[0]);
+    }
+
+    @Test
+    void aFloatModelIsNarrowedBackWhenTrainingFails() {
+        LyraModel model = newModel();
+        model.setPrecision(Enums.precisions.FLOAT);
+        Optimizer failing = new SGD() {
+            @Override
+            public void nextStep() {
+                throw new LyraError("stop");
+            }
+        };
+
+        assertThrows(LyraError.class, () -> train(model, Enums.trainingStrategies.SEQUENTIAL, failing));
+
+        assertEquals(Enums.precisions.FLOAT, model.getPrecision());
+        for (Layer layer : model.layers) {
+            assertTrue(layer.isFloat());
+        }
+    }
+}
+
+
+//Splitting a batch over threads should only change how fast the gradient is added up, not what it adds up to.
+//These train the same model both ways and compare every weight.
+
+//Equinox Electronic
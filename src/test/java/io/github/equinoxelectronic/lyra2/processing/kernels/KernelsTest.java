@@ -0,0 +1,137 @@
+package io.github.equinoxelectronic.lyra2.processing.kernels;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the SIMD kernels give the scalar kernels' results, up to the order the sums are added in.
+ * The lengths are odd and the offsets unaligned, so both the vector loops and the scalar tails run.
+ */
+class KernelsTest {
+
+    private static final int[] LENGTHS = {0, 1, 3, 7, 16, 33, 257};
+
+    private final MathKernels scalar = new ScalarKernels();
+    private final MathKernels vector = new VectorKernels();
+    private final Random random = new Random(42);
+
+    private double[] randomDoubles(int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextGaussian() * 3;
+        }
+        return values;
+    }
+
+    private float[] randomFloats(int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) (random.nextGaussian() * 3);
+        }
+        return values;
+    }
+
+    @Test
+    void dotProductsMatch() {
+        for (int length : LENGTHS) {
+            double[] a = randomDoubles(length + 5);
+            double[] b = randomDoubles(length + 2);
+            double magnitude = 0;
+            for (int i = 0; i < length; i++) {
+                magnitude += Math.abs(a[5 + i] * b[2 + i]);
+            }
+
+            assertEquals(scalar.dot(a, 5, b, 2, length), vector.dot(a, 5, b, 2, length), 1e-12 * (1 + magnitude),
+                    "length " + length);
+        }
+    }
+
+    @Test
+    void floatDotProductsMatch() {
+        for (int length : LENGTHS) {
+            float[] a = randomFloats(length + 3);
+            float[] b = randomFloats(length + 1);
+            double magnitude = 0;
+            for (int i = 0; i < length; i++) {
+                magnitude += Math.abs(a[3 + i] * b[1 + i]);
+            }
+
+            assertEquals(scalar.dot(a, 3, b, 1, length), vector.dot(a, 3, b, 1, length), 1e-5 * (1 + magnitude),
+                    "length " + length);
+        }
+    }
+
+    @Test
+    void axpyMatches() {
+        for (int length : LENGTHS) {
+            double[] x = randomDoubles(length + 3);
+            double[] y = randomDoubles(length + 4);
+            double[] expected = y.clone();
+
+            scalar.axpy(0.37, x, 3, expected, 4, length);
+            vector.axpy(0.37, x, 3, y, 4, length);
+
+            assertArrayEquals(expected, y, 1e-12, "length " + length);
+        }
+    }
+
+    @Test
+    void clippedAxpyMatchesAndClips() {
+        for (int length : LENGTHS) {
+            double[] x = randomDoubles(length + 1);
+            double[] y = randomDoubles(length + 2);
+            double[] before = y.clone();
+            double[] expected = y.clone();
+
+            scalar.axpyClipped(0.5, x, 1, expected, 2, length, 0.1);
+            vector.axpyClipped(0.5, x, 1, y, 2, length, 0.1);
+
+            assertArrayEquals(expected, y, 1e-12, "length " + length);
+            for (int i = 0; i < y.length; i++) {
+                assertTrue(Math.abs(y[i] - before[i]) <= 0.1 + 1e-12);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Enums.activationFunctions.class)
+    void activationsMatch(Enums.activationFunctions function) {
+        for (int length : LENGTHS) {
+            double[] values = randomDoubles(length + 6);
+            double[] expected = values.clone();
+
+            scalar.activate(expected, 3, 3 + length, function);
+            vector.activate(values, 3, 3 + length, function);
+
+            assertArrayEquals(expected, values, 1e-12, function + ", length " + length);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Enums.activationFunctions.class)
+    void floatActivationsMatch(Enums.activationFunctions function) {
+        for (int length : LENGTHS) {
+            float[] values = randomFloats(length + 6);
+            float[] expected = values.clone();
+
+            scalar.activate(expected, 3, 3 + length, function);
+            vector.activate(values, 3, 3 + length, function);
+
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(expected[i], values[i], 1e-6, function + ", length " + length + ", index " + i);
+            }
+        }
+    }
+}
+
+
+//The SIMD kernels add things up in a different order than the plain loops, so the answers can be a hair apart,
+//but never more than that. If a lane or a tail gets lost, these will catch it.
+
+//Equinox Electronic
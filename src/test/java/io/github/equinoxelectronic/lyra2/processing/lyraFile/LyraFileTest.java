@@ -0,0 +1,184 @@
+package io.github.equinoxelectronic.lyra2.processing.lyraFile;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.exceptions.LyraWrongDatatypeException;
+import io.github.equinoxelectronic.lyra2.objects.DataSet;
+import io.github.equinoxelectronic.lyra2.objects.EmbeddingLayer;
+import io.github.equinoxelectronic.lyra2.objects.Layer;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedLayer;
+import io.github.equinoxelectronic.lyra2.objects.QuantizedModel;
+import io.github.equinoxelectronic.lyra2.processing.DatatypeConversion;
+import io.github.equinoxelectronic.lyra2.processing.Feeding;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round-trips every kind of model through the .lyra format and checks that nothing changes on the way.
+ */
+class LyraFileTest {
+
+    @TempDir
+    Path folder;
+
+    private static LyraModel byteModel() {
+        return new LyraModel().builder().name("roundTrip").author("Equinox Electronic")
+                .inputType(Enums.IOType.BYTE).outputType(Enums.IOType.BYTE)
+                .setActivationFunction(Enums.activationFunctions.TANH)
+                .addHiddenLayer(0).addHiddenLayer(6).addHiddenLayer(5)
+                .build();
+    }
+
+    private static LyraModel reparse(LyraModel model) {
+        return Parser.parseModelFile(Serializer.serializeModel(model));
+    }
+
+    private static void assertSameModel(LyraModel expected, LyraModel actual) {
+        assertEquals(expected.modelID, actual.modelID);
+        assertEquals(expected.modelAuthor, actual.modelAuthor);
+        assertEquals(expected.frontLayer.inputType, actual.frontLayer.inputType);
+        assertEquals(expected.frontLayer.neurons.size(), actual.frontLayer.neurons.size());
+        assertEquals(expected.outputType, actual.outputType);
+        assertEquals(expected.getPrecision(), actual.getPrecision());
+        assertEquals(expected.layers.size(), actual.layers.size());
+        for (int i = 0; i < expected.layers.size(); i++) {
+            Layer want = expected.layers.get(i);
+            Layer got = actual.layers.get(i);
+            assertEquals(want.fanIn, got.fanIn, "fan-in of layer " + i);
+            assertArrayEquals(want.weights, got.weights, "weights of layer " + i);
+            assertArrayEquals(want.biases, got.biases, "biases of layer " + i);
+            assertArrayEquals(want.floatWeights, got.floatWeights);
+            assertArrayEquals(want.floatBiases, got.floatBiases);
+            assertArrayEquals(want.sparseRowStarts, got.sparseRowStarts);
+            assertArrayEquals(want.sparseColumns, got.sparseColumns);
+            assertTrue(got.isPacked());
+        }
+    }
+
+    private static double[] feed(LyraModel model, byte input) throws LyraWrongDatatypeException {
+        ArrayList<Double> output = Feeding.feedForward(model, DatatypeConversion.convertToBinaryArray(Enums.IOType.BYTE, input));
+        return output.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    @Test
+    void doubleModelsRoundTripExactly() {
+        LyraModel model = byteModel();
+
+        assertSameModel(model, reparse(model));
+    }
+
+    @Test
+    void savedFilesLoadBack() {
+        LyraModel model = byteModel();
+        String path = folder.resolve("model.lyra").toString();
+
+        model.save(path);
+
+        assertSameModel(model, Loading.loadModel(path));
+    }
+
+    @Test
+    void floatModelsRoundTripExactly() {
+        LyraModel model = byteModel();
+        model.setPrecision(Enums.precisions.FLOAT);
+
+        LyraModel parsed = reparse(model);
+
+        assertEquals(Enums.precisions.FLOAT, parsed.getPrecision());
+        assertTrue(parsed.layers.getFirst().isFloat());
+        assertSameModel(model, parsed);
+    }
+
+    @Test
+    void prunedModelsKeepTheirSparseIndex() {
+        LyraModel model = byteModel();
+        model.prune(0.5);
+        assertTrue(Serializer.serializeModel(model).contains("~"));
+
+        LyraModel parsed = reparse(model);
+
+        for (Layer layer : parsed.layers) {
+            assertTrue(layer.isSparse());
+        }
+        assertSameModel(model, parsed);
+        assertArrayEquals(model.layers.getLast().sparseWeights, parsed.layers.getLast().sparseWeights);
+    }
+
+    @Test
+    void embeddingModelsKeepTheirVocabulary() {
+        LyraModel model = new LyraModel().builder().name("embedding").author("Equinox Electronic")
+                .embeddingInput(40).outputType(Enums.IOType.BYTE)
+                .setActivationFunction(Enums.activationFunctions.TANH)
+                .addHiddenLayer(0).addHiddenLayer(6)
+                .build();
+
+        LyraModel parsed = reparse(model);
+
+        assertInstanceOf(EmbeddingLayer.class, parsed.frontLayer);
+        assertEquals(40, ((EmbeddingLayer) parsed.frontLayer).getVocabularySize());
+        assertSameModel(model, parsed);
+    }
+
+    @Test
+    void quantizedModelsRoundTripExactly() throws LyraWrongDatatypeException {
+        LyraModel model = byteModel();
+        ArrayList<ArrayList<Double>> calibration = new ArrayList<>();
+        for (int b = -128; b < 128; b += 16) {
+            calibration.add(DatatypeConversion.convertToBinaryArray(Enums.IOType.BYTE, (byte) b));
+        }
+        QuantizedModel quantized = model.quantize(new DataSet(calibration, null));
+        String path = folder.resolve("quantized.lyra").toString();
+
+        quantized.save(path);
+        QuantizedModel loaded = Loading.loadQuantizedModel(path);
+
+        assertEquals(quantized.scales, loaded.scales);
+        assertEquals(quantized.layers.size(), loaded.layers.size());
+        for (int i = 0; i < quantized.layers.size(); i++) {
+            QuantizedLayer want = quantized.layers.get(i);
+            QuantizedLayer got = loaded.layers.get(i);
+            assertEquals(want.fanIn, got.fanIn);
+            assertEquals(want.inputScale, got.inputScale);
+            assertArrayEquals(want.weights, got.weights);
+            assertArrayEquals(want.weightScales, got.weightScales);
+            assertArrayEquals(want.biases, got.biases);
+        }
+        for (ArrayList<Double> input : calibration) {
+            assertEquals(quantized.feedForward(input), loaded.feedForward(input));
+        }
+    }
+
+    // baseline.lyra was saved before the weights were packed; these are its outputs from that version
+    @Test
+    void filesFromBeforePackedStorageStillLoad() throws Exception {
+        String path = Path.of(LyraFileTest.class.getResource("baseline.lyra").toURI()).toString();
+
+        LyraModel model = Loading.loadModel(path);
+
+        assertEquals("baseline", model.modelID);
+        assertEquals(Enums.precisions.DOUBLE, model.getPrecision());
+        assertEquals(List.of(8, 6, 8), List.of(model.frontLayer.neurons.size(), model.layers.getFirst().size(),
+                model.layers.getLast().size()));
+        assertArrayEquals(new double[]{-0.3953277989696428, 0.744684161387677, -0.3739762331451928,
+                0.5849755284779836, 0.3938151821039118, 0.37098442762566686, 0.5470963117891707,
+                0.030160894536140074}, feed(model, (byte) 0), 1e-12);
+        assertArrayEquals(new double[]{-0.5406923663301976, 0.8630657678176261, -0.41891265762932045,
+                0.49598394362024734, 0.4865172374789715, 0.42610505038631485, 0.5369945855389141,
+                -0.052570268922975186}, feed(model, (byte) 37), 1e-12);
+        assertArrayEquals(new double[]{0.6863660878136254, -0.565331922104628, 0.17109765217498268,
+                0.8605431000138059, -0.10407833664017578, 0.18180757980374318, 0.547723933021682,
+                0.5623260920691868}, feed(model, (byte) -100), 1e-12);
+    }
+}
+
+
+//A model that comes back from a file even slightly different is a model that quietly gives different answers,
+//so every format the saver can write gets read back here, along with a file from before the weights were packed.
+
+//Equinox Electronic
@@ -0,0 +1,122 @@
+package io.github.equinoxelectronic.lyra2.processing.optimizers;
+
+import io.github.equinoxelectronic.lyra2.Enums;
+import io.github.equinoxelectronic.lyra2.objects.LyraModel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks two steps of every optimizer against values worked out by hand, with a learning rate of 0.1
+ * and gradients of 0.5 and then -0.2.
+ */
+class OptimizersTest {
+
+    private static final double LEARNING_RATE = 0.1;
+    private static final double TOLERANCE = 1e-12;
+
+    private static LyraModel smallModel() {
+        return new LyraModel().builder().name("optimizers").author("Equinox Electronic")
+                .inputType(Enums.IOType.BYTE).outputType(Enums.IOType.BYTE)
+                .setActivationFunction(Enums.activationFunctions.TANH)
+                .addHiddenLayer(0).addHiddenLayer(2)
+                .build();
+    }
+
+    // Runs the two steps on weight 3 of layer 0 and returns their sizes
+    private static double[] twoWeightSteps(Optimizer optimizer, double weight) {
+        optimizer.initialize(smallModel());
+        optimizer.nextStep();
+        double first = optimizer.weightStep(0, 3, 0.5, weight, LEARNING_RATE);
+        optimizer.nextStep();
+        double second = optimizer.weightStep(0, 3, -0.2, weight, LEARNING_RATE);
+        return new double[]{first, second};
+    }
+
+    @Test
+    void sgdStepsAreClipped() {
+        SGD sgd = new SGD();
+
+        assertEquals(0.05, sgd.weightStep(0, 0, 0.5, 1, LEARNING_RATE), TOLERANCE);
+        assertEquals(0.1, sgd.weightStep(0, 0, 3, 1, LEARNING_RATE), TOLERANCE);
+        assertEquals(-0.1, sgd.biasStep(0, 0, -3, LEARNING_RATE), TOLERANCE);
+    }
+
+    @Test
+    void sgdUpdatesRowsWithScaledClippedSteps() {
+        double[] weights = {1, 1, 1, 1};
+        double[] gradients = {9, 0.5, 3, -3};
+
+        new SGD().updateWeights(0, weights, 1, gradients, 1, 2, 3, LEARNING_RATE);
+
+        assertArrayEquals(new double[]{1, 1.1, 1.1, 0.9}, weights, TOLERANCE);
+    }
+
+    @Test
+    void momentumAddsUpPastGradients() {
+        // v = 0.5, then 0.9 * 0.5 - 0.2 = 0.25
+        assertArrayEquals(new double[]{0.05, 0.025}, twoWeightSteps(new Momentum(0.9), 1), TOLERANCE);
+    }
+
+    @Test
+    void nesterovLooksAhead() {
+        // 0.1 * (0.5 + 0.9 * 0.5), then 0.1 * (-0.2 + 0.9 * 0.25)
+        assertArrayEquals(new double[]{0.095, 0.0025}, twoWeightSteps(new Nesterov(0.9), 1), TOLERANCE);
+    }
+
+    @Test
+    void rmsPropScalesByTheRootMeanSquare() {
+        // s = 0.1 * 0.25 = 0.025, then 0.9 * 0.025 + 0.1 * 0.04 = 0.0265
+        assertArrayEquals(new double[]{0.31622774601683923, -0.1228590158196209},
+                twoWeightSteps(new RMSProp(0.9, 1e-8), 1), TOLERANCE);
+    }
+
+    @Test
+    void adamCorrectsItsMomentsForStartingAtZero() {
+        // m = 0.05, v = 0.00025, corrected by 0.1 and 0.001; then m = 0.025, v = 0.00028975, corrected by 0.19 and 0.001999
+        assertArrayEquals(new double[]{0.0999999980000001, 0.034560583883489156},
+                twoWeightSteps(new Adam(0.9, 0.999, 1e-8), 1), TOLERANCE);
+    }
+
+    @Test
+    void adamWDecaysTheWeight() {
+        // Adam's steps minus 0.1 * 0.01 * 2
+        assertArrayEquals(new double[]{0.0999999980000001 - 0.002, 0.034560583883489156 - 0.002},
+                twoWeightSteps(new AdamW(0.9, 0.999, 1e-8, 0.01), 2), TOLERANCE);
+    }
+
+    @Test
+    void biasesKeepTheirOwnState() {
+        Momentum momentum = new Momentum(0.9);
+        momentum.initialize(smallModel());
+        momentum.nextStep();
+        momentum.weightStep(0, 1, 0.5, 1, LEARNING_RATE);
+
+        assertEquals(-0.02, momentum.biasStep(0, 1, -0.2, LEARNING_RATE), TOLERANCE);
+        assertEquals(0.0, momentum.weightStep(0, 0, 0, 1, LEARNING_RATE));
+    }
+
+    @Test
+    void initializeResetsTheState() {
+        Adam adam = new Adam();
+        twoWeightSteps(adam, 1);
+
+        assertArrayEquals(twoWeightSteps(new Adam(), 1), twoWeightSteps(adam, 1));
+    }
+
+    @Test
+    void onlyAdamDependsOnTheStepCount() {
+        assertTrue(new Adam().dependsOnStepCount());
+        assertTrue(new AdamW().dependsOnStepCount());
+        assertFalse(new SGD().dependsOnStepCount());
+        assertFalse(new Momentum().dependsOnStepCount());
+        assertFalse(new Nesterov().dependsOnStepCount());
+        assertFalse(new RMSProp().dependsOnStepCount());
+    }
+}
+
+
+//Every optimizer here is a few lines of arithmetic, and a slip in one of them still trains, just worse.
+//Working two steps out by hand is the easiest way to be sure each one does what its formula says.
+
+//Equinox Electronic